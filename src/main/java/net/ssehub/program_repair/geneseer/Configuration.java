@@ -121,11 +121,66 @@ public class Configuration {
                 "Tests to run", TestsToRun.ALL_TESTS, v -> TestsToRun.valueOf(v.toUpperCase()));
         private Option<Boolean> debugTestDriver = new Option<>("debugTestDriver",
                 "Debug test driver", false, Boolean::parseBoolean);
+        private Option<Integer> testDriverMaxUses = new Option<>("testDriverMaxUses",
+                "Maximum evaluations per test driver process", 20, Integer::parseInt);
+        private Option<Integer> testDriverProcesses = new Option<>("testDriverProcesses",
+                "Number of parallel test driver processes", 1, Integer::parseInt);
+        private Option<Boolean> autotuneConcurrency = new Option<>("autotuneConcurrency",
+                "Autotune number of test driver processes", false, Boolean::parseBoolean);
+        private Option<Integer> autotuneMaxTestDriverProcesses = new Option<>("autotuneMaxTestDriverProcesses",
+                "Maximum number of autotuned test driver processes", 0, Integer::parseInt);
+        private Option<Boolean> testDriverStandby = new Option<>("testDriverStandby",
+                "Standby test driver process after timeouts", false, Boolean::parseBoolean);
+        private Option<Boolean> classDataSharing = new Option<>("classDataSharing",
+                "Class-data sharing archives for JVM startup", false, Boolean::parseBoolean);
+        private Option<String> classDataSharingDirectory = new Option<>("classDataSharingDirectory",
+                "Class-data sharing archive directory", Function.identity());
+        private Option<CompilerBackendType> compilerBackend = new Option<>("compilerBackend",
+                "Compiler backend", CompilerBackendType.PROCESS, v -> CompilerBackendType.valueOf(v.toUpperCase()));
+        private Option<String> compilerWorkerJvmOptions = new Option<>("compilerWorkerJvmOptions",
+                "Compiler worker JVM options", "-XX:+UseSerialGC", Function.identity());
+        private Option<Integer> compilerWorkerMaxHeapGrowthMb = new Option<>("compilerWorkerMaxHeapGrowthMb",
+                "Maximum heap growth of the compiler worker before it is restarted", 512, Integer::parseInt);
+        private Option<String> classFileCacheDirectory = new Option<>("classFileCacheDirectory",
+                "Class file cache directory", Function.identity());
+        private Option<Integer> classFileCacheMaxMb = new Option<>("classFileCacheMaxMb",
+                "Maximum size of the class file cache", 512, Integer::parseInt);
+        private Option<String> testDriverJvmOptions = new Option<>("testDriverJvmOptions",
+                "Test driver JVM options", "-XX:+UseSerialGC", Function.identity());
+        private Option<String> javacJvmOptions = new Option<>("javacJvmOptions",
+                "Java compiler JVM options", "-XX:TieredStopAtLevel=1 -XX:+UseSerialGC -XX:-UsePerfData",
+                Function.identity());
+        private Option<Boolean> statementLevelTestSelection = new Option<>("statementLevelTestSelection",
+                "Statement-level test selection", false, Boolean::parseBoolean);
+        private Option<Integer> testResultCacheSize = new Option<>("testResultCacheSize",
+                "Test result cache size", 0, Integer::parseInt);
+        private Option<Boolean> cpuTimeTimeouts = new Option<>("cpuTimeTimeouts",
+                "Measure test timeouts in CPU time", false, Boolean::parseBoolean);
+        private Option<Double> cpuTimeoutWallClockFactor = new Option<>("cpuTimeoutWallClockFactor",
+                "Wall-clock bound of CPU time timeouts", 3.0, Double::parseDouble);
+        private Option<Boolean> rerunTimedOutTestClasses = new Option<>("rerunTimedOutTestClasses",
+                "Re-run methods of timed-out test classes", false, Boolean::parseBoolean);
+        private Option<String> testHistoryDirectory = new Option<>("testHistoryDirectory",
+                "Test history directory", Function.identity());
+        private Option<Double> adaptiveTimeoutFactor = new Option<>("adaptiveTimeoutFactor",
+                "Adaptive test timeout factor", 10.0, Double::parseDouble);
+        private Option<Integer> adaptiveTimeoutMinimumMs = new Option<>("adaptiveTimeoutMinimumMs",
+                "Adaptive test timeout minimum", (int) TimeUnit.SECONDS.toMillis(5), Integer::parseInt);
+        private Option<Integer> processOutputHeadBytes = new Option<>("processOutputHeadBytes",
+                "Captured process output head size", 4 * 1024 * 1024, Integer::parseInt);
+        private Option<Integer> processOutputTailBytes = new Option<>("processOutputTailBytes",
+                "Captured process output tail size", 4 * 1024 * 1024, Integer::parseInt);
+        private Option<Boolean> processOutputSpillToFile = new Option<>("processOutputSpillToFile",
+                "Spill omitted process output to file", false, Boolean::parseBoolean);
         
         public enum TestsToRun {
             ALL_TESTS, RELEVANT_TESTS
         }
         
+        public enum CompilerBackendType {
+            PROCESS, IN_PROCESS, WORKER
+        }
+        
         public SetupConfiguration() {
             super("setup", "Setup Configuration", new LinkedList<>());
             super.options.add(fixer);
@@ -136,6 +191,31 @@ public class Configuration {
             super.options.add(suspiciousStatementLimit);
             super.options.add(testsToRun);
             super.options.add(debugTestDriver);
+            super.options.add(testDriverMaxUses);
+            super.options.add(testDriverProcesses);
+            super.options.add(autotuneConcurrency);
+            super.options.add(autotuneMaxTestDriverProcesses);
+            super.options.add(testDriverStandby);
+            super.options.add(classDataSharing);
+            super.options.add(classDataSharingDirectory);
+            super.options.add(compilerBackend);
+            super.options.add(compilerWorkerJvmOptions);
+            super.options.add(compilerWorkerMaxHeapGrowthMb);
+            super.options.add(classFileCacheDirectory);
+            super.options.add(classFileCacheMaxMb);
+            super.options.add(testDriverJvmOptions);
+            super.options.add(javacJvmOptions);
+            super.options.add(statementLevelTestSelection);
+            super.options.add(testResultCacheSize);
+            super.options.add(cpuTimeTimeouts);
+            super.options.add(cpuTimeoutWallClockFactor);
+            super.options.add(rerunTimedOutTestClasses);
+            super.options.add(testHistoryDirectory);
+            super.options.add(adaptiveTimeoutFactor);
+            super.options.add(adaptiveTimeoutMinimumMs);
+            super.options.add(processOutputHeadBytes);
+            super.options.add(processOutputTailBytes);
+            super.options.add(processOutputSpillToFile);
         }
         
         public String fixer() {
@@ -170,6 +250,106 @@ public class Configuration {
             return debugTestDriver.getValue();
         }
         
+        public int testDriverMaxUses() {
+            return testDriverMaxUses.getValue();
+        }
+        
+        public int testDriverProcesses() {
+            return testDriverProcesses.getValue();
+        }
+        
+        public boolean autotuneConcurrency() {
+            return autotuneConcurrency.getValue();
+        }
+        
+        public int autotuneMaxTestDriverProcesses() {
+            return autotuneMaxTestDriverProcesses.getValue();
+        }
+        
+        public boolean testDriverStandby() {
+            return testDriverStandby.getValue();
+        }
+        
+        public boolean classDataSharing() {
+            return classDataSharing.getValue();
+        }
+        
+        public String classDataSharingDirectory() {
+            return classDataSharingDirectory.getValue();
+        }
+        
+        public CompilerBackendType compilerBackend() {
+            return compilerBackend.getValue();
+        }
+        
+        public String compilerWorkerJvmOptions() {
+            return compilerWorkerJvmOptions.getValue();
+        }
+        
+        public int compilerWorkerMaxHeapGrowthMb() {
+            return compilerWorkerMaxHeapGrowthMb.getValue();
+        }
+        
+        public String classFileCacheDirectory() {
+            return classFileCacheDirectory.getValue();
+        }
+        
+        public int classFileCacheMaxMb() {
+            return classFileCacheMaxMb.getValue();
+        }
+        
+        public String testDriverJvmOptions() {
+            return testDriverJvmOptions.getValue();
+        }
+        
+        public String javacJvmOptions() {
+            return javacJvmOptions.getValue();
+        }
+        
+        public boolean statementLevelTestSelection() {
+            return statementLevelTestSelection.getValue();
+        }
+        
+        public int testResultCacheSize() {
+            return testResultCacheSize.getValue();
+        }
+        
+        public boolean cpuTimeTimeouts() {
+            return cpuTimeTimeouts.getValue();
+        }
+        
+        public double cpuTimeoutWallClockFactor() {
+            return cpuTimeoutWallClockFactor.getValue();
+        }
+        
+        public boolean rerunTimedOutTestClasses() {
+            return rerunTimedOutTestClasses.getValue();
+        }
+        
+        public String testHistoryDirectory() {
+            return testHistoryDirectory.getValue();
+        }
+        
+        public double adaptiveTimeoutFactor() {
+            return adaptiveTimeoutFactor.getValue();
+        }
+        
+        public int adaptiveTimeoutMinimumMs() {
+            return adaptiveTimeoutMinimumMs.getValue();
+        }
+        
+        public int processOutputHeadBytes() {
+            return processOutputHeadBytes.getValue();
+        }
+        
+        public int processOutputTailBytes() {
+            return processOutputTailBytes.getValue();
+        }
+        
+        public boolean processOutputSpillToFile() {
+            return processOutputSpillToFile.getValue();
+        }
+        
     }
     
     public static class GeneticConfiguration extends Section {
@@ -212,6 +392,18 @@ public class Configuration {
                 "LLM-mutation probability", 0.0, Double::parseDouble);
         private Option<MutationScope> statementScope = new Option<>("statementScope",
                 "Statement Scope", MutationScope.GLOBAL, v -> MutationScope.valueOf(v.toUpperCase()));
+        private Option<Double> earlyAbortFraction = new Option<>("earlyAbortFraction",
+                "Early abort fraction of best fitness", 0.0, Double::parseDouble);
+        private Option<Integer> stagedEvaluationThreshold = new Option<>("stagedEvaluationThreshold",
+                "Staged evaluation threshold", 0, Integer::parseInt);
+        private Option<Integer> compilationBatchSize = new Option<>("compilationBatchSize",
+                "Compilation batch size", 1, Integer::parseInt);
+        private Option<Boolean> pipelinedEvaluation = new Option<>("pipelinedEvaluation",
+                "Pipelined evaluation", false, Boolean::parseBoolean);
+        private Option<Boolean> scopeCheck = new Option<>("scopeCheck",
+                "Scope check of inserted statements", false, Boolean::parseBoolean);
+        private Option<Integer> failedMutationMemoSize = new Option<>("failedMutationMemoSize",
+                "Failed mutation memo size", 0, Integer::parseInt);
         
         public enum MutationScope {
             GLOBAL, FILE
@@ -227,6 +419,12 @@ public class Configuration {
             super.options.add(mutationProbability);
             super.options.add(llmMutationProbability);
             super.options.add(statementScope);
+            super.options.add(earlyAbortFraction);
+            super.options.add(stagedEvaluationThreshold);
+            super.options.add(compilationBatchSize);
+            super.options.add(pipelinedEvaluation);
+            super.options.add(scopeCheck);
+            super.options.add(failedMutationMemoSize);
         }
         
         public long randomSeed() {
@@ -261,6 +459,37 @@ public class Configuration {
             return statementScope.getValue();
         }
         
+        public double earlyAbortFraction() {
+            return earlyAbortFraction.getValue();
+        }
+        
+        public int stagedEvaluationThreshold() {
+            return stagedEvaluationThreshold.getValue();
+        }
+        
+        /**
+         * Returns the number of variants to compile together in one batch. The batch results are handed to the
+         * evaluation of each variant through the class file cache: if
+         * {@link SetupConfiguration#classFileCacheDirectory()} is not set, a temporary cache is used while batching.
+         * In both cases, {@link SetupConfiguration#classFileCacheMaxMb()} limits the cache, so a batch whose class
+         * files exceed it loses some results to eviction, and these variants are compiled again on their own.
+         */
+        public int compilationBatchSize() {
+            return compilationBatchSize.getValue();
+        }
+        
+        public boolean pipelinedEvaluation() {
+            return pipelinedEvaluation.getValue();
+        }
+        
+        public boolean scopeCheck() {
+            return scopeCheck.getValue();
+        }
+        
+        public int failedMutationMemoSize() {
+            return failedMutationMemoSize.getValue();
+        }
+        
     }
     
     public static class LlmConfiguration extends Section {
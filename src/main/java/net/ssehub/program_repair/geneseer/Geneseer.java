@@ -113,17 +113,18 @@ public class Geneseer {
             
             IFixer fixer = createFixer(project, result, tempDirManager);
             
-            TestSuite testSuite = new TestSuite(project, ast, fixer.needsFaultLocalization(),
-                    tempDirManager, result.evaluationStats());
-            if (fixer.needsFaultLocalization()) {
-                result.astStats().setSuspicious((int) ast.stream()
-                        .filter(n -> n.getMetadata(Metadata.SUSPICIOUSNESS) != null)
-                        .count());
-            }
-            
-            Node patched = fixer.run(ast, testSuite, result);
-            if (patched != null) {
-                analyzeDiffOfPatched(result, ast, patched, project.getEncoding(), tempDirManager);
+            try (TestSuite testSuite = new TestSuite(project, ast, fixer.needsFaultLocalization(),
+                    tempDirManager, result.evaluationStats())) {
+                if (fixer.needsFaultLocalization()) {
+                    result.astStats().setSuspicious((int) ast.stream()
+                            .filter(n -> n.getMetadata(Metadata.SUSPICIOUSNESS) != null)
+                            .count());
+                }
+                
+                Node patched = fixer.run(ast, testSuite, result);
+                if (patched != null) {
+                    analyzeDiffOfPatched(result, ast, patched, project.getEncoding(), tempDirManager);
+                }
             }
             
         } catch (EvaluationException | ParsingException e) {
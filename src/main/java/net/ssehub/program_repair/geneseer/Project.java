@@ -39,6 +39,8 @@ public class Project {
     
     private boolean splitTestClassLoaders;
     
+    private boolean inProcessTestExecution;
+    
     /**
      * @param projectDirectory The root directory of the project.
      * @param sourceDirectory The base directory where the Java source code files are located. May be relative to
@@ -128,12 +130,13 @@ public class Project {
         return "--project-directory <projectDirectory> --source-directory <sourceDirectory> "
                 + "[--compile-classpath <compilationClasspath>] --test-classpath <testExecutionClassPath> "
                 + "--test-classes <testClasses> [--encoding <encoding>] [--additional-javac-options <options>] "
-                + "[--splitTestClassLoaders <true/false>]";
+                + "[--splitTestClassLoaders <true/false>] [--inProcessTestExecution <true/false>]";
     }
     
     public static Set<String> getCliOptions() {
         return Set.of("--project-directory", "--source-directory", "--compile-classpath", "--test-classpath",
-                "--test-classes", "--encoding", "--additional-javac-options", "--splitTestClassLoaders");
+                "--test-classes", "--encoding", "--additional-javac-options", "--splitTestClassLoaders",
+                "--inProcessTestExecution");
     }
     
     public static Project readFromCommandLine(CliArguments args) throws IllegalArgumentException {
@@ -164,6 +167,10 @@ public class Project {
             project.setSplitTestClassLoaders(Boolean.parseBoolean(args.getOption("--splitTestClassLoaders")));
         }
         
+        if (args.hasOption("--inProcessTestExecution")) {
+            project.setInProcessTestExecution(Boolean.parseBoolean(args.getOption("--inProcessTestExecution")));
+        }
+        
         return project;
     }
     
@@ -197,6 +204,7 @@ public class Project {
         LOG.config("    encoding: " + getEncoding());
         LOG.config("    additional compiler options: " + getAdditionalCompilerOptions());
         LOG.config("    split test class loaders: " + getSplitTestClassLoaders());
+        LOG.config("    in-process test execution: " + getInProcessTestExecution());
     }
     
     public void setEncoding(Charset encoding) {
@@ -211,6 +219,14 @@ public class Project {
         this.splitTestClassLoaders = splitTestClassLoaders;
     }
     
+    /**
+     * Sets whether the tests of this project are run inside the geneseer JVM instead of in separate test driver
+     * processes. Only use this for trusted projects.
+     */
+    public void setInProcessTestExecution(boolean inProcessTestExecution) {
+        this.inProcessTestExecution = inProcessTestExecution;
+    }
+    
     /**
      * The root directory of the project.
      */
@@ -287,4 +303,8 @@ public class Project {
         return splitTestClassLoaders;
     }
     
+    public boolean getInProcessTestExecution() {
+        return inProcessTestExecution;
+    }
+    
 }
@@ -1,6 +1,7 @@
 package net.ssehub.program_repair.geneseer;
 
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -86,6 +87,39 @@ public class Result {
     public class EvaluationStats {
         private int compilations;
         private int testSuiteRuns;
+        private int testDriverSpawns;
+        private int testDriverReuses;
+        private int abortedEvaluations;
+        private int skippedTestCases;
+        private int skippedSecondStages;
+        private int secondStageSkippedTestCases;
+        private int testResultCacheHits;
+        private int testResultCacheMisses;
+        private int timedOutClassReruns;
+        private int cpuTimeTimeouts;
+        private int wallClockTimeouts;
+        private int compilerWorkerRequests;
+        private int compilerWorkerRestarts;
+        private long compilerWorkerTotalLatencyMs;
+        private long compilerWorkerMaxLatencyMs;
+        private int classFileCacheHits;
+        private int classFileCacheMisses;
+        private int knownCompilationFailures;
+        private int fullCompilations;
+        private int compiledModifiedFiles;
+        private int compiledDependentFiles;
+        private int compilerRuns;
+        private long compilerRunTotalMs;
+        private int batchCompilerRuns;
+        private int batchCompiledVariants;
+        private long batchCompilerRunTotalMs;
+        public record ConcurrencyDecision(
+                int previousTestDrivers,
+                int nextTestDrivers,
+                double variantsPerMinute,
+                String reason) {
+        }
+        private List<ConcurrencyDecision> concurrencyDecisions;
         private Integer initialPassingTestCases;
         private Integer initialFailingTestCases;
         private List<String> initialFailingTestCasesNames;
@@ -99,6 +133,118 @@ public class Result {
                 testSuiteRuns++;
             }
         }
+        public void increaseTestDriverSpawns(int amount) {
+            synchronized (Result.this) {
+                testDriverSpawns += amount;
+            }
+        }
+        public void increaseTestDriverReuses() {
+            synchronized (Result.this) {
+                testDriverReuses++;
+            }
+        }
+        public void increaseAbortedEvaluations() {
+            synchronized (Result.this) {
+                abortedEvaluations++;
+            }
+        }
+        public void increaseSkippedTestCases(int amount) {
+            synchronized (Result.this) {
+                skippedTestCases += amount;
+            }
+        }
+        public void increaseSkippedSecondStages() {
+            synchronized (Result.this) {
+                skippedSecondStages++;
+            }
+        }
+        public void increaseSecondStageSkippedTestCases(int amount) {
+            synchronized (Result.this) {
+                secondStageSkippedTestCases += amount;
+            }
+        }
+        public void increaseTestResultCacheHits(int amount) {
+            synchronized (Result.this) {
+                testResultCacheHits += amount;
+            }
+        }
+        public void increaseTestResultCacheMisses(int amount) {
+            synchronized (Result.this) {
+                testResultCacheMisses += amount;
+            }
+        }
+        public void increaseTimedOutClassReruns() {
+            synchronized (Result.this) {
+                timedOutClassReruns++;
+            }
+        }
+        public void increaseCpuTimeTimeouts() {
+            synchronized (Result.this) {
+                cpuTimeTimeouts++;
+            }
+        }
+        public void increaseWallClockTimeouts() {
+            synchronized (Result.this) {
+                wallClockTimeouts++;
+            }
+        }
+        public void addCompilerWorkerRequest(long latencyMs) {
+            synchronized (Result.this) {
+                compilerWorkerRequests++;
+                compilerWorkerTotalLatencyMs += latencyMs;
+                compilerWorkerMaxLatencyMs = Math.max(compilerWorkerMaxLatencyMs, latencyMs);
+            }
+        }
+        public void increaseCompilerWorkerRestarts() {
+            synchronized (Result.this) {
+                compilerWorkerRestarts++;
+            }
+        }
+        public void increaseClassFileCacheHits(int amount) {
+            synchronized (Result.this) {
+                classFileCacheHits += amount;
+            }
+        }
+        public void increaseClassFileCacheMisses(int amount) {
+            synchronized (Result.this) {
+                classFileCacheMisses += amount;
+            }
+        }
+        public void increaseKnownCompilationFailures() {
+            synchronized (Result.this) {
+                knownCompilationFailures++;
+            }
+        }
+        public void addCompiledFiles(boolean full, int modifiedFiles, int dependentFiles) {
+            synchronized (Result.this) {
+                if (full) {
+                    fullCompilations++;
+                }
+                compiledModifiedFiles += modifiedFiles;
+                compiledDependentFiles += dependentFiles;
+            }
+        }
+        public void addCompilerRun(long durationMs) {
+            synchronized (Result.this) {
+                compilerRuns++;
+                compilerRunTotalMs += durationMs;
+            }
+        }
+        public void addBatchCompilerRun(int variants, long durationMs) {
+            synchronized (Result.this) {
+                batchCompilerRuns++;
+                batchCompiledVariants += variants;
+                batchCompilerRunTotalMs += durationMs;
+            }
+        }
+        public void addConcurrencyDecision(ConcurrencyDecision decision) {
+            synchronized (Result.this) {
+                if (concurrencyDecisions == null) {
+                    concurrencyDecisions = new LinkedList<>();
+                }
+                concurrencyDecisions.add(decision);
+            }
+        }
         public void setInitialPassingTestCases(Integer initialPassingTestCases) {
             synchronized (Result.this) {
                 this.initialPassingTestCases = initialPassingTestCases;
@@ -122,6 +268,8 @@ public class Result {
         private int failedCrossovers;
         private int llmCallsOnUnmodified;
         private int llmCallsOnMutated;
+        private int scopeCheckRejections;
+        private int knownFailureResamples;
         public void increaseInsertions() {
             synchronized (Result.this) {
                 insertions++;
@@ -162,6 +310,16 @@ public class Result {
                 llmCallsOnMutated++;
             }
         }
+        public void increaseScopeCheckRejections() {
+            synchronized (Result.this) {
+                scopeCheckRejections++;
+            }
+        }
+        public void increaseKnownFailureResamples() {
+            synchronized (Result.this) {
+                knownFailureResamples++;
+            }
+        }
     }
     private MutationStats mutationStats;
     
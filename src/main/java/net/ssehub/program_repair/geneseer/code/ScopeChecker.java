@@ -0,0 +1,378 @@
+package net.ssehub.program_repair.geneseer.code;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Logger;
+
+import net.ssehub.program_repair.geneseer.code.Node.Type;
+import net.ssehub.program_repair.geneseer.code.ScopeScanner.Scope;
+
+/**
+ * A lightweight check whether a statement that is copied to another location (e.g. by a mutation) only references
+ * locals, fields and types that are visible there. This is not a full name resolution, but a conservative
+ * approximation on the tokens of the AST: a statement is only rejected if one of its names is certainly undefined at
+ * the target. Names that may be inherited from a type that is not part of the AST (and not a JDK type), or that may
+ * come from an on-demand import, are assumed to be visible. Method names and member accesses (after a <code>.</code>)
+ * are not checked.
+ * <p>
+ * The scans of unmodified files are cached, so that repeated checks on variants of the same AST are cheap.
+ */
+public class ScopeChecker {
+    
+    private static final Logger LOG = Logger.getLogger(ScopeChecker.class.getName());
+    
+    private static final Set<String> WELL_KNOWN_PACKAGE_ROOTS = Set.of(
+            "java", "javax", "jdk", "sun", "com", "org", "net");
+    
+    /**
+     * Tokens after which an identifier is not a name that needs to be visible (member accesses, method references,
+     * annotations, labels).
+     */
+    private static final Set<String> NON_NAME_PREDECESSORS = Set.of(".", "::", "@", "break", "continue");
+    
+    private static final Set<String> LABEL_PREDECESSORS = Set.of("", ";", "{", "}");
+    
+    private Map<Node, ScopeScanner> fileScans = new WeakHashMap<>();
+    
+    private Map<String, Optional<Set<String>>> jdkTypeMembers = new HashMap<>();
+    
+    private Map<String, Boolean> javaLangTypes = new HashMap<>();
+    
+    /**
+     * The names that are visible at a target location.
+     *
+     * @param names The visible locals, fields, and types.
+     * @param packageRoots The first segments of known package names.
+     * @param membersComplete Whether all inherited members are known.
+     * @param typesComplete Whether all imported types are known, i.e. there are no on-demand imports.
+     */
+    private record Visibility(Set<String> names, Set<String> packageRoots, boolean membersComplete,
+            boolean typesComplete) {
+    }
+    
+    /**
+     * Checks whether the given donor statement can be inserted before or replace the given target statement without
+     * referencing names that are not visible at the target.
+     *
+     * @param astRoot The root of the AST that contains the target, or the compilation unit of the target.
+     * @param target The statement that the donor is inserted before or replaces.
+     * @param donor The statement to check. Does not need to be part of the AST.
+     *
+     * @return Whether none of the names of the donor is known to be undefined at the target.
+     */
+    public boolean isVisible(Node astRoot, Node target, Node donor) {
+        List<String> donorTokens = getTokens(donor);
+        ScopeScanner donorScan = new ScopeScanner(donorTokens, -1);
+        donorScan.scan();
+        
+        boolean result = true;
+        Node file = findFile(astRoot, target);
+        if (isSupported(donorTokens, donorScan) && file != null) {
+            List<Node> fileLeaves = file.stream().filter(n -> n.getType() == Type.LEAF).toList();
+            int targetIndex = indexOfIdentity(fileLeaves, AstUtils.getFirstLeafNode(target));
+            if (targetIndex >= 0) {
+                ScopeScanner targetScan = new ScopeScanner(toText(fileLeaves), targetIndex);
+                targetScan.scan();
+                
+                String undefined = findUndefinedName(donorTokens, donorScan.getAllDeclared(),
+                        getVisibility(astRoot, targetScan));
+                if (undefined != null) {
+                    LOG.fine(() -> "Name " + undefined + " of " + donor.getTextSingleLine() + " is not visible at "
+                            + target.getTextSingleLine());
+                    result = false;
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether the donor has no constructs whose names this check can't handle: switch cases (which may
+     * reference enum constants without qualification), annotations, and type declarations (whose bodies may reference
+     * inherited members).
+     */
+    private static boolean isSupported(List<String> donorTokens, ScopeScanner donorScan) {
+        return !donorTokens.contains("case") && !donorTokens.contains("@")
+                && donorScan.getTypes().isEmpty() && !donorScan.hasAnonymousClass();
+    }
+    
+    private static Node findFile(Node astRoot, Node target) {
+        Node result = null;
+        if (astRoot.getType() == Type.COMPILATION_UNIT) {
+            result = astRoot;
+        } else {
+            List<Node> path = astRoot.getPath(target);
+            if (path != null) {
+                result = path.stream().filter(n -> n.getType() == Type.COMPILATION_UNIT).findFirst().orElse(null);
+            }
+        }
+        return result;
+    }
+    
+    private static List<Node> getFiles(Node astRoot) {
+        List<Node> result;
+        if (astRoot.getType() == Type.COMPILATION_UNIT) {
+            result = List.of(astRoot);
+        } else {
+            result = astRoot.children();
+        }
+        return result;
+    }
+    
+    private static List<String> getTokens(Node node) {
+        return toText(node.stream().filter(n -> n.getType() == Type.LEAF).toList());
+    }
+    
+    private static List<String> toText(List<Node> leaves) {
+        return leaves.stream().map(n -> ((LeafNode) n).getText()).toList();
+    }
+    
+    private static int indexOfIdentity(List<Node> nodes, Node node) {
+        int result = -1;
+        for (int i = 0; i < nodes.size() && result == -1; i++) {
+            if (nodes.get(i) == node) {
+                result = i;
+            }
+        }
+        return result;
+    }
+    
+    private synchronized ScopeScanner getFileScan(Node file) {
+        return fileScans.computeIfAbsent(file, f -> {
+            ScopeScanner scan = new ScopeScanner(getTokens(f), -1);
+            scan.scan();
+            return scan;
+        });
+    }
+    
+    private Visibility getVisibility(Node astRoot, ScopeScanner targetScan) {
+        Set<String> names = new HashSet<>(targetScan.getVisibleAtTarget());
+        names.addAll(targetScan.getImports().keySet());
+        
+        Set<String> packageRoots = new HashSet<>(WELL_KNOWN_PACKAGE_ROOTS);
+        for (Node file : getFiles(astRoot)) {
+            ScopeScanner fileScan = getFileScan(file);
+            if (fileScan.getPackageName().equals(targetScan.getPackageName())) {
+                names.addAll(fileScan.getTopLevelTypes());
+            }
+            addPackageRoot(packageRoots, fileScan.getPackageName());
+            for (String qualifiedName : fileScan.getImports().values()) {
+                addPackageRoot(packageRoots, qualifiedName);
+            }
+        }
+        
+        boolean membersComplete = addMembers(astRoot, targetScan, names) && !targetScan.hasStaticImportOnDemand();
+        return new Visibility(names, packageRoots, membersComplete, !targetScan.hasTypeImportOnDemand());
+    }
+    
+    private static void addPackageRoot(Set<String> packageRoots, String qualifiedName) {
+        if (!qualifiedName.isEmpty()) {
+            int dot = qualifiedName.indexOf('.');
+            packageRoots.add(dot >= 0 ? qualifiedName.substring(0, dot) : qualifiedName);
+        }
+    }
+    
+    /**
+     * Adds the members of the types enclosing the target, including the inherited ones, to the given names.
+     *
+     * @return Whether all inherited members are known.
+     */
+    private boolean addMembers(Node astRoot, ScopeScanner targetScan, Set<String> names) {
+        boolean complete = true;
+        Set<Scope> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Scope> toVisit = new ArrayDeque<>(targetScan.getTypesAtTarget());
+        while (!toVisit.isEmpty()) {
+            Scope type = toVisit.pop();
+            if (visited.add(type)) {
+                names.addAll(type.getNames());
+                for (String supertype : type.getSupertypes()) {
+                    Scope supertypeScope = findType(astRoot, type.getOwner(), supertype);
+                    if (supertypeScope != null) {
+                        toVisit.push(supertypeScope);
+                    } else {
+                        Optional<Set<String>> members = getJdkTypeMembers(resolve(type.getOwner(), supertype));
+                        members.ifPresent(names::addAll);
+                        complete &= members.isPresent();
+                    }
+                }
+            }
+        }
+        return complete;
+    }
+    
+    /**
+     * Finds the declaration of a supertype in the AST. Its name is resolved like the compiler does in the file that
+     * declares the subtype: types declared in that file, single-type imports, types in the same package, and
+     * on-demand imports.
+     *
+     * @param file The scan of the file that declares the subtype.
+     * @param name The name of the supertype, as written in the declaration of the subtype (possibly qualified).
+     *
+     * @return The body of the supertype, or <code>null</code> if it is not declared in the AST.
+     */
+    private Scope findType(Node astRoot, ScopeScanner file, String name) {
+        int dot = name.indexOf('.');
+        String first = dot >= 0 ? name.substring(0, dot) : name;
+        String rest = dot >= 0 ? name.substring(dot) : "";
+        
+        Scope result;
+        if (file.getTypes().containsKey(first)) {
+            result = file.getTypes().get(name.substring(name.lastIndexOf('.') + 1));
+        } else if (file.getImports().containsKey(first)) {
+            result = findQualifiedType(astRoot, file.getImports().get(first) + rest);
+        } else {
+            result = findQualifiedType(astRoot, qualify(file.getPackageName(), name));
+            for (int i = 0; i < file.getTypeImportsOnDemand().size() && result == null; i++) {
+                result = findQualifiedType(astRoot, file.getTypeImportsOnDemand().get(i) + '.' + name);
+            }
+            if (result == null && dot >= 0) {
+                result = findQualifiedType(astRoot, name);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Finds the declaration of a type by its qualified (canonical) name in the files of the AST.
+     *
+     * @return The body of the type, or <code>null</code> if it is not declared in the AST.
+     */
+    private Scope findQualifiedType(Node astRoot, String qualifiedName) {
+        Scope result = null;
+        for (Node file : getFiles(astRoot)) {
+            ScopeScanner fileScan = getFileScan(file);
+            String prefix = qualify(fileScan.getPackageName(), "");
+            if (qualifiedName.startsWith(prefix)) {
+                String[] typeNames = qualifiedName.substring(prefix.length()).split("\\.");
+                if (fileScan.getTopLevelTypes().contains(typeNames[0])) {
+                    result = fileScan.getTypes().get(typeNames[typeNames.length - 1]);
+                }
+            }
+            if (result != null) {
+                break;
+            }
+        }
+        return result;
+    }
+    
+    private static String qualify(String packageName, String name) {
+        return packageName.isEmpty() ? name : packageName + '.' + name;
+    }
+    
+    private static String resolve(ScopeScanner file, String typeName) {
+        String result;
+        if (typeName.contains(".")) {
+            result = typeName;
+        } else {
+            result = file.getImports().getOrDefault(typeName, "java.lang." + typeName);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the names of the non-private fields and member types of the given JDK type, including inherited ones.
+     *
+     * @return The names, or empty if the type is not a JDK type available to this JVM.
+     */
+    private synchronized Optional<Set<String>> getJdkTypeMembers(String qualifiedName) {
+        return jdkTypeMembers.computeIfAbsent(qualifiedName, name -> {
+            Optional<Set<String>> result = Optional.empty();
+            Class<?> type = loadJdkType(name);
+            if (type != null) {
+                Set<String> members = new HashSet<>();
+                Deque<Class<?>> toVisit = new ArrayDeque<>(List.of(type));
+                while (!toVisit.isEmpty()) {
+                    Class<?> current = toVisit.pop();
+                    for (Field field : current.getDeclaredFields()) {
+                        if (!Modifier.isPrivate(field.getModifiers())) {
+                            members.add(field.getName());
+                        }
+                    }
+                    for (Class<?> memberType : current.getDeclaredClasses()) {
+                        if (!Modifier.isPrivate(memberType.getModifiers())) {
+                            members.add(memberType.getSimpleName());
+                        }
+                    }
+                    if (current.getSuperclass() != null) {
+                        toVisit.push(current.getSuperclass());
+                    }
+                    toVisit.addAll(List.of(current.getInterfaces()));
+                }
+                result = Optional.of(members);
+            }
+            return result;
+        });
+    }
+    
+    private synchronized boolean isJavaLangType(String simpleName) {
+        return javaLangTypes.computeIfAbsent(simpleName, name -> loadJdkType("java.lang." + name) != null);
+    }
+    
+    private static Class<?> loadJdkType(String qualifiedName) {
+        Class<?> result = null;
+        if (qualifiedName.startsWith("java.") || qualifiedName.startsWith("javax.")) {
+            try {
+                result = Class.forName(qualifiedName, false, ScopeChecker.class.getClassLoader());
+            } catch (ClassNotFoundException | LinkageError e) {
+                // not available, result stays null
+            }
+        }
+        return result;
+    }
+    
+    private String findUndefinedName(List<String> tokens, Set<String> declared, Visibility visibility) {
+        String result = null;
+        for (int i = 0; i < tokens.size() && result == null; i++) {
+            String token = tokens.get(i);
+            if (isReferencedName(tokens, i) && !declared.contains(token)) {
+                String following = i + 1 < tokens.size() ? tokens.get(i + 1) : "";
+                if (!isVisible(token, following, visibility)) {
+                    result = token;
+                }
+            }
+        }
+        return result;
+    }
+    
+    private static boolean isReferencedName(List<String> tokens, int i) {
+        String previous = i > 0 ? tokens.get(i - 1) : "";
+        String following = i + 1 < tokens.size() ? tokens.get(i + 1) : "";
+        
+        boolean result = ScopeScanner.isIdentifier(tokens.get(i)) && !NON_NAME_PREDECESSORS.contains(previous);
+        if (following.equals("(") && !previous.equals("new")) {
+            // method call
+            result = false;
+        } else if (following.equals(":") && LABEL_PREDECESSORS.contains(previous)) {
+            // label
+            result = false;
+        }
+        return result;
+    }
+    
+    private boolean isVisible(String name, String following, Visibility visibility) {
+        boolean result;
+        if (visibility.names().contains(name) || isJavaLangType(name)) {
+            result = true;
+        } else if (following.equals(".") && visibility.packageRoots().contains(name)) {
+            result = true;
+        } else if (Character.isUpperCase(name.charAt(0))) {
+            // probably a type or constant
+            result = !visibility.membersComplete() || !visibility.typesComplete();
+        } else {
+            result = !visibility.membersComplete();
+        }
+        return result;
+    }
+    
+}
@@ -0,0 +1,541 @@
+package net.ssehub.program_repair.geneseer.code;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the names that are declared in a sequence of Java tokens (a whole compilation unit or a single statement),
+ * with a simple approximation of Java's scoping rules: every <code>{</code> opens a new scope, which is either the
+ * body of a type (with its supertypes) or a block. Declarations are recognized by their syntactic form (e.g. an
+ * identifier that follows a type). The approximation errs on the side of declaring too many names, never too few, so
+ * that {@link ScopeChecker} does not reject code that would compile.
+ * <p>
+ * If a target token index is given, the names that are visible at that token are recorded: the locals of the
+ * enclosing blocks declared before the target, and the enclosing type bodies, whose members are complete after the
+ * whole file is scanned.
+ */
+class ScopeScanner {
+    
+    static final Set<String> KEYWORDS = Set.of(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+            "default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if",
+            "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "package", "private",
+            "protected", "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+            "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false", "null", "var",
+            "yield", "record", "sealed", "permits", "_");
+    
+    /**
+     * Tokens that an identifier follows if it is the name in a declaration (e.g. <code>int x</code>,
+     * <code>List&lt;String&gt; x</code>, <code>String... x</code>), besides a type name.
+     */
+    private static final Set<String> TYPE_ENDINGS = Set.of(
+            "boolean", "byte", "char", "short", "int", "long", "float", "double", "var", "...", ">", "]");
+    
+    private static final Set<String> TYPE_DECLARATION_KEYWORDS = Set.of("class", "interface", "enum", "record");
+    
+    private static final Set<String> TYPE_PARAMETER_PREDECESSORS = Set.of("<", ",");
+    
+    private static final Set<String> ENUM_CONSTANT_PREDECESSORS = Set.of("{", ",");
+    
+    /**
+     * Tokens that may appear in a (qualified, generic) type name, besides identifiers.
+     */
+    private static final Set<String> TYPE_NAME_TOKENS = Set.of(".", "<", ">", ",", "?", "[", "]", "extends", "super");
+    
+    private final List<String> tokens;
+    
+    private final int targetIndex;
+    
+    private String packageName = "";
+    
+    private Map<String, String> imports = new HashMap<>();
+    
+    private List<String> typeImportsOnDemand = new ArrayList<>();
+    
+    private boolean staticImportOnDemand;
+    
+    private Map<String, Scope> types = new HashMap<>();
+    
+    private Set<String> allDeclared = new HashSet<>();
+    
+    private int anonymousClasses;
+    
+    private Set<String> visibleAtTarget;
+    
+    private List<Scope> typesAtTarget;
+    
+    private Scope root;
+    
+    private Deque<Scope> stack = new ArrayDeque<>();
+    
+    /**
+     * Names declared in parentheses (parameters, resources, loop variables), which belong to the next block.
+     */
+    private List<String> pending = new ArrayList<>();
+    
+    private Deque<Integer> openParentheses = new ArrayDeque<>();
+    
+    private Map<Integer, Integer> matchingParentheses = new HashMap<>();
+    
+    private int parenthesesDepth;
+    
+    private int angleBracketDepth;
+    
+    private boolean inDeclaration;
+    
+    private boolean declarationIsPending;
+    
+    private int declarationParenthesesDepth;
+    
+    /**
+     * A scope, i.e. the body of a type or a block.
+     */
+    static class Scope {
+        
+        private final ScopeScanner owner;
+        
+        private final boolean isType;
+        
+        private final boolean isEnum;
+        
+        private final int parenthesesDepth;
+        
+        private final List<String> supertypes;
+        
+        private final Set<String> names = new HashSet<>();
+        
+        private boolean enumConstantsDone;
+        
+        private Scope(ScopeScanner owner, boolean isType, boolean isEnum, List<String> supertypes) {
+            this.owner = owner;
+            this.isType = isType;
+            this.isEnum = isEnum;
+            this.parenthesesDepth = owner.parenthesesDepth;
+            this.supertypes = supertypes;
+        }
+        
+        ScopeScanner getOwner() {
+            return owner;
+        }
+        
+        boolean isType() {
+            return isType;
+        }
+        
+        /**
+         * Returns the supertypes of this type, as written in its declaration (possibly qualified).
+         */
+        List<String> getSupertypes() {
+            return supertypes;
+        }
+        
+        Set<String> getNames() {
+            return names;
+        }
+    
+    }
+    
+    /**
+     * Creates a scanner for the given tokens.
+     *
+     * @param tokens The tokens to scan.
+     * @param targetIndex The index of the token to record the visible names at, or -1.
+     */
+    ScopeScanner(List<String> tokens, int targetIndex) {
+        this.tokens = tokens;
+        this.targetIndex = targetIndex;
+    }
+    
+    static boolean isIdentifier(String token) {
+        return !token.isEmpty() && Character.isJavaIdentifierStart(token.charAt(0)) && !KEYWORDS.contains(token);
+    }
+    
+    /**
+     * Scans all tokens. Must be called once, before any of the getters.
+     */
+    void scan() {
+        root = new Scope(this, true, false, List.of());
+        stack.push(root);
+        int i = 0;
+        while (i < tokens.size()) {
+            if (i >= targetIndex && targetIndex >= 0 && visibleAtTarget == null) {
+                recordTarget();
+            }
+            i = scanToken(i);
+        }
+    }
+    
+    String getPackageName() {
+        return packageName;
+    }
+    
+    /**
+     * Returns the single-type and single-static imports, by simple name.
+     */
+    Map<String, String> getImports() {
+        return imports;
+    }
+    
+    boolean hasTypeImportOnDemand() {
+        return !typeImportsOnDemand.isEmpty();
+    }
+    
+    /**
+     * Returns the packages (or types) whose member types are imported on demand.
+     */
+    List<String> getTypeImportsOnDemand() {
+        return typeImportsOnDemand;
+    }
+    
+    boolean hasStaticImportOnDemand() {
+        return staticImportOnDemand;
+    }
+    
+    /**
+     * Returns all types declared in the tokens (including nested and local ones), by simple name.
+     */
+    Map<String, Scope> getTypes() {
+        return types;
+    }
+    
+    Set<String> getTopLevelTypes() {
+        return root.names;
+    }
+    
+    /**
+     * Returns all names that are declared anywhere in the tokens.
+     */
+    Set<String> getAllDeclared() {
+        return allDeclared;
+    }
+    
+    boolean hasAnonymousClass() {
+        return anonymousClasses > 0;
+    }
+    
+    /**
+     * Returns the local names (variables, parameters, local types) that are visible at the target token.
+     */
+    Set<String> getVisibleAtTarget() {
+        return visibleAtTarget;
+    }
+    
+    /**
+     * Returns the type bodies that enclose the target token, including the top level of the compilation unit.
+     */
+    List<Scope> getTypesAtTarget() {
+        return typesAtTarget;
+    }
+    
+    private void recordTarget() {
+        visibleAtTarget = new HashSet<>(pending);
+        typesAtTarget = new ArrayList<>();
+        for (Scope scope : stack) {
+            if (scope.isType) {
+                typesAtTarget.add(scope);
+            } else {
+                visibleAtTarget.addAll(scope.names);
+            }
+        }
+    }
+    
+    private int scanToken(int i) {
+        String token = tokens.get(i);
+        int next = i + 1;
+        if ((token.equals("import") || token.equals("package")) && stack.size() == 1) {
+            next = scanImport(i);
+        } else if (isTypeDeclaration(i)) {
+            next = scanTypeHeader(i);
+        } else {
+            switch (token) {
+            case "{":
+                openScope(i);
+                break;
+            case "}":
+                closeScope();
+                break;
+            case "(":
+                openParentheses.push(i);
+                parenthesesDepth++;
+                angleBracketDepth = 0;
+                break;
+            case ")":
+                if (!openParentheses.isEmpty()) {
+                    matchingParentheses.put(i, openParentheses.pop());
+                }
+                parenthesesDepth--;
+                angleBracketDepth = 0;
+                break;
+            case ";":
+                endStatement();
+                break;
+            case "<":
+                angleBracketDepth++;
+                break;
+            case ">":
+                angleBracketDepth = Math.max(0, angleBracketDepth - 1);
+                break;
+            case "=":
+                angleBracketDepth = 0;
+                break;
+            case "->":
+                declareLambdaParameters(i);
+                break;
+            default:
+                if (isIdentifier(token)) {
+                    scanIdentifier(i);
+                }
+                break;
+            }
+        }
+        return next;
+    }
+    
+    private int scanImport(int i) {
+        boolean isStatic = false;
+        StringBuilder name = new StringBuilder();
+        int j = i + 1;
+        while (j < tokens.size() && !tokens.get(j).equals(";")) {
+            if (tokens.get(j).equals("static")) {
+                isStatic = true;
+            } else {
+                name.append(tokens.get(j));
+            }
+            j++;
+        }
+        
+        String qualifiedName = name.toString();
+        if (tokens.get(i).equals("package")) {
+            packageName = qualifiedName;
+        } else if (qualifiedName.endsWith(".*")) {
+            if (isStatic) {
+                staticImportOnDemand = true;
+            } else {
+                typeImportsOnDemand.add(qualifiedName.substring(0, qualifiedName.length() - 2));
+            }
+        } else {
+            imports.put(qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1), qualifiedName);
+        }
+        return j + 1;
+    }
+    
+    private boolean isTypeDeclaration(int i) {
+        boolean result = TYPE_DECLARATION_KEYWORDS.contains(tokens.get(i))
+                && i + 1 < tokens.size() && isIdentifier(tokens.get(i + 1));
+        if (result && i > 0) {
+            // not a class literal like Foo.class
+            result = !tokens.get(i - 1).equals(".");
+        }
+        return result;
+    }
+    
+    /**
+     * Scans the header of a type declaration, up to and including the opening brace of its body.
+     */
+    private int scanTypeHeader(int i) {
+        String name = tokens.get(i + 1);
+        declare(name, false);
+        
+        List<String> supertypes = new ArrayList<>();
+        List<String> headerNames = new ArrayList<>();
+        boolean inSupertypes = false;
+        int angleBrackets = 0;
+        int parentheses = 0;
+        int j = i + 2;
+        while (j < tokens.size() && !(tokens.get(j).equals("{") && parentheses == 0)) {
+            String token = tokens.get(j);
+            if (token.equals("<")) {
+                angleBrackets++;
+            } else if (token.equals(">")) {
+                angleBrackets--;
+            } else if (token.equals("(")) {
+                parentheses++;
+            } else if (token.equals(")")) {
+                parentheses--;
+            } else if (angleBrackets == 0 && (token.equals("extends") || token.equals("implements"))) {
+                inSupertypes = true;
+            } else if (angleBrackets == 0 && token.equals("permits")) {
+                inSupertypes = false;
+            } else if (isIdentifier(token)) {
+                String previous = tokens.get(j - 1);
+                String following = j + 1 < tokens.size() ? tokens.get(j + 1) : "";
+                if (angleBrackets > 0 && TYPE_PARAMETER_PREDECESSORS.contains(previous)) {
+                    // type parameter
+                    headerNames.add(token);
+                } else if (parentheses > 0 && (following.equals(",") || following.equals(")"))) {
+                    // record component
+                    headerNames.add(token);
+                } else if (inSupertypes && angleBrackets == 0 && !previous.equals(".")) {
+                    supertypes.add(readQualifiedName(j));
+                }
+            }
+            j++;
+        }
+        
+        Scope scope = new Scope(this, true, tokens.get(i).equals("enum"), supertypes);
+        types.putIfAbsent(name, scope);
+        pending.clear();
+        pushScope(scope);
+        for (String headerName : headerNames) {
+            declare(headerName, false);
+        }
+        return j + 1;
+    }
+    
+    private String readQualifiedName(int i) {
+        StringBuilder name = new StringBuilder(tokens.get(i));
+        int j = i + 1;
+        while (j + 1 < tokens.size() && tokens.get(j).equals(".") && isIdentifier(tokens.get(j + 1))) {
+            name.append('.').append(tokens.get(j + 1));
+            j += 2;
+        }
+        return name.toString();
+    }
+    
+    private void openScope(int i) {
+        String anonymousClassType = null;
+        if (i > 0 && tokens.get(i - 1).equals(")")) {
+            anonymousClassType = getAnonymousClassType(i - 1);
+        }
+        
+        Scope scope;
+        if (anonymousClassType != null) {
+            anonymousClasses++;
+            scope = new Scope(this, true, false, List.of(anonymousClassType));
+        } else {
+            scope = new Scope(this, false, false, List.of());
+        }
+        pushScope(scope);
+        for (String name : pending) {
+            declare(name, false);
+        }
+        pending.clear();
+    }
+    
+    /**
+     * Checks whether the parentheses closed at the given index are the arguments of an instance creation expression,
+     * i.e. whether an opening brace after them starts an anonymous class body.
+     *
+     * @return The type of the anonymous class, or <code>null</code> if this is not an anonymous class.
+     */
+    private String getAnonymousClassType(int closingParenthesis) {
+        String result = null;
+        Integer opening = matchingParentheses.get(closingParenthesis);
+        if (opening != null) {
+            int j = opening - 1;
+            while (j > 0 && (isIdentifier(tokens.get(j)) || TYPE_NAME_TOKENS.contains(tokens.get(j)))) {
+                j--;
+            }
+            if (j >= 0 && j + 1 < opening && tokens.get(j).equals("new")) {
+                result = readQualifiedName(j + 1);
+            }
+        }
+        return result;
+    }
+    
+    private void pushScope(Scope scope) {
+        stack.push(scope);
+        inDeclaration = false;
+        angleBracketDepth = 0;
+    }
+    
+    private void closeScope() {
+        if (stack.size() > 1) {
+            stack.pop();
+        }
+        inDeclaration = false;
+        angleBracketDepth = 0;
+    }
+    
+    private void endStatement() {
+        Scope scope = stack.peek();
+        if (parenthesesDepth <= scope.parenthesesDepth) {
+            pending.clear();
+            scope.enumConstantsDone = true;
+        }
+        inDeclaration = false;
+        angleBracketDepth = 0;
+    }
+    
+    private void scanIdentifier(int i) {
+        String token = tokens.get(i);
+        String previous = i > 0 ? tokens.get(i - 1) : "";
+        String following = i + 1 < tokens.size() ? tokens.get(i + 1) : "";
+        Scope scope = stack.peek();
+        
+        if (following.equals("->")) {
+            // single lambda parameter
+            declare(token, true);
+        
+        } else if (isEnumConstant(scope, previous)) {
+            declare(token, false);
+        
+        } else if (!following.equals(".") && !following.equals("(")
+                && (TYPE_ENDINGS.contains(previous) || isIdentifier(previous))) {
+            boolean inParentheses = parenthesesDepth > scope.parenthesesDepth;
+            declare(token, inParentheses);
+            if (inParentheses && isPatternVariable(i)) {
+                // the scope of pattern variables may extend after the parentheses
+                declare(token, false);
+            }
+            inDeclaration = true;
+            declarationIsPending = inParentheses;
+            declarationParenthesesDepth = parenthesesDepth;
+        
+        } else if (inDeclaration && previous.equals(",") && parenthesesDepth == declarationParenthesesDepth
+                && angleBracketDepth == 0) {
+            // further variable in a declaration like int a, b;
+            declare(token, declarationIsPending);
+        
+        } else if (scope.isType && scope != root && angleBracketDepth > 0
+                && TYPE_PARAMETER_PREDECESSORS.contains(previous)) {
+            // type parameter of a generic method
+            declare(token, true);
+        }
+    }
+    
+    private boolean isEnumConstant(Scope scope, String previous) {
+        return scope.isEnum && !scope.enumConstantsDone && parenthesesDepth == scope.parenthesesDepth
+                && ENUM_CONSTANT_PREDECESSORS.contains(previous);
+    }
+    
+    private boolean isPatternVariable(int i) {
+        int j = i - 1;
+        while (j > 0 && (isIdentifier(tokens.get(j)) || TYPE_NAME_TOKENS.contains(tokens.get(j))
+                || tokens.get(j).equals("final"))) {
+            j--;
+        }
+        return tokens.get(j).equals("instanceof");
+    }
+    
+    private void declareLambdaParameters(int i) {
+        if (i > 0 && tokens.get(i - 1).equals(")")) {
+            Integer opening = matchingParentheses.get(i - 1);
+            if (opening != null) {
+                for (int j = opening + 1; j < i - 1; j++) {
+                    String following = tokens.get(j + 1);
+                    if (isIdentifier(tokens.get(j)) && (following.equals(",") || following.equals(")"))) {
+                        declare(tokens.get(j), true);
+                    }
+                }
+            }
+        }
+        angleBracketDepth = 0;
+    }
+    
+    private void declare(String name, boolean inPending) {
+        allDeclared.add(name);
+        if (inPending) {
+            pending.add(name);
+        } else {
+            stack.peek().names.add(name);
+        }
+    }
+    
+}
@@ -26,7 +26,15 @@ public class Writer {
         Path file = outputDirectory.resolve((Path) singleFileAst.getMetadata(Metadata.FILE_NAME));
         Files.createDirectories(file.getParent());
         
-        Files.writeString(file, escapeNonEncodableForJavaSource(toText(singleFileAst, n -> true), encoding), encoding);
+        Files.writeString(file, toFileContent(singleFileAst, encoding), encoding);
+    }
+    
+    /**
+     * Returns the source code of the given file node, as it is written by
+     * {@link #writeSingleFile(Node, Path, Charset)}.
+     */
+    public static String toFileContent(Node singleFileAst, Charset encoding) {
+        return escapeNonEncodableForJavaSource(toText(singleFileAst, n -> true), encoding);
     }
     
     public static String escapeNonEncodableForJavaSource(String str, Charset charset) {
@@ -0,0 +1,19 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+/**
+ * Decides whether the evaluation of a variant can be stopped before all tests have run.
+ */
+@FunctionalInterface
+public interface AbortCriterion {
+    
+    /**
+     * Called for every test result as soon as it is known. Calls are never concurrent, even if test classes are run in
+     * parallel.
+     *
+     * @param result The result of a single test.
+     *
+     * @return Whether the remaining tests should be skipped.
+     */
+    public boolean shouldAbort(TestResult result);
+    
+}
@@ -0,0 +1,573 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import net.ssehub.program_repair.geneseer.Configuration;
+import net.ssehub.program_repair.geneseer.util.FileUtils;
+import net.ssehub.program_repair.geneseer.util.ProcessManager;
+import net.ssehub.program_repair.geneseer.util.ProcessRunner;
+import net.ssehub.program_repair.geneseer.util.TemporaryDirectoryManager;
+
+/**
+ * Creates AppCDS (application class-data sharing) archives for the JVMs that geneseer starts over and over: the test
+ * driver and the Java compiler. An archive contains the pre-parsed classes loaded during a training run
+ * (<code>-XX:ArchiveClassesAtExit</code>, requires Java 13 or newer), which makes later JVM starts faster.
+ * <p>
+ * Archives are stored under a hash of the JVM version and the archived classpath, either in the configured
+ * {@link Configuration.SetupConfiguration#classDataSharingDirectory()} (shared between runs) or in a temporary
+ * directory for the current run. The JVM only accepts an archive if its classpath is a prefix of the runtime
+ * classpath, and rejects non-empty directories in that prefix. Thus, the test driver archive covers the test driver
+ * jar and all jar files of the test classpath, and a test driver that uses the archive gets these jar files before the
+ * directories of the test classpath (e.g. the compiled classes; see {@link #orderForArchive(List)}).
+ * The training run of the test driver executes a small JUnit 4 test class, which is compiled against the archived
+ * classpath into a training jar next to the archive; that jar has to be on the classpath of the test driver right after
+ * the test driver jar (see {@link #getTestDriverTrainingJar(Path)}). If an archive cannot be created, or the JVM
+ * rejects it, the JVM starts normally without it.
+ */
+class ClassDataSharing {
+    
+    public static final ClassDataSharing INSTANCE = new ClassDataSharing();
+    
+    private static final Logger LOG = Logger.getLogger(ClassDataSharing.class.getName());
+    
+    private static final int MINIMUM_JAVA_VERSION = 13;
+    
+    private static final long TRAINING_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(2);
+    
+    /**
+     * Redirects JVM warnings (e.g. about a rejected archive) to stderr; on stdout, they would corrupt the stream of the
+     * test driver.
+     */
+    private static final List<String> LOG_OPTIONS = List.of("-Xlog:disable", "-Xlog:all=warning:stderr");
+    
+    private static final String TRAINING_SOURCE = """
+            import java.util.ArrayList;
+            import java.util.List;
+            import java.util.function.Function;
+
+            public class CdsTraining {
+
+                private interface Value {
+                    int get();
+                }
+
+                public static void main(String[] args) {
+                    List<String> list = new ArrayList<>(List.of(args));
+                    Function<String, Integer> length = String::length;
+                    Value value = () -> list.size();
+                    for (String element : list) {
+                        switch (length.apply(element)) {
+                        case 0:
+                            break;
+                        default:
+                            System.out.println(element + value.get());
+                        }
+                    }
+                    try {
+                        list.get(0);
+                    } catch (IndexOutOfBoundsException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+            }
+            """;
+    
+    private static final String TRAINING_TEST_CLASS = "net.ssehub.program_repair.geneseer.cds.CdsTrainingTest";
+    
+    /**
+     * A JUnit 4 test class that the training run of the test driver executes, so that the archive contains the
+     * classes needed to run tests and to report passing and failing tests.
+     */
+    private static final String TRAINING_TEST_SOURCE = """
+            package net.ssehub.program_repair.geneseer.cds;
+
+            import static org.junit.Assert.assertEquals;
+
+            import org.junit.Test;
+
+            public class CdsTrainingTest {
+
+                @Test
+                public void passing() {
+                    assertEquals(4, 2 + 2);
+                }
+
+                @Test
+                public void failing() {
+                    assertEquals(5, 2 + 2);
+                }
+
+            }
+            """;
+    
+    private Map<String, Optional<Path>> archives = new HashMap<>();
+    
+    private Map<List<String>, String> versionOutputs = new HashMap<>();
+    
+    private TemporaryDirectoryManager tempDirManager;
+    
+    private Path archiveDirectory;
+    
+    private ClassDataSharing() {
+    }
+    
+    /**
+     * Creates the JVM options that enable the given archive, together with the given configured options.
+     *
+     * @param configuredOptions The additional JVM options from the configuration, separated by whitespace.
+     * @param archive The archive to use. May be <code>null</code>, in which case only the configured options are
+     *      returned.
+     *
+     * @return The options to pass to the JVM.
+     */
+    public static List<String> createJvmOptions(String configuredOptions, Path archive) {
+        List<String> options = new LinkedList<>();
+        if (!configuredOptions.isBlank()) {
+            options.addAll(Arrays.asList(configuredOptions.trim().split("\\s+")));
+        }
+        if (archive != null) {
+            options.add("-XX:SharedArchiveFile=" + archive.toAbsolutePath());
+            options.add("-Xshare:auto");
+            options.addAll(LOG_OPTIONS);
+        }
+        return options;
+    }
+    
+    /**
+     * Returns the archive for a test driver process with the given classpath. The archive is created with a training
+     * run if it does not exist yet.
+     *
+     * @param testDriverJar The jar of the test driver, which is the first element on the classpath.
+     * @param classpath The remaining classpath of the test driver process.
+     *
+     * @return The archive, or <code>null</code> if class-data sharing is disabled or no archive could be created.
+     */
+    public synchronized Path getTestDriverArchive(Path testDriverJar, List<Path> classpath) {
+        Path result = null;
+        if (Configuration.INSTANCE.setup().classDataSharing()) {
+            List<String> jvm = List.of(Configuration.INSTANCE.setup().jvmBinaryPath(), "-version");
+            List<String> archiveClasspath = getArchivableClasspath(testDriverJar, classpath);
+            
+            String key = "test-driver-" + computeKey(jvm, archiveClasspath);
+            Optional<Path> archive = archives.get(key);
+            if (archive == null) {
+                archive = Optional.ofNullable(createArchive(key, jvm, file -> createTestDriverArchive(file,
+                        getTrainingJarPath(file.resolveSibling(key + ".jsa")), archiveClasspath)));
+                archives.put(key, archive);
+            }
+            result = archive.orElse(null);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the archive for the Java compiler. The archive is created with a training run if it does not exist yet.
+     *
+     * @return The archive, or <code>null</code> if class-data sharing is disabled or no archive could be created.
+     */
+    public synchronized Path getJavacArchive() {
+        Path result = null;
+        if (Configuration.INSTANCE.setup().classDataSharing()) {
+            List<String> javac = List.of(Configuration.INSTANCE.setup().javaCompilerBinaryPath(), "-J-version");
+            
+            String key = "javac-" + computeKey(javac, List.of());
+            Optional<Path> archive = archives.get(key);
+            if (archive == null) {
+                archive = Optional.ofNullable(createArchive(key, javac, this::createJavacArchive));
+                archives.put(key, archive);
+            }
+            result = archive.orElse(null);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the training jar of the given test driver archive. If it exists, it has to be on the classpath of the
+     * test driver right after the test driver jar, since the archive is only accepted if the classpath of the training
+     * run is a prefix of the runtime classpath.
+     *
+     * @param archive The archive returned by {@link #getTestDriverArchive(Path, List)}.
+     *
+     * @return The training jar, or <code>null</code> if the training run did not use one.
+     */
+    public static Path getTestDriverTrainingJar(Path archive) {
+        Path jar = getTrainingJarPath(archive);
+        return Files.isRegularFile(jar) ? jar : null;
+    }
+    
+    private static Path getTrainingJarPath(Path archive) {
+        String name = archive.getFileName().toString();
+        return archive.resolveSibling(name.substring(0, name.length() - ".jsa".length()) + "-training.jar");
+    }
+    
+    /**
+     * Orders the given test classpath for a test driver that uses an archive of
+     * {@link #getTestDriverArchive(Path, List)}: the jar files that are archived come first, followed by the remaining
+     * elements (e.g. directories of compiled classes). The order within both groups is kept. This only changes which
+     * class is loaded if a class exists both in a directory and in a jar file of the classpath.
+     *
+     * @param classpath The test classpath, without the test driver jar.
+     *
+     * @return The reordered classpath.
+     */
+    public static List<Path> orderForArchive(List<Path> classpath) {
+        List<Path> result = new ArrayList<>(classpath.size());
+        List<Path> remaining = new ArrayList<>();
+        for (Path element : classpath) {
+            if (isArchivable(element)) {
+                result.add(element);
+            } else {
+                remaining.add(element);
+            }
+        }
+        result.addAll(remaining);
+        return result;
+    }
+    
+    private static boolean isArchivable(Path element) {
+        return element.isAbsolute() && Files.isRegularFile(element)
+                && element.getFileName().toString().endsWith(".jar");
+    }
+    
+    private static List<String> getArchivableClasspath(Path testDriverJar, List<Path> classpath) {
+        List<String> result = new ArrayList<>();
+        result.add(testDriverJar.toAbsolutePath().toString());
+        for (Path element : classpath) {
+            if (isArchivable(element)) {
+                result.add(element.toString());
+            }
+        }
+        return result;
+    }
+    
+    private String computeKey(List<String> versionCommand, List<String> classpath) {
+        String key;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(getVersionOutput(versionCommand).getBytes(StandardCharsets.UTF_8));
+            for (String element : classpath) {
+                Path file = Path.of(element);
+                digest.update(element.getBytes(StandardCharsets.UTF_8));
+                if (Files.isRegularFile(file)) {
+                    digest.update((Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis())
+                            .getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            key = HexFormat.of().formatHex(digest.digest(), 0, 16);
+        
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to read classpath for class-data sharing archive", e);
+            key = "unknown";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return key;
+    }
+    
+    private String getVersionOutput(List<String> versionCommand) {
+        return versionOutputs.computeIfAbsent(versionCommand, command -> {
+            String output;
+            try {
+                ProcessRunner process = new ProcessRunner.Builder(command)
+                        .captureOutput(true)
+                        .run();
+                output = new String(process.getStderr()) + new String(process.getStdout());
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to run " + command, e);
+                output = "";
+            }
+            return output;
+        });
+    }
+    
+    private interface Training {
+        void run(Path archive) throws IOException;
+    }
+    
+    private Path createArchive(String key, List<String> versionCommand, Training training) {
+        Path result = null;
+        int version = ProjectCompiler.parseJavaVersion(getVersionOutput(versionCommand));
+        if (version < MINIMUM_JAVA_VERSION) {
+            LOG.info(() -> "Class-data sharing requires Java " + MINIMUM_JAVA_VERSION + " or newer, but "
+                    + versionCommand.get(0) + " has version " + version + "; not creating " + key + " archive");
+        
+        } else {
+            Path partial = null;
+            try {
+                Path directory = getArchiveDirectory();
+                Path archive = directory.resolve(key + ".jsa");
+                if (Files.isRegularFile(archive)) {
+                    LOG.fine(() -> "Re-using class-data sharing archive " + archive);
+                } else {
+                    partial = Files.createTempFile(directory, key, ".jsa.partial");
+                    Files.delete(partial);
+                    training.run(partial);
+                    Files.move(partial, archive, StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                    LOG.info(() -> "Created class-data sharing archive " + archive);
+                }
+                result = archive;
+            
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to create class-data sharing archive " + key
+                        + "; starting JVMs without it", e);
+            } finally {
+                deletePartial(partial);
+            }
+        }
+        return result;
+    }
+    
+    private static void deletePartial(Path partial) {
+        if (partial != null) {
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Failed to delete " + partial, e);
+            }
+        }
+    }
+    
+    private Path getArchiveDirectory() throws IOException {
+        if (archiveDirectory == null) {
+            String configured = Configuration.INSTANCE.setup().classDataSharingDirectory();
+            if (configured != null) {
+                archiveDirectory = Files.createDirectories(Path.of(configured));
+            } else {
+                tempDirManager = new TemporaryDirectoryManager("geneseer-cds");
+                archiveDirectory = tempDirManager.createTemporaryDirectory();
+            }
+        }
+        return archiveDirectory;
+    }
+    
+    private void createTestDriverArchive(Path archive, Path trainingJar, List<String> archiveClasspath)
+            throws IOException {
+        String options = Configuration.INSTANCE.setup().testDriverJvmOptions();
+        
+        List<String> classpath = new ArrayList<>(archiveClasspath);
+        String testClass = null;
+        if (createTrainingJar(trainingJar, archiveClasspath)) {
+            classpath.add(1, trainingJar.toString());
+            testClass = TRAINING_TEST_CLASS;
+        }
+        String joinedClasspath = String.join(File.pathSeparator, classpath);
+        
+        long withoutArchive = startTestDriver(createJvmOptions(options, null), joinedClasspath, testClass);
+        
+        List<String> training = createJvmOptions(options, null);
+        training.add("-XX:ArchiveClassesAtExit=" + archive.toAbsolutePath());
+        training.addAll(LOG_OPTIONS);
+        startTestDriver(training, joinedClasspath, testClass);
+        if (!Files.isRegularFile(archive)) {
+            throw new IOException("JVM did not create archive " + archive);
+        }
+        
+        long withArchive = startTestDriver(createJvmOptions(options, archive), joinedClasspath, testClass);
+        LOG.info(() -> "Test driver startup: " + withoutArchive + " ms without class-data sharing archive, "
+                + withArchive + " ms with archive");
+    }
+    
+    /**
+     * Compiles the training test class against the archived classpath and packs it into the given jar. The training
+     * run only has the archived classpath, so the class is not compiled against the directories of the test classpath:
+     * if JUnit 4 is not in one of the archived jar files, the class could not be run.
+     *
+     * @return Whether the jar was created; <code>false</code> if the archived classpath does not contain JUnit 4.
+     */
+    private boolean createTrainingJar(Path trainingJar, List<String> archiveClasspath) throws IOException {
+        
+        Path directory = getArchiveDirectory().resolve(trainingJar.getFileName() + ".training");
+        Files.createDirectories(directory);
+        boolean created = false;
+        try {
+            Path source = directory.resolve("CdsTrainingTest.java");
+            Files.writeString(source, TRAINING_TEST_SOURCE, StandardCharsets.UTF_8);
+            Path classes = directory.resolve("classes");
+            
+            List<String> command = new LinkedList<>();
+            command.add(Configuration.INSTANCE.setup().javaCompilerBinaryPath());
+            command.add("-cp");
+            command.add(String.join(File.pathSeparator, archiveClasspath));
+            command.add("-d");
+            command.add(classes.toString());
+            command.add(source.toString());
+            ProcessRunner process = new ProcessRunner.Builder(command)
+                    .timeout(TRAINING_TIMEOUT_MS)
+                    .captureOutput(true)
+                    .run();
+            
+            if (process.getExitCode() == 0) {
+                Path partial = directory.resolve("training.jar");
+                writeJar(classes, partial);
+                Files.move(partial, trainingJar, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                created = true;
+            } else {
+                LOG.info(() -> "Failed to compile training test class (JUnit 4 not in a jar file of the test"
+                        + " classpath?); training run of test driver does not run tests:\n"
+                        + new String(process.getStderr()));
+            }
+            
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+        return created;
+    }
+    
+    private static void writeJar(Path classes, Path jar) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar));
+                Stream<Path> files = Files.walk(classes)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                out.putNextEntry(new JarEntry(classes.relativize(file).toString().replace(File.separatorChar, '/')));
+                Files.copy(file, out);
+                out.closeEntry();
+            }
+        }
+    }
+    
+    /**
+     * Starts a test driver process, waits for its first heartbeat, runs the given test class, and lets the process
+     * terminate.
+     *
+     * @param testClass The test class to run, or <code>null</code> if only the heartbeat should be answered.
+     *
+     * @return The time until the heartbeat was answered, in milliseconds.
+     */
+    private long startTestDriver(List<String> jvmOptions, String classpath, String testClass) throws IOException {
+        List<String> command = new LinkedList<>();
+        command.add(Configuration.INSTANCE.setup().jvmBinaryPath());
+        command.add("-XX:-UsePerfData");
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(classpath);
+        command.add(TestExecution.TEST_DRIVER_MAIN_CLASS);
+        
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(getArchiveDirectory().toFile());
+        builder.redirectError(Redirect.DISCARD);
+        
+        long start = System.nanoTime();
+        Process process = builder.start();
+        ProcessManager.INSTANCE.trackProcess(process);
+        CompletableFuture<Void> watchdog = CompletableFuture.runAsync(process::destroyForcibly,
+                CompletableFuture.delayedExecutor(TRAINING_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        long startupMs;
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(process.getOutputStream());
+            ObjectInputStream in = new ObjectInputStream(process.getInputStream());
+            out.writeObject("HEARTBEAT");
+            out.flush();
+            Object answer = in.readObject();
+            startupMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (!"alive".equals(answer)) {
+                throw new IOException("Test driver did not respond to heartbeat: " + answer);
+            }
+            
+            if (testClass != null) {
+                out.writeObject("CLASS");
+                out.writeObject(testClass);
+                out.flush();
+                Object results = in.readObject();
+                if (!(results instanceof List)) {
+                    throw new IOException("Test driver did not run training test class: " + results);
+                }
+            }
+            out.close();
+            
+            boolean terminated = ProcessRunner.untilNoInterruptedException(
+                    () -> process.waitFor(TRAINING_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            if (!terminated) {
+                throw new IOException("Test driver did not terminate");
+            }
+        
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            watchdog.cancel(false);
+            process.destroyForcibly();
+        }
+        return startupMs;
+    }
+    
+    private void createJavacArchive(Path archive) throws IOException {
+        String options = Configuration.INSTANCE.setup().javacJvmOptions();
+        
+        Path directory = getArchiveDirectory().resolve(archive.getFileName() + ".training");
+        Files.createDirectories(directory);
+        try {
+            Path source = directory.resolve("CdsTraining.java");
+            Files.writeString(source, TRAINING_SOURCE, StandardCharsets.UTF_8);
+            
+            long withoutArchive = runJavac(createJvmOptions(options, null), source);
+            
+            List<String> training = createJvmOptions(options, null);
+            training.add("-XX:ArchiveClassesAtExit=" + archive.toAbsolutePath());
+            training.addAll(LOG_OPTIONS);
+            runJavac(training, source);
+            if (!Files.isRegularFile(archive)) {
+                throw new IOException("Java compiler did not create archive " + archive);
+            }
+            
+            long withArchive = runJavac(createJvmOptions(options, archive), source);
+            LOG.info(() -> "Java compiler run: " + withoutArchive + " ms without class-data sharing archive, "
+                    + withArchive + " ms with archive");
+        
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+    
+    /**
+     * Compiles the given source file with the given JVM options for the compiler.
+     *
+     * @return The duration of the compiler run, in milliseconds.
+     */
+    private static long runJavac(List<String> jvmOptions, Path source) throws IOException {
+        List<String> command = new LinkedList<>();
+        command.add(Configuration.INSTANCE.setup().javaCompilerBinaryPath());
+        jvmOptions.stream()
+                .map(option -> "-J" + option)
+                .forEach(command::add);
+        command.add("-d");
+        command.add(source.getParent().toString());
+        command.add(source.toString());
+        
+        long start = System.nanoTime();
+        ProcessRunner process = new ProcessRunner.Builder(command)
+                .timeout(TRAINING_TIMEOUT_MS)
+                .captureOutput(true)
+                .run();
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (process.getExitCode() != 0) {
+            throw new IOException("Java compiler failed: " + new String(process.getStderr()));
+        }
+        return durationMs;
+    }
+    
+}
@@ -0,0 +1,288 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import com.google.gson.JsonParseException;
+
+import net.ssehub.program_repair.geneseer.evaluation.CompilerBackend.CompilationError;
+import net.ssehub.program_repair.geneseer.util.FileUtils;
+import net.ssehub.program_repair.geneseer.util.JsonUtils;
+
+/**
+ * A content-addressed cache of compiled class files on disk, kept across runs. Each entry holds the result of
+ * compiling one compilation unit: either its class files and ABI, or the errors if it failed to compile. Together with
+ * the result, the hash of the environment that it was compiled in (see
+ * {@link CompiledUnitIndex#computeEnvironmentAbi(Map, Path, String)}) is stored; the caller only uses an entry if the
+ * environment is still the same.
+ * <p>
+ * Each entry is a directory named after its key, containing an <code>entry.json</code> file and the class files.
+ * Entries are written to a temporary directory first, which is then moved into place, so that a crash leaves no
+ * partial entries. The total size of the entries is bounded; when it is exceeded, the least recently used entries are
+ * deleted. The last use of an entry is stored as the modification time of its <code>entry.json</code> file.
+ */
+class ClassFileCache {
+    
+    private static final Logger LOG = Logger.getLogger(ClassFileCache.class.getName());
+    
+    private static final String ENTRY_FILE = "entry.json";
+    
+    private static final String TEMPORARY_PREFIX = "tmp-";
+    
+    private Path directory;
+    
+    private long maxBytes;
+    
+    private long totalBytes;
+    
+    /**
+     * The size of each entry, by key, in least recently used order.
+     */
+    private Map<String, Long> entrySizes = new LinkedHashMap<>(16, 0.75f, true);
+    
+    /**
+     * A cached compilation result.
+     *
+     * @param environmentAbi The hash of the environment that the compilation unit was compiled in.
+     * @param abi The hash of the ABI of the class files, or <code>null</code> if the compilation failed.
+     * @param classFiles The class files, relative to the output directory, or <code>null</code> if the compilation
+     *      failed.
+     * @param errors The compilation errors, or <code>null</code> if the compilation was successful.
+     */
+    record Entry(String environmentAbi, String abi, List<String> classFiles, List<StoredError> errors) {
+        
+        boolean isFailure() {
+            return errors != null;
+        }
+    
+    }
+    
+    /**
+     * A {@link CompilationError}, in a form that can be stored as JSON.
+     */
+    record StoredError(String file, long line, String message) {
+        
+        static StoredError of(CompilationError error) {
+            return new StoredError(error.file() != null ? error.file().toString() : null, error.line(),
+                    error.message());
+        }
+        
+        CompilationError toCompilationError() {
+            return new CompilationError(file != null ? Path.of(file) : null, line, message);
+        }
+    
+    }
+    
+    private ClassFileCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Opens the cache in the given directory.
+     *
+     * @param directory The directory of the cache. Created if it does not exist.
+     * @param maxBytes The maximum total size of the cached entries.
+     *
+     * @return The cache, containing all entries that were stored before.
+     *
+     * @throws IOException If reading the cache directory fails.
+     */
+    static ClassFileCache open(Path directory, long maxBytes) throws IOException {
+        Files.createDirectories(directory);
+        ClassFileCache cache = new ClassFileCache(directory, maxBytes);
+        cache.readEntries();
+        cache.evict();
+        LOG.fine(() -> "Opened class file cache " + directory + " with " + cache.entrySizes.size() + " entries ("
+                + cache.totalBytes / 1024 + " KiB)");
+        return cache;
+    }
+    
+    private void readEntries() throws IOException {
+        record Existing(String key, FileTime lastUsed, long size) {
+        }
+        
+        List<Existing> existing;
+        try (Stream<Path> entries = Files.list(directory)) {
+            existing = entries
+                    .map(entry -> {
+                        String key = entry.getFileName().toString();
+                        Existing result = null;
+                        try {
+                            if (key.startsWith(TEMPORARY_PREFIX)) {
+                                deleteRecursively(entry);
+                            } else {
+                                result = new Existing(key, Files.getLastModifiedTime(entry.resolve(ENTRY_FILE)),
+                                        size(entry));
+                            }
+                        } catch (NoSuchFileException e) {
+                            // not an entry, ignore
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return result;
+                    })
+                    .filter(e -> e != null)
+                    .sorted(Comparator.comparing(Existing::lastUsed))
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        
+        for (Existing entry : existing) {
+            entrySizes.put(entry.key(), entry.size());
+            totalBytes += entry.size();
+        }
+    }
+    
+    /**
+     * Returns the entry with the given key and marks it as recently used.
+     *
+     * @return The entry, or <code>null</code> if there is none.
+     *
+     * @throws IOException If reading the entry fails.
+     */
+    synchronized Entry get(String key) throws IOException {
+        Entry result = null;
+        if (entrySizes.containsKey(key)) {
+            Path entryFile = directory.resolve(key).resolve(ENTRY_FILE);
+            try {
+                result = JsonUtils.parse(Files.readString(entryFile, StandardCharsets.UTF_8), Entry.class);
+                Files.setLastModifiedTime(entryFile, FileTime.fromMillis(System.currentTimeMillis()));
+                entrySizes.get(key); // moves the entry to the end of the LRU order
+            } catch (NoSuchFileException | JsonParseException e) {
+                LOG.warning(() -> "Removing invalid class file cache entry " + key + ": " + e);
+                remove(key);
+                result = null;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Copies the class files of the given successful entry into the output directory.
+     *
+     * @throws IOException If copying fails.
+     */
+    synchronized void restore(String key, Entry entry, Path outputDirectory) throws IOException {
+        Path entryDirectory = directory.resolve(key);
+        for (String classFile : entry.classFiles()) {
+            Path target = outputDirectory.resolve(classFile);
+            Files.createDirectories(target.getParent());
+            Files.copy(entryDirectory.resolve(classFile), target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Stores the class files of a successfully compiled compilation unit.
+     *
+     * @param key The key of the entry.
+     * @param environmentAbi The hash of the environment that the compilation unit was compiled in.
+     * @param abi The hash of the ABI of the class files.
+     * @param outputDirectory The output directory that contains the class files.
+     * @param classFiles The class files of the compilation unit, relative to the output directory.
+     *
+     * @throws IOException If writing the entry fails.
+     */
+    synchronized void putSuccess(String key, String environmentAbi, String abi, Path outputDirectory,
+            List<Path> classFiles) throws IOException {
+        Path temporary = Files.createTempDirectory(directory, TEMPORARY_PREFIX);
+        try {
+            for (Path classFile : classFiles) {
+                Path target = temporary.resolve(classFile);
+                Files.createDirectories(target.getParent());
+                Files.copy(outputDirectory.resolve(classFile), target);
+            }
+            Entry entry = new Entry(environmentAbi, abi, classFiles.stream().map(Path::toString).toList(), null);
+            put(key, entry, temporary);
+        } finally {
+            deleteRecursively(temporary);
+        }
+    }
+    
+    /**
+     * Stores the errors of a compilation unit that failed to compile.
+     *
+     * @param key The key of the entry.
+     * @param environmentAbi The hash of the environment that the compilation unit was compiled in.
+     * @param errors The compilation errors.
+     *
+     * @throws IOException If writing the entry fails.
+     */
+    synchronized void putFailure(String key, String environmentAbi, List<CompilationError> errors)
+            throws IOException {
+        Path temporary = Files.createTempDirectory(directory, TEMPORARY_PREFIX);
+        try {
+            put(key, new Entry(environmentAbi, null, null, errors.stream().map(StoredError::of).toList()),
+                    temporary);
+        } finally {
+            deleteRecursively(temporary);
+        }
+    }
+    
+    private void put(String key, Entry entry, Path temporary) throws IOException {
+        JsonUtils.writeJson(entry, temporary.resolve(ENTRY_FILE));
+        remove(key);
+        Files.move(temporary, directory.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+        long size = size(directory.resolve(key));
+        entrySizes.put(key, size);
+        totalBytes += size;
+        evict();
+    }
+    
+    private void remove(String key) throws IOException {
+        Long size = entrySizes.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        deleteRecursively(directory.resolve(key));
+    }
+    
+    private void evict() throws IOException {
+        int evicted = 0;
+        while (totalBytes > maxBytes && !entrySizes.isEmpty()) {
+            remove(entrySizes.keySet().iterator().next());
+            evicted++;
+        }
+        if (evicted > 0) {
+            int e = evicted;
+            LOG.fine(() -> "Evicted " + e + " entries from class file cache");
+        }
+    }
+    
+    private static long size(Path entry) throws IOException {
+        try (Stream<Path> files = Files.walk(entry)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .mapToLong(file -> {
+                        try {
+                            return Files.size(file);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .sum();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private static void deleteRecursively(Path path) throws IOException {
+        if (Files.exists(path)) {
+            FileUtils.deleteDirectory(path);
+        }
+    }
+    
+}
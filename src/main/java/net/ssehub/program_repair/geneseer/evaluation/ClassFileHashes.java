@@ -0,0 +1,87 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Computes the hashes of all class files in a directory. A class file is only hashed again if its size or modification
+ * time changed since it was last hashed, or if it was modified so shortly before it was last hashed that a later
+ * modification may not have changed the modification time (because of the limited resolution of file system
+ * timestamps).
+ */
+class ClassFileHashes {
+    
+    private static final long TIMESTAMP_RESOLUTION_MS = 2000;
+    
+    private Path directory;
+    
+    private Map<Path, Entry> entries = new HashMap<>();
+    
+    private record Entry(long size, long lastModified, long hashedAt, String className, String hash) {
+    }
+    
+    /**
+     * Creates a new instance for the given directory.
+     *
+     * @param directory The root directory of the class files (i.e. the directory of the default package).
+     */
+    ClassFileHashes(Path directory) {
+        this.directory = directory;
+    }
+    
+    /**
+     * Returns the hashes of all class files currently in the directory.
+     *
+     * @return The hash of each class file, by binary class name (e.g. <code>a.b.Outer$Inner</code>).
+     *
+     * @throws IOException If reading the class files fails.
+     */
+    Map<String, String> computeHashes() throws IOException {
+        Map<String, String> result = new HashMap<>();
+        Map<Path, Entry> newEntries = new HashMap<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files
+                    .filter(f -> f.getFileName().toString().endsWith(".class"))::iterator) {
+                
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                long lastModified = attributes.lastModifiedTime().toMillis();
+                Entry entry = entries.get(file);
+                if (entry == null || entry.size() != attributes.size() || entry.lastModified() != lastModified
+                        || entry.hashedAt() - lastModified < TIMESTAMP_RESOLUTION_MS) {
+                    
+                    long hashedAt = System.currentTimeMillis();
+                    entry = new Entry(attributes.size(), lastModified, hashedAt, toClassName(file), hash(file));
+                }
+                newEntries.put(file, entry);
+                result.put(entry.className(), entry.hash());
+            }
+        }
+        entries = newEntries;
+        return result;
+    }
+    
+    private String toClassName(Path file) {
+        String relative = directory.relativize(file).toString();
+        return relative.substring(0, relative.length() - ".class".length()).replace(file.getFileSystem().getSeparator(),
+                ".");
+    }
+    
+    private static String hash(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(in.readAllBytes()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+}
@@ -1,16 +1,47 @@
 package net.ssehub.program_repair.geneseer.evaluation;
 
+import java.util.List;
+
+import net.ssehub.program_repair.geneseer.evaluation.CompilerBackend.CompilationError;
 
 public class CompilationException extends EvaluationException {
 
     private static final long serialVersionUID = 3307398205104653303L;
+    
+    private final transient List<CompilationError> errors;
 
     CompilationException(String message, Throwable cause) {
         super(message, cause);
+        this.errors = List.of();
     }
     
     CompilationException(String message) {
         super(message);
+        this.errors = List.of();
+    }
+    
+    CompilationException(String message, List<CompilationError> errors) {
+        super(message);
+        this.errors = List.copyOf(errors);
+    }
+    
+    /**
+     * Returns the errors reported by the compiler.
+     * 
+     * @return The errors; empty if the compiler did not report errors (e.g. because it could not be run).
+     */
+    List<CompilationError> getErrors() {
+        return errors;
+    }
+    
+    /**
+     * Returns whether the compiler reported errors, i.e. whether the code itself failed to compile. Otherwise, the
+     * compiler could not be run (e.g. because its process crashed), which says nothing about the code.
+     * 
+     * @return Whether {@link #getErrors()} is not empty.
+     */
+    public boolean hasErrors() {
+        return !errors.isEmpty();
     }
 
 }
@@ -0,0 +1,357 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import net.ssehub.program_repair.geneseer.util.ConstantPool;
+import net.ssehub.program_repair.geneseer.util.ConstantPool.MemberDeclaration;
+
+/**
+ * An index of the class files in the output directory of the {@link ProjectCompiler}, by the compilation unit (source
+ * file) they were compiled from. For each compilation unit, a hash of its ABI is kept: the parts of its class files
+ * that other compilation units can be compiled against, i.e. the class names, hierarchy and access flags, and the
+ * signatures and constant values of all non-private members. Anonymous and local classes and synthetic or private
+ * members are not part of the ABI, so a change of only method bodies usually does not change it.
+ * <p>
+ * The index also records the dependencies between the compilation units: the classes that the class files of each
+ * unit reference in their constant pool or mention in their descriptors and signatures. With this, the units that
+ * need to be recompiled after the ABI of some classes changed can be determined (see
+ * {@link #getDependents(Map, Collection)}).
+ * <p>
+ * Class files are assigned to the compilation unit that is named in their <code>SourceFile</code> attribute, in the
+ * directory of their package. If no class files are found for a compilation unit (e.g. because the source directory
+ * layout does not match the packages or the class files contain no <code>SourceFile</code> attribute), its ABI is
+ * unknown.
+ */
+class CompiledUnitIndex {
+    
+    private static final int ACC_PRIVATE = 0x0002;
+    
+    private static final int ACC_SYNTHETIC = 0x1000;
+    
+    private static final Pattern ANONYMOUS_OR_LOCAL_CLASS = Pattern.compile(".*\\$[0-9].*");
+    
+    private Path outputDirectory;
+    
+    private Map<Path, Unit> units = new HashMap<>();
+    
+    /**
+     * The class files of a compilation unit, relative to the output directory, the hash of its ABI, its (non-anonymous
+     * and non-local) classes by their binary name, and the binary names of all classes that it depends on.
+     */
+    record Unit(List<Path> classFiles, String abi, Map<String, ClassInfo> classes, Set<String> dependencies) {
+    }
+    
+    /**
+     * A class of a compilation unit.
+     *
+     * @param abi The hash of the ABI of the class.
+     * @param constants The hash of the values of the non-private constant fields of the class, or <code>null</code> if
+     *      it has none. These are inlined by the compiler into other classes, so these do not depend on the class in
+     *      their constant pool.
+     * @param supertypes The binary names of the super class and the directly implemented interfaces.
+     */
+    record ClassInfo(String abi, String constants, List<String> supertypes) {
+    }
+    
+    /**
+     * Creates an empty index.
+     *
+     * @param outputDirectory The output directory of the compiler.
+     */
+    CompiledUnitIndex(Path outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+    
+    /**
+     * Returns the output directory that this index reads the class files from.
+     */
+    Path getOutputDirectory() {
+        return outputDirectory;
+    }
+    
+    /**
+     * Removes all compilation units from the index, e.g. because all class files were deleted.
+     */
+    void clear() {
+        units.clear();
+    }
+    
+    /**
+     * Reads the class files of the given compilation units from the output directory, after they were compiled.
+     *
+     * @param sourceFiles The paths of the compilation units, relative to the source directory.
+     *
+     * @throws IOException If reading the class files fails.
+     */
+    void update(Collection<Path> sourceFiles) throws IOException {
+        Map<Path, List<Path>> byDirectory = new HashMap<>();
+        for (Path sourceFile : sourceFiles) {
+            Path directory = sourceFile.getParent();
+            byDirectory.computeIfAbsent(directory != null ? directory : Path.of(""), d -> new ArrayList<>())
+                    .add(sourceFile);
+        }
+        
+        for (Map.Entry<Path, List<Path>> entry : byDirectory.entrySet()) {
+            Map<String, List<ConstantPool>> classesBySourceFileName = new HashMap<>();
+            Map<String, List<Path>> filesBySourceFileName = new HashMap<>();
+            readClassFiles(entry.getKey(), classesBySourceFileName, filesBySourceFileName);
+            
+            for (Path sourceFile : entry.getValue()) {
+                String name = sourceFile.getFileName().toString();
+                List<Path> classFiles = filesBySourceFileName.getOrDefault(name, List.of());
+                List<ConstantPool> classes = classesBySourceFileName.getOrDefault(name, List.of());
+                String abi = null;
+                if (!classFiles.isEmpty() || name.equals("package-info.java") || name.equals("module-info.java")) {
+                    abi = computeAbi(classes);
+                }
+                units.put(sourceFile, createUnit(classFiles, abi, classes));
+            }
+        }
+    }
+    
+    private static Unit createUnit(List<Path> classFiles, String abi, List<ConstantPool> classes) {
+        Map<String, ClassInfo> classInfos = new HashMap<>();
+        Set<String> dependencies = new HashSet<>();
+        for (ConstantPool pool : classes) {
+            if (!ANONYMOUS_OR_LOCAL_CLASS.matcher(pool.getClassName()).matches()) {
+                List<String> supertypes = new ArrayList<>(pool.getInterfaceNames().size() + 1);
+                if (pool.getSuperClassName() != null) {
+                    supertypes.add(pool.getSuperClassName());
+                }
+                supertypes.addAll(pool.getInterfaceNames());
+                classInfos.put(pool.getClassName(),
+                        new ClassInfo(hash(describeAbi(pool)), describeConstants(pool), supertypes));
+            }
+            dependencies.addAll(pool.getReferencedClasses());
+            dependencies.addAll(pool.getDescriptorClasses());
+        }
+        return new Unit(List.copyOf(classFiles), abi, classInfos, dependencies);
+    }
+    
+    private void readClassFiles(Path directory, Map<String, List<ConstantPool>> classesBySourceFileName,
+            Map<String, List<Path>> filesBySourceFileName) throws IOException {
+        
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(outputDirectory.resolve(directory), "*.class")) {
+            for (Path file : files) {
+                ConstantPool pool = ConstantPool.readWithMembers(Files.readAllBytes(file));
+                String sourceFileName = pool.getSourceFileName();
+                if (sourceFileName != null) {
+                    classesBySourceFileName.computeIfAbsent(sourceFileName, n -> new ArrayList<>()).add(pool);
+                    filesBySourceFileName.computeIfAbsent(sourceFileName, n -> new ArrayList<>())
+                            .add(outputDirectory.relativize(file));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // no class files in this package
+        }
+    }
+    
+    /**
+     * Returns the class files and ABI of the given compilation unit.
+     *
+     * @return The unit, or <code>null</code> if it is not in the index.
+     */
+    Unit get(Path sourceFile) {
+        return units.get(sourceFile);
+    }
+    
+    /**
+     * Returns the classes of the given compilation units. This can be passed to {@link #getDependents(Map, Collection)}
+     * after the units were compiled again.
+     *
+     * @param sourceFiles The paths of the compilation units, relative to the source directory.
+     *
+     * @return The classes by their binary name. Units that are not in the index are ignored.
+     */
+    Map<String, ClassInfo> getClasses(Collection<Path> sourceFiles) {
+        Map<String, ClassInfo> result = new HashMap<>();
+        for (Path sourceFile : sourceFiles) {
+            Unit unit = units.get(sourceFile);
+            if (unit != null) {
+                result.putAll(unit.classes());
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Determines the compilation units that need to be recompiled after the given units were compiled (and
+     * {@link #update(Collection) updated} in this index). These are the units that depend on a class whose ABI changed
+     * (or that was added or removed), or on a subclass of such a class, as they may inherit the changed members. If the
+     * value of a constant changed, all other units are returned, as constants are inlined without a dependency.
+     * <p>
+     * If the ABI of one of the compiled units is unknown, no dependents can be determined and the result is empty.
+     *
+     * @param previousClasses The classes of the compiled units before they were compiled, see
+     *      {@link #getClasses(Collection)}.
+     * @param compiled The paths of the compiled units, relative to the source directory.
+     *
+     * @return The units that need to be recompiled, not including the compiled units.
+     */
+    Set<Path> getDependents(Map<String, ClassInfo> previousClasses, Collection<Path> compiled) {
+        Map<String, ClassInfo> currentClasses = getClasses(compiled);
+        Set<String> changed = new HashSet<>();
+        boolean constantsChanged = false;
+        Set<String> allClasses = new HashSet<>(previousClasses.keySet());
+        allClasses.addAll(currentClasses.keySet());
+        for (String className : allClasses) {
+            ClassInfo previous = previousClasses.get(className);
+            ClassInfo current = currentClasses.get(className);
+            if (previous == null || current == null || !previous.abi().equals(current.abi())) {
+                changed.add(className);
+            }
+            if (!Objects.equals(previous != null ? previous.constants() : null,
+                    current != null ? current.constants() : null)) {
+                constantsChanged = true;
+            }
+        }
+        
+        Set<Path> dependents = new HashSet<>();
+        boolean known = compiled.stream().allMatch(path -> units.containsKey(path) && units.get(path).abi() != null);
+        if (known && constantsChanged) {
+            dependents.addAll(units.keySet());
+        } else if (known && !changed.isEmpty()) {
+            Set<String> affected = addSubclasses(changed);
+            for (Map.Entry<Path, Unit> entry : units.entrySet()) {
+                if (!Collections.disjoint(entry.getValue().dependencies(), affected)) {
+                    dependents.add(entry.getKey());
+                }
+            }
+        }
+        dependents.removeAll(compiled);
+        return dependents;
+    }
+    
+    /**
+     * Returns the given classes together with all classes in the index that directly or indirectly extend or
+     * implement one of them.
+     */
+    private Set<String> addSubclasses(Set<String> classes) {
+        Map<String, List<String>> subclasses = new HashMap<>();
+        for (Unit unit : units.values()) {
+            for (Map.Entry<String, ClassInfo> entry : unit.classes().entrySet()) {
+                for (String supertype : entry.getValue().supertypes()) {
+                    subclasses.computeIfAbsent(supertype, n -> new ArrayList<>()).add(entry.getKey());
+                }
+            }
+        }
+        
+        Set<String> result = new HashSet<>(classes);
+        Deque<String> queue = new ArrayDeque<>(classes);
+        while (!queue.isEmpty()) {
+            for (String subclass : subclasses.getOrDefault(queue.remove(), List.of())) {
+                if (result.add(subclass)) {
+                    queue.add(subclass);
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Computes a hash of the ABIs of all given compilation units except one; i.e. of the environment that the
+     * excluded compilation unit is compiled in.
+     *
+     * @param abis The ABI of each compilation unit.
+     * @param excluded The compilation unit to exclude.
+     * @param prefix An additional string to include in the hash, e.g. a fingerprint of the classpath.
+     *
+     * @return The hash, or <code>null</code> if the ABI of any of the other compilation units is unknown
+     *      (<code>null</code>).
+     */
+    static String computeEnvironmentAbi(Map<Path, String> abis, Path excluded, String prefix) {
+        StringBuilder environment = new StringBuilder(prefix).append('\n');
+        boolean known = true;
+        for (Map.Entry<Path, String> entry : new TreeMap<>(abis).entrySet()) {
+            if (!entry.getKey().equals(excluded)) {
+                if (entry.getValue() == null) {
+                    known = false;
+                }
+                environment.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+            }
+        }
+        return known ? hash(environment.toString()) : null;
+    }
+    
+    /**
+     * Computes a hash of the ABI of the given classes.
+     *
+     * @param classes The classes, read with {@link ConstantPool#readWithMembers(byte[])}.
+     */
+    static String computeAbi(List<ConstantPool> classes) {
+        List<String> classAbis = new ArrayList<>(classes.size());
+        for (ConstantPool pool : classes) {
+            if (!ANONYMOUS_OR_LOCAL_CLASS.matcher(pool.getClassName()).matches()) {
+                classAbis.add(describeAbi(pool));
+            }
+        }
+        classAbis.sort(null);
+        return hash(String.join("\n", classAbis));
+    }
+    
+    private static String describeAbi(ConstantPool pool) {
+        StringBuilder abi = new StringBuilder();
+        abi.append(pool.getClassName()).append(' ').append(pool.getAccessFlags())
+                .append(" extends ").append(pool.getSuperClassName())
+                .append(" implements ").append(pool.getInterfaceNames())
+                .append(' ').append(pool.getSignature()).append('\n');
+        
+        List<String> members = new ArrayList<>();
+        for (MemberDeclaration member : pool.getMemberDeclarations()) {
+            if ((member.accessFlags() & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0) {
+                members.add((member.method() ? "method " : "field ") + member.accessFlags() + ' ' + member.name()
+                        + ' ' + member.descriptor() + ' ' + member.signature() + ' ' + member.constantValue());
+            }
+        }
+        members.sort(null);
+        for (String member : members) {
+            abi.append("  ").append(member).append('\n');
+        }
+        return abi.toString();
+    }
+    
+    private static String describeConstants(ConstantPool pool) {
+        List<String> constants = new ArrayList<>();
+        for (MemberDeclaration member : pool.getMemberDeclarations()) {
+            if (member.constantValue() != null && (member.accessFlags() & ACC_PRIVATE) == 0) {
+                constants.add(member.name() + '=' + member.constantValue());
+            }
+        }
+        constants.sort(null);
+        return constants.isEmpty() ? null : hash(String.join("\n", constants));
+    }
+    
+    /**
+     * Computes a SHA-256 hash of the given string.
+     */
+    static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+}
@@ -0,0 +1,89 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Compiles Java source files for the {@link ProjectCompiler}. The classpath and the output directory are fixed when the
+ * backend is created; the output directory is also on the classpath, so that only modified files need to be
+ * compiled.
+ */
+interface CompilerBackend extends AutoCloseable {
+    
+    /**
+     * A source file to compile.
+     *
+     * @param path The path of the file, relative to the source directory.
+     * @param content The source code.
+     */
+    record SourceFile(Path path, String content) {
+    }
+    
+    /**
+     * An error reported by the compiler.
+     *
+     * @param file The file that contains the error, relative to the source directory. May be <code>null</code> if the
+     *      error is not associated with a file.
+     * @param line The line number of the error, or <code>-1</code> if unknown.
+     * @param message The error message.
+     */
+    record CompilationError(Path file, long line, String message) {
+        
+        @Override
+        public String toString() {
+            return "Error in file " + file + " line " + line + ": " + message;
+        }
+    
+    }
+    
+    /**
+     * The result of a compilation.
+     *
+     * @param success Whether the compilation was successful.
+     * @param errors The errors reported by the compiler.
+     * @param output The raw output of the compiler, for logging.
+     */
+    record CompilationResult(boolean success, List<CompilationError> errors, String output) {
+    }
+    
+    /**
+     * A set of source files that is compiled into its own output directory, as part of a batch.
+     *
+     * @param sources The files to compile.
+     * @param sourceDirectory An empty directory that backends may write the source files to.
+     * @param outputDirectory The directory to write the class files to.
+     */
+    record BatchJob(List<SourceFile> sources, Path sourceDirectory, Path outputDirectory) {
+    }
+    
+    /**
+     * Compiles the given source files into the output directory.
+     *
+     * @param sources The files to compile.
+     * @param options The compiler options, except for the classpath and the output directory.
+     *
+     * @return The result of the compilation.
+     *
+     * @throws IOException If running the compiler fails.
+     */
+    CompilationResult compile(List<SourceFile> sources, List<String> options) throws IOException;
+    
+    /**
+     * Compiles several independent sets of source files, each into its own output directory, in one compiler session
+     * where the backend supports it. Each job is compiled against the output directory of this backend (and the
+     * classpath), but not against the class files of the other jobs.
+     *
+     * @param jobs The sets of files to compile.
+     * @param options The compiler options, except for the classpath and the output directory.
+     *
+     * @return The result of each job, in the same order.
+     *
+     * @throws IOException If running the compiler fails.
+     */
+    List<CompilationResult> compileBatch(List<BatchJob> jobs, List<String> options) throws IOException;
+    
+    @Override
+    void close();
+    
+}
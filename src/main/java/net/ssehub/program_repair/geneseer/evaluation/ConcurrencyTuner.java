@@ -0,0 +1,182 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import net.ssehub.program_repair.geneseer.Configuration;
+import net.ssehub.program_repair.geneseer.Result.EvaluationStats;
+import net.ssehub.program_repair.geneseer.Result.EvaluationStats.ConcurrencyDecision;
+
+/**
+ * Chooses the number of parallel test driver processes, if
+ * {@link Configuration.SetupConfiguration#autotuneConcurrency()} is enabled. Only the number of test driver processes
+ * is tuned; the number of compiler processes (and compiler workers) is not, as variants are compiled one at a time
+ * per workspace.
+ * <p>
+ * The initial number is derived from the host: one test driver per available processor (leaving one for geneseer
+ * and the Java compiler), limited by the free physical memory and by
+ * {@link Configuration.SetupConfiguration#autotuneMaxTestDriverProcesses()}. Then the number of variants evaluated
+ * per minute is measured, and the number of test drivers is changed by one after each measurement window (hill
+ * climbing): in the same direction as before while the throughput does not decrease, otherwise in the opposite
+ * direction.
+ * <p>
+ * Each test driver gets an equal share of the free memory as its maximum heap size (<code>-Xmx</code>), and an equal
+ * share of the processors (<code>-XX:ActiveProcessorCount</code>), so that the JVMs size their thread pools and
+ * garbage collectors for their share of the host instead of the whole host. One share of the memory is reserved for
+ * each compiler process (two with {@link Configuration.GeneticConfiguration#pipelinedEvaluation()}), which gets it as
+ * its maximum heap size, too.
+ */
+class ConcurrencyTuner {
+    
+    public static final ConcurrencyTuner INSTANCE = new ConcurrencyTuner();
+    
+    private static final Logger LOG = Logger.getLogger(ConcurrencyTuner.class.getName());
+    
+    private static final long MIN_DRIVER_MEMORY_MB = 256;
+    
+    /**
+     * The fraction of the free physical memory that is distributed to the test drivers and the Java compiler.
+     */
+    private static final double USABLE_MEMORY_FRACTION = 0.75;
+    
+    private static final long WINDOW_MS = TimeUnit.MINUTES.toMillis(1);
+    
+    private static final int MIN_WINDOW_EVALUATIONS = 5;
+    
+    /**
+     * The relative change of throughput below which it is considered to be unchanged (measurement noise).
+     */
+    private static final double SIGNIFICANT_CHANGE = 0.05;
+    
+    private boolean initialized;
+    
+    private int processors;
+    
+    private int maxDrivers;
+    
+    private long driverMemoryMb;
+    
+    private int drivers;
+    
+    private int direction = 1;
+    
+    private long windowStartMs;
+    
+    private int windowEvaluations;
+    
+    private double lastThroughput = -1;
+    
+    private ConcurrencyTuner() {
+    }
+    
+    private void initialize() {
+        if (!initialized) {
+            processors = Runtime.getRuntime().availableProcessors();
+            long usableMemoryMb = (long) (getFreeMemoryMb() * USABLE_MEMORY_FRACTION);
+            
+            int configuredMax = Configuration.INSTANCE.setup().autotuneMaxTestDriverProcesses();
+            maxDrivers = configuredMax > 0 ? configuredMax : processors;
+            int compilers = Configuration.INSTANCE.genetic().pipelinedEvaluation() ? 2 : 1;
+            maxDrivers = (int) Math.max(1, Math.min(maxDrivers, usableMemoryMb / MIN_DRIVER_MEMORY_MB - compilers));
+            driverMemoryMb = Math.max(MIN_DRIVER_MEMORY_MB, usableMemoryMb / (maxDrivers + compilers));
+            drivers = Math.max(1, Math.min(maxDrivers, processors - 1));
+            
+            LOG.info(() -> "Concurrency autotuner: " + processors + " processors, " + usableMemoryMb
+                    + " MiB usable memory; starting with " + drivers + " test drivers (at most " + maxDrivers
+                    + ") with " + driverMemoryMb + " MiB heap each");
+            initialized = true;
+        }
+    }
+    
+    private static long getFreeMemoryMb() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        long freeBytes;
+        if (os instanceof com.sun.management.OperatingSystemMXBean sunOs) {
+            freeBytes = sunOs.getFreeMemorySize();
+        } else {
+            freeBytes = Runtime.getRuntime().maxMemory();
+            LOG.warning("Can't determine free physical memory; assuming the maximum heap size of geneseer");
+        }
+        return freeBytes / (1024 * 1024);
+    }
+    
+    /**
+     * Returns the number of test driver processes to use for the next test run.
+     */
+    public synchronized int getTestDriverProcesses() {
+        initialize();
+        return drivers;
+    }
+    
+    /**
+     * Returns the JVM options for a new test driver process, based on its share of the host.
+     */
+    public synchronized List<String> getTestDriverJvmOptions() {
+        initialize();
+        return List.of("-Xmx" + driverMemoryMb + "m", "-XX:ActiveProcessorCount=" + Math.max(1, processors / drivers));
+    }
+    
+    /**
+     * Returns the JVM options for a new compiler process, based on its reserved share of the memory.
+     */
+    public synchronized List<String> getCompilerJvmOptions() {
+        initialize();
+        return List.of("-Xmx" + driverMemoryMb + "m");
+    }
+    
+    /**
+     * Records that a variant has been evaluated. At the end of a measurement window, the number of test drivers is
+     * adjusted.
+     *
+     * @param evaluationStats The statistics to record the adjustment in.
+     */
+    public synchronized void recordEvaluation(EvaluationStats evaluationStats) {
+        initialize();
+        long now = System.currentTimeMillis();
+        if (windowStartMs == 0) {
+            // the first evaluation only starts the first window
+            windowStartMs = now;
+        } else {
+            windowEvaluations++;
+            long elapsed = now - windowStartMs;
+            if (elapsed >= WINDOW_MS && windowEvaluations >= MIN_WINDOW_EVALUATIONS) {
+                adjust(windowEvaluations * (double) TimeUnit.MINUTES.toMillis(1) / elapsed, evaluationStats);
+                windowStartMs = now;
+                windowEvaluations = 0;
+            }
+        }
+    }
+    
+    private void adjust(double throughput, EvaluationStats evaluationStats) {
+        String reason;
+        if (lastThroughput < 0) {
+            reason = "first measurement";
+        } else if (throughput < lastThroughput * (1 - SIGNIFICANT_CHANGE)) {
+            direction = -direction;
+            reason = "throughput decreased";
+        } else if (throughput > lastThroughput * (1 + SIGNIFICANT_CHANGE)) {
+            reason = "throughput increased";
+        } else {
+            reason = "throughput unchanged";
+        }
+        
+        int next = Math.max(1, Math.min(maxDrivers, drivers + direction));
+        if (next == drivers) {
+            // at a bound; explore the other direction next time
+            direction = -direction;
+        }
+        
+        int previous = drivers;
+        String r = reason;
+        LOG.info(() -> String.format("Concurrency autotuner: %.1f variants per minute with %d test drivers (%s);"
+                + " using %d test drivers now", throughput, previous, r, next));
+        evaluationStats.addConcurrencyDecision(new ConcurrencyDecision(previous, next, throughput, reason));
+        
+        drivers = next;
+        lastThroughput = throughput;
+    }
+    
+}
@@ -0,0 +1,159 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.ssehub.program_repair.geneseer.code.Node;
+import net.ssehub.program_repair.geneseer.util.Measurement;
+import net.ssehub.program_repair.geneseer.util.Measurement.Probe;
+
+/**
+ * Evaluates a sequence of variants in two stages: a background thread compiles the variants one after the other,
+ * while the caller runs the tests of the variants that are already compiled. There are two workspaces (compilers with
+ * separate output directories), so that the next variant can be compiled while the tests of the current one run on
+ * the class files of the other workspace. A bounded queue between the stages holds at most one compiled variant; a
+ * workspace is only compiled into again once the tests on it finished.
+ * <p>
+ * The time that the tests wait for a compiled variant is measured as <code>pipeline test stall</code>, the time that
+ * the compilation waits for a free workspace as <code>pipeline compile stall</code> (see {@link Measurement}).
+ */
+public class EvaluationPipeline implements AutoCloseable {
+    
+    private static final Logger LOG = Logger.getLogger(EvaluationPipeline.class.getName());
+    
+    private static final long POLL_INTERVAL_MS = 100;
+    
+    private record Compiled(Node ast, ProjectCompiler workspace, CompilationException failure) {
+    }
+    
+    private TestSuite testSuite;
+    
+    private List<Node> variants;
+    
+    private BlockingQueue<ProjectCompiler> freeWorkspaces;
+    
+    private BlockingQueue<Compiled> compiled = new ArrayBlockingQueue<>(1);
+    
+    private Thread compilerThread;
+    
+    private volatile boolean closed;
+    
+    private int numEvaluated;
+    
+    /**
+     * Creates the pipeline and starts compiling the first variants.
+     *
+     * @param testSuite The test suite that runs the tests.
+     * @param workspaces The compilers of the workspaces, each with its own output directory.
+     * @param variants The variants to evaluate, in order.
+     */
+    EvaluationPipeline(TestSuite testSuite, List<ProjectCompiler> workspaces, List<Node> variants) {
+        this.testSuite = testSuite;
+        this.variants = List.copyOf(variants);
+        this.freeWorkspaces = new ArrayBlockingQueue<>(workspaces.size(), false, workspaces);
+        this.compilerThread = new Thread(this::compileAll, "pipeline-compiler");
+        compilerThread.setDaemon(true);
+        compilerThread.setUncaughtExceptionHandler(
+                (thread, e) -> LOG.log(Level.SEVERE, "Compiler thread of pipeline failed", e));
+        compilerThread.start();
+    }
+    
+    private void compileAll() {
+        try {
+            for (int i = 0; i < variants.size() && !closed; i++) {
+                ProjectCompiler workspace;
+                try (Probe probe = Measurement.INSTANCE.start("pipeline compile stall")) {
+                    workspace = freeWorkspaces.take();
+                }
+                if (!closed) {
+                    Node ast = variants.get(i);
+                    CompilationException failure = null;
+                    try {
+                        testSuite.compile(workspace, ast);
+                    } catch (CompilationException e) {
+                        failure = e;
+                    }
+                    compiled.put(new Compiled(ast, workspace, failure));
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.warning("Interrupted while compiling variants in pipeline");
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Evaluates the next variant, like {@link TestSuite#evaluate(Node, AbortCriterion, Predicate)}. The variant was
+     * compiled in the background, so this only waits for its compilation if it is not finished yet.
+     *
+     * @return The test results of the variant.
+     *
+     * @throws CompilationException If the variant failed to compile.
+     * @throws EvaluationException If running the tests fails.
+     * @throws IllegalStateException If all variants have been evaluated already, or if the compiler thread terminated
+     *      without compiling the variant (e.g. because of an unexpected exception). The pipeline can't be used
+     *      further then.
+     */
+    public List<TestResult> evaluateNext(AbortCriterion abortCriterion,
+            Predicate<List<TestResult>> secondStageCondition) throws EvaluationException {
+        if (numEvaluated >= variants.size()) {
+            throw new IllegalStateException("All " + variants.size() + " variants have been evaluated already");
+        }
+        numEvaluated++;
+        
+        Compiled next = takeCompiled();
+        try {
+            if (next.failure() != null) {
+                throw next.failure();
+            }
+            return testSuite.evaluateCompiled(next.workspace().getOutputDirectory(), next.ast(), abortCriterion,
+                    secondStageCondition);
+        } finally {
+            freeWorkspaces.add(next.workspace());
+        }
+    }
+    
+    /**
+     * Waits for the next compiled variant.
+     *
+     * @throws IllegalStateException If the compiler thread terminated without compiling the variant.
+     */
+    private Compiled takeCompiled() {
+        Compiled next = null;
+        try (Probe probe = Measurement.INSTANCE.start("pipeline test stall")) {
+            while (next == null && (compilerThread.isAlive() || !compiled.isEmpty())) {
+                next = compiled.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (next == null) {
+            throw new IllegalStateException("Compiler thread of pipeline terminated before compiling the variant");
+        }
+        return next;
+    }
+    
+    /**
+     * Stops compiling further variants and waits until the current compilation finished. Variants that were not
+     * evaluated yet are discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        List<Compiled> discarded = new ArrayList<>();
+        compiled.drainTo(discarded);
+        discarded.forEach(c -> freeWorkspaces.add(c.workspace()));
+        try {
+            compilerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+}
@@ -12,6 +12,7 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -57,6 +58,8 @@ class FaultLocalization {
     
     private TemporaryDirectoryManager tempDirManager;
     
+    private Map<String, Set<String>> coveredClassesByTest = Map.of();
+    
     public FaultLocalization(Path workingDirectory, List<Path> classpath, Charset encoding,
             boolean splitTestClassLoaders, TemporaryDirectoryManager tempDirManager) {
         this.workingDirectory = workingDirectory;
@@ -70,8 +73,9 @@ class FaultLocalization {
             throws TestExecutionException {
         LOG.info("Measuring suspiciousness");
         try (Probe probe = Measurement.INSTANCE.start("fault-localization")) {
-            LinkedHashMap<Location, Suspiciousness> suspiciousness
-                    = measureSuspiciousness(allTests, variantBinDir, ast);
+            Map<Location, Set<TestResult>> coverage = measureCoverage(allTests, variantBinDir);
+            LinkedHashMap<Location, Suspiciousness> suspiciousness = computeSuspiciousness(allTests, coverage);
+            coveredClassesByTest = getCoveredClassesByTest(coverage);
             
             Map<Node, AstLocations> locations = new HashMap<>(ast.childCount());
             for (Node file : ast.childIterator()) {
@@ -93,6 +97,9 @@ class FaultLocalization {
                     LOG.warning(() -> "Can't find class in AST: " + location.className());
                 }
             }
+            if (Configuration.INSTANCE.setup().statementLevelTestSelection()) {
+                addCoverageMetadataToStatements(ast, locations, fileNodesByClassName, coverage);
+            }
             removeBelowThreshold(ast, Configuration.INSTANCE.setup().suspiciousnessThreshold());
             removeToKeepLimit(ast, Configuration.INSTANCE.setup().suspiciousStatementLimit());
             long suspiciousStatementCount = ast.stream()
@@ -103,6 +110,27 @@ class FaultLocalization {
         }
     }
 
+    /**
+     * Returns the classes that each test covered in the last call to
+     * {@link #measureAndAnnotateSuspiciousness(Node, Path, List)}.
+     * 
+     * @return The binary names of the covered classes, by test identifier (see {@link TestResult#getIdentifier()}).
+     *      Tests that did not cover any class are missing.
+     */
+    public Map<String, Set<String>> getCoveredClassesByTest() {
+        return coveredClassesByTest;
+    }
+    
+    private static Map<String, Set<String>> getCoveredClassesByTest(Map<Location, Set<TestResult>> coverage) {
+        Map<String, Set<String>> result = new HashMap<>();
+        for (Map.Entry<Location, Set<TestResult>> entry : coverage.entrySet()) {
+            for (TestResult test : entry.getValue()) {
+                result.computeIfAbsent(test.getIdentifier(), t -> new HashSet<>()).add(entry.getKey().className());
+            }
+        }
+        return result;
+    }
+
     private static void addSuspiciousnessToStatements(Node ast, Map<Node, AstLocations> locations, Location location,
             double susValue, Node fileNode) {
         String fileName = fileNode.getMetadata(Metadata.FILE_NAME).toString();
@@ -149,6 +177,46 @@ class FaultLocalization {
         }
     }
 
+    /**
+     * Annotates each statement with the identifiers of all test methods that cover any of its lines (as
+     * {@link Metadata#COVERED_BY}). Unlike for files and methods, this includes lines that are only covered by passing
+     * tests, so that {@link StatementImpact} can select the tests that a modification of the statement can affect.
+     * Statements that are already annotated (e.g. because they are shared with an earlier annotated AST) keep their
+     * previous covering tests, too. Equal sets are shared between statements to save memory.
+     */
+    private static void addCoverageMetadataToStatements(Node ast, Map<Node, AstLocations> locations,
+            Map<String, Node> fileNodesByClassName, Map<Location, Set<TestResult>> coverage) {
+        
+        Map<Node, Set<String>> coveredBy = new HashMap<>();
+        for (Map.Entry<Location, Set<TestResult>> entry : coverage.entrySet()) {
+            Node fileNode = findFileNode(entry.getKey().className(), fileNodesByClassName);
+            if (fileNode != null) {
+                for (Node statement : locations.get(fileNode).getStatementsAtLine(entry.getKey().line())) {
+                    Set<String> tests = coveredBy.computeIfAbsent(statement, n -> new HashSet<>());
+                    for (TestResult test : entry.getValue()) {
+                        tests.add(test.getIdentifier());
+                    }
+                }
+            }
+        }
+        
+        Map<Set<String>, Set<String>> sharedSets = new HashMap<>();
+        for (Iterator<Node> it = ast.stream().filter(n -> n.getType() == Type.STATEMENT).iterator(); it.hasNext();) {
+            Node statement = it.next();
+            Set<String> tests = coveredBy.getOrDefault(statement, Set.of());
+            @SuppressWarnings("unchecked")
+            Set<String> previous = (Set<String>) statement.getMetadata(Metadata.COVERED_BY);
+            if (previous != null && !previous.containsAll(tests)) {
+                tests = new HashSet<>(tests);
+                tests.addAll(previous);
+            } else if (previous != null) {
+                tests = previous;
+            }
+            statement.setMetadata(Metadata.COVERED_BY, sharedSets.computeIfAbsent(tests, Set::copyOf));
+        }
+        LOG.fine(() -> "Annotated statements with " + sharedSets.size() + " distinct sets of covering tests");
+    }
+
     private static Node findFileNode(String classNameFromSuspiciousness, Map<String, Node> classes) {
         Node result = classes.get(classNameFromSuspiciousness);
         int dollarIndex;
@@ -236,10 +304,8 @@ class FaultLocalization {
     private record Suspiciousness(double suspiciousness, Set<TestResult> coveringTests) {
     }
     
-    private LinkedHashMap<Location, Suspiciousness> measureSuspiciousness(List<TestResult> tests, Path classesDirectory,
-            Node ast) throws TestExecutionException {
-        
-        Map<Location, Set<TestResult>> coverage = measureCoverage(tests, classesDirectory);
+    private static LinkedHashMap<Location, Suspiciousness> computeSuspiciousness(List<TestResult> tests,
+            Map<Location, Set<TestResult>> coverage) {
         
         Map<Location, Suspiciousness> suspiciousness = new HashMap<>(coverage.size());
         for (Map.Entry<Location, Set<TestResult>> coverageEntry : coverage.entrySet()) {
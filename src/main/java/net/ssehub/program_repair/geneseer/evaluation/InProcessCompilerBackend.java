@@ -0,0 +1,156 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import net.ssehub.program_repair.geneseer.util.Measurement;
+import net.ssehub.program_repair.geneseer.util.Measurement.Probe;
+
+/**
+ * Compiles inside the geneseer JVM with the {@link JavaCompiler} of the running JDK. The source files are passed to
+ * the compiler from memory, without writing them to disk. The same file manager is used for all compilations, so
+ * that the jar files on the classpath are opened and indexed only once. Class files are written to the output
+ * directory, as the tests are run from there.
+ */
+class InProcessCompilerBackend implements CompilerBackend {
+    
+    private static final Logger LOG = Logger.getLogger(InProcessCompilerBackend.class.getName());
+    
+    private JavaCompiler compiler;
+    
+    private StandardJavaFileManager fileManager;
+    
+    private Path outputDirectory;
+    
+    /**
+     * A source file whose content is held in memory.
+     */
+    private static class MemorySource extends SimpleJavaFileObject {
+        
+        private SourceFile source;
+        
+        MemorySource(SourceFile source) {
+            super(URI.create("string:///" + source.path().toString().replace('\\', '/')), Kind.SOURCE);
+            this.source = source;
+        }
+        
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source.content();
+        }
+    
+    }
+    
+    private InProcessCompilerBackend(JavaCompiler compiler, StandardJavaFileManager fileManager,
+            Path outputDirectory) {
+        this.compiler = compiler;
+        this.fileManager = fileManager;
+        this.outputDirectory = outputDirectory;
+    }
+    
+    /**
+     * Creates an in-process backend, if the running JVM provides a Java compiler.
+     *
+     * @param classpath The classpath for compilation (in addition to the output directory).
+     * @param encoding The encoding of the source files.
+     * @param outputDirectory The directory to write the class files to.
+     *
+     * @return The backend, or <code>null</code> if the running JVM has no Java compiler.
+     *
+     * @throws IOException If setting up the file manager fails.
+     */
+    static InProcessCompilerBackend create(List<Path> classpath, Charset encoding, Path outputDirectory)
+            throws IOException {
+        InProcessCompilerBackend result = null;
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler != null) {
+            StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, encoding);
+            List<Path> fullClasspath = new ArrayList<>(classpath.size() + 1);
+            fullClasspath.add(outputDirectory);
+            fullClasspath.addAll(classpath);
+            fileManager.setLocationFromPaths(StandardLocation.CLASS_OUTPUT, List.of(outputDirectory));
+            fileManager.setLocationFromPaths(StandardLocation.CLASS_PATH, fullClasspath);
+            result = new InProcessCompilerBackend(compiler, fileManager, outputDirectory);
+        }
+        return result;
+    }
+    
+    @Override
+    public CompilationResult compile(List<SourceFile> sources, List<String> options) throws IOException {
+        try (Probe probe = Measurement.INSTANCE.start("javac in-process")) {
+            return compileWithFileManager(sources, options);
+        }
+    }
+    
+    /**
+     * Compiles all jobs with the same file manager, only switching its output location between them.
+     */
+    @Override
+    public List<CompilationResult> compileBatch(List<BatchJob> jobs, List<String> options) throws IOException {
+        List<CompilationResult> results = new ArrayList<>(jobs.size());
+        try (Probe probe = Measurement.INSTANCE.start("javac in-process batch")) {
+            for (BatchJob job : jobs) {
+                fileManager.setLocationFromPaths(StandardLocation.CLASS_OUTPUT, List.of(job.outputDirectory()));
+                results.add(compileWithFileManager(job.sources(), options));
+            }
+        } finally {
+            fileManager.setLocationFromPaths(StandardLocation.CLASS_OUTPUT, List.of(outputDirectory));
+        }
+        return results;
+    }
+    
+    private CompilationResult compileWithFileManager(List<SourceFile> sources, List<String> options)
+            throws IOException {
+        List<JavaFileObject> compilationUnits = new ArrayList<>(sources.size());
+        for (SourceFile source : sources) {
+            compilationUnits.add(new MemorySource(source));
+        }
+        
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StringWriter output = new StringWriter();
+        boolean success;
+        try {
+            success = compiler.getTask(output, fileManager, diagnostics, options, null, compilationUnits).call();
+        } finally {
+            fileManager.flush();
+        }
+        
+        List<CompilationError> errors = new LinkedList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                Path file = diagnostic.getSource() instanceof MemorySource memorySource
+                        ? memorySource.source.path() : null;
+                errors.add(new CompilationError(file, diagnostic.getLineNumber(), diagnostic.getMessage(null)));
+            }
+            output.append(diagnostic.toString()).append('\n');
+        }
+        return new CompilationResult(success && errors.isEmpty(), errors, output.toString());
+    }
+    
+    @Override
+    public void close() {
+        try {
+            fileManager.close();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to close file manager of in-process compiler", e);
+        }
+    }
+    
+}
@@ -0,0 +1,423 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.ssehub.program_repair.geneseer.util.ConstantPool;
+import net.ssehub.program_repair.geneseer.util.ProcessRunner;
+
+/**
+ * Runs JUnit 4 test classes inside the geneseer JVM instead of a separate test driver process. This avoids starting
+ * processes, but is only suitable for trusted projects, as the tests share the JVM of geneseer.
+ * <p>
+ * The jar files of the test classpath (libraries and JUnit itself) are loaded once by a shared library class loader.
+ * Class directories (the compiled classes of the variant and the test classes) are loaded by a fresh child class
+ * loader for each {@link Session} (or for each test class, if test class loaders are split). JUnit is accessed via
+ * reflection, as it is only on the classpath of the project.
+ * <p>
+ * Each test class runs on its own thread. On a timeout, the thread is interrupted and its class loader is abandoned.
+ * If the thread does not terminate after that, the execution is {@link #isCompromised() compromised}, and callers
+ * should fall back to running tests in separate processes.
+ */
+class InProcessTestExecution implements AutoCloseable {
+    
+    private static final Logger LOG = Logger.getLogger(InProcessTestExecution.class.getName());
+    
+    private static final long INTERRUPT_GRACE_MS = 1000;
+    
+    /**
+     * Marks the threads that run tests, and the threads started by them.
+     */
+    private static final InheritableThreadLocal<Boolean> TEST_THREAD = new InheritableThreadLocal<>();
+    
+    private static int numOpenSessions;
+    
+    private static PrintStream originalOut;
+    
+    private static PrintStream originalErr;
+    
+    private URLClassLoader libraryLoader;
+    
+    private List<URL> directories;
+    
+    private boolean splitTestClassLoaders;
+    
+    private volatile boolean compromised;
+    
+    private AtomicInteger threadNumber = new AtomicInteger(1);
+    
+    private Map<Path, ClassFileHashes> classFileHashes = new HashMap<>();
+    
+    private Map<String, Boolean> exitCallsByHash = new HashMap<>();
+    
+    /**
+     * @param classpath The test execution classpath of the project, without the compiled classes of the variant.
+     * @param splitTestClassLoaders Whether each test class should be loaded by a separate class loader.
+     */
+    public InProcessTestExecution(List<Path> classpath, boolean splitTestClassLoaders)
+            throws TestExecutionException {
+        this.splitTestClassLoaders = splitTestClassLoaders;
+        
+        List<URL> jars = new LinkedList<>();
+        this.directories = new LinkedList<>();
+        for (Path element : classpath) {
+            if (Files.isDirectory(element)) {
+                directories.add(toUrl(element));
+            } else if (Files.isRegularFile(element)) {
+                jars.add(toUrl(element));
+            }
+        }
+        this.libraryLoader = new URLClassLoader("geneseer-test-libraries", jars.toArray(URL[]::new),
+                ClassLoader.getPlatformClassLoader());
+        
+        try {
+            libraryLoader.loadClass("org.junit.runner.JUnitCore");
+        } catch (ClassNotFoundException e) {
+            close();
+            throw new TestExecutionException("JUnit 4 is not in a jar file on the test classpath", e);
+        }
+    }
+    
+    private static URL toUrl(Path path) throws TestExecutionException {
+        try {
+            return path.toUri().toURL();
+        } catch (MalformedURLException e) {
+            throw new TestExecutionException("Invalid classpath element: " + path, e);
+        }
+    }
+    
+    /**
+     * Finds classes in the given directories that call <code>System.exit()</code>, <code>Runtime.exit()</code>, or
+     * <code>Runtime.halt()</code>. These would terminate geneseer if they were run in-process. The result for each
+     * class file is remembered by its hash, so only class files with new content are parsed; unchanged class files are
+     * not even hashed again (see {@link ClassFileHashes}).
+     *
+     * @param directories The class directories to search. Other elements (e.g. jar files) are ignored.
+     *
+     * @return The names of the classes that may terminate the JVM.
+     *
+     * @throws TestExecutionException If reading the class files fails.
+     */
+    public synchronized List<String> findExitCalls(Collection<Path> directories) throws TestExecutionException {
+        List<String> result = new LinkedList<>();
+        for (Path directory : directories) {
+            if (!Files.isDirectory(directory)) {
+                continue;
+            }
+            try {
+                Map<String, String> hashes = classFileHashes.computeIfAbsent(directory, ClassFileHashes::new)
+                        .computeHashes();
+                for (Map.Entry<String, String> entry : hashes.entrySet()) {
+                    Boolean exits = exitCallsByHash.get(entry.getValue());
+                    if (exits == null) {
+                        exits = callsExit(directory.resolve(entry.getKey().replace('.', '/') + ".class"));
+                        exitCallsByHash.put(entry.getValue(), exits);
+                    }
+                    if (exits) {
+                        result.add(entry.getKey());
+                    }
+                }
+            } catch (IOException e) {
+                throw new TestExecutionException("Failed to read class files in " + directory, e);
+            }
+        }
+        return result;
+    }
+    
+    private static boolean callsExit(Path classFile) throws IOException {
+        ConstantPool pool = ConstantPool.read(classFile);
+        return pool.referencesMethod("java.lang.System", "exit")
+                || pool.referencesMethod("java.lang.Runtime", "exit")
+                || pool.referencesMethod("java.lang.Runtime", "halt");
+    }
+    
+    /**
+     * Returns whether a test thread could not be stopped after a timeout. Such a thread may still modify the state of
+     * shared classes, so no further tests should be run in-process.
+     */
+    public boolean isCompromised() {
+        return compromised;
+    }
+    
+    /**
+     * Starts running tests on the given compiled classes. All test classes run in this session share a fresh class
+     * loader (unless test class loaders are split).
+     *
+     * @param classes The directory with the compiled classes of the variant.
+     *
+     * @return The session to run the test classes in; must be closed after use.
+     */
+    public Session openSession(Path classes) throws TestExecutionException {
+        List<URL> urls = new ArrayList<>(directories.size() + 1);
+        urls.add(toUrl(classes));
+        urls.addAll(directories);
+        return new Session(urls.toArray(URL[]::new));
+    }
+    
+    /**
+     * A number of test classes run on the same compiled classes. While a session is open, output of the test threads
+     * to {@link System#out} and {@link System#err} is discarded; output of other threads (e.g. logging of geneseer)
+     * is passed on.
+     */
+    public class Session implements AutoCloseable {
+        
+        private URL[] urls;
+        
+        private List<URLClassLoader> loaders = new LinkedList<>();
+        
+        private URLClassLoader sharedLoader;
+        
+        private Session(URL[] urls) {
+            this.urls = urls;
+            filterTestOutput();
+        }
+        
+        private URLClassLoader getLoader() {
+            URLClassLoader loader;
+            if (splitTestClassLoaders || sharedLoader == null) {
+                loader = new URLClassLoader("geneseer-tests", urls, libraryLoader);
+                loaders.add(loader);
+                if (!splitTestClassLoaders) {
+                    sharedLoader = loader;
+                }
+            } else {
+                loader = sharedLoader;
+            }
+            return loader;
+        }
+        
+        /**
+         * Runs the tests in the given test class.
+         *
+         * @param className The name of the test class.
+         * @param selectedMethods The identifiers of the test methods to run (see
+         *      {@link TestResult#getMethodIdentifier()}), or <code>null</code> to run all test methods. Each selected
+         *      method is run as a separate JUnit request.
+         * @param timeoutMs The maximum time that the test class may take.
+         *
+         * @return The results of all (selected) test methods in the class.
+         *
+         * @throws TestTimeoutException If the test class did not finish in time.
+         * @throws TestExecutionException If running the class fails.
+         */
+        public List<TestResult> executeTestClass(String className, Set<String> selectedMethods, long timeoutMs)
+                throws TestExecutionException {
+            URLClassLoader loader = getLoader();
+            FutureTask<List<TestResult>> task = new FutureTask<>(() -> {
+                TEST_THREAD.set(true);
+                return runJunit(loader, className, selectedMethods);
+            });
+            Thread thread = new Thread(task, "in-process-test-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(loader);
+            thread.start();
+            
+            try {
+                return task.get(timeoutMs, TimeUnit.MILLISECONDS);
+            
+            } catch (TimeoutException e) {
+                stopThread(thread);
+                if (sharedLoader == loader) {
+                    sharedLoader = null;
+                }
+                throw new TestTimeoutException("Test execution did not finish in " + timeoutMs + " ms");
+            
+            } catch (ExecutionException e) {
+                throw new TestExecutionException("Failed to run test class " + className + " in-process",
+                        e.getCause());
+            
+            } catch (InterruptedException e) {
+                stopThread(thread);
+                Thread.currentThread().interrupt();
+                throw new TestExecutionException("Interrupted while waiting for test class " + className);
+            }
+        }
+        
+        @Override
+        public void close() {
+            try {
+                for (URLClassLoader loader : loaders) {
+                    try {
+                        loader.close();
+                    } catch (IOException e) {
+                        LOG.log(Level.FINE, "Failed to close test class loader", e);
+                    }
+                }
+                loaders.clear();
+            } finally {
+                restoreOutput();
+            }
+        }
+    
+    }
+    
+    /**
+     * Replaces {@link System#out} and {@link System#err} with streams that drop the output of test threads, if no
+     * other session did so already.
+     */
+    private static synchronized void filterTestOutput() {
+        if (numOpenSessions == 0) {
+            originalOut = System.out;
+            originalErr = System.err;
+            System.setOut(new PrintStream(new TestOutputFilter(originalOut), true));
+            System.setErr(new PrintStream(new TestOutputFilter(originalErr), true));
+        }
+        numOpenSessions++;
+    }
+    
+    /**
+     * Restores the original {@link System#out} and {@link System#err} once the last session is closed.
+     */
+    private static synchronized void restoreOutput() {
+        numOpenSessions--;
+        if (numOpenSessions == 0) {
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+            originalOut = null;
+            originalErr = null;
+        }
+    }
+    
+    /**
+     * Passes output on to the original stream, unless it is written by a test thread.
+     */
+    private static class TestOutputFilter extends OutputStream {
+        
+        private PrintStream target;
+        
+        TestOutputFilter(PrintStream target) {
+            this.target = target;
+        }
+        
+        private static boolean isTestThread() {
+            return TEST_THREAD.get() != null;
+        }
+        
+        @Override
+        public void write(int value) {
+            if (!isTestThread()) {
+                target.write(value);
+            }
+        }
+        
+        @Override
+        public void write(byte[] bytes, int off, int len) {
+            if (!isTestThread()) {
+                target.write(bytes, off, len);
+            }
+        }
+        
+        @Override
+        public void flush() {
+            target.flush();
+        }
+        
+    }
+    
+    private void stopThread(Thread thread) {
+        thread.interrupt();
+        ProcessRunner.untilNoInterruptedException(() -> {
+            thread.join(INTERRUPT_GRACE_MS);
+            return null;
+        });
+        if (thread.isAlive()) {
+            LOG.warning(() -> "Test thread " + thread.getName() + " did not terminate after being interrupted");
+            compromised = true;
+        }
+    }
+    
+    /**
+     * Runs the given test class (or the selected methods of it) with JUnit 4, using reflection on the JUnit classes of
+     * the given class loader.
+     */
+    private static List<TestResult> runJunit(ClassLoader loader, String className, Set<String> selectedMethods)
+            throws ReflectiveOperationException {
+        Class<?> testClass = Class.forName(className, false, loader);
+        Class<?> requestClass = loader.loadClass("org.junit.runner.Request");
+        
+        List<TestResult> results = new LinkedList<>();
+        if (selectedMethods == null) {
+            results.addAll(runRequest(loader, testClass,
+                    requestClass.getMethod("aClass", Class.class).invoke(null, testClass)));
+        } else {
+            Set<String> methodNames = new LinkedHashSet<>();
+            for (String identifier : selectedMethods) {
+                methodNames.add(TestResult.getMethodName(identifier));
+            }
+            for (String methodName : methodNames) {
+                results.addAll(runRequest(loader, testClass, requestClass.getMethod("method", Class.class, String.class)
+                        .invoke(null, testClass, methodName)));
+            }
+            results.removeIf(r -> !selectedMethods.contains(r.getMethodIdentifier()));
+        }
+        return results;
+    }
+    
+    private static List<TestResult> runRequest(ClassLoader loader, Class<?> testClass, Object request)
+            throws ReflectiveOperationException {
+        Class<?> requestClass = loader.loadClass("org.junit.runner.Request");
+        Class<?> runnerClass = loader.loadClass("org.junit.runner.Runner");
+        Class<?> coreClass = loader.loadClass("org.junit.runner.JUnitCore");
+        Class<?> resultClass = loader.loadClass("org.junit.runner.Result");
+        Class<?> failureClass = loader.loadClass("org.junit.runner.notification.Failure");
+        
+        Object runner = requestClass.getMethod("getRunner").invoke(request);
+        Object description = runnerClass.getMethod("getDescription").invoke(runner);
+        
+        Object result = coreClass.getMethod("run", runnerClass)
+                .invoke(coreClass.getConstructor().newInstance(), runner);
+        
+        Map<Object, String> failures = new HashMap<>();
+        for (Object failure : (List<?>) resultClass.getMethod("getFailures").invoke(result)) {
+            failures.put(failureClass.getMethod("getDescription").invoke(failure),
+                    (String) failureClass.getMethod("getTrace").invoke(failure));
+        }
+        
+        List<TestResult> results = new LinkedList<>();
+        for (Object test : TestMethodRunner.collectTests(loader, description)) {
+            String methodName = (String) test.getClass().getMethod("getMethodName").invoke(test);
+            String failure = failures.remove(test);
+            results.add(new TestResult(testClass.getName(),
+                    TestMethodRunner.getImplementingClass(testClass, methodName), methodName, failure));
+        }
+        
+        // failures not attributed to a single test (e.g. in @BeforeClass) fail all tests of the class
+        if (!failures.isEmpty()) {
+            String classFailure = failures.values().iterator().next();
+            results.replaceAll(r -> r.isFailure() ? r
+                    : new TestResult(r.testClass(), r.implementingClass(), r.testMethod(), classFailure));
+        }
+        return results;
+    }
+    
+    @Override
+    public void close() {
+        try {
+            libraryLoader.close();
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Failed to close test library class loader", e);
+        }
+    }
+    
+}
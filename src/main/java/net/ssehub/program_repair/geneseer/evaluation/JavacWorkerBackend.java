@@ -0,0 +1,292 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import net.ssehub.program_repair.geneseer.Configuration;
+import net.ssehub.program_repair.geneseer.Result.EvaluationStats;
+import net.ssehub.program_repair.geneseer.util.Measurement;
+import net.ssehub.program_repair.geneseer.util.Measurement.Probe;
+import net.ssehub.program_repair.geneseer.util.ProcessManager;
+import net.ssehub.program_repair.geneseer.util.ProcessRunner;
+import net.ssehub.program_repair.geneseer.util.ProcessRunner.CaptureThread;
+import net.ssehub.program_repair.geneseer.util.TemporaryDirectoryManager;
+
+/**
+ * Compiles in a long-lived worker JVM of the JDK of the configured
+ * {@link Configuration.SetupConfiguration#javaCompilerBinaryPath() Java compiler}. In contrast to the
+ * {@link InProcessCompilerBackend}, this works if the compiler JDK differs from the JVM running geneseer, while still
+ * avoiding the JVM startup and keeping the compiler warm between compilations.
+ * <p>
+ * The worker is the <code>JavacWorker</code> class, which is shipped as a source file and compiled with the configured
+ * compiler when it is first needed (see there for the protocol). If the worker crashes during a request, it is
+ * restarted and the request is sent again once. If the heap of the worker after garbage collection grew by more than
+ * {@link Configuration.SetupConfiguration#compilerWorkerMaxHeapGrowthMb()} since its first request, it is restarted
+ * after the request.
+ * <p>
+ * A {@link #compileBatch(List, List) batch} is sent to the worker as a single request, so that all jobs are compiled
+ * with the same file manager in one round trip.
+ */
+class JavacWorkerBackend implements CompilerBackend {
+    
+    private static final Logger LOG = Logger.getLogger(JavacWorkerBackend.class.getName());
+    
+    private static final String WORKER_MAIN_CLASS = "JavacWorker";
+    
+    private static final Path WORKER_DIRECTORY;
+    
+    private static boolean workerCompiled;
+    
+    static {
+        try {
+            @SuppressWarnings("resource") // closed in shutdown hook of TemporaryDirectoryManager
+            TemporaryDirectoryManager tempDirManager = new TemporaryDirectoryManager();
+            WORKER_DIRECTORY = tempDirManager.createTemporaryDirectory();
+            
+            Files.write(WORKER_DIRECTORY.resolve(WORKER_MAIN_CLASS + ".java"), JavacWorkerBackend.class
+                    .getClassLoader()
+                    .getResourceAsStream("net/ssehub/program_repair/geneseer/evaluation/" + WORKER_MAIN_CLASS + ".java")
+                    .readAllBytes());
+        
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Failed to create temporary directory with compiler worker source", e);
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private String classpath;
+    
+    private Path outputDirectory;
+    
+    private EvaluationStats evaluationStats;
+    
+    private Process process;
+    
+    private DataInputStream in;
+    
+    private DataOutputStream out;
+    
+    private CaptureThread stderrCapture;
+    
+    private long initialHeapBytes;
+    
+    private long lastHeapBytes;
+    
+    /**
+     * Creates a new worker backend and starts the worker.
+     *
+     * @param classpath The classpath for compilation (in addition to the output directory).
+     * @param outputDirectory The directory to write the class files to.
+     * @param evaluationStats The statistics to record the latency of requests and the restarts of the worker in.
+     *
+     * @throws IOException If compiling or starting the worker fails.
+     */
+    JavacWorkerBackend(List<Path> classpath, Path outputDirectory, EvaluationStats evaluationStats)
+            throws IOException {
+        this.classpath = Stream.concat(Stream.of(outputDirectory), classpath.stream())
+                .map(Path::toString)
+                .collect(Collectors.joining(File.pathSeparator));
+        this.outputDirectory = outputDirectory;
+        this.evaluationStats = evaluationStats;
+        compileWorker();
+        startWorker();
+    }
+    
+    private static synchronized void compileWorker() throws IOException {
+        if (!workerCompiled) {
+            ProcessRunner process = new ProcessRunner.Builder(Configuration.INSTANCE.setup().javaCompilerBinaryPath(),
+                    "-nowarn", "-encoding", "UTF-8", WORKER_MAIN_CLASS + ".java")
+                    .workingDirectory(WORKER_DIRECTORY)
+                    .captureOutput(true)
+                    .run();
+            if (process.getExitCode() != 0) {
+                throw new IOException("Failed to compile compiler worker:\n" + new String(process.getStderr()));
+            }
+            workerCompiled = true;
+        }
+    }
+    
+    private void startWorker() throws IOException {
+        List<String> command = new LinkedList<>();
+        command.add(getWorkerJvmBinaryPath());
+        if (Configuration.INSTANCE.setup().autotuneConcurrency()) {
+            // before the configured options, so that these take precedence
+            command.addAll(ConcurrencyTuner.INSTANCE.getCompilerJvmOptions());
+        }
+        for (String option : Configuration.INSTANCE.setup().compilerWorkerJvmOptions().split(" ")) {
+            if (!option.isBlank()) {
+                command.add(option);
+            }
+        }
+        command.add("-cp");
+        command.add(WORKER_DIRECTORY.toString());
+        command.add(WORKER_MAIN_CLASS);
+        
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectInput(Redirect.PIPE);
+        builder.redirectOutput(Redirect.PIPE);
+        builder.redirectError(Redirect.PIPE);
+        builder.directory(WORKER_DIRECTORY.toFile());
+        LOG.fine(() -> "Starting compiler worker " + builder.command());
+        process = builder.start();
+        ProcessManager.INSTANCE.trackProcess(process);
+        in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        stderrCapture = new CaptureThread(process.getErrorStream(), "javac-worker stderr");
+        stderrCapture.setDaemon(true);
+        stderrCapture.start();
+        initialHeapBytes = -1;
+    }
+    
+    /**
+     * Returns the <code>java</code> binary next to the configured <code>javac</code> binary, so that the worker runs
+     * on the JDK of the configured compiler.
+     */
+    private static String getWorkerJvmBinaryPath() {
+        Path javac = Path.of(Configuration.INSTANCE.setup().javaCompilerBinaryPath());
+        String javaName = javac.getFileName().toString().replace("javac", "java");
+        return javac.resolveSibling(javaName).toString();
+    }
+    
+    private void stopWorker() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            // worker is already gone
+        }
+        boolean exited = ProcessRunner.untilNoInterruptedException(() -> process.waitFor(5, TimeUnit.SECONDS));
+        if (!exited) {
+            process.destroyForcibly();
+        }
+        ProcessRunner.untilNoInterruptedException(() -> {
+            stderrCapture.join();
+            return 0;
+        });
+        String stderr = getStderr();
+        if (!stderr.isBlank()) {
+            LOG.fine(() -> "javac-worker stderr:\n" + stderr);
+        }
+        stderrCapture.closeCapture();
+    }
+    
+    private void restartWorker(String reason) throws IOException {
+        LOG.info(() -> "Restarting compiler worker: " + reason);
+        stopWorker();
+        evaluationStats.increaseCompilerWorkerRestarts();
+        startWorker();
+    }
+    
+    private String getStderr() {
+        return new String(stderrCapture.getOutput(), StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public CompilationResult compile(List<SourceFile> sources, List<String> options) throws IOException {
+        return compileBatch(List.of(new BatchJob(sources, null, outputDirectory)), options).get(0);
+    }
+    
+    @Override
+    public List<CompilationResult> compileBatch(List<BatchJob> jobs, List<String> options) throws IOException {
+        long t0 = System.currentTimeMillis();
+        List<CompilationResult> results;
+        try (Probe probe = Measurement.INSTANCE.start(jobs.size() > 1 ? "javac worker batch" : "javac worker")) {
+            try {
+                results = sendRequest(jobs, options);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Compiler worker failed; stderr:\n" + getStderr(), e);
+                restartWorker("worker failed");
+                results = sendRequest(jobs, options);
+            }
+        }
+        checkHeapGrowth();
+        long latencyMs = System.currentTimeMillis() - t0;
+        evaluationStats.addCompilerWorkerRequest(latencyMs);
+        LOG.fine(() -> "Compiler worker request with " + jobs.size() + " jobs and "
+                + jobs.stream().mapToInt(job -> job.sources().size()).sum() + " files took " + latencyMs + " ms");
+        return results;
+    }
+    
+    private List<CompilationResult> sendRequest(List<BatchJob> jobs, List<String> options) throws IOException {
+        out.writeInt(jobs.size());
+        out.writeInt(options.size());
+        for (String option : options) {
+            writeString(option);
+        }
+        writeString(classpath);
+        for (BatchJob job : jobs) {
+            writeString(job.outputDirectory().toString());
+            out.writeInt(job.sources().size());
+            for (SourceFile source : job.sources()) {
+                writeString(source.path().toString());
+                writeString(source.content());
+            }
+        }
+        out.flush();
+        
+        List<CompilationResult> results = new ArrayList<>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            results.add(readResult());
+        }
+        lastHeapBytes = in.readLong();
+        return results;
+    }
+    
+    private CompilationResult readResult() throws IOException {
+        boolean success = in.readBoolean();
+        String output = readString();
+        int numErrors = in.readInt();
+        List<CompilationError> errors = new ArrayList<>(numErrors);
+        for (int i = 0; i < numErrors; i++) {
+            String file = readString();
+            long line = in.readLong();
+            errors.add(new CompilationError(file.isEmpty() ? null : Path.of(file), line, readString()));
+        }
+        return new CompilationResult(success, errors, output);
+    }
+    
+    private void checkHeapGrowth() throws IOException {
+        if (initialHeapBytes < 0) {
+            initialHeapBytes = lastHeapBytes;
+        } else {
+            long growthMb = (lastHeapBytes - initialHeapBytes) / (1024 * 1024);
+            if (growthMb > Configuration.INSTANCE.setup().compilerWorkerMaxHeapGrowthMb()) {
+                restartWorker("heap grew by " + growthMb + " MiB");
+            }
+        }
+    }
+    
+    private String readString() throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private void writeString(String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    @Override
+    public void close() {
+        stopWorker();
+    }
+    
+}
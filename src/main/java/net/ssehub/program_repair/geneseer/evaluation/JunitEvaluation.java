@@ -4,32 +4,149 @@ import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import net.ssehub.program_repair.geneseer.Configuration;
+import net.ssehub.program_repair.geneseer.Result.EvaluationStats;
+import net.ssehub.program_repair.geneseer.evaluation.TestDriverPool.PooledDriver;
 import net.ssehub.program_repair.geneseer.util.Measurement;
 import net.ssehub.program_repair.geneseer.util.Measurement.Probe;
 
-class JunitEvaluation {
+class JunitEvaluation implements AutoCloseable {
     
-    private Path workingDirectory;
+    private static final Logger LOG = Logger.getLogger(JunitEvaluation.class.getName());
     
     private List<Path> classpath;
     
-    private Charset encoding;
+    private TestDriverPool driverPool;
     
-    private boolean splitTestClassLoaders;
+    private ExecutorService shardExecutor;
+    
+    private Map<String, Long> expectedClassDurations = Map.of();
+    
+    private Map<String, Long> lastClassDurations = Map.of();
+    
+    private Map<String, Long> historicalClassDurations = Map.of();
+    
+    private Map<String, Set<String>> testMethods = Map.of();
+    
+    private EvaluationStats evaluationStats;
+    
+    private InProcessTestExecution inProcessExecution;
+    
+    private Set<String> inProcessVerifiedClasses = new HashSet<>();
+    
+    private int rerunProcesses;
+    
+    private TestMethodExecution testMethodExecution;
     
     public JunitEvaluation(Path workingDirectory, List<Path> classpath, Charset encoding,
-            boolean splitTestClassLoaders) {
-        this.workingDirectory = workingDirectory;
+            boolean splitTestClassLoaders, EvaluationStats evaluationStats) {
         this.classpath = classpath;
-        this.encoding = encoding;
-        this.splitTestClassLoaders = splitTestClassLoaders;
+        this.evaluationStats = evaluationStats;
+        this.driverPool = new TestDriverPool(workingDirectory, encoding, splitTestClassLoaders,
+                Configuration.INSTANCE.setup().testDriverMaxUses(), evaluationStats);
+        this.testMethodExecution = new TestMethodExecution(workingDirectory, encoding);
     }
-
+    
+    /**
+     * Runs tests inside the geneseer JVM instead of in test driver processes. The first time a test class is run, it
+     * is run both in-process and in test driver processes, and the results are compared, to detect tests that depend
+     * on running in a separate process (e.g. on the working directory or on static state). If the results differ, or
+     * if classes call <code>System.exit()</code>, or if a timed-out test can't be stopped, the tests are run in test
+     * driver processes again.
+     * 
+     * @param splitTestClassLoaders Whether each test class should be loaded by a separate class loader.
+     */
+    public void enableInProcessExecution(boolean splitTestClassLoaders) {
+        try {
+            inProcessExecution = new InProcessTestExecution(classpath, splitTestClassLoaders);
+        } catch (TestExecutionException e) {
+            LOG.log(Level.WARNING, "Can't run tests in-process; using test driver processes", e);
+        }
+    }
+    
+    /**
+     * Returns whether selecting single test methods (see {@link #runTests(Path, Collection, Map, AbortCriterion)})
+     * saves time. This is only the case if tests run in-process; test driver processes can only run whole test
+     * classes, so there the whole class is run and the results of the other methods are dropped.
+     */
+    public boolean canRunSelectedMethods() {
+        return inProcessExecution != null;
+    }
+    
+    /**
+     * Sets the expected duration of each test class, in milliseconds. These are used to distribute the test classes
+     * evenly if they are run in multiple test driver processes, and to derive the timeout of each test class.
+     */
+    public void setExpectedClassDurations(Map<String, Long> expectedClassDurations) {
+        this.expectedClassDurations = Map.copyOf(expectedClassDurations);
+    }
+    
+    /**
+     * Sets the duration of each test class as recorded in earlier runs, in milliseconds. These are only used to
+     * distribute test classes that have no expected duration (see {@link #setExpectedClassDurations(Map)}), e.g. in
+     * the initial test run. They are not used for timeouts, as they may be outdated.
+     */
+    public void setHistoricalClassDurations(Map<String, Long> historicalClassDurations) {
+        this.historicalClassDurations = Map.copyOf(historicalClassDurations);
+    }
+    
+    /**
+     * Sets the test methods of each test class. If
+     * {@link Configuration.SetupConfiguration#rerunTimedOutTestClasses()} is enabled, the methods of test classes that
+     * time out are re-run one by one (see {@link #rerunTimedOutClass(List, String, Set)}).
+     * 
+     * @param testMethods The identifiers of the test methods (see {@link TestResult#getMethodIdentifier()}), by test
+     *      class.
+     */
+    public void setTestMethods(Map<String, Set<String>> testMethods) {
+        this.testMethods = Map.copyOf(testMethods);
+    }
+    
+    /**
+     * Returns the measured duration of each test class in the last call to
+     * {@link #runTests(Path, Collection)}, in milliseconds.
+     */
+    public Map<String, Long> getLastClassDurations() {
+        return lastClassDurations;
+    }
+    
     public List<TestResult> runTests(Path classes, Collection<String> testClasses) throws TestExecutionException {
+        return runTests(classes, testClasses, null);
+    }
+    
+    public List<TestResult> runTests(Path classes, Collection<String> testClasses, AbortCriterion abortCriterion)
+            throws TestExecutionException {
+        return runTests(classes, testClasses, Map.of(), abortCriterion);
+    }
+    
+    /**
+     * Runs the given test classes. If an {@link AbortCriterion} is given, it is informed about the results of each
+     * test class as soon as the class finished. Once it requests an abort, no further test classes are started; the
+     * results of these skipped classes are missing from the returned list.
+     * 
+     * @param selectedMethods For test classes of which only some test methods should be run, the identifiers of these
+     *      methods (see {@link TestResult#getMethodIdentifier()}). Classes that are not in this map are run completely.
+     */
+    public List<TestResult> runTests(Path classes, Collection<String> testClasses,
+            Map<String, Set<String>> selectedMethods, AbortCriterion abortCriterion) throws TestExecutionException {
         
         try (Probe probe = Measurement.INSTANCE.start("junit-evaluation")) {
             
@@ -37,26 +154,560 @@ class JunitEvaluation {
             fullClasspath.add(classes);
             fullClasspath.addAll(classpath);
             
+            RunState state = new RunState(abortCriterion, selectedMethods);
+            lastClassDurations = state.durations;
+            
+            Map<String, List<TestResult>> resultsByClass;
+            if (!canRunInProcess(fullClasspath, classes)) {
+                resultsByClass = runInTestDrivers(fullClasspath, classes, testClasses, state);
+            } else if (inProcessVerifiedClasses.containsAll(testClasses)) {
+                resultsByClass = runInProcess(fullClasspath, classes, testClasses, state);
+            } else {
+                resultsByClass = verifyInProcessExecution(fullClasspath, classes, testClasses, state);
+            }
+            
             List<TestResult> executedTests = new LinkedList<>();
-            try (TestExecution testExec = new TestExecution(workingDirectory, fullClasspath, encoding, false,
-                    splitTestClassLoaders)) {
-                testExec.setTimeout(Configuration.INSTANCE.setup().testExecutionTimeoutMs());
-                for (String className : testClasses) {
-                    runTestCatchingTimeout(workingDirectory, fullClasspath, executedTests, testExec, className);
+            for (String className : testClasses) {
+                List<TestResult> classResult = resultsByClass.get(className);
+                if (classResult != null) {
+                    executedTests.addAll(classResult);
                 }
             }
-            
             return executedTests;
         }
     }
-
-    private void runTestCatchingTimeout(Path workingDirectory, List<Path> fullClasspath,
-            List<TestResult> executedTests, TestExecution testExec, String className) throws TestExecutionException {
+    
+    private Map<String, List<TestResult>> runInTestDrivers(List<Path> fullClasspath, Path classes,
+            Collection<String> testClasses, RunState state) throws TestExecutionException {
+        
+        int numProcesses = getTestDriverProcesses();
+        driverPool.setMaxIdleDrivers(numProcesses);
+        int numShards = Math.min(numProcesses, testClasses.size());
+        Map<String, List<TestResult>> resultsByClass;
+        if (numShards <= 1) {
+            resultsByClass = runShard(fullClasspath, classes, testClasses, state);
+        } else {
+            resultsByClass = runShardsInParallel(fullClasspath, classes, createShards(testClasses, numShards), state);
+        }
+        return resultsByClass;
+    }
+    
+    private Map<String, List<TestResult>> runShard(List<Path> fullClasspath, Path classes,
+            Collection<String> testClasses, RunState state) throws TestExecutionException {
+        
+        Map<String, List<TestResult>> resultsByClass = new HashMap<>();
+        PooledDriver driver = driverPool.acquire(fullClasspath, classes);
+        boolean success = false;
         try {
-            executedTests.addAll(testExec.executeTestClass(className));
+            TestExecution testExec = driver.getExecution();
+            for (String className : testClasses) {
+                if (state.isAborted()) {
+                    break;
+                }
+                testExec.setTimeout(getTimeoutMs(className));
+                long t0 = System.currentTimeMillis();
+                List<TestResult> classResult = runTestCatchingTimeout(testExec, className,
+                        state.selectedMethods.get(className));
+                // only the original run is recorded, a re-run of its methods would skew the expected duration
+                state.durations.put(className, System.currentTimeMillis() - t0);
+                if (classResult.size() == 1 && classResult.get(0).isTimeout()) {
+                    classResult = rerunTimedOutClass(fullClasspath, className,
+                            state.selectedMethods.getOrDefault(className, testMethods.get(className)));
+                }
+                resultsByClass.put(className, classResult);
+                state.report(classResult);
+            }
+            success = true;
+        } finally {
+            if (success) {
+                driverPool.release(driver);
+            } else {
+                driverPool.discard(driver);
+            }
+        }
+        return resultsByClass;
+    }
+    
+    private Map<String, List<TestResult>> runInProcess(List<Path> fullClasspath, Path classes,
+            Collection<String> testClasses, RunState state) throws TestExecutionException {
+        
+        Map<String, List<TestResult>> resultsByClass = new HashMap<>();
+        try (InProcessTestExecution.Session session = inProcessExecution.openSession(classes)) {
+            for (String className : testClasses) {
+                if (state.isAborted()) {
+                    break;
+                }
+                long t0 = System.currentTimeMillis();
+                List<TestResult> classResult;
+                try {
+                    classResult = session.executeTestClass(className, state.selectedMethods.get(className),
+                            getTimeoutMs(className));
+                } catch (TestTimeoutException e) {
+                    countTimeout(e);
+                    classResult = List.of(createTimeoutResult(className));
+                }
+                state.durations.put(className, System.currentTimeMillis() - t0);
+                if (classResult.size() == 1 && classResult.get(0).isTimeout()) {
+                    classResult = rerunTimedOutClass(fullClasspath, className,
+                            state.selectedMethods.getOrDefault(className, testMethods.get(className)));
+                }
+                resultsByClass.put(className, classResult);
+                state.report(classResult);
+            }
+        }
+        return resultsByClass;
+    }
+    
+    /**
+     * Checks whether tests can be run in-process. If not, in-process execution is disabled for all further test runs.
+     */
+    private boolean canRunInProcess(List<Path> fullClasspath, Path classes) throws TestExecutionException {
+        if (inProcessExecution != null) {
+            List<String> exitCalls = inProcessExecution.findExitCalls(fullClasspath);
             
+            if (!exitCalls.isEmpty()) {
+                disableInProcessExecution("classes may terminate the JVM: " + exitCalls);
+            } else if (inProcessExecution.isCompromised()) {
+                disableInProcessExecution("a timed-out test could not be stopped");
+            }
+        }
+        return inProcessExecution != null;
+    }
+    
+    /**
+     * Runs the given test classes in-process. Differences to test driver processes (e.g. because of static state
+     * shared between test classes) show up as failing tests, so the test classes with failing (or missing) results are
+     * run in test driver processes, too, and the results are compared. If they are the same (or no class is
+     * suspicious), the classes are marked as verified and the in-process results are used; otherwise, in-process
+     * execution is disabled and the results of test driver processes are used for all classes. The durations of the
+     * execution mode that is used from now on are recorded in the given state, so that the timeouts are based on that
+     * mode.
+     */
+    private Map<String, List<TestResult>> verifyInProcessExecution(List<Path> fullClasspath, Path classes,
+            Collection<String> testClasses, RunState state) throws TestExecutionException {
+        
+        RunState inProcessState = new RunState(null, state.selectedMethods);
+        Map<String, List<TestResult>> inProcess = runInProcess(fullClasspath, classes, testClasses, inProcessState);
+        List<String> suspicious = testClasses.stream()
+                .filter(c -> isSuspicious(inProcess.get(c)))
+                .toList();
+        
+        RunState used = inProcessState;
+        Map<String, List<TestResult>> result = inProcess;
+        if (!suspicious.isEmpty()) {
+            LOG.info(() -> "Comparing results of in-process test execution with test driver processes for "
+                    + suspicious.size() + " of " + testClasses.size() + " test classes");
+            RunState referenceState = new RunState(null, state.selectedMethods);
+            Map<String, List<TestResult>> reference = runInTestDrivers(fullClasspath, classes, suspicious,
+                    referenceState);
+            Map<String, List<TestResult>> suspiciousInProcess = new HashMap<>(inProcess);
+            suspiciousInProcess.keySet().retainAll(suspicious);
+            
+            String difference = findDifference(reference, suspiciousInProcess, "test driver processes",
+                    "in-process execution");
+            if (difference != null) {
+                disableInProcessExecution(difference);
+                List<String> remaining = testClasses.stream()
+                        .filter(c -> !suspicious.contains(c))
+                        .toList();
+                if (!remaining.isEmpty()) {
+                    reference.putAll(runInTestDrivers(fullClasspath, classes, remaining, referenceState));
+                }
+                used = referenceState;
+                result = reference;
+            }
+        }
+        if (used == inProcessState) {
+            LOG.info(() -> "Running " + testClasses.size() + " verified test classes in-process from now on");
+            inProcessVerifiedClasses.addAll(testClasses);
+        }
+        
+        state.durations.putAll(used.durations);
+        for (String className : testClasses) {
+            List<TestResult> classResult = result.get(className);
+            if (classResult != null) {
+                state.report(classResult);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns whether the in-process result of a test class should be compared with test driver processes: if it is
+     * missing, empty, or contains a failing test.
+     */
+    static boolean isSuspicious(List<TestResult> classResult) {
+        return classResult == null || classResult.isEmpty() || classResult.stream().anyMatch(TestResult::isFailure);
+    }
+    
+    /**
+     * Compares whether the same tests exist and pass in the two given test results.
+     * 
+     * @return A description of the first difference, or <code>null</code> if there is none.
+     */
+    private static String findDifference(Map<String, List<TestResult>> expected, Map<String, List<TestResult>> actual,
+            String expectedName, String actualName) {
+        
+        Map<String, Boolean> expectedFailures = new HashMap<>();
+        expected.values().stream().flatMap(List::stream).forEach(r -> expectedFailures.put(r.getIdentifier(),
+                r.isFailure()));
+        Map<String, Boolean> actualFailures = new HashMap<>();
+        actual.values().stream().flatMap(List::stream).forEach(r -> actualFailures.put(r.getIdentifier(),
+                r.isFailure()));
+        
+        String difference = null;
+        for (Map.Entry<String, Boolean> entry : expectedFailures.entrySet()) {
+            Boolean actualFailure = actualFailures.get(entry.getKey());
+            if (actualFailure == null) {
+                difference = entry.getKey() + " is missing in " + actualName;
+            } else if (!actualFailure.equals(entry.getValue())) {
+                difference = entry.getKey() + " " + (entry.getValue() ? "fails" : "passes") + " in " + expectedName
+                        + ", but " + (actualFailure ? "fails" : "passes") + " in " + actualName;
+            }
+            if (difference != null) {
+                break;
+            }
+        }
+        if (difference == null && actualFailures.size() != expectedFailures.size()) {
+            difference = actualName + " has " + actualFailures.size() + " tests, but " + expectedName + " has "
+                    + expectedFailures.size();
+        }
+        return difference;
+    }
+    
+    private void disableInProcessExecution(String reason) {
+        LOG.warning(() -> "Falling back to test driver processes, as tests can't be run in-process: " + reason);
+        inProcessExecution.close();
+        inProcessExecution = null;
+    }
+    
+    private Map<String, List<TestResult>> runShardsInParallel(List<Path> fullClasspath, Path classes,
+            List<List<String>> shards, RunState state) throws TestExecutionException {
+        
+        LOG.fine(() -> "Running test classes in " + shards.size() + " shards of sizes "
+                + shards.stream().map(List::size).toList());
+        
+        ExecutorService executor = getShardExecutor();
+        List<Future<Map<String, List<TestResult>>>> futures = new ArrayList<>(shards.size());
+        for (List<String> shard : shards) {
+            futures.add(executor.submit(() -> runShard(fullClasspath, classes, shard, state)));
+        }
+        
+        Map<String, List<TestResult>> resultsByClass = new HashMap<>();
+        TestExecutionException exception = null;
+        for (Future<Map<String, List<TestResult>>> future : futures) {
+            try {
+                resultsByClass.putAll(waitForShard(future));
+            } catch (TestExecutionException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+        return resultsByClass;
+    }
+    
+    private static <T> T waitForShard(Future<T> future) throws TestExecutionException {
+        while (true) {
+            try {
+                return future.get();
+            
+            } catch (InterruptedException e) {
+                // ignore, wait again
+            
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof TestExecutionException cause) {
+                    throw cause;
+                }
+                throw new TestExecutionException("Running test shard failed", e.getCause());
+            }
+        }
+    }
+    
+    /**
+     * Re-runs the given methods of a timed-out test class one by one, so that only the methods that actually hang are
+     * reported as timeouts. The test driver can only run whole test classes, so each method is run in a fresh JVM
+     * (see {@link TestMethodExecution}). Up to {@link Configuration.SetupConfiguration#testDriverProcesses()} methods
+     * are run in parallel; this limit is shared by all shards that re-run a class at the same time, so that parallel
+     * shards don't multiply the number of JVMs (see {@link #reserveRerunProcesses(int)}). Each method gets an equal
+     * share of the timeout of the class, but at least
+     * {@link Configuration.SetupConfiguration#adaptiveTimeoutMinimumMs()}.
+     * 
+     * @return The results of the test methods, where methods that timed out have a failure stacktrace of
+     *      <code>"Timeout"</code>; or the single timeout result of the class if it is not re-run.
+     */
+    private List<TestResult> rerunTimedOutClass(List<Path> fullClasspath, String className, Set<String> methods)
+            throws TestExecutionException {
+        
+        List<TestResult> result;
+        if (Configuration.INSTANCE.setup().rerunTimedOutTestClasses() && methods != null && methods.size() > 1) {
+            
+            long classTimeout = getTimeoutMs(className);
+            long methodTimeout = Math.min(classTimeout, Math.max(
+                    Configuration.INSTANCE.setup().adaptiveTimeoutMinimumMs(), classTimeout / methods.size()));
+            int numWorkers = reserveRerunProcesses(methods.size());
+            LOG.fine(() -> "Test class " + className + " timed out; re-running its " + methods.size()
+                    + " methods with a timeout of " + methodTimeout + " ms each in " + numWorkers + " processes");
+            evaluationStats.increaseTimedOutClassReruns();
+            
+            Queue<String> queue = new ConcurrentLinkedQueue<>(methods);
+            List<Future<List<TestResult>>> futures = new ArrayList<>(numWorkers);
+            result = new LinkedList<>();
+            TestExecutionException exception = null;
+            try {
+                for (int i = 0; i < numWorkers; i++) {
+                    futures.add(getShardExecutor().submit(
+                            () -> runMethodsFromQueue(fullClasspath, className, queue, methodTimeout)));
+                }
+                for (Future<List<TestResult>> future : futures) {
+                    try {
+                        result.addAll(waitForShard(future));
+                    } catch (TestExecutionException e) {
+                        // let the other workers finish early; their results are discarded anyway
+                        queue.clear();
+                        if (exception == null) {
+                            exception = e;
+                        } else {
+                            exception.addSuppressed(e);
+                        }
+                    }
+                }
+            } finally {
+                for (Future<List<TestResult>> future : futures) {
+                    future.cancel(true);
+                }
+                releaseRerunProcesses(numWorkers);
+            }
+            if (exception != null) {
+                throw exception;
+            }
+            
+        } else {
+            result = List.of(createTimeoutResult(className));
+        }
+        return result;
+    }
+    
+    /**
+     * Reserves up to the given number of processes for re-running the methods of a timed-out test class. All re-runs
+     * together use at most as many processes as there are test driver processes; if all are in use, this waits until
+     * another re-run releases its processes. The test driver of the shard that waits is idle meanwhile.
+     * 
+     * @return The number of reserved processes, at least 1. Must be given back with
+     *      {@link #releaseRerunProcesses(int)}.
+     */
+    private synchronized int reserveRerunProcesses(int wanted) {
+        int limit = getTestDriverProcesses();
+        while (rerunProcesses >= limit) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // ignore, wait again
+            }
+            limit = getTestDriverProcesses();
+        }
+        int reserved = Math.min(wanted, limit - rerunProcesses);
+        rerunProcesses += reserved;
+        return reserved;
+    }
+    
+    private synchronized void releaseRerunProcesses(int reserved) {
+        rerunProcesses -= reserved;
+        notifyAll();
+    }
+    
+    private List<TestResult> runMethodsFromQueue(List<Path> fullClasspath, String className, Queue<String> queue,
+            long timeoutMs) throws TestExecutionException {
+        
+        List<TestResult> result = new LinkedList<>();
+        for (String method = queue.poll(); method != null; method = queue.poll()) {
+            try {
+                result.addAll(testMethodExecution.run(fullClasspath, className, method, timeoutMs));
+            } catch (TestTimeoutException e) {
+                countTimeout(e);
+                result.add(createTimeoutResult(className, method));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the number of parallel test driver processes: as chosen by the {@link ConcurrencyTuner}, if enabled, or
+     * as configured.
+     */
+    private static int getTestDriverProcesses() {
+        int result;
+        if (Configuration.INSTANCE.setup().autotuneConcurrency()) {
+            result = ConcurrencyTuner.INSTANCE.getTestDriverProcesses();
+        } else {
+            result = Configuration.INSTANCE.setup().testDriverProcesses();
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the timeout for the given test class. If the expected duration of the class is known, the timeout is
+     * the expected duration times the adaptive timeout factor, but at least the adaptive timeout minimum. The global
+     * test execution timeout is always an upper bound.
+     */
+    long getTimeoutMs(String className) {
+        long timeout = Configuration.INSTANCE.setup().testExecutionTimeoutMs();
+        double factor = Configuration.INSTANCE.setup().adaptiveTimeoutFactor();
+        Long expectedDuration = expectedClassDurations.get(className);
+        if (factor > 0.0 && expectedDuration != null) {
+            long adaptiveTimeout = Math.max(Configuration.INSTANCE.setup().adaptiveTimeoutMinimumMs(),
+                    (long) (expectedDuration * factor));
+            timeout = Math.min(timeout, adaptiveTimeout);
+        }
+        return timeout;
+    }
+    
+    /**
+     * Distributes the given test classes to the given number of shards. The classes are assigned longest-first (based
+     * on the expected durations, or the historical durations if there is no expected duration) to the shard with the
+     * currently lowest total duration. Classes without a known duration are assumed to take as long as the average
+     * known class. Within each shard, the classes keep the order in which they are given.
+     */
+    List<List<String>> createShards(Collection<String> testClasses, int numShards) {
+        Map<String, Long> durations = new HashMap<>(historicalClassDurations);
+        durations.putAll(expectedClassDurations);
+        long defaultDuration = (long) durations.values().stream()
+                .mapToLong(Long::longValue)
+                .average()
+                .orElse(1);
+        
+        List<String> sorted = new ArrayList<>(testClasses);
+        sorted.sort(Comparator.comparingLong((String c) -> durations.getOrDefault(c, defaultDuration)).reversed());
+        
+        List<List<String>> shards = new ArrayList<>(numShards);
+        long[] shardDurations = new long[numShards];
+        for (int i = 0; i < numShards; i++) {
+            shards.add(new LinkedList<>());
+        }
+        for (String testClass : sorted) {
+            int smallest = 0;
+            for (int i = 1; i < numShards; i++) {
+                if (shardDurations[i] < shardDurations[smallest]) {
+                    smallest = i;
+                }
+            }
+            shards.get(smallest).add(testClass);
+            shardDurations[smallest] += durations.getOrDefault(testClass, defaultDuration);
+        }
+        
+        Map<String, Integer> order = new HashMap<>();
+        for (String testClass : testClasses) {
+            order.putIfAbsent(testClass, order.size());
+        }
+        for (List<String> shard : shards) {
+            shard.sort(Comparator.comparing(order::get));
+        }
+        return shards;
+    }
+    
+    /**
+     * Shared between the shards of a single test run, so that all shards stop once the {@link AbortCriterion} is
+     * fulfilled. Also holds the test methods selected for this run and collects the durations of the test classes.
+     */
+    private static class RunState {
+        
+        private AbortCriterion criterion;
+        
+        private Map<String, Set<String>> selectedMethods;
+        
+        private Map<String, Long> durations = new ConcurrentHashMap<>();
+        
+        private boolean aborted;
+        
+        RunState(AbortCriterion criterion, Map<String, Set<String>> selectedMethods) {
+            this.criterion = criterion;
+            this.selectedMethods = selectedMethods;
+        }
+        
+        synchronized void report(List<TestResult> results) {
+            if (criterion != null && !aborted) {
+                for (TestResult result : results) {
+                    if (criterion.shouldAbort(result)) {
+                        aborted = true;
+                        break;
+                    }
+                }
+            }
+        }
+        
+        synchronized boolean isAborted() {
+            return aborted;
+        }
+        
+    }
+    
+    private synchronized ExecutorService getShardExecutor() {
+        if (shardExecutor == null) {
+            AtomicInteger threadNumber = new AtomicInteger(1);
+            shardExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "test-shard-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return shardExecutor;
+    }
+    
+    /**
+     * Runs the given test class in a test driver process. The test driver can only run whole test classes, so if only
+     * some methods are selected, the results of the other methods are dropped afterwards.
+     */
+    private List<TestResult> runTestCatchingTimeout(TestExecution testExec, String className,
+            Set<String> selectedMethods) throws TestExecutionException {
+        List<TestResult> result;
+        try {
+            result = testExec.executeTestClass(className);
+            if (selectedMethods != null) {
+                result = result.stream()
+                        .filter(r -> selectedMethods.contains(r.getMethodIdentifier()))
+                        .toList();
+            }
+        
         } catch (TestTimeoutException e) {
-            executedTests.add(new TestResult(className, className, "<none>", "Timeout"));
+            countTimeout(e);
+            result = List.of(createTimeoutResult(className));
+        }
+        return result;
+    }
+    
+    private void countTimeout(TestTimeoutException exception) {
+        if (exception.isCpuTimeExceeded()) {
+            evaluationStats.increaseCpuTimeTimeouts();
+        } else {
+            evaluationStats.increaseWallClockTimeouts();
+        }
+    }
+    
+    private static TestResult createTimeoutResult(String className) {
+        return new TestResult(className, className, "<none>", "Timeout");
+    }
+    
+    private static TestResult createTimeoutResult(String className, String methodIdentifier) {
+        int atIndex = methodIdentifier.indexOf('@');
+        String implementingClass = atIndex != -1 ? methodIdentifier.substring(atIndex + 1) : className;
+        return new TestResult(className, implementingClass, TestResult.getMethodName(methodIdentifier), "Timeout");
+    }
+    
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (shardExecutor != null) {
+                shardExecutor.shutdownNow();
+            }
+        }
+        driverPool.close();
+        if (inProcessExecution != null) {
+            inProcessExecution.close();
         }
     }
     
@@ -0,0 +1,179 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import net.ssehub.program_repair.geneseer.Configuration;
+import net.ssehub.program_repair.geneseer.util.Measurement;
+import net.ssehub.program_repair.geneseer.util.Measurement.Probe;
+import net.ssehub.program_repair.geneseer.util.ProcessRunner;
+
+/**
+ * Compiles by writing the source files to the source directory and running a
+ * {@link Configuration.SetupConfiguration#javaCompilerBinaryPath() javac} process. Errors are parsed from the output
+ * of the process.
+ */
+class ProcessCompilerBackend implements CompilerBackend {
+    
+    private static final Logger LOG = Logger.getLogger(ProcessCompilerBackend.class.getName());
+    
+    private static final Pattern ERROR_HEADER_PATTERN
+            = Pattern.compile("^(?<filename>.+):(?<line>\\d+): error: (?<message>.+)$");
+    
+    private List<Path> classpath;
+    
+    private Charset encoding;
+    
+    private Path sourceDirectory;
+    
+    private Path outputDirectory;
+    
+    /**
+     * Creates a new process backend.
+     *
+     * @param classpath The classpath for compilation (in addition to the output directory).
+     * @param encoding The encoding to write the source files in.
+     * @param sourceDirectory The directory to write the source files to. This is also the working directory of the
+     *      compiler process.
+     * @param outputDirectory The directory to write the class files to.
+     */
+    ProcessCompilerBackend(List<Path> classpath, Charset encoding, Path sourceDirectory, Path outputDirectory) {
+        this.classpath = classpath;
+        this.encoding = encoding;
+        this.sourceDirectory = sourceDirectory;
+        this.outputDirectory = outputDirectory;
+    }
+    
+    @Override
+    public CompilationResult compile(List<SourceFile> sources, List<String> options) throws IOException {
+        return compile(sources, options, sourceDirectory, outputDirectory);
+    }
+    
+    /**
+     * Runs one <code>javac</code> process per job, as the compiler has no mode to compile independent sets of files.
+     */
+    @Override
+    public List<CompilationResult> compileBatch(List<BatchJob> jobs, List<String> options) throws IOException {
+        List<CompilationResult> results = new ArrayList<>(jobs.size());
+        for (BatchJob job : jobs) {
+            results.add(compile(job.sources(), options, job.sourceDirectory(), job.outputDirectory()));
+        }
+        return results;
+    }
+    
+    private CompilationResult compile(List<SourceFile> sources, List<String> options, Path workingDirectory,
+            Path targetDirectory) throws IOException {
+        for (SourceFile source : sources) {
+            Path file = workingDirectory.resolve(source.path());
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, source.content(), encoding);
+        }
+        
+        List<String> command = buildCommand(sources, options, targetDirectory);
+        LOG.finer(() -> {
+            String log;
+            if (command.size() <= 10) {
+                log = "Running " + command;
+            } else {
+                log = "Running " + Stream.concat(command.stream().limit(10), Stream.of("<...>")).toList();
+            }
+            return log;
+        });
+        ProcessRunner process;
+        try (Probe javacProbe = Measurement.INSTANCE.start(
+                command.stream().anyMatch(o -> o.startsWith("-J-XX:SharedArchiveFile="))
+                ? "javac process (CDS)" : "javac process")) {
+            process = new ProcessRunner.Builder(command)
+                    .workingDirectory(workingDirectory)
+                    .captureOutput(true)
+                    .run();
+        }
+        
+        String stderr = new String(process.getStderr());
+        List<CompilationError> errors = parseOutput(stderr);
+        return new CompilationResult(process.getExitCode() == 0 && errors.isEmpty(), errors, stderr);
+    }
+    
+    static List<CompilationError> parseOutput(String stderr) {
+        List<CompilationError> errors = new LinkedList<>();
+        
+        String file = null;
+        long line = -1;
+        StringBuilder message = null;
+        for (String outputLine : stderr.split("\n")) {
+            Matcher m = ERROR_HEADER_PATTERN.matcher(outputLine);
+            if (m.matches()) {
+                if (message != null) {
+                    errors.add(new CompilationError(Path.of(file), line, message.toString()));
+                }
+                file = m.group("filename");
+                line = Long.parseLong(m.group("line"));
+                message = new StringBuilder(m.group("message"));
+            } else if (message != null) {
+                if (!outputLine.isBlank() && Character.isWhitespace(outputLine.charAt(0))) {
+                    message.append("\n    ").append(outputLine);
+                } else {
+                    errors.add(new CompilationError(Path.of(file), line, message.toString()));
+                    message = null;
+                }
+            }
+        }
+        if (message != null) {
+            errors.add(new CompilationError(Path.of(file), line, message.toString()));
+        }
+        
+        return errors;
+    }
+    
+    private List<String> buildCommand(List<SourceFile> sources, List<String> options, Path targetDirectory)
+            throws IOException {
+        List<String> command = new LinkedList<>();
+        command.add(Configuration.INSTANCE.setup().javaCompilerBinaryPath());
+        
+        if (Configuration.INSTANCE.setup().autotuneConcurrency()) {
+            ConcurrencyTuner.INSTANCE.getCompilerJvmOptions().stream()
+                    .map(option -> "-J" + option)
+                    .forEach(command::add);
+        }
+        if (Configuration.INSTANCE.setup().classDataSharing()) {
+            ClassDataSharing.createJvmOptions(Configuration.INSTANCE.setup().javacJvmOptions(),
+                    ClassDataSharing.INSTANCE.getJavacArchive()).stream()
+                    .map(option -> "-J" + option)
+                    .forEach(command::add);
+        }
+        
+        command.addAll(options);
+        
+        command.add("-d");
+        command.add(targetDirectory.toString());
+        
+        // always set, as the default classpath is the working directory with possibly outdated source files
+        command.add("-cp");
+        command.add(Stream.concat(Stream.of(outputDirectory), classpath.stream())
+                .map(Path::toString)
+                .collect(Collectors.joining(File.pathSeparator)));
+        
+        sources.stream()
+                .map(SourceFile::path)
+                .map(Path::toString)
+                .forEach(command::add);
+        
+        return command;
+    }
+    
+    @Override
+    public void close() {
+    }
+    
+}
@@ -1,11 +1,11 @@
 package net.ssehub.program_repair.geneseer.evaluation;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -17,21 +17,32 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import net.ssehub.program_repair.geneseer.Configuration;
+import net.ssehub.program_repair.geneseer.Configuration.SetupConfiguration.CompilerBackendType;
+import net.ssehub.program_repair.geneseer.Result.EvaluationStats;
 import net.ssehub.program_repair.geneseer.code.Node;
 import net.ssehub.program_repair.geneseer.code.Node.Metadata;
 import net.ssehub.program_repair.geneseer.code.Writer;
+import net.ssehub.program_repair.geneseer.evaluation.CompilerBackend.BatchJob;
+import net.ssehub.program_repair.geneseer.evaluation.CompilerBackend.CompilationError;
+import net.ssehub.program_repair.geneseer.evaluation.CompilerBackend.CompilationResult;
+import net.ssehub.program_repair.geneseer.evaluation.CompilerBackend.SourceFile;
 import net.ssehub.program_repair.geneseer.util.Measurement;
 import net.ssehub.program_repair.geneseer.util.Measurement.Probe;
 import net.ssehub.program_repair.geneseer.util.ProcessRunner;
+import net.ssehub.program_repair.geneseer.util.TemporaryDirectoryManager;
 
-class ProjectCompiler {
+class ProjectCompiler implements AutoCloseable {
     
     private static final Logger LOG = Logger.getLogger(ProjectCompiler.class.getName());
     
+    /**
+     * The maximum number of times that dependent files are compiled after an ABI change, before all files are
+     * compiled instead. Usually, the ABI changes settle after one or two rounds.
+     */
+    private static final int MAX_DEPENDENT_ROUNDS = 5;
+    
     private static int javacVersion = 0;
     
     private List<Path> classpath;
@@ -40,21 +51,118 @@ class ProjectCompiler {
     
     private List<String> additionalOptions = Collections.emptyList();
     
-    private Path sourceDirectory;
-    
     private Path outputDirectory;
     
+    private CompilerBackend backend;
+    
     private boolean logResult;
     
     private Node previousWrittenAst;
     
-    public ProjectCompiler(List<Path> classpath, Charset encoding, Path sourceDirectory, Path outputDirectory) {
+    private EvaluationStats evaluationStats;
+    
+    private ClassFileCache classFileCache;
+    
+    private CompiledUnitIndex unitIndex;
+    
+    private String classpathFingerprint;
+    
+    private TemporaryDirectoryManager tempDirManager = new TemporaryDirectoryManager();
+    
+    private int compilerRuns;
+    
+    private long compilerRunTotalMs;
+    
+    public ProjectCompiler(List<Path> classpath, Charset encoding, Path sourceDirectory, Path outputDirectory,
+            EvaluationStats evaluationStats) throws IOException {
         this.classpath = classpath;
         this.encoding = encoding;
-        this.sourceDirectory = sourceDirectory;
         this.outputDirectory = outputDirectory;
+        this.evaluationStats = evaluationStats;
+        this.unitIndex = new CompiledUnitIndex(outputDirectory);
         
         LOG.info(() -> "Java compiler version: " + getJavacVersion());
+        this.backend = createBackend(classpath, sourceDirectory, evaluationStats);
+        
+        String cacheDirectory = Configuration.INSTANCE.setup().classFileCacheDirectory();
+        long cacheMaxBytes = Configuration.INSTANCE.setup().classFileCacheMaxMb() * 1024L * 1024L;
+        if (cacheDirectory != null) {
+            this.classFileCache = ClassFileCache.open(Path.of(cacheDirectory), cacheMaxBytes);
+        } else if (Configuration.INSTANCE.genetic().compilationBatchSize() > 1) {
+            // batch results are handed to compile() through the cache
+            this.classFileCache = ClassFileCache.open(tempDirManager.createTemporaryDirectory(), cacheMaxBytes);
+        }
+        if (classFileCache != null) {
+            this.classpathFingerprint = computeClasspathFingerprint(classpath);
+        }
+    }
+    
+    /**
+     * Creates a compiler for a second workspace, with its own source and output directory, but with the same settings
+     * as the given compiler. Both compilers share the {@link ClassFileCache} of the given compiler, so that class files
+     * compiled in one workspace can be restored in the other.
+     *
+     * @param template The compiler of the first workspace.
+     * @param sourceDirectory The source directory of the new workspace.
+     * @param outputDirectory The output directory of the new workspace.
+     *
+     * @throws IOException If creating the compiler backend fails.
+     */
+    public ProjectCompiler(ProjectCompiler template, Path sourceDirectory, Path outputDirectory) throws IOException {
+        this.classpath = template.classpath;
+        this.encoding = template.encoding;
+        this.additionalOptions = template.additionalOptions;
+        this.outputDirectory = outputDirectory;
+        this.evaluationStats = template.evaluationStats;
+        this.unitIndex = new CompiledUnitIndex(outputDirectory);
+        this.backend = createBackend(classpath, sourceDirectory, evaluationStats);
+        this.classFileCache = template.classFileCache;
+        this.classpathFingerprint = template.classpathFingerprint;
+    }
+    
+    /**
+     * Computes a fingerprint of the compiler and the classpath, which is part of the environment of each compilation
+     * unit for the {@link ClassFileCache}.
+     */
+    private static String computeClasspathFingerprint(List<Path> classpath) throws IOException {
+        StringBuilder fingerprint = new StringBuilder();
+        fingerprint.append(Configuration.INSTANCE.setup().javaCompilerBinaryPath()).append(' ')
+                .append(getJavacVersion()).append('\n');
+        for (Path element : classpath) {
+            fingerprint.append(element.toAbsolutePath());
+            if (Files.isRegularFile(element)) {
+                fingerprint.append(' ').append(Files.size(element))
+                        .append(' ').append(Files.getLastModifiedTime(element).toMillis());
+            }
+            fingerprint.append('\n');
+        }
+        return CompiledUnitIndex.hash(fingerprint.toString());
+    }
+    
+    private CompilerBackend createBackend(List<Path> classpath, Path sourceDirectory, EvaluationStats evaluationStats)
+            throws IOException {
+        CompilerBackend result = null;
+        CompilerBackendType type = Configuration.INSTANCE.setup().compilerBackend();
+        if (type == CompilerBackendType.WORKER) {
+            result = new JavacWorkerBackend(classpath, outputDirectory, evaluationStats);
+        
+        } else if (type == CompilerBackendType.IN_PROCESS) {
+            int runtimeVersion = Runtime.version().feature();
+            if (getJavacVersion() != runtimeVersion) {
+                LOG.warning(() -> "Java compiler version " + getJavacVersion() + " differs from running JVM version "
+                        + runtimeVersion + "; using compiler process instead of in-process compiler");
+            } else {
+                result = InProcessCompilerBackend.create(classpath, encoding, outputDirectory);
+                if (result == null) {
+                    LOG.warning("Running JVM provides no Java compiler; using compiler process instead");
+                }
+            }
+        }
+        if (result == null) {
+            result = new ProcessCompilerBackend(classpath, encoding, sourceDirectory, outputDirectory);
+        }
+        LOG.info("Using " + result.getClass().getSimpleName());
+        return result;
     }
     
     public static int getJavacVersion() {
@@ -72,32 +180,46 @@ class ProjectCompiler {
                 }
                 String o = output;
                 LOG.fine(() -> "`" + javac + " -version` output: " + o.trim());
-                Pattern versionPattern = Pattern.compile("(?<major>[0-9]+)\\.(?<minor>[0-9]+)\\.(?<patch>[0-9]+)");
-                Matcher m = versionPattern.matcher(output);
-                if (m.find()) {
-                    int major = Integer.parseInt(m.group("major"));
-                    int minor = Integer.parseInt(m.group("minor"));
-                    if (major == 1) {
-                        javacVersion = minor;
-                    } else {
-                        javacVersion = major;
-                    }
-                    
-                } else {
+                javacVersion = parseJavaVersion(output);
+                if (javacVersion == -1) {
                     LOG.severe("Invalid `" + javac + " -version` output: " + output);
-                    javacVersion = -1;
                 }
             } catch (IOException e) {
                 LOG.log(Level.SEVERE, "Failed to run `" + javac + " -version`", e);
                 javacVersion = -1;
-            } catch (NumberFormatException e) {
-                LOG.log(Level.SEVERE, "Failed to parse javac version: " + output, e);
-                javacVersion = -1;
             }
         }
         return javacVersion;
     }
     
+    /**
+     * Parses the major Java version from the output of <code>java -version</code> or <code>javac -version</code>.
+     * 
+     * @param output The version output.
+     * 
+     * @return The major version (e.g. <code>8</code> for <code>1.8.0</code>), or <code>-1</code> if the output
+     *      contains no version.
+     */
+    static int parseJavaVersion(String output) {
+        int version = -1;
+        Pattern versionPattern = Pattern.compile("(?<major>[0-9]+)\\.(?<minor>[0-9]+)\\.(?<patch>[0-9]+)");
+        Matcher m = versionPattern.matcher(output);
+        if (m.find()) {
+            try {
+                int major = Integer.parseInt(m.group("major"));
+                int minor = Integer.parseInt(m.group("minor"));
+                if (major == 1) {
+                    version = minor;
+                } else {
+                    version = major;
+                }
+            } catch (NumberFormatException e) {
+                LOG.log(Level.SEVERE, "Failed to parse Java version: " + output, e);
+            }
+        }
+        return version;
+    }
+    
     public void setAdditionalOptions(List<String> additionalOptions) {
         this.additionalOptions = additionalOptions;
     }
@@ -105,147 +227,429 @@ class ProjectCompiler {
     public Path getOutputDirectory() {
         return outputDirectory;
     }
-
+    
     public void setLogResultToInfo(boolean logResult) {
         this.logResult = logResult;
     }
-
+    
+    /**
+     * Compiles the given AST into the output directory. Only the files that changed since the last compilation are
+     * compiled, unless the set of files changed. If this changes the ABI of some classes, the files that depend on
+     * these classes are compiled again afterwards, until no more ABIs change (see
+     * {@link CompiledUnitIndex#getDependents(Map, java.util.Collection)}).
+     *
+     * @param ast The AST to compile.
+     *
+     * @throws CompilationException If compilation fails.
+     */
     public void compile(Node ast) throws CompilationException {
         try (Probe probe = Measurement.INSTANCE.start("compilation")) {
-            Set<Path> filesToCompile = writeModifiedFiles(ast);
-            if (!filesToCompile.isEmpty()) {
-                List<String> command = buildCommand(filesToCompile);
-                
-                LOG.finer(() -> {
-                    String log;
-                    if (command.size() <= 10) {
-                        log = "Running " + command;
-                    } else {
-                        log = "Running " + Stream.concat(command.stream().limit(10), Stream.of("<...>")).toList();
+            List<SourceFile> modifiedFiles = getModifiedFiles(ast);
+            if (!modifiedFiles.isEmpty()) {
+                List<String> options = getCompilerOptions();
+                List<SourceFile> filesToCompile = modifiedFiles;
+                int numDependents = 0;
+                int round = 0;
+                while (!filesToCompile.isEmpty()) {
+                    List<Path> paths = filesToCompile.stream().map(SourceFile::path).toList();
+                    Map<String, CompiledUnitIndex.ClassInfo> previousClasses = unitIndex.getClasses(paths);
+                    compileFiles(ast, filesToCompile, options);
+                    round++;
+                    
+                    Set<Path> dependents = unitIndex.getDependents(previousClasses, paths);
+                    if (round >= MAX_DEPENDENT_ROUNDS && !dependents.isEmpty()) {
+                        LOG.warning(() -> "ABI changes did not settle after " + MAX_DEPENDENT_ROUNDS
+                                + " rounds, compiling all files");
+                        dependents = getFilePaths(ast);
                     }
-                    return log;
-                });
-                ProcessRunner process = new ProcessRunner.Builder(command)
-                        .workingDirectory(sourceDirectory)
-                        .captureOutput(true)
-                        .run();
-                
-                String stderr = new String(process.getStderr());
-                List<String> errors = parseOutput(stderr);
-                boolean success = process.getExitCode() == 0 && errors.isEmpty();
-                String resultMessage = "Compilation " + (success ? "" : "not ") + "successful ("
-                        + errors.size() + " errors)";
+                    filesToCompile = getSourceFiles(ast, dependents);
+                    numDependents += filesToCompile.size();
+                }
                 
-                LOG.log(logResult ? Level.INFO : Level.FINE, resultMessage);
-                if (logResult && !success) {
-                    if (!errors.isEmpty()) {
-                        for (String error : errors) {
-                            for (String line : error.split("\n")) {
-                                LOG.info(line);
-                            }
-                        }
-                    } else if (!stderr.isBlank()) {
-                        for (String line : stderr.split("\n")) {
-                            LOG.info(line);
-                        }
+                boolean full = modifiedFiles.size() == ast.childCount();
+                evaluationStats.addCompiledFiles(full, modifiedFiles.size(), numDependents);
+                int d = numDependents;
+                int r = round;
+                LOG.log(logResult ? Level.INFO : Level.FINE, () -> "Compiled " + modifiedFiles.size()
+                        + (full ? " (all)" : "") + " modified files and " + d + " dependent files in " + r
+                        + " rounds");
+            }
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Failed to run compiler", e);
+            previousWrittenAst = null;
+            throw new CompilationException("Failed to run compiler", e);
+        }
+    }
+    
+    private List<String> getCompilerOptions() {
+        List<String> options = new LinkedList<>();
+        options.add("-nowarn");
+        options.add("-encoding");
+        options.add(encoding.toString());
+        options.addAll(additionalOptions);
+        return options;
+    }
+    
+    /**
+     * Compiles the given files, or restores them from the {@link ClassFileCache}, and updates the
+     * {@link CompiledUnitIndex}.
+     */
+    private void compileFiles(Node ast, List<SourceFile> files, List<String> options)
+            throws IOException, CompilationException {
+        if (!restoreFromCache(ast, files, options)) {
+            long t0 = System.currentTimeMillis();
+            CompilationResult result = backend.compile(files, options);
+            long durationMs = System.currentTimeMillis() - t0;
+            compilerRuns++;
+            compilerRunTotalMs += durationMs;
+            evaluationStats.addCompilerRun(durationMs);
+            
+            String resultMessage = "Compilation " + (result.success() ? "" : "not ") + "successful ("
+                    + result.errors().size() + " errors)";
+            logResult(resultMessage, result.success(), result.errors(), result.output());
+            
+            unitIndex.update(files.stream().map(SourceFile::path).toList());
+            storeInCache(ast, unitIndex, files, options, result);
+            
+            if (!result.success()) {
+                throw new CompilationException(resultMessage, result.errors());
+            }
+        }
+    }
+    
+    /**
+     * Compiles the given variants in one batch, ahead of their {@link #compile(Node) compilation} for evaluation. For
+     * each variant, the files that differ from the last compiled AST are compiled into a separate temporary output
+     * directory, against the class files of the last compiled AST. The results are stored in the
+     * {@link ClassFileCache}, from which {@link #compile(Node)} later restores them instead of compiling. Variants with
+     * a different set of files and variants whose files are all in the cache already are skipped.
+     * <p>
+     * This does nothing if there is no class file cache or no AST was compiled yet.
+     *
+     * @param variants The ASTs of the variants.
+     *
+     * @return For each variant, the exception with its compilation errors, or <code>null</code> if it was compiled
+     *      successfully or skipped.
+     */
+    public List<CompilationException> compileBatch(List<Node> variants) {
+        List<CompilationException> results = new ArrayList<>(Collections.nCopies(variants.size(), null));
+        if (previousWrittenAst != null && classFileCache != null) {
+            List<BatchJob> jobs = new ArrayList<>();
+            try (Probe probe = Measurement.INSTANCE.start("compilation batch")) {
+                List<String> options = getCompilerOptions();
+                List<Integer> jobVariants = new ArrayList<>();
+                for (int i = 0; i < variants.size(); i++) {
+                    List<SourceFile> files = getFilesToCompileInBatch(variants.get(i), options);
+                    if (!files.isEmpty()) {
+                        jobVariants.add(i);
+                        jobs.add(new BatchJob(files, tempDirManager.createTemporaryDirectory(),
+                                tempDirManager.createTemporaryDirectory()));
                     }
                 }
                 
-                if (!success) {
-                    throw new CompilationException(resultMessage);
+                if (!jobs.isEmpty()) {
+                    long t0 = System.currentTimeMillis();
+                    List<CompilationResult> compiled = backend.compileBatch(jobs, options);
+                    logBatchTiming(jobs, System.currentTimeMillis() - t0);
+                    for (int i = 0; i < jobs.size(); i++) {
+                        results.set(jobVariants.get(i), storeBatchResult(jobs.get(i), compiled.get(i), options));
+                    }
                 }
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to compile batch; variants are compiled separately", e);
+            } finally {
+                deleteBatchDirectories(jobs);
             }
-        } catch (IOException e) {
-            LOG.log(Level.SEVERE, "Failed to run compiler process", e);
-            throw new CompilationException("Failed to run compiler process", e);
         }
+        return results;
     }
-
-    private List<String> parseOutput(String stderr) {
-        Pattern errorHeaderPattern = Pattern.compile("^(?<filename>.+):(?<line>\\d+): error: (?<message>.+)$");
-        List<String> errors = new LinkedList<>();
+    
+    /**
+     * Returns the files of the given variant that need to be compiled in a batch, or an empty list if the variant
+     * should be skipped.
+     */
+    private List<SourceFile> getFilesToCompileInBatch(Node variant, List<String> options) throws IOException {
+        List<SourceFile> files = List.of();
+        if (getFilePaths(variant).equals(getFilePaths(previousWrittenAst))) {
+            files = getDifferingFiles(previousWrittenAst, variant);
+            boolean allCached = true;
+            for (SourceFile file : files) {
+                if (classFileCache.get(getCacheKey(file, options)) == null) {
+                    allCached = false;
+                }
+            }
+            if (allCached) {
+                files = List.of();
+            }
+        }
+        return files;
+    }
+    
+    private void logBatchTiming(List<BatchJob> jobs, long durationMs) {
+        evaluationStats.addBatchCompilerRun(jobs.size(), durationMs);
+        int numFiles = jobs.stream().mapToInt(job -> job.sources().size()).sum();
+        String separate = compilerRuns > 0
+                ? "; separate compilations took " + compilerRunTotalMs / compilerRuns + " ms on average"
+                : "";
+        LOG.fine(() -> "Compiled batch of " + jobs.size() + " variants (" + numFiles + " files) in " + durationMs
+                + " ms, " + durationMs / jobs.size() + " ms per variant" + separate);
+    }
+    
+    private CompilationException storeBatchResult(BatchJob job, CompilationResult result, List<String> options)
+            throws IOException {
+        String resultMessage = "Compilation " + (result.success() ? "" : "not ") + "successful ("
+                + result.errors().size() + " errors, in batch)";
+        logResult(resultMessage, result.success(), result.errors(), result.output());
+        
+        CompiledUnitIndex batchIndex = new CompiledUnitIndex(job.outputDirectory());
+        batchIndex.update(job.sources().stream().map(SourceFile::path).toList());
+        storeInCache(previousWrittenAst, batchIndex, job.sources(), options, result);
         
-        StringBuilder currentError = null;
-        for (String outputLine : stderr.split("\n")) {
-            Matcher m = errorHeaderPattern.matcher(outputLine);
-            if (m.matches()) {
-                if (currentError != null) {
-                    errors.add(currentError.toString());
+        return result.success() ? null : new CompilationException(resultMessage, result.errors());
+    }
+    
+    private void deleteBatchDirectories(List<BatchJob> jobs) {
+        for (BatchJob job : jobs) {
+            try {
+                tempDirManager.deleteTemporaryDirectory(job.sourceDirectory());
+                tempDirManager.deleteTemporaryDirectory(job.outputDirectory());
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to delete temporary batch directories", e);
+            }
+        }
+    }
+    
+    private void logResult(String resultMessage, boolean success, List<CompilationError> errors, String output) {
+        LOG.log(logResult ? Level.INFO : Level.FINE, resultMessage);
+        if (logResult && !success) {
+            if (!errors.isEmpty()) {
+                for (CompilationError error : errors) {
+                    for (String line : error.toString().split("\n")) {
+                        LOG.info(line);
+                    }
                 }
-                currentError = new StringBuilder("Error in file ")
-                        .append(m.group("filename"))
-                        .append(" line ")
-                        .append(m.group("line"))
-                        .append(": ")
-                        .append(m.group("message"));
-            } else if (currentError != null) {
-                if (!outputLine.isBlank() && Character.isWhitespace(outputLine.charAt(0))) {
-                    currentError.append("\n    ").append(outputLine);
-                } else {
-                    errors.add(currentError.toString());
-                    currentError = null;
+            } else if (!output.isBlank()) {
+                for (String line : output.split("\n")) {
+                    LOG.info(line);
                 }
             }
         }
-        if (currentError != null) {
-            errors.add(currentError.toString());
-            currentError = null;
+    }
+    
+    /**
+     * Tries to restore the class files of all given files from the {@link ClassFileCache}, instead of compiling them.
+     * This is only possible if all files are in the cache, and each of them was compiled in the same environment as
+     * now (i.e. with the same ABI of all other files, including the other cached ones).
+     *
+     * @return Whether the class files were restored.
+     *
+     * @throws CompilationException If the cache contains a compilation failure for one of the files, in the same
+     *      environment as now.
+     */
+    private boolean restoreFromCache(Node ast, List<SourceFile> files, List<String> options)
+            throws CompilationException {
+        boolean restored = false;
+        if (classFileCache != null) {
+            try {
+                Map<SourceFile, ClassFileCache.Entry> entries = new HashMap<>();
+                for (SourceFile file : files) {
+                    ClassFileCache.Entry entry = classFileCache.get(getCacheKey(file, options));
+                    if (entry != null) {
+                        entries.put(file, entry);
+                    }
+                }
+                if (entries.size() == files.size()) {
+                    Map<SourceFile, ClassFileCache.Entry> unchanged = getUnchangedEnvironments(ast, entries, options);
+                    throwKnownFailure(unchanged);
+                    if (unchanged.size() == entries.size()) {
+                        restoreEntries(entries, options);
+                        restored = true;
+                    }
+                }
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to read from class file cache", e);
+            }
         }
+        return restored;
+    }
+    
+    /**
+     * Returns the entries that were compiled in the same environment as now. The ABI of a failed entry is unknown, so
+     * if there is one, only the failed entries can have the same environment.
+     */
+    private Map<SourceFile, ClassFileCache.Entry> getUnchangedEnvironments(Node ast,
+            Map<SourceFile, ClassFileCache.Entry> entries, List<String> options) {
+        Map<Path, String> abis = getCurrentAbis(ast);
+        entries.forEach((file, entry) -> abis.put(file.path(), entry.abi()));
         
-        return errors;
+        Map<SourceFile, ClassFileCache.Entry> unchanged = new HashMap<>();
+        for (Map.Entry<SourceFile, ClassFileCache.Entry> entry : entries.entrySet()) {
+            String environment = CompiledUnitIndex.computeEnvironmentAbi(abis, entry.getKey().path(),
+                    getEnvironmentPrefix(options));
+            if (entry.getValue().environmentAbi().equals(environment)) {
+                unchanged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return unchanged;
     }
     
-    private Set<Path> writeModifiedFiles(Node newAst) throws CompilationException {
-        Set<Path> modifiedFiles;
+    private void throwKnownFailure(Map<SourceFile, ClassFileCache.Entry> entries) throws CompilationException {
+        List<CompilationError> knownErrors = new LinkedList<>();
+        for (ClassFileCache.Entry entry : entries.values()) {
+            if (entry.isFailure()) {
+                entry.errors().stream().map(ClassFileCache.StoredError::toCompilationError).forEach(knownErrors::add);
+            }
+        }
+        if (!knownErrors.isEmpty()) {
+            evaluationStats.increaseKnownCompilationFailures();
+            String resultMessage = "Compilation not successful (" + knownErrors.size() + " errors, known from cache)";
+            logResult(resultMessage, false, knownErrors, "");
+            throw new CompilationException(resultMessage, knownErrors);
+        }
+    }
     
-        try {
-            if (previousWrittenAst == null || !getFilePaths(newAst).equals(getFilePaths(previousWrittenAst))) {
-                deleteAllClassFiles(outputDirectory);
-                Writer.write(newAst, sourceDirectory, encoding);
-                modifiedFiles = Files.walk(sourceDirectory)
-                        .filter(Files::isRegularFile)
-                        .map(p -> sourceDirectory.relativize(p))
-                        .filter(file -> file.getFileName().toString().endsWith(".java"))
-                        .collect(Collectors.toSet());
-                if (previousWrittenAst == null) {
-                    LOG.fine(() -> "Initially compiling all " + modifiedFiles.size() + " files in source tree: "
-                            + modifiedFiles);
-                } else {
-                    LOG.fine(() -> "File name set changed, compiling all " + modifiedFiles.size()
-                            + " files in source tree: " + modifiedFiles);
+    private void restoreEntries(Map<SourceFile, ClassFileCache.Entry> entries, List<String> options)
+            throws IOException {
+        for (Map.Entry<SourceFile, ClassFileCache.Entry> entry : entries.entrySet()) {
+            Path path = entry.getKey().path();
+            CompiledUnitIndex.Unit previous = unitIndex.get(path);
+            if (previous != null) {
+                for (Path classFile : previous.classFiles()) {
+                    Files.deleteIfExists(outputDirectory.resolve(classFile));
                 }
-                
-            } else {
-                Map<Path, Node> previousFilesByPath = new HashMap<>();
-                for (Node fileNode : previousWrittenAst.childIterator()) {
-                    previousFilesByPath.put((Path) fileNode.getMetadata(Metadata.FILE_NAME), fileNode);
+            }
+            classFileCache.restore(getCacheKey(entry.getKey(), options), entry.getValue(), outputDirectory);
+        }
+        unitIndex.update(entries.keySet().stream().map(SourceFile::path).toList());
+        evaluationStats.increaseClassFileCacheHits(entries.size());
+        LOG.log(logResult ? Level.INFO : Level.FINE, () -> "Restored class files of " + entries.size()
+                + " files from class file cache");
+    }
+    
+    /**
+     * Stores the result of compiling the given files in the {@link ClassFileCache}. Failures are only stored if a
+     * single file was compiled, as otherwise the environment of the failing file is not known.
+     *
+     * @param ast The AST that the files were compiled against; the ABIs of its other files are taken from the
+     *      {@link CompiledUnitIndex} of the output directory.
+     * @param index The index of the directory that the files were compiled into.
+     */
+    private void storeInCache(Node ast, CompiledUnitIndex index, List<SourceFile> files, List<String> options,
+            CompilationResult result) {
+        if (classFileCache != null) {
+            evaluationStats.increaseClassFileCacheMisses(files.size());
+            try {
+                // without errors, the compiler could not be run, which may work next time
+                boolean knownFailure = !result.success() && !result.errors().isEmpty();
+                Map<Path, String> abis = getCurrentAbis(ast);
+                for (SourceFile file : files) {
+                    abis.put(file.path(), index.get(file.path()).abi());
                 }
-                
-                modifiedFiles = new HashSet<>();
-                for (int i = 0; i < newAst.childCount(); i++) {
-                    Node newFile = newAst.get(i);
-                    Path path = (Path) newFile.getMetadata(Metadata.FILE_NAME);
-                    if (!newFile.contentEquals(previousFilesByPath.get(path))) {
-                        Writer.writeSingleFile(newFile, sourceDirectory, encoding);
-                        modifiedFiles.add(path);
+                for (SourceFile file : files) {
+                    String environment = CompiledUnitIndex.computeEnvironmentAbi(abis, file.path(),
+                            getEnvironmentPrefix(options));
+                    CompiledUnitIndex.Unit unit = index.get(file.path());
+                    if (environment != null && result.success() && unit.abi() != null) {
+                        classFileCache.putSuccess(getCacheKey(file, options), environment, unit.abi(),
+                                index.getOutputDirectory(), unit.classFiles());
+                    } else if (environment != null && knownFailure && files.size() == 1) {
+                        classFileCache.putFailure(getCacheKey(file, options), environment, result.errors());
                     }
                 }
-                
-                LOG.fine(() -> modifiedFiles.isEmpty()
-                        ? ("No files modified, no compilation necessary")
-                        : ("Only compiling " + modifiedFiles.size() + " modified files: " + modifiedFiles));
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to store in class file cache", e);
             }
+        }
+    }
+    
+    private Map<Path, String> getCurrentAbis(Node ast) {
+        Map<Path, String> abis = new HashMap<>();
+        for (Node fileNode : ast.childIterator()) {
+            Path path = (Path) fileNode.getMetadata(Metadata.FILE_NAME);
+            CompiledUnitIndex.Unit unit = unitIndex.get(path);
+            abis.put(path, unit != null ? unit.abi() : null);
+        }
+        return abis;
+    }
+    
+    private String getEnvironmentPrefix(List<String> options) {
+        return classpathFingerprint + " " + options;
+    }
+    
+    private String getCacheKey(SourceFile file, List<String> options) {
+        return CompiledUnitIndex.hash(getEnvironmentPrefix(options) + "\n" + file.path() + "\n" + file.content());
+    }
+    
+    /**
+     * Determines the files that need to be compiled for the given AST: all files, if the set of files changed since
+     * the last compilation, otherwise only the files that differ from the last compiled AST.
+     */
+    private List<SourceFile> getModifiedFiles(Node newAst) throws IOException {
+        List<SourceFile> modifiedFiles = new LinkedList<>();
+        
+        if (previousWrittenAst == null || !getFilePaths(newAst).equals(getFilePaths(previousWrittenAst))) {
+            deleteAllClassFiles(outputDirectory);
+            unitIndex.clear();
+            for (Node fileNode : newAst.childIterator()) {
+                modifiedFiles.add(toSourceFile(fileNode));
+            }
+            if (previousWrittenAst == null) {
+                LOG.fine(() -> "Initially compiling all " + modifiedFiles.size() + " files in source tree: "
+                        + modifiedFiles.stream().map(SourceFile::path).toList());
+            } else {
+                LOG.fine(() -> "File name set changed, compiling all " + modifiedFiles.size()
+                        + " files in source tree: " + modifiedFiles.stream().map(SourceFile::path).toList());
+            }
+        
+        } else {
+            modifiedFiles.addAll(getDifferingFiles(previousWrittenAst, newAst));
             
-        } catch (IOException e) {
-            LOG.log(Level.SEVERE, "Failed to run compiler process", e);
-            previousWrittenAst = null;
-            throw new CompilationException("Failed to write source files", e);
+            LOG.fine(() -> modifiedFiles.isEmpty()
+                    ? ("No files modified, no compilation necessary")
+                    : ("Only compiling " + modifiedFiles.size() + " modified files: "
+                            + modifiedFiles.stream().map(SourceFile::path).toList()));
         }
         
         previousWrittenAst = newAst;
         return modifiedFiles;
     }
-
+    
+    /**
+     * Returns the files of the new AST whose content differs from the same file in the previous AST.
+     */
+    private List<SourceFile> getDifferingFiles(Node previousAst, Node newAst) {
+        Map<Path, Node> previousFilesByPath = new HashMap<>();
+        for (Node fileNode : previousAst.childIterator()) {
+            previousFilesByPath.put((Path) fileNode.getMetadata(Metadata.FILE_NAME), fileNode);
+        }
+        
+        List<SourceFile> result = new LinkedList<>();
+        for (Node newFile : newAst.childIterator()) {
+            Path path = (Path) newFile.getMetadata(Metadata.FILE_NAME);
+            if (!newFile.contentEquals(previousFilesByPath.get(path))) {
+                result.add(toSourceFile(newFile));
+            }
+        }
+        return result;
+    }
+    
+    private List<SourceFile> getSourceFiles(Node ast, Set<Path> paths) {
+        List<SourceFile> result = new LinkedList<>();
+        if (!paths.isEmpty()) {
+            for (Node fileNode : ast.childIterator()) {
+                if (paths.contains(fileNode.getMetadata(Metadata.FILE_NAME))) {
+                    result.add(toSourceFile(fileNode));
+                }
+            }
+        }
+        return result;
+    }
+    
+    private SourceFile toSourceFile(Node fileNode) {
+        return new SourceFile((Path) fileNode.getMetadata(Metadata.FILE_NAME),
+                Writer.toFileContent(fileNode, encoding));
+    }
+    
     private static void deleteAllClassFiles(Path directory) throws IOException {
         try {
             Files.walk(directory)
@@ -271,33 +675,14 @@ class ProjectCompiler {
         return paths;
     }
     
-    private List<String> buildCommand(Set<Path> filesToCompile)
-            throws IOException {
-        List<String> command = new LinkedList<>();
-        command.add(Configuration.INSTANCE.setup().javaCompilerBinaryPath());
-        
-        command.add("-nowarn");
-        
-        command.add("-encoding");
-        command.add(encoding.toString());
-        
-        command.addAll(additionalOptions);
-        
-        command.add("-d");
-        command.add(outputDirectory.toString());
-        
-        if (!classpath.isEmpty()) {
-            command.add("-cp");
-            command.add(outputDirectory.toString() + File.pathSeparator + classpath.stream()
-                    .map(Path::toString)
-                    .collect(Collectors.joining(File.pathSeparator)));
+    @Override
+    public void close() {
+        backend.close();
+        try {
+            tempDirManager.close();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to delete temporary directories of compiler", e);
         }
-        
-        filesToCompile.stream()
-                .map(Path::toString)
-                .forEach(command::add);
-        
-        return command;
     }
     
 }
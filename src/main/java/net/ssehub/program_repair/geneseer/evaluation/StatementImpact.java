@@ -0,0 +1,150 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.ssehub.program_repair.geneseer.code.LeafNode;
+import net.ssehub.program_repair.geneseer.code.Node;
+import net.ssehub.program_repair.geneseer.code.Node.Metadata;
+import net.ssehub.program_repair.geneseer.code.Node.Type;
+
+/**
+ * Determines the test methods that can be affected by the modifications of a file, based on the test methods that
+ * cover the statements of the original file ({@link Metadata#COVERED_BY} of statement nodes, see
+ * {@link FaultLocalization}). The original and the modified file are compared top-down, and for each modified region
+ * the tests that can reach it in the original file are collected: the tests covering the removed or replaced
+ * statements, and the tests covering the statement before the region (or the enclosing statement, if the region is at
+ * the start of a block).
+ * <p>
+ * Modifications outside of method and constructor bodies (e.g. of fields, initializer blocks or signatures) can affect
+ * tests that do not cover any of the modified lines, so they can't be attributed to statements.
+ */
+class StatementImpact {
+    
+    private Set<String> impactedTests = new HashSet<>();
+    
+    private boolean statementLevel = true;
+    
+    private StatementImpact() {
+    }
+    
+    /**
+     * Computes the tests that can be affected by the modifications between the given file nodes.
+     *
+     * @param originalFile The original file node, annotated with coverage.
+     * @param modifiedFile The modified file node.
+     *
+     * @return The identifiers of the affected test methods, or <code>null</code> if a modification can't be
+     *      attributed to statements.
+     */
+    static Set<String> getImpactedTests(Node originalFile, Node modifiedFile) {
+        StatementImpact impact = new StatementImpact();
+        impact.compare(originalFile, modifiedFile, null);
+        return impact.statementLevel ? impact.impactedTests : null;
+    }
+    
+    /**
+     * Compares two nodes that are known to differ.
+     *
+     * @param reachingTests The tests that can reach the original node, or <code>null</code> if the node is not inside
+     *      a method or constructor body.
+     */
+    private void compare(Node original, Node modified, Set<String> reachingTests) {
+        Set<String> context = reachingTests;
+        if (original.getType() == Type.METHOD || original.getType() == Type.CONSTRUCTOR) {
+            context = new HashSet<>();
+            for (Node statement : original.stream().filter(n -> n.getType() == Type.STATEMENT).toList()) {
+                addCoverage(statement, context);
+            }
+        }
+        
+        List<Node> originalChildren = children(original);
+        List<Node> modifiedChildren = children(modified);
+        int prefix = 0;
+        while (prefix < originalChildren.size() && prefix < modifiedChildren.size()
+                && equal(originalChildren.get(prefix), modifiedChildren.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < originalChildren.size() - prefix && suffix < modifiedChildren.size() - prefix
+                && equal(originalChildren.get(originalChildren.size() - 1 - suffix),
+                        modifiedChildren.get(modifiedChildren.size() - 1 - suffix))) {
+            suffix++;
+        }
+        List<Node> originalRegion = originalChildren.subList(prefix, originalChildren.size() - suffix);
+        List<Node> modifiedRegion = modifiedChildren.subList(prefix, modifiedChildren.size() - suffix);
+        
+        if (originalRegion.size() == 1 && modifiedRegion.size() == 1 && isInner(originalRegion.get(0))
+                && isInner(modifiedRegion.get(0))) {
+            compare(originalRegion.get(0), modifiedRegion.get(0), getReachingTests(originalChildren, prefix, context));
+        
+        } else if (context == null) {
+            statementLevel = false;
+        
+        } else {
+            impactedTests.addAll(getTestsBefore(originalChildren, prefix, context));
+            for (Node node : originalRegion) {
+                node.stream().filter(n -> n.getType() == Type.STATEMENT).forEach(n -> addCoverage(n, impactedTests));
+            }
+            if (originalRegion.isEmpty() && prefix < originalChildren.size()
+                    && originalChildren.get(prefix).getType() == Type.STATEMENT) {
+                addCoverage(originalChildren.get(prefix), impactedTests);
+            }
+        }
+    }
+    
+    /**
+     * Returns the tests that can reach the child at the given index. Only the tests that cover a statement can reach
+     * the code inside of it.
+     */
+    private Set<String> getReachingTests(List<Node> children, int index, Set<String> parentReachingTests) {
+        Set<String> result = parentReachingTests;
+        if (parentReachingTests != null && children.get(index).getType() == Type.STATEMENT) {
+            result = new HashSet<>();
+            addCoverage(children.get(index), result);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the tests that can reach the position before the child at the given index: the tests covering the
+     * previous statement, or the tests reaching the parent if there is no previous statement.
+     */
+    private Set<String> getTestsBefore(List<Node> children, int index, Set<String> parentReachingTests) {
+        Set<String> result = parentReachingTests;
+        if (index > 0 && children.get(index - 1).getType() == Type.STATEMENT) {
+            result = new HashSet<>();
+            addCoverage(children.get(index - 1), result);
+        }
+        return result;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void addCoverage(Node statement, Set<String> target) {
+        Set<String> coveredBy = (Set<String>) statement.getMetadata(Metadata.COVERED_BY);
+        if (coveredBy != null) {
+            target.addAll(coveredBy);
+        } else {
+            statementLevel = false;
+        }
+    }
+    
+    private static List<Node> children(Node node) {
+        List<Node> children = new ArrayList<>(node.childCount());
+        for (Node child : node.childIterator()) {
+            children.add(child);
+        }
+        return children;
+    }
+    
+    private static boolean isInner(Node node) {
+        return !(node instanceof LeafNode);
+    }
+    
+    private static boolean equal(Node n1, Node n2) {
+        return n1 == n2 || n1.contentEquals(n2);
+    }
+    
+}
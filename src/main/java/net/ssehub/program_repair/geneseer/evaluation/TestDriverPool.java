@@ -0,0 +1,196 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+import net.ssehub.program_repair.geneseer.Result.EvaluationStats;
+
+/**
+ * Keeps test driver processes alive between evaluations, so that not every evaluation has to pay for starting a new
+ * JVM.
+ * <p>
+ * If the test driver uses a separate class loader per test class, it loads the classes under test freshly from disk
+ * for every test class, so a process can be re-used even if the compiled classes changed in between. Otherwise, the
+ * process has already loaded the old classes, so it is restarted whenever the content of the classes directory
+ * changed. The content is compared by the hashes of the class files (see {@link ClassFileHashes}), so that only class
+ * files that were rewritten since the last acquisition are read again.
+ */
+class TestDriverPool implements AutoCloseable {
+    
+    private static final Logger LOG = Logger.getLogger(TestDriverPool.class.getName());
+    
+    private Path workingDirectory;
+    
+    private Charset encoding;
+    
+    private boolean splitTestClassLoaders;
+    
+    private int maxUses;
+    
+    private EvaluationStats evaluationStats;
+    
+    private Map<List<Path>, List<PooledDriver>> idleDrivers = new HashMap<>();
+    
+    private Map<Path, ClassFileHashes> classFileHashes = new HashMap<>();
+    
+    private int maxIdleDrivers = Integer.MAX_VALUE;
+    
+    private boolean closed;
+    
+    class PooledDriver {
+        
+        private TestExecution execution;
+        
+        private List<Path> classpath;
+        
+        private int uses;
+        
+        private int knownProcessStarts;
+        
+        private Map<String, String> classesFingerprint;
+        
+        private PooledDriver(TestExecution execution, List<Path> classpath) {
+            this.execution = execution;
+            this.classpath = classpath;
+        }
+        
+        public TestExecution getExecution() {
+            return execution;
+        }
+    
+    }
+    
+    public TestDriverPool(Path workingDirectory, Charset encoding, boolean splitTestClassLoaders, int maxUses,
+            EvaluationStats evaluationStats) {
+        this.workingDirectory = workingDirectory;
+        this.encoding = encoding;
+        this.splitTestClassLoaders = splitTestClassLoaders;
+        this.maxUses = maxUses;
+        this.evaluationStats = evaluationStats;
+    }
+    
+    public PooledDriver acquire(List<Path> classpath, Path classes) throws TestExecutionException {
+        Map<String, String> fingerprint = splitTestClassLoaders ? null : computeFingerprint(classes);
+        
+        PooledDriver driver = null;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Pool is already closed");
+            }
+            List<PooledDriver> idle = idleDrivers.get(classpath);
+            if (idle != null && !idle.isEmpty()) {
+                driver = idle.remove(idle.size() - 1);
+            }
+        }
+        
+        if (driver != null && !splitTestClassLoaders && !Objects.equals(fingerprint, driver.classesFingerprint)) {
+            LOG.fine("Compiled classes changed, restarting test driver process");
+            driver.execution.close();
+            driver = null;
+        }
+        
+        if (driver != null) {
+            evaluationStats.increaseTestDriverReuses();
+        } else {
+            driver = new PooledDriver(new TestExecution(workingDirectory, classpath, encoding, false,
+                    splitTestClassLoaders), classpath);
+        }
+        driver.classesFingerprint = fingerprint;
+        driver.uses++;
+        return driver;
+    }
+    
+    public void release(PooledDriver driver) {
+        int starts = driver.execution.getProcessStarts();
+        if (starts != driver.knownProcessStarts) {
+            evaluationStats.increaseTestDriverSpawns(starts - driver.knownProcessStarts);
+            if (driver.knownProcessStarts > 0) {
+                // the process timed out and has been replaced by a fresh one
+                driver.uses = 0;
+            }
+            driver.knownProcessStarts = starts;
+        }
+        
+        boolean keep = driver.uses < maxUses;
+        if (keep) {
+            synchronized (this) {
+                List<PooledDriver> idle = idleDrivers.computeIfAbsent(driver.classpath, k -> new LinkedList<>());
+                if (!closed && idle.size() < maxIdleDrivers) {
+                    idle.add(driver);
+                } else {
+                    keep = false;
+                }
+            }
+        } else {
+            LOG.fine(() -> "Recycling test driver process after " + driver.uses + " uses");
+        }
+        
+        if (!keep) {
+            driver.execution.close();
+        }
+    }
+    
+    /**
+     * Sets the maximum number of idle test driver processes per classpath. Idle processes above this number are
+     * stopped, e.g. when the {@link ConcurrencyTuner} lowered the number of parallel test driver processes.
+     */
+    public void setMaxIdleDrivers(int maxIdleDrivers) {
+        List<PooledDriver> toClose = new LinkedList<>();
+        synchronized (this) {
+            this.maxIdleDrivers = maxIdleDrivers;
+            for (List<PooledDriver> idle : idleDrivers.values()) {
+                while (idle.size() > maxIdleDrivers) {
+                    toClose.add(idle.remove(0));
+                }
+            }
+        }
+        if (!toClose.isEmpty()) {
+            LOG.fine(() -> "Stopping " + toClose.size() + " idle test driver processes above the limit of "
+                    + maxIdleDrivers);
+        }
+        for (PooledDriver driver : toClose) {
+            driver.execution.close();
+        }
+    }
+    
+    public void discard(PooledDriver driver) {
+        evaluationStats.increaseTestDriverSpawns(driver.execution.getProcessStarts() - driver.knownProcessStarts);
+        driver.execution.close();
+    }
+    
+    private Map<String, String> computeFingerprint(Path classes) throws TestExecutionException {
+        ClassFileHashes hashes;
+        synchronized (this) {
+            hashes = classFileHashes.computeIfAbsent(classes, ClassFileHashes::new);
+        }
+        try {
+            synchronized (hashes) {
+                return hashes.computeHashes();
+            }
+        } catch (IOException e) {
+            throw new TestExecutionException("Failed to read compiled classes", e);
+        }
+    }
+    
+    @Override
+    public void close() {
+        List<PooledDriver> toClose = new LinkedList<>();
+        synchronized (this) {
+            closed = true;
+            idleDrivers.values().forEach(toClose::addAll);
+            idleDrivers.clear();
+        }
+        LOG.fine(() -> "Closing " + toClose.size() + " idle test driver processes");
+        for (PooledDriver driver : toClose) {
+            driver.execution.close();
+        }
+    }
+    
+}
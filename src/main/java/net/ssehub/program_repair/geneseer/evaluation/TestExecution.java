@@ -13,6 +13,7 @@ import java.net.ServerSocket;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -20,7 +21,18 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,6 +41,8 @@ import org.jacoco.core.tools.ExecDumpClient;
 import org.jacoco.core.tools.ExecFileLoader;
 
 import net.ssehub.program_repair.geneseer.Configuration;
+import net.ssehub.program_repair.geneseer.util.Measurement;
+import net.ssehub.program_repair.geneseer.util.Measurement.Probe;
 import net.ssehub.program_repair.geneseer.util.ProcessManager;
 import net.ssehub.program_repair.geneseer.util.ProcessRunner;
 import net.ssehub.program_repair.geneseer.util.ProcessRunner.CaptureThread;
@@ -36,11 +50,37 @@ import net.ssehub.program_repair.geneseer.util.TemporaryDirectoryManager;
 
 class TestExecution implements AutoCloseable {
 
+    static final String TEST_DRIVER_MAIN_CLASS = "net.ssehub.program_repair.geneseer.evaluation.TestDriver";
+    
     private static final Logger LOG = Logger.getLogger(TestExecution.class.getName());
     
     private static final Path GENESEER_TEST_DRIVER;
     
     private static final Path JACOCO_AGENT;
+    
+    private static final ScheduledExecutorService WATCHDOG;
+    
+    private static final long CPU_TIME_CHECK_INTERVAL_MS = 100;
+    
+    /**
+     * The CPU time of the whole test driver process that a test may consume, as a factor of the timeout. The CPU time
+     * includes the JIT compiler and garbage collector threads of the JVM, which run in parallel to the tests.
+     */
+    private static final double CPU_TIME_FACTOR = 2.0;
+    
+    /**
+     * Index of the user mode CPU time in <code>/proc/&lt;pid&gt;/stat</code>, counted from the field after the
+     * command name (field 14 in <code>man proc</code>).
+     */
+    private static final int UTIME_FIELD = 11;
+    
+    private static final int STIME_FIELD = 12;
+    
+    private static final ExecutorService BACKGROUND = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "test-driver-lifecycle");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     static {
         try {
@@ -63,6 +103,14 @@ class TestExecution implements AutoCloseable {
             LOG.log(Level.SEVERE, "Failed to create temporary directory with evaluation jars", e);
             throw new UncheckedIOException(e);
         }
+        
+        ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "test-timeout-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.setRemoveOnCancelPolicy(true);
+        WATCHDOG = watchdog;
     }
     
     private TemporaryDirectoryManager tempDirManager;
@@ -75,21 +123,34 @@ class TestExecution implements AutoCloseable {
     
     private boolean withJacocoAgent;
     
-    private Process process;
-    
-    private ObjectInputStream in;
-    
-    private InputStream rawIn;
+    private DriverProcess current;
     
-    private ObjectOutputStream out;
+    private CompletableFuture<DriverProcess> standby;
     
-    private CaptureThread stderrCapture;
+    private List<Future<?>> pendingStops = new LinkedList<>();
     
-    private long timeoutMs = -1;
+    private volatile long timeoutMs = -1;
     
     private boolean splitTestClassLoaders;
     
-    private int jacocoPort;
+    private AtomicInteger processStarts = new AtomicInteger();
+    
+    /**
+     * A single running test driver process and the streams to communicate with it.
+     */
+    private static class DriverProcess {
+        
+        private Process process;
+        
+        private ObjectInputStream in;
+        
+        private ObjectOutputStream out;
+        
+        private CaptureThread stderrCapture;
+        
+        private int jacocoPort;
+        
+    }
     
     public TestExecution(Path workingDirectory, List<Path> classpath, Charset encoding, boolean withJacocoAgent,
             boolean splitTestClassLoaders) throws TestExecutionException {
@@ -100,13 +161,21 @@ class TestExecution implements AutoCloseable {
         this.withJacocoAgent = withJacocoAgent;
         this.splitTestClassLoaders = splitTestClassLoaders;
         
-        startProcess();
+        current = startProcess();
     }
     
     public void setTimeout(long timeoutMs) {
         this.timeoutMs = timeoutMs;
     }
     
+    /**
+     * Returns how often a test driver process has been started by this execution. This is increased every time the
+     * process is replaced, e.g. after a timeout.
+     */
+    public int getProcessStarts() {
+        return processStarts.get();
+    }
+    
     private int generateRandomPort() {
         int port;
         try (ServerSocket socket = new ServerSocket(0)) {
@@ -121,13 +190,14 @@ class TestExecution implements AutoCloseable {
         return port;
     }
     
-    private void startProcess() throws TestExecutionException {
+    private DriverProcess startProcess() throws TestExecutionException {
+        DriverProcess driver = new DriverProcess();
         try {
             if (withJacocoAgent) {
-                jacocoPort = generateRandomPort();
+                driver.jacocoPort = generateRandomPort();
             }
             
-            List<String> command = createCommand(classpath, withJacocoAgent);
+            List<String> command = createCommand(classpath, withJacocoAgent, driver.jacocoPort);
             LOG.finer(() -> {
                 List<String> shortened = new LinkedList<>(command);
                 shortened.set(shortened.indexOf("-cp") + 1, "<...>");
@@ -142,44 +212,143 @@ class TestExecution implements AutoCloseable {
                 builder.redirectError(Redirect.PIPE);
             }
             
-            process = builder.start();
-            ProcessManager.INSTANCE.trackProcess(process);
-            out = new ObjectOutputStream(process.getOutputStream());
-            rawIn = process.getInputStream();
-            byte[] header = rawIn.readNBytes(4);
-            if (!Arrays.equals(header, new byte[] {(byte) 0xAC, (byte) 0xED, 0x00, 0x05}) ) {
-                int available = rawIn.available();
-                byte[] availableOutput = new byte[header.length + available];
-                System.arraycopy(header, 0, availableOutput, 0, 4);
-                int read = rawIn.read(availableOutput, 4, available);
-                String str = new String(availableOutput, 0, 4 + read);
-                LOG.severe(() -> "Did not get Java serialized stream, but: " + str);
-                throw new IOException("Java process did not start Java serialized stream");
+            InputStream rawIn;
+            byte[] header;
+            try (Probe probe = Measurement.INSTANCE.start(
+                    command.stream().anyMatch(o -> o.startsWith("-XX:SharedArchiveFile="))
+                    ? "test driver startup (CDS)" : "test driver startup")) {
+                driver.process = builder.start();
+                processStarts.incrementAndGet();
+                ProcessManager.INSTANCE.trackProcess(driver.process);
+                driver.out = new ObjectOutputStream(driver.process.getOutputStream());
+                rawIn = driver.process.getInputStream();
+                header = readStreamHeader(rawIn);
             }
-            in = new ObjectInputStream(new SequenceInputStream(new ByteArrayInputStream(header), rawIn));
+            driver.in = new ObjectInputStream(new SequenceInputStream(new ByteArrayInputStream(header), rawIn));
             
             if (!Configuration.INSTANCE.setup().debugTestDriver()) {
-                stderrCapture = new CaptureThread(process.getErrorStream(), "test-driver stderr");
-                stderrCapture.start();
+                driver.stderrCapture = new CaptureThread(driver.process.getErrorStream(), "test-driver stderr");
+                driver.stderrCapture.start();
             }
             
         } catch (IOException e) {
             LOG.log(Level.SEVERE, "Failed to start test driver process", e);
+            if (driver.process != null) {
+                stopProcess(driver);
+            }
             throw new TestExecutionException("Failed to start test driver process", e);
         }
         
-        checkHeartbeat();
+        boolean alive = false;
+        try {
+            checkHeartbeat(driver);
+            alive = true;
+        } finally {
+            if (!alive) {
+                stopProcess(driver);
+            }
+        }
+        
+        return driver;
+    }
+    
+    /**
+     * Reads the header of the Java serialized stream that the test driver writes on startup.
+     * 
+     * @return The bytes of the header.
+     * 
+     * @throws IOException If reading fails or the process wrote something else (e.g. JVM error messages).
+     */
+    private static byte[] readStreamHeader(InputStream rawIn) throws IOException {
+        byte[] header = rawIn.readNBytes(4);
+        if (!Arrays.equals(header, new byte[] {(byte) 0xAC, (byte) 0xED, 0x00, 0x05}) ) {
+            int available = rawIn.available();
+            byte[] availableOutput = new byte[header.length + available];
+            System.arraycopy(header, 0, availableOutput, 0, header.length);
+            int read = rawIn.read(availableOutput, header.length, available);
+            String str = new String(availableOutput, 0, header.length + Math.max(read, 0));
+            LOG.severe(() -> "Did not get Java serialized stream, but: " + str);
+            throw new IOException("Java process did not start Java serialized stream");
+        }
+        return header;
+    }
+    
+    /**
+     * Replaces the current process, e.g. after it has been killed because of a timeout. If a standby process is
+     * available, it is swapped in immediately. The old process is stopped in the background, and a new standby process
+     * is started in the background (if enabled).
+     */
+    private void replaceProcess() throws TestExecutionException {
+        DriverProcess old = current;
+        current = null;
+        pendingStops.removeIf(Future::isDone);
+        pendingStops.add(BACKGROUND.submit(() -> stopProcess(old)));
+        
+        DriverProcess next = null;
+        if (standby != null) {
+            next = takeStandby();
+        }
+        if (next == null) {
+            next = startProcess();
+        } else {
+            LOG.fine("Swapped in standby test driver process");
+        }
+        current = next;
+        
+        if (Configuration.INSTANCE.setup().testDriverStandby()) {
+            standby = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return startProcess();
+                } catch (TestExecutionException e) {
+                    throw new CompletionException(e);
+                }
+            }, BACKGROUND);
+        }
+    }
+    
+    private DriverProcess takeStandby() {
+        CompletableFuture<DriverProcess> future = standby;
+        standby = null;
+        
+        DriverProcess result = null;
+        boolean done = false;
+        while (!done) {
+            try {
+                result = future.get();
+                done = true;
+            } catch (InterruptedException e) {
+                // ignore, wait again
+            } catch (ExecutionException e) {
+                LOG.log(Level.WARNING, "Standby test driver process failed to start", e.getCause());
+                done = true;
+            }
+        }
+        
+        if (result != null && !result.process.isAlive()) {
+            LOG.warning("Standby test driver process died");
+            stopProcess(result);
+            result = null;
+        }
+        return result;
     }
     
-    private void checkHeartbeat() throws TestExecutionException {
+    /**
+     * Sends a single heartbeat to the test driver process and waits for its reply. Package-private so that the
+     * protocol round-trip latency can be benchmarked.
+     */
+    void checkHeartbeat() throws TestExecutionException {
+        checkHeartbeat(current);
+    }
+    
+    private void checkHeartbeat(DriverProcess driver) throws TestExecutionException {
         try  {
-            out.writeObject("HEARTBEAT");
-            out.flush();
+            driver.out.writeObject("HEARTBEAT");
+            driver.out.flush();
         } catch (IOException e) {
             throw new TestExecutionException("Communication with test driver process failed", e);
         }
         
-        String answer = readResult();
+        String answer = readResult(driver);
         
         if (!answer.equals("alive")) {
             throw new TestExecutionException("Test driver process does not reply with alive");
@@ -188,11 +357,16 @@ class TestExecution implements AutoCloseable {
         LOG.finer("Heartbeat of test driver process is alive");
     }
     
-    private void stopProcess() {
+    private void stopProcess(DriverProcess driver) {
         LOG.finer("Stopping test driver process"); 
         
+        Process process = driver.process;
         try {
-            out.close();
+            if (driver.out != null) {
+                driver.out.close();
+            } else {
+                process.destroy();
+            }
         } catch (IOException e) {
             LOG.log(Level.WARNING, "Failed to close stream", e);
             process.destroy();
@@ -204,6 +378,7 @@ class TestExecution implements AutoCloseable {
             process.destroyForcibly();
         }
         
+        CaptureThread stderrCapture = driver.stderrCapture;
         if (stderrCapture != null) {
             ProcessRunner.untilNoInterruptedException(() -> {
                 stderrCapture.join();
@@ -213,12 +388,33 @@ class TestExecution implements AutoCloseable {
             if (!stderr.isEmpty()) {
                 LOG.warning(() -> "Test driver stderr:\n" + stderr);
             }
+            stderrCapture.closeCapture();
         }
     }
     
     @Override
     public void close() {
-        stopProcess();
+        if (current != null) {
+            stopProcess(current);
+            current = null;
+        }
+        if (standby != null) {
+            DriverProcess standbyProcess = takeStandby();
+            if (standbyProcess != null) {
+                stopProcess(standbyProcess);
+            }
+        }
+        for (Future<?> pendingStop : pendingStops) {
+            ProcessRunner.untilNoInterruptedException(() -> {
+                try {
+                    pendingStop.get();
+                } catch (ExecutionException e) {
+                    LOG.log(Level.WARNING, "Failed to stop test driver process", e.getCause());
+                }
+                return 0;
+            });
+        }
+        pendingStops.clear();
         
         try {
             tempDirManager.close();
@@ -227,45 +423,147 @@ class TestExecution implements AutoCloseable {
         }
     }
     
-    @SuppressWarnings("unchecked")
-    private <T> T readResult() throws TestExecutionException {
-        try {
-            if (timeoutMs > 0) {
-                long t0 = System.currentTimeMillis();
-                
-                // ObjectInputStream.available() always seems to return 0, so ask the raw InputStream from the process
-                // how many bytes are available
-                while (System.currentTimeMillis() - t0 < timeoutMs && rawIn.available() == 0
-                        && process.isAlive()) {
-                    try {
-                        Thread.sleep(1);
-                    } catch (InterruptedException e) {
-                        // ignore
+    /**
+     * Kills a test driver process that exceeds its timeout. By default, the timeout is measured in wall-clock time. If
+     * {@link Configuration.SetupConfiguration#cpuTimeTimeouts()} is enabled, the timeout is measured in the CPU time
+     * consumed by the process instead, so that tests that are slow only because the machine is loaded by other
+     * processes do not time out. As a process that waits (e.g. on a deadlock) does not consume CPU time, the wall-clock
+     * time is still limited to {@link Configuration.SetupConfiguration#cpuTimeoutWallClockFactor()} times the timeout.
+     * If the CPU time of the process can't be determined, the wall-clock timeout is used.
+     * <p>
+     * The CPU time is only an approximation of the time spent in the tests: it is measured for the whole process, as
+     * the thread that runs the tests can't be identified from the outside. Other threads of the JVM (JIT compiler,
+     * garbage collector) consume CPU time in parallel to the tests, so the process may use {@link #CPU_TIME_FACTOR}
+     * times the timeout.
+     */
+    private static class Watchdog {
+        
+        /**
+         * Set by whichever comes first: the watchdog killing the process or the reader finishing. This makes sure
+         * that a read that completed is never reported as a timeout.
+         */
+        private final AtomicBoolean finished = new AtomicBoolean();
+        
+        private volatile boolean cpuTimeExceeded;
+        
+        private ScheduledFuture<?> future;
+        
+        Watchdog(Process process, long timeoutMs) {
+            long cpuTimeStart = Configuration.INSTANCE.setup().cpuTimeTimeouts() ? getCpuTimeMs(process) : -1;
+            if (cpuTimeStart >= 0) {
+                long wallClockDeadline = System.currentTimeMillis()
+                        + (long) (timeoutMs * Configuration.INSTANCE.setup().cpuTimeoutWallClockFactor());
+                long interval = Math.max(1, Math.min(CPU_TIME_CHECK_INTERVAL_MS, timeoutMs / 10));
+                future = WATCHDOG.scheduleWithFixedDelay(() -> {
+                    long cpuTime = getCpuTimeMs(process);
+                    if (cpuTime >= 0 && cpuTime - cpuTimeStart > timeoutMs * CPU_TIME_FACTOR) {
+                        kill(process, true);
+                    } else if (System.currentTimeMillis() > wallClockDeadline) {
+                        kill(process, false);
                     }
-                }
+                }, interval, interval, TimeUnit.MILLISECONDS);
                 
-                if (!process.isAlive()) {
-                    throw new TestExecutionException("Test driver process died");
-                }
-                if (rawIn.available() == 0) {
-                    stopProcess();
-                    startProcess();
-                    throw new TestTimeoutException("Test execution did not finish in " + timeoutMs + " ms");
-                }
+            } else {
+                future = WATCHDOG.schedule(() -> kill(process, false), timeoutMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        
+        private void kill(Process process, boolean cpuTime) {
+            if (finished.compareAndSet(false, true)) {
+                cpuTimeExceeded = cpuTime;
+                process.destroyForcibly();
             }
-            
-            return (T) in.readObject();
-            
-        } catch (IOException | ClassNotFoundException e) {
-            throw new TestExecutionException("Failed to read result from test driver process", e);
         }
+        
+        /**
+         * Stops this watchdog after the read finished.
+         * 
+         * @return Whether the watchdog was stopped before it killed the process.
+         */
+        boolean cancel() {
+            boolean won = finished.compareAndSet(false, true);
+            future.cancel(false);
+            return won;
+        }
+        
+    }
+    
+    /**
+     * Returns the CPU time consumed by the given process so far, in milliseconds. Falls back to reading
+     * <code>/proc/&lt;pid&gt;/stat</code> (assuming the usual 100 clock ticks per second) if the JDK does not provide
+     * the CPU time.
+     * 
+     * @return The CPU time, or -1 if it can't be determined.
+     */
+    private static long getCpuTimeMs(Process process) {
+        long result = process.info().totalCpuDuration().map(Duration::toMillis).orElse(-1L);
+        if (result < 0) {
+            try {
+                String stat = Files.readString(Path.of("/proc", Long.toString(process.pid()), "stat"));
+                // the command name may contain spaces, so the fields are counted from its closing bracket
+                String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+                result = (Long.parseLong(fields[UTIME_FIELD]) + Long.parseLong(fields[STIME_FIELD])) * 10;
+            } catch (IOException | IndexOutOfBoundsException | NumberFormatException e) {
+                result = -1;
+            }
+        }
+        return result;
+    }
+    
+    private <T> T readResult() throws TestExecutionException {
+        return readResult(current, timeoutMs);
+    }
+    
+    private <T> T readResult(DriverProcess driver) throws TestExecutionException {
+        return readResult(driver, timeoutMs);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> T readResult(DriverProcess driver, long timeoutMs) throws TestExecutionException {
+        Watchdog watchdog = null;
+        if (timeoutMs > 0) {
+            watchdog = new Watchdog(driver.process, timeoutMs);
+        }
+        
+        T result = null;
+        IOException readException = null;
+        boolean readFirst = true;
+        try {
+            result = (T) driver.in.readObject();
+        } catch (IOException e) {
+            readException = e;
+        } catch (ClassNotFoundException e) {
+            readException = new IOException(e);
+        } finally {
+            if (watchdog != null) {
+                readFirst = watchdog.cancel();
+            }
+        }
+        
+        if (!readFirst && driver == current) {
+            // the watchdog killed the process; replace it so that the next test class can run (a process that is
+            // still starting up is stopped by startProcess())
+            replaceProcess();
+        }
+        // a result that was read completely before the process was killed is still valid
+        if (!readFirst && readException != null) {
+            throw new TestTimeoutException("Test execution did not finish in " + timeoutMs + " ms"
+                    + (watchdog.cpuTimeExceeded ? " of CPU time" : ""), watchdog.cpuTimeExceeded);
+        }
+        if (readException != null) {
+            if (!driver.process.isAlive()) {
+                throw new TestExecutionException("Test driver process died", readException);
+            }
+            throw new TestExecutionException("Failed to read result from test driver process", readException);
+        }
+        return result;
     }
 
     public List<TestResult> executeTestClass(String className) throws TestExecutionException {
         try {
-            out.writeObject("CLASS");
-            out.writeObject(className);
-            out.flush();
+            current.out.writeObject("CLASS");
+            current.out.writeObject(className);
+            current.out.flush();
             
             List<TestResult> result = readResult();
             LOG.fine(() -> result.size() + " tests run in test class " + className + ", "
@@ -309,11 +607,11 @@ class TestExecution implements AutoCloseable {
             ExecDumpClient jacocoClient = new ExecDumpClient();
             jacocoClient.setReset(true);
             jacocoClient.setDump(false);
-            jacocoClient.dump("localhost", jacocoPort);
+            jacocoClient.dump("localhost", current.jacocoPort);
             
-            out.writeObject("METHODS");
-            out.writeObject(className);
-            out.flush();
+            current.out.writeObject("METHODS");
+            current.out.writeObject(className);
+            current.out.flush();
             
             Map<String, ExecutionDataStore> coverages = new HashMap<>();
             
@@ -325,13 +623,13 @@ class TestExecution implements AutoCloseable {
                     String testMethod = readResult();
                     
                     jacocoClient.setDump(true);
-                    ExecFileLoader loader = jacocoClient.dump("localhost", jacocoPort);
+                    ExecFileLoader loader = jacocoClient.dump("localhost", current.jacocoPort);
                     ExecutionDataStore execata = loader.getExecutionDataStore();
                     coverages.put(className + "::" + testMethod
                             + (!className.equals(implementingClass) ? "@" + implementingClass : ""), execata);
                     
-                    out.writeObject("CONTINUE");
-                    out.flush();
+                    current.out.writeObject("CONTINUE");
+                    current.out.flush();
                     
                 } else if (!"DONE".equals(resultState)) {
                     throw new TestExecutionException("Got invalid state from test driver: " + resultState);
@@ -364,7 +662,7 @@ class TestExecution implements AutoCloseable {
         }
     }
     
-    private List<String> createCommand(List<Path> classpath, boolean withJacocoAgent)
+    private List<String> createCommand(List<Path> classpath, boolean withJacocoAgent, int jacocoPort)
             throws IOException {
         
         List<String> command = new LinkedList<>();
@@ -378,12 +676,30 @@ class TestExecution implements AutoCloseable {
         command.add("-Dfile.encoding=" + encoding.toString());
         command.add("-Djava.io.tmpdir=" + tempDirManager.createTemporaryDirectory());
         command.add("-XX:-UsePerfData");
+        if (Configuration.INSTANCE.setup().autotuneConcurrency()) {
+            command.addAll(ConcurrencyTuner.INSTANCE.getTestDriverJvmOptions());
+        }
+        Path trainingJar = null;
+        List<Path> orderedClasspath = classpath;
+        if (Configuration.INSTANCE.setup().classDataSharing()) {
+            Path archive = ClassDataSharing.INSTANCE.getTestDriverArchive(GENESEER_TEST_DRIVER, classpath);
+            command.addAll(ClassDataSharing.createJvmOptions(Configuration.INSTANCE.setup().testDriverJvmOptions(),
+                    archive));
+            if (archive != null) {
+                trainingJar = ClassDataSharing.getTestDriverTrainingJar(archive);
+                orderedClasspath = ClassDataSharing.orderForArchive(classpath);
+            }
+        }
         if (Configuration.INSTANCE.setup().debugTestDriver()) {
             command.add("-Dgeneseer.logTimeZone=" + ZoneId.systemDefault().getId());
         }
         
         StringBuilder cp = new StringBuilder(GENESEER_TEST_DRIVER.toAbsolutePath().toString());
-        for (Path element : classpath) {
+        if (trainingJar != null) {
+            cp.append(File.pathSeparatorChar);
+            cp.append(trainingJar.toString());
+        }
+        for (Path element : orderedClasspath) {
             cp.append(File.pathSeparatorChar);
             cp.append(element.toString());
         }
@@ -391,7 +707,7 @@ class TestExecution implements AutoCloseable {
         command.add("-cp");
         command.add(cp.toString());
 
-        command.add("net.ssehub.program_repair.geneseer.evaluation.TestDriver");
+        command.add(TEST_DRIVER_MAIN_CLASS);
         if (!splitTestClassLoaders) {
             command.add("--no-per-test-classloader");
         }
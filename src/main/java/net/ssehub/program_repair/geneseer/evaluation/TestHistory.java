@@ -0,0 +1,275 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonParseException;
+
+import net.ssehub.program_repair.geneseer.util.JsonUtils;
+
+/**
+ * A persistent history of test executions for a project, kept across runs. For each test class, the duration of the
+ * last full run is stored; for each test method, how often it was run, how often it failed (i.e. killed a variant),
+ * and how often it timed out.
+ * <p>
+ * The history is stored as a JSON-lines file: each line holds the changes of several updates. Updates are collected in
+ * memory and only appended to the file every {@link #FLUSH_INTERVAL_MS} and on {@link #close()}, so that the
+ * evaluations are not slowed down by writing to the file. Thus, a crash loses at most the updates of the last interval,
+ * and can at most truncate the last line, which is ignored when the file is read. Once the file has too many lines, it
+ * is compacted into a single line, which atomically replaces the file. During compaction, the counts of tests with
+ * many runs are halved, so that the history adapts to changes of the tests and stays bounded.
+ */
+class TestHistory implements Closeable {
+    
+    private static final Logger LOG = Logger.getLogger(TestHistory.class.getName());
+    
+    private static final int MAX_LINES = 500;
+    
+    private static final int MAX_RUNS = 1000;
+    
+    private static final long FLUSH_INTERVAL_MS = TimeUnit.SECONDS.toMillis(30);
+    
+    private Path file;
+    
+    private int numLines;
+    
+    private Update state = new Update();
+    
+    private Update pending = new Update();
+    
+    private long lastFlushMs = System.currentTimeMillis();
+    
+    /**
+     * One line of the history file.
+     */
+    private static class Update {
+        
+        private Map<String, Long> classDurations = new HashMap<>();
+        
+        private Map<String, Counts> tests = new HashMap<>();
+        
+        void add(Update other) {
+            classDurations.putAll(other.classDurations);
+            other.tests.forEach((test, counts) -> tests.computeIfAbsent(test, t -> new Counts()).add(counts));
+        }
+        
+        boolean isEmpty() {
+            return classDurations.isEmpty() && tests.isEmpty();
+        }
+    
+    }
+    
+    private static class Counts {
+        
+        private int runs;
+        
+        private int kills;
+        
+        private int timeouts;
+        
+        void add(Counts other) {
+            runs += other.runs;
+            kills += other.kills;
+            timeouts += other.timeouts;
+        }
+    
+    }
+    
+    private TestHistory(Path file) {
+        this.file = file;
+    }
+    
+    /**
+     * Opens the history of the given project.
+     *
+     * @param historyDirectory The directory that contains the history files of all projects.
+     * @param projectDirectory The directory of the project. The history file is named after a hash of its absolute
+     *      path.
+     *
+     * @return The history, containing all updates that were stored before.
+     *
+     * @throws IOException If reading the history file fails.
+     */
+    static TestHistory open(Path historyDirectory, Path projectDirectory) throws IOException {
+        Files.createDirectories(historyDirectory);
+        TestHistory history = new TestHistory(historyDirectory.resolve(
+                hash(projectDirectory.toAbsolutePath().normalize().toString()) + ".jsonl"));
+        history.read();
+        if (history.numLines > MAX_LINES) {
+            history.compact();
+        }
+        return history;
+    }
+    
+    private void read() throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            lines = List.of();
+        }
+        int numInvalid = 0;
+        for (String line : lines) {
+            try {
+                Update update = JsonUtils.parse(line, Update.class);
+                if (update != null) {
+                    state.add(update);
+                }
+            } catch (JsonParseException e) {
+                numInvalid++;
+            }
+        }
+        numLines = lines.size();
+        int n = numInvalid;
+        LOG.fine(() -> "Read test history " + file + " with " + state.tests.size() + " tests from " + numLines
+                + " lines (" + n + " invalid)");
+    }
+    
+    private void compact() throws IOException {
+        for (Counts counts : state.tests.values()) {
+            while (counts.runs > MAX_RUNS) {
+                counts.runs /= 2;
+                counts.kills /= 2;
+                counts.timeouts /= 2;
+            }
+        }
+        Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temporary, JsonUtils.toJson(state) + "\n", StandardCharsets.UTF_8);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        numLines = 1;
+        LOG.fine(() -> "Compacted test history " + file);
+    }
+    
+    private void append(Update update) throws IOException {
+        state.add(update);
+        pending.add(update);
+        if (System.currentTimeMillis() - lastFlushMs >= FLUSH_INTERVAL_MS) {
+            flush();
+        }
+    }
+    
+    /**
+     * Writes the updates that were not written yet to the history file.
+     *
+     * @throws IOException If writing the history file fails.
+     */
+    synchronized void flush() throws IOException {
+        lastFlushMs = System.currentTimeMillis();
+        if (!pending.isEmpty()) {
+            Update update = pending;
+            pending = new Update();
+            Files.writeString(file, JsonUtils.toJson(update) + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            numLines++;
+            if (numLines > MAX_LINES) {
+                compact();
+            }
+        }
+    }
+    
+    /**
+     * Writes the updates that were not written yet to the history file (see {@link #flush()}).
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+    
+    /**
+     * Records the durations of a full run of the given test classes.
+     *
+     * @param classDurations The duration of each test class, in milliseconds.
+     *
+     * @throws IOException If writing the history file fails.
+     */
+    synchronized void recordClassDurations(Map<String, Long> classDurations) throws IOException {
+        Update update = new Update();
+        update.classDurations.putAll(classDurations);
+        append(update);
+    }
+    
+    /**
+     * Records the results of the given tests, which were run on a variant. Skipped tests are ignored.
+     *
+     * @throws IOException If writing the history file fails.
+     */
+    synchronized void recordResults(Collection<TestResult> results) throws IOException {
+        Update update = new Update();
+        for (TestResult result : results) {
+            if (!result.isSkipped()) {
+                Counts counts = update.tests.computeIfAbsent(result.getIdentifier(), t -> new Counts());
+                counts.runs++;
+                if (result.isFailure()) {
+                    counts.kills++;
+                }
+                if ("Timeout".equals(result.failureStacktrace())) {
+                    counts.timeouts++;
+                }
+            }
+        }
+        append(update);
+    }
+    
+    /**
+     * Returns the duration of each test class in its last recorded full run.
+     *
+     * @return The durations in milliseconds, by test class name.
+     */
+    synchronized Map<String, Long> getClassDurations() {
+        return Map.copyOf(state.classDurations);
+    }
+    
+    /**
+     * Estimates the probability that the given test fails on a variant, based on how often it failed before. Tests
+     * without history are estimated at <code>0.5</code>.
+     *
+     * @param testIdentifier The identifier of the test (see {@link TestResult#getIdentifier()}).
+     */
+    synchronized double getKillProbability(String testIdentifier) {
+        Counts counts = state.tests.get(testIdentifier);
+        double probability = 0.5;
+        if (counts != null) {
+            probability = (counts.kills + 1.0) / (counts.runs + 2.0);
+        }
+        return probability;
+    }
+    
+    /**
+     * Returns how often the given test timed out.
+     *
+     * @param testIdentifier The identifier of the test (see {@link TestResult#getIdentifier()}).
+     */
+    synchronized int getTimeouts(String testIdentifier) {
+        Counts counts = state.tests.get(testIdentifier);
+        return counts != null ? counts.timeouts : 0;
+    }
+    
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+}
@@ -0,0 +1,179 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.ssehub.program_repair.geneseer.Configuration;
+import net.ssehub.program_repair.geneseer.util.ProcessManager;
+import net.ssehub.program_repair.geneseer.util.TemporaryDirectoryManager;
+
+/**
+ * Runs single test methods, each in a fresh JVM with the {@link TestMethodRunner}. The test driver can only run whole
+ * test classes, so this is used to re-run the methods of a timed-out test class one by one.
+ * <p>
+ * The timeout only starts once the JVM has started and loaded the test class; if the JVM does not get that far within
+ * {@link #STARTUP_TIMEOUT_MS}, the run fails.
+ */
+class TestMethodExecution {
+    
+    private static final Logger LOG = Logger.getLogger(TestMethodExecution.class.getName());
+    
+    private static final long STARTUP_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1);
+    
+    private static final Path RUNNER_JAR;
+    
+    static {
+        try {
+            @SuppressWarnings("resource") // closed in shutdown hook of TemporaryDirectoryManager
+            TemporaryDirectoryManager tempDirManager = new TemporaryDirectoryManager();
+            RUNNER_JAR = tempDirManager.createTemporaryDirectory().resolve("geneseer-test-method-runner.jar");
+            
+            String classFile = TestMethodRunner.class.getName().replace('.', '/') + ".class";
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(RUNNER_JAR));
+                    InputStream in = TestMethodRunner.class.getClassLoader().getResourceAsStream(classFile)) {
+                out.putNextEntry(new JarEntry(classFile));
+                in.transferTo(out);
+                out.closeEntry();
+            }
+        
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Failed to create jar of test method runner", e);
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private Path workingDirectory;
+    
+    private Charset encoding;
+    
+    /**
+     * @param workingDirectory The working directory for the test JVMs.
+     * @param encoding The encoding of the project.
+     */
+    TestMethodExecution(Path workingDirectory, Charset encoding) {
+        this.workingDirectory = workingDirectory;
+        this.encoding = encoding;
+    }
+    
+    /**
+     * Runs a single test method in a new JVM.
+     *
+     * @param classpath The classpath of the tests, including the compiled classes of the variant.
+     * @param className The name of the test class.
+     * @param methodIdentifier The identifier of the test method (see {@link TestResult#getMethodIdentifier()}).
+     * @param timeoutMs The maximum time that the test method may take.
+     *
+     * @return The results of the test method. Contains more than one result for parameterized tests.
+     *
+     * @throws TestTimeoutException If the test method did not finish in time.
+     * @throws TestExecutionException If running the test method fails.
+     */
+    List<TestResult> run(List<Path> classpath, String className, String methodIdentifier, long timeoutMs)
+            throws TestExecutionException {
+        
+        Process process = start(classpath, className, TestResult.getMethodName(methodIdentifier));
+        AtomicBoolean killed = new AtomicBoolean();
+        CompletableFuture<Void> watchdog = killAfter(process, STARTUP_TIMEOUT_MS, killed);
+        boolean started = false;
+        List<TestResult> results;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(process.getInputStream()))) {
+            int ready = in.read();
+            watchdog.cancel(false);
+            if (ready != TestMethodRunner.READY) {
+                throw new IOException("Test method runner did not load " + className);
+            }
+            started = true;
+            watchdog = killAfter(process, timeoutMs, killed);
+            results = readResults(in, className);
+        
+        } catch (IOException e) {
+            if (started && killed.get()) {
+                throw new TestTimeoutException("Test method did not finish in " + timeoutMs + " ms");
+            }
+            throw new TestExecutionException("Failed to run test method " + methodIdentifier + " of " + className, e);
+        
+        } finally {
+            watchdog.cancel(false);
+            process.destroyForcibly();
+        }
+        
+        results.removeIf(r -> !methodIdentifier.equals(r.getMethodIdentifier()));
+        return results;
+    }
+    
+    private Process start(List<Path> classpath, String className, String methodName)
+            throws TestExecutionException {
+        
+        StringBuilder cp = new StringBuilder(RUNNER_JAR.toAbsolutePath().toString());
+        for (Path element : classpath) {
+            cp.append(File.pathSeparatorChar);
+            cp.append(element.toString());
+        }
+        
+        List<String> command = new LinkedList<>();
+        command.add(Configuration.INSTANCE.setup().jvmBinaryPath());
+        command.add("-Dfile.encoding=" + encoding.toString());
+        command.add("-XX:-UsePerfData");
+        command.add("-cp");
+        command.add(cp.toString());
+        command.add(TestMethodRunner.class.getName());
+        command.add(className);
+        command.add(methodName);
+        
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(workingDirectory.toFile());
+        builder.environment().put("TZ", "America/Los_Angeles");
+        builder.redirectError(Redirect.DISCARD);
+        try {
+            Process process = builder.start();
+            ProcessManager.INSTANCE.trackProcess(process);
+            return process;
+        } catch (IOException e) {
+            throw new TestExecutionException("Failed to start test method runner", e);
+        }
+    }
+    
+    private static CompletableFuture<Void> killAfter(Process process, long timeoutMs, AtomicBoolean killed) {
+        return CompletableFuture.runAsync(() -> {
+            killed.set(true);
+            process.destroyForcibly();
+        }, CompletableFuture.delayedExecutor(timeoutMs, TimeUnit.MILLISECONDS));
+    }
+    
+    private static List<TestResult> readResults(DataInputStream in, String className) throws IOException {
+        int count = in.readInt();
+        List<TestResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String methodName = in.readUTF();
+            String implementingClass = in.readUTF();
+            byte[] trace = new byte[in.readInt()];
+            in.readFully(trace);
+            String failure = new String(trace, StandardCharsets.UTF_8);
+            if (failure.isEmpty()) {
+                failure = null;
+            }
+            results.add(new TestResult(className, implementingClass, methodName, failure));
+        }
+        return results;
+    }
+    
+}
@@ -0,0 +1,142 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a single test method with JUnit 4 in a JVM of its own (see {@link TestMethodExecution}). This class only uses
+ * classes of the JDK, so that it can run on the test classpath of the project without the rest of geneseer. JUnit is
+ * accessed via reflection, as it is only on the classpath of the project.
+ * <p>
+ * Arguments: the name of the test class and the name of the test method. The results are written to standard output:
+ * first the byte {@link #READY} once the test class is loaded, then the number of executed tests, and for each test
+ * its method name, its implementing class, and its failure stacktrace (empty if it passed). Output of the test itself
+ * to {@link System#out} and {@link System#err} is discarded.
+ */
+class TestMethodRunner {
+    
+    static final int READY = 0x42;
+    
+    private TestMethodRunner() {
+    }
+    
+    /**
+     * Runs the given test method and writes its results to standard output.
+     *
+     * @param args The name of the test class and the name of the test method.
+     */
+    public static void main(String[] args) throws IOException, ReflectiveOperationException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+        
+        ClassLoader loader = TestMethodRunner.class.getClassLoader();
+        Class<?> testClass = Class.forName(args[0], false, loader);
+        out.writeByte(READY);
+        out.flush();
+        
+        Class<?> requestClass = loader.loadClass("org.junit.runner.Request");
+        Class<?> runnerClass = loader.loadClass("org.junit.runner.Runner");
+        Class<?> coreClass = loader.loadClass("org.junit.runner.JUnitCore");
+        Class<?> resultClass = loader.loadClass("org.junit.runner.Result");
+        Class<?> failureClass = loader.loadClass("org.junit.runner.notification.Failure");
+        
+        Object request = requestClass.getMethod("method", Class.class, String.class).invoke(null, testClass, args[1]);
+        Object runner = requestClass.getMethod("getRunner").invoke(request);
+        Object description = runnerClass.getMethod("getDescription").invoke(runner);
+        Object result = coreClass.getMethod("run", runnerClass)
+                .invoke(coreClass.getConstructor().newInstance(), runner);
+        
+        Map<Object, String> failures = new HashMap<>();
+        for (Object failure : (List<?>) resultClass.getMethod("getFailures").invoke(result)) {
+            failures.put(failureClass.getMethod("getDescription").invoke(failure),
+                    (String) failureClass.getMethod("getTrace").invoke(failure));
+        }
+        // failures not attributed to a single test (e.g. in @BeforeClass) fail all tests
+        String classFailure = failures.isEmpty() ? null : failures.values().iterator().next();
+        
+        List<Object> tests = collectTests(loader, description);
+        out.writeInt(tests.size());
+        for (Object test : tests) {
+            String methodName = (String) test.getClass().getMethod("getMethodName").invoke(test);
+            String failure = failures.remove(test);
+            if (failure == null) {
+                failure = classFailure;
+            }
+            out.writeUTF(methodName);
+            out.writeUTF(getImplementingClass(testClass, methodName));
+            byte[] trace = (failure != null ? failure : "").getBytes(StandardCharsets.UTF_8);
+            out.writeInt(trace.length);
+            out.write(trace);
+        }
+        out.flush();
+        
+        // tests may have left non-daemon threads running
+        System.exit(0);
+    }
+    
+    /**
+     * Collects all leaf test descriptions below the given JUnit description, skipping tests annotated with
+     * <code>@Ignore</code>.
+     */
+    static List<Object> collectTests(ClassLoader loader, Object description) throws ReflectiveOperationException {
+        @SuppressWarnings("unchecked")
+        Class<? extends java.lang.annotation.Annotation> ignore = (Class<? extends java.lang.annotation.Annotation>)
+                loader.loadClass("org.junit.Ignore");
+        Method isTest = description.getClass().getMethod("isTest");
+        Method getChildren = description.getClass().getMethod("getChildren");
+        Method getAnnotation = description.getClass().getMethod("getAnnotation", Class.class);
+        
+        List<Object> tests = new LinkedList<>();
+        List<Object> toVisit = new LinkedList<>();
+        toVisit.add(description);
+        while (!toVisit.isEmpty()) {
+            Object current = toVisit.remove(0);
+            if ((boolean) isTest.invoke(current)) {
+                if (getAnnotation.invoke(current, ignore) == null) {
+                    tests.add(current);
+                }
+            } else {
+                toVisit.addAll(0, (List<?>) getChildren.invoke(current));
+            }
+        }
+        return tests;
+    }
+    
+    /**
+     * Returns the name of the class that declares the given test method: the test class itself, or the superclass
+     * that the method is inherited from.
+     */
+    static String getImplementingClass(Class<?> testClass, String methodName) {
+        String result = testClass.getName();
+        Class<?> current = testClass;
+        while (current != null) {
+            boolean found = false;
+            for (Method method : current.getDeclaredMethods()) {
+                if (method.getName().equals(methodName) && method.getParameterCount() == 0) {
+                    found = true;
+                    break;
+                }
+            }
+            if (found) {
+                result = current.getName();
+                break;
+            }
+            current = current.getSuperclass();
+        }
+        return result;
+    }
+    
+}
@@ -9,6 +9,11 @@ public record TestResult(
     String failureStacktrace
 ) implements Serializable {
     
+    /**
+     * The failure "stacktrace" of tests that were not run because the evaluation was aborted early.
+     */
+    public static final String SKIPPED = "Skipped";
+    
     private static final long serialVersionUID = -4814081494206714329L;
     
     public boolean isFailure() {
@@ -19,6 +24,10 @@ public record TestResult(
         return testMethod.equals("<none>") && failureStacktrace.equals("Timeout");
     }
     
+    public boolean isSkipped() {
+        return SKIPPED.equals(failureStacktrace);
+    }
+    
     public String getIdentifier() {
         StringBuilder result = new StringBuilder();
         result.append(testClass).append("::").append(getMethodIdentifier());
@@ -33,6 +42,14 @@ public record TestResult(
         return result.toString();
     }
     
+    /**
+     * Extracts the name of the test method from a method identifier, as returned by {@link #getMethodIdentifier()}.
+     */
+    public static String getMethodName(String methodIdentifier) {
+        int atIndex = methodIdentifier.indexOf('@');
+        return atIndex != -1 ? methodIdentifier.substring(0, atIndex) : methodIdentifier;
+    }
+    
     @Override
     public String toString() {
         return getIdentifier();
@@ -0,0 +1,109 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A bounded cache of test results, keyed by the test method and the hashes of the class files it depends on. If the
+ * cache is full, the least recently used result is evicted.
+ */
+class TestResultCache {
+    
+    private Map<String, TestResult> results;
+    
+    /**
+     * Creates a new, empty cache.
+     *
+     * @param capacity The maximum number of test results to keep.
+     */
+    TestResultCache(int capacity) {
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TestResult> eldest) {
+                return size() > capacity;
+            }
+        
+        };
+    }
+    
+    /**
+     * Creates a digest of the given class files and their hashes, to be used as part of a cache key.
+     *
+     * @param classes The names of the classes to include.
+     * @param hashes The hash of each class file, by class name. Classes without a hash are recorded as missing.
+     *
+     * @return A digest that is the same for the same classes with the same hashes.
+     */
+    static String digestClasses(Collection<String> classes, Map<String, String> hashes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String className : new TreeSet<>(classes)) {
+                digest.update((className + '=' + hashes.getOrDefault(className, "-") + '\n')
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Returns the classes that the result of a test depends on, as far as they differ from the original code: the
+     * modified classes that the test covered in the original code, and the modified classes that no test covered
+     * (these have no coverage data, so any test may use them). Unmodified classes are left out, as their hashes are
+     * the same for all variants.
+     *
+     * @param coveredClasses The classes that the test covered in the original code.
+     * @param modifiedClasses All classes that differ from the original code.
+     * @param modifiedUncoveredClasses The modified classes that no test covered in the original code.
+     *
+     * @return The classes to include in the digest of the cache key (see {@link #digestClasses(Collection, Map)}).
+     */
+    static Set<String> getKeyClasses(Set<String> coveredClasses, Set<String> modifiedClasses,
+            Set<String> modifiedUncoveredClasses) {
+        Set<String> result = new HashSet<>(modifiedUncoveredClasses);
+        for (String className : coveredClasses) {
+            if (modifiedClasses.contains(className)) {
+                result.add(className);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Creates the cache key for the given test.
+     *
+     * @param testIdentifier The identifier of the test (see {@link TestResult#getIdentifier()}).
+     * @param classDigest A digest of the classes that the result of the test depends on, as created by
+     *      {@link #digestClasses(Collection, Map)}.
+     *
+     * @return The cache key.
+     */
+    static String createKey(String testIdentifier, String classDigest) {
+        return testIdentifier + '#' + classDigest;
+    }
+    
+    public synchronized TestResult get(String key) {
+        return results.get(key);
+    }
+    
+    public synchronized void put(String key, TestResult result) {
+        results.put(key, result);
+    }
+    
+    public synchronized int size() {
+        return results.size();
+    }
+    
+}
@@ -3,16 +3,24 @@ package net.ssehub.program_repair.geneseer.evaluation;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+import net.ssehub.program_repair.geneseer.Configuration;
 import net.ssehub.program_repair.geneseer.Project;
 import net.ssehub.program_repair.geneseer.Result.EvaluationStats;
 import net.ssehub.program_repair.geneseer.code.Node;
@@ -20,12 +28,16 @@ import net.ssehub.program_repair.geneseer.code.Node.Metadata;
 import net.ssehub.program_repair.geneseer.util.FileUtils;
 import net.ssehub.program_repair.geneseer.util.TemporaryDirectoryManager;
 
-public class TestSuite {
+public class TestSuite implements AutoCloseable {
 
     private static final Logger LOG = Logger.getLogger(TestSuite.class.getName());
     
+    private Project project;
+    
     private ProjectCompiler compiler;
     
+    private ProjectCompiler pipelineCompiler;
+    
     private JunitEvaluation junitSuite;
     
     private FaultLocalization faultLocalization;
@@ -40,19 +52,41 @@ public class TestSuite {
     
     private EvaluationStats evaluationStats;
     
+    private TestResultCache resultCache;
+    
+    private Map<Path, ClassFileHashes> classFileHashes;
+    
+    private Map<String, String> originalClassHashes;
+    
+    private Map<String, Set<String>> coveredClasses;
+    
+    private Set<String> classesCoveredByAnyTest;
+    
+    private TestHistory history;
+    
+    private Map<String, Long> expectedClassDurations = Map.of();
+    
     public TestSuite(Project project, Node sourceCode, boolean withFaulLocalization,
             TemporaryDirectoryManager tempDirManager, EvaluationStats evaluationStats) throws EvaluationException {
         this.tempDirManager = tempDirManager;
         this.evaluationStats = evaluationStats;
-        this.compiler = createCompiler(project);
+        this.project = project;
+        this.compiler = createCompiler(null);
         this.junitSuite = new JunitEvaluation(project.getProjectDirectory(),
-                project.getTestExecutionClassPathAbsolute(), project.getEncoding(), project.getSplitTestClassLoaders());
+                project.getTestExecutionClassPathAbsolute(), project.getEncoding(), project.getSplitTestClassLoaders(),
+                evaluationStats);
+        if (project.getInProcessTestExecution()) {
+            this.junitSuite.enableInProcessExecution(project.getSplitTestClassLoaders());
+        }
         if (withFaulLocalization) {
             this.faultLocalization = new FaultLocalization(project.getProjectDirectory(),
                     project.getTestExecutionClassPathAbsolute(), project.getEncoding(),
                     project.getSplitTestClassLoaders(), tempDirManager);
         }
         this.originalSourceCode = sourceCode;
+        if (Configuration.INSTANCE.setup().testHistoryDirectory() != null) {
+            openHistory(project.getProjectDirectory());
+        }
         
         this.testMethods = new LinkedHashMap<>();
         for (String testClass : project.getTestClassNames()) {
@@ -60,32 +94,77 @@ public class TestSuite {
         }
         this.initialTestResults = new LinkedHashMap<>();
         
-        initialize();
+        try {
+            initialize();
+        } catch (EvaluationException e) {
+            close();
+            throw e;
+        }
     }
     
-    private ProjectCompiler createCompiler(Project project) throws CompilationException {
+    /**
+     * Creates a compiler with its own temporary source and output directory.
+     * 
+     * @param template If not <code>null</code>, the new compiler is a second workspace with the same settings as this
+     *      compiler (see {@link ProjectCompiler#ProjectCompiler(ProjectCompiler, Path, Path)}).
+     */
+    private ProjectCompiler createCompiler(ProjectCompiler template) throws CompilationException {
         try {
             Path compilerSourceDirectory = tempDirManager.createTemporaryDirectory();
             Path compilerOutputDirectory = tempDirManager.createTemporaryDirectory();
             FileUtils.copyAllNonJavaSourceFiles(project.getSourceDirectoryAbsolute(), compilerSourceDirectory);
             FileUtils.copyAllNonJavaSourceFiles(project.getSourceDirectoryAbsolute(), compilerOutputDirectory);
-            ProjectCompiler compiler = new ProjectCompiler(project.getCompilationClasspathAbsolute(),
-                    project.getEncoding(), compilerSourceDirectory, compilerOutputDirectory);
-            compiler.setAdditionalOptions(project.getAdditionalCompilerOptions());
+            ProjectCompiler compiler;
+            if (template != null) {
+                compiler = new ProjectCompiler(template, compilerSourceDirectory, compilerOutputDirectory);
+            } else {
+                compiler = new ProjectCompiler(project.getCompilationClasspathAbsolute(), project.getEncoding(),
+                        compilerSourceDirectory, compilerOutputDirectory, evaluationStats);
+                compiler.setAdditionalOptions(project.getAdditionalCompilerOptions());
+            }
             return compiler;
         } catch (IOException e) {
             throw new CompilationException("Can't setup directories for compiler", e);
         }
     }
     
+    private void openHistory(Path projectDirectory) {
+        try {
+            history = TestHistory.open(Path.of(Configuration.INSTANCE.setup().testHistoryDirectory()),
+                    projectDirectory);
+            junitSuite.setHistoricalClassDurations(history.getClassDurations());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Can't read test history; not using it", e);
+        }
+    }
+    
+    private void recordHistory(List<TestResult> testResult, Map<String, Long> classDurations) {
+        try {
+            if (classDurations != null) {
+                history.recordClassDurations(classDurations);
+            }
+            history.recordResults(testResult);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Can't write test history; not using it anymore", e);
+            history = null;
+        }
+    }
+    
     private void initialize() throws EvaluationException {
         LOG.info("Compiling original source code");
         compiler.setLogResultToInfo(true);
-        compile(originalSourceCode);
+        compile(compiler, originalSourceCode);
         compiler.setLogResultToInfo(false);
         
         LOG.info("Running test suite on original code");
         List<TestResult> testResult = runTests(compiler.getOutputDirectory(), testMethods.keySet());
+        Map<String, Long> classDurations = junitSuite.getLastClassDurations();
+        LOG.fine(() -> "Test class durations in original evaluation: " + classDurations);
+        junitSuite.setExpectedClassDurations(classDurations);
+        expectedClassDurations = Map.copyOf(classDurations);
+        if (history != null) {
+            recordHistory(List.of(), classDurations);
+        }
         for (TestResult tr : testResult) {
             if (!testMethods.containsKey(tr.testClass())) {
                 throw new TestIntegrityException("Got unknown test class as evaluation result: " + tr.testClass());
@@ -105,6 +184,7 @@ public class TestSuite {
             throw new TestExecutionException("Found " + testNames.size() + " duplicate test names in test result: "
                     + testNames);
         }
+        junitSuite.setTestMethods(testMethods);
         LOG.info(() -> "Got " + getInitialPassingTestResults().size() + " passing and "
                 + getInitialFailingTestResults().size() + " failing tests");
         evaluationStats.setInitialPassingTestCases(getInitialPassingTestResults().size());
@@ -116,82 +196,528 @@ public class TestSuite {
             LOG.info("Running fault localization and annotating original code with suspiciousness");
             faultLocalization.measureAndAnnotateSuspiciousness(originalSourceCode, compiler.getOutputDirectory(),
                     testResult);
+            if (Configuration.INSTANCE.setup().testResultCacheSize() > 0) {
+                initializeResultCache();
+            }
         } else {
             LOG.info("Not running fault localization because the selected fixer does not require it");
         }
     }
     
+    private void initializeResultCache() throws TestExecutionException {
+        coveredClasses = faultLocalization.getCoveredClassesByTest();
+        classesCoveredByAnyTest = new HashSet<>();
+        coveredClasses.values().forEach(classesCoveredByAnyTest::addAll);
+        classFileHashes = new HashMap<>();
+        originalClassHashes = computeClassHashes(compiler.getOutputDirectory());
+        resultCache = new TestResultCache(Configuration.INSTANCE.setup().testResultCacheSize());
+        LOG.fine(() -> "Caching test results based on " + originalClassHashes.size() + " class files");
+    }
+    
+    private Map<String, String> computeClassHashes(Path binDirectory) throws TestExecutionException {
+        try {
+            return classFileHashes.computeIfAbsent(binDirectory, ClassFileHashes::new).computeHashes();
+        } catch (IOException e) {
+            throw new TestExecutionException("Failed to hash compiled classes", e);
+        }
+    }
     
     public List<TestResult> evaluate(Node ast) throws EvaluationException {
-        compile(ast);
+        return evaluate(ast, null);
+    }
+    
+    /**
+     * Compiles the given variants together in one batch, before they are evaluated one after the other. This saves
+     * the per-compilation overhead of the compiler; the evaluation then reuses the compiled class files.
+     * 
+     * @param variants The variants that are evaluated next.
+     * 
+     * @return For each variant, whether it may compile. Variants for which this is <code>false</code> failed to
+     *      compile and do not need to be evaluated.
+     */
+    public List<Boolean> compileBatch(List<Node> variants) {
+        List<Boolean> result = new ArrayList<>(variants.size());
+        for (CompilationException e : compiler.compileBatch(variants)) {
+            if (e != null) {
+                evaluationStats.increaseCompilations();
+            }
+            // if the compiler could not be run, the variant is compiled again when it is evaluated
+            result.add(e == null || !e.hasErrors());
+        }
+        return result;
+    }
+    
+    /**
+     * Evaluates the given variant. If an {@link AbortCriterion} is given, it is informed about every test result as
+     * soon as it is known, starting with the initial (or cached) results of the tests that do not need to be re-run.
+     * Once it requests an abort, the remaining test classes are not run; their tests are returned as failures for which
+     * {@link TestResult#isSkipped()} is <code>true</code>.
+     */
+    public List<TestResult> evaluate(Node ast, AbortCriterion abortCriterion) throws EvaluationException {
+        return evaluate(ast, abortCriterion, null);
+    }
+    
+    /**
+     * Evaluates the given variant, like {@link #evaluate(Node, AbortCriterion)}. If a second stage condition is given,
+     * the relevant tests are run in two stages: first only the initially failing tests, then the remaining tests. The
+     * second stage is only run if the condition accepts the results of all initially failing tests; otherwise, the
+     * remaining tests are returned as skipped.
+     * 
+     * @param secondStageCondition Decides, based on the results of the initially failing tests, whether the remaining
+     *      tests are run. May be <code>null</code>, in which case all relevant tests are run at once.
+     */
+    public List<TestResult> evaluate(Node ast, AbortCriterion abortCriterion,
+            Predicate<List<TestResult>> secondStageCondition) throws EvaluationException {
+        compile(compiler, ast);
+        return evaluateCompiled(compiler.getOutputDirectory(), ast, abortCriterion, secondStageCondition);
+    }
+    
+    /**
+     * Opens a pipeline that evaluates the given variants one after the other, while the next variant is already
+     * compiled in a second workspace (see {@link EvaluationPipeline}). The pipeline must be closed before this test
+     * suite is used otherwise.
+     * 
+     * @param variants The variants to evaluate, in order.
+     * 
+     * @return The pipeline, which starts compiling the first variants immediately.
+     * 
+     * @throws CompilationException If setting up the second workspace fails.
+     */
+    public EvaluationPipeline openPipeline(List<Node> variants) throws CompilationException {
+        if (pipelineCompiler == null) {
+            pipelineCompiler = createCompiler(compiler);
+        }
+        return new EvaluationPipeline(this, List.of(compiler, pipelineCompiler), variants);
+    }
+    
+    /**
+     * Runs the relevant tests of the given variant, like {@link #evaluate(Node, AbortCriterion, Predicate)}, on the
+     * class files that it was already compiled to.
+     * 
+     * @param binDirectory The output directory that the variant was compiled into.
+     */
+    List<TestResult> evaluateCompiled(Path binDirectory, Node ast, AbortCriterion abortCriterion,
+            Predicate<List<TestResult>> secondStageCondition) throws EvaluationException {
+        Map<String, Set<String>> relevantTests = getRelevantTests(ast);
+        List<TestResult> unchangedTestResult = getUnchangedTestResults(relevantTests);
+        Map<String, String> cacheKeys = new HashMap<>();
+        if (resultCache != null) {
+            unchangedTestResult.addAll(takeCachedResults(binDirectory, relevantTests, cacheKeys));
+        }
+        
+        List<TestResult> testResult;
+        if (abortCriterion != null && unchangedTestResult.stream().anyMatch(abortCriterion::shouldAbort)) {
+            LOG.fine("Not running any tests, as the abort criterion is already fulfilled by unchanged test results");
+            testResult = skip(relevantTests);
+            if (!testResult.isEmpty()) {
+                evaluationStats.increaseAbortedEvaluations();
+                evaluationStats.increaseSkippedTestCases(testResult.size());
+            }
+            
+        } else if (secondStageCondition != null) {
+            testResult = runInStages(binDirectory, relevantTests, unchangedTestResult, abortCriterion,
+                    secondStageCondition);
+            
+        } else {
+            testResult = runRelevantTests(binDirectory, relevantTests, abortCriterion);
+        }
+        
+        if (resultCache != null) {
+            fillCache(testResult, cacheKeys);
+        }
+        if (history != null) {
+            logTimeToFirstFailure(relevantTests, testResult);
+            recordHistory(testResult, null);
+        }
+        if (Configuration.INSTANCE.setup().autotuneConcurrency()) {
+            ConcurrencyTuner.INSTANCE.recordEvaluation(evaluationStats);
+        }
+        
+        List<TestResult> extendedTestResult = new LinkedList<>(testResult);
+        extendedTestResult.addAll(unchangedTestResult);
+        return extendedTestResult;
+    }
+    
+    /**
+     * Runs the initially failing tests of the relevant tests, and the remaining relevant tests only if the given
+     * condition accepts the results of all initially failing tests. If none of the initially failing tests has to be
+     * run (e.g. because they are not relevant for the variant, or their results are cached), there is no first stage
+     * to judge the variant by, so the remaining relevant tests are run directly.
+     */
+    private List<TestResult> runInStages(Path binDirectory, Map<String, Set<String>> relevantTests,
+            List<TestResult> unchangedTestResult, AbortCriterion abortCriterion,
+            Predicate<List<TestResult>> secondStageCondition) throws TestExecutionException {
+        
+        Set<String> failingTests = getInitialFailingTestResults().stream()
+                .map(TestResult::getIdentifier)
+                .collect(Collectors.toSet());
+        Map<String, Set<String>> firstStage = new LinkedHashMap<>();
+        Map<String, Set<String>> secondStage = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> entry : relevantTests.entrySet()) {
+            for (String testMethod : entry.getValue()) {
+                Map<String, Set<String>> stage = failingTests.contains(entry.getKey() + "::" + testMethod)
+                        ? firstStage : secondStage;
+                stage.computeIfAbsent(entry.getKey(), k -> new LinkedHashSet<>()).add(testMethod);
+            }
+        }
+        
+        List<TestResult> testResult = new LinkedList<>(runRelevantTests(binDirectory, firstStage, abortCriterion));
+        boolean aborted = testResult.stream().anyMatch(TestResult::isSkipped);
+        List<TestResult> failingTestResults = new LinkedList<>(testResult);
+        unchangedTestResult.stream()
+                .filter(tr -> failingTests.contains(tr.getIdentifier()))
+                .forEach(failingTestResults::add);
+        
+        if (aborted) {
+            List<TestResult> skipped = skip(secondStage);
+            evaluationStats.increaseSkippedTestCases(skipped.size());
+            testResult.addAll(skipped);
+            
+        } else if (firstStage.isEmpty() || secondStage.isEmpty() || secondStageCondition.test(failingTestResults)) {
+            testResult.addAll(runRelevantTests(binDirectory, secondStage, abortCriterion));
+            
+        } else {
+            List<TestResult> skipped = skip(secondStage);
+            LOG.fine(() -> "Initially failing tests did not improve enough, skipping " + skipped.size()
+                    + " remaining tests");
+            evaluationStats.increaseSkippedSecondStages();
+            evaluationStats.increaseSecondStageSkippedTestCases(skipped.size());
+            testResult.addAll(skipped);
+        }
+        return testResult;
+    }
+    
+    /**
+     * Runs the given relevant tests. If the given {@link AbortCriterion} requests an abort, the tests of the test
+     * classes that were not run are returned as skipped.
+     */
+    private List<TestResult> runRelevantTests(Path binDirectory, Map<String, Set<String>> relevantTests,
+            AbortCriterion abortCriterion) throws TestExecutionException {
+        
+        List<TestResult> testResult = List.of();
+        if (!relevantTests.isEmpty()) {
+            AbortCriterion classAbortCriterion = null;
+            if (abortCriterion != null) {
+                classAbortCriterion = tr -> expandTimeout(tr, relevantTests).stream()
+                        .anyMatch(abortCriterion::shouldAbort);
+            }
+            testResult = runTests(binDirectory, relevantTests.keySet(), getSelectedMethods(relevantTests),
+                    classAbortCriterion);
+        }
         
-        Set<String> relevantTestClasses = getRelevantTestClasses(ast);
-        List<TestResult> testResult = runTests(compiler.getOutputDirectory(), relevantTestClasses);
         List<TestResult> extendedTestResult = new LinkedList<>();
+        Set<String> executedTestClasses = new HashSet<>();
         for (TestResult tr : testResult) {
             Set<String> knownMethods = testMethods.get(tr.testClass());
             if  (knownMethods == null) {
                 throw new TestIntegrityException("Unknown test class in result: " + tr.testClass());
             }
-            if (tr.isTimeout()) {
-                for (String testMethod : knownMethods) {
-                    extendedTestResult.add(new TestResult(tr.testClass(), tr.implementingClass(),
-                            testMethod, "Timeout"));
+            if (!tr.isTimeout() && !knownMethods.contains(tr.getMethodIdentifier())) {
+                throw new TestIntegrityException("Unknown test method in result: " + tr.getIdentifier());
+            }
+            extendedTestResult.addAll(expandTimeout(tr, relevantTests));
+            executedTestClasses.add(tr.testClass());
+        }
+        
+        if (abortCriterion != null) {
+            Map<String, Set<String>> notExecuted = new LinkedHashMap<>(relevantTests);
+            notExecuted.keySet().removeAll(executedTestClasses);
+            List<TestResult> skipped = skip(notExecuted);
+            if (!skipped.isEmpty()) {
+                LOG.fine(() -> "Aborted evaluation early, skipped " + skipped.size() + " tests");
+                evaluationStats.increaseAbortedEvaluations();
+                evaluationStats.increaseSkippedTestCases(skipped.size());
+                extendedTestResult.addAll(skipped);
+            }
+        }
+        return extendedTestResult;
+    }
+    
+    private static List<TestResult> skip(Map<String, Set<String>> tests) {
+        List<TestResult> skipped = new LinkedList<>();
+        for (Map.Entry<String, Set<String>> entry : tests.entrySet()) {
+            for (String testMethod : entry.getValue()) {
+                skipped.add(new TestResult(entry.getKey(), entry.getKey(), testMethod, TestResult.SKIPPED));
+            }
+        }
+        return skipped;
+    }
+    
+    /**
+     * Returns the relevant tests of the classes of which not all test methods are relevant.
+     */
+    private Map<String, Set<String>> getSelectedMethods(Map<String, Set<String>> relevantTests) {
+        Map<String, Set<String>> selectedMethods = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : relevantTests.entrySet()) {
+            if (entry.getValue().size() < testMethods.get(entry.getKey()).size()) {
+                selectedMethods.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return selectedMethods;
+    }
+    
+    /**
+     * Removes the relevant tests whose result is known without running them, and returns their results. If none of
+     * the classes covered by a test in the original code changed, the test behaves as in the original code, and its
+     * initial result is used. Otherwise, its result is looked up by the hashes of the classes it covered in the
+     * original code, so that changes to classes that the test does not use don't cause cache misses.
+     * <p>
+     * Classes without any covered line (e.g. interfaces or holders of constants, which have no JaCoCo probes) never
+     * appear in the covered classes of a test, even if the test uses them. If such a class changed, no initial result
+     * is used, and the hashes of these classes are part of the key of every test (see
+     * {@link TestResultCache#getKeyClasses(Set, Set, Set)}).
+     * 
+     * @param binDirectory The output directory that the variant was compiled into.
+     * @param relevantTests The relevant tests by test class. Tests with a known result are removed.
+     * @param cacheKeys Is filled with the cache key of each remaining test, by test identifier.
+     * 
+     * @return The known results.
+     */
+    private List<TestResult> takeCachedResults(Path binDirectory, Map<String, Set<String>> relevantTests,
+            Map<String, String> cacheKeys) throws TestExecutionException {
+        
+        Map<String, String> classHashes = computeClassHashes(binDirectory);
+        Set<String> modifiedClasses = new HashSet<>();
+        classHashes.forEach((c, h) -> {
+            if (!h.equals(originalClassHashes.get(c))) {
+                modifiedClasses.add(c);
+            }
+        });
+        originalClassHashes.keySet().stream().filter(c -> !classHashes.containsKey(c)).forEach(modifiedClasses::add);
+        Set<String> modifiedUncoveredClasses = new HashSet<>(modifiedClasses);
+        modifiedUncoveredClasses.removeAll(classesCoveredByAnyTest);
+        boolean uncoveredClassModified = !modifiedUncoveredClasses.isEmpty();
+        // many tests cover the same modified classes, so each digest is only computed once
+        Map<Set<String>, String> classDigests = new HashMap<>();
+        
+        List<TestResult> cachedResults = new LinkedList<>();
+        int numRemaining = 0;
+        for (Iterator<Map.Entry<String, Set<String>>> it = relevantTests.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Set<String>> entry = it.next();
+            Set<String> remaining = new LinkedHashSet<>();
+            for (String testMethod : entry.getValue()) {
+                String testName = entry.getKey() + "::" + testMethod;
+                Set<String> covered = coveredClasses.getOrDefault(testName, Set.of());
+                TestResult result;
+                if (!uncoveredClassModified && Collections.disjoint(covered, modifiedClasses)) {
+                    result = initialTestResults.get(testName);
+                } else {
+                    Set<String> keyClasses = TestResultCache.getKeyClasses(covered, modifiedClasses,
+                            modifiedUncoveredClasses);
+                    String key = TestResultCache.createKey(testName, classDigests.computeIfAbsent(keyClasses,
+                            k -> TestResultCache.digestClasses(k, classHashes)));
+                    result = resultCache.get(key);
+                    cacheKeys.put(testName, key);
                 }
-            } else {
-                if (!knownMethods.contains(tr.getMethodIdentifier())) {
-                    throw new TestIntegrityException("Unknown test method in result: " + tr.getIdentifier());
+                if (result != null) {
+                    cachedResults.add(result);
+                } else {
+                    remaining.add(testMethod);
                 }
-                extendedTestResult.add(tr);
+            }
+            numRemaining += remaining.size();
+            if (remaining.isEmpty()) {
+                it.remove();
+            } else {
+                entry.setValue(remaining);
             }
         }
         
+        int n = numRemaining;
+        LOG.fine(() -> "Got " + cachedResults.size() + " test results from cache, " + n + " tests remaining");
+        evaluationStats.increaseTestResultCacheHits(cachedResults.size());
+        evaluationStats.increaseTestResultCacheMisses(numRemaining);
+        return cachedResults;
+    }
+    
+    private void fillCache(List<TestResult> testResults, Map<String, String> cacheKeys) {
+        for (TestResult result : testResults) {
+            String key = cacheKeys.get(result.getIdentifier());
+            // timeouts depend on the load of the machine, skipped tests have no real result
+            if (key != null && !result.isSkipped() && !"Timeout".equals(result.failureStacktrace())) {
+                resultCache.put(key, result);
+            }
+        }
+    }
+    
+    /**
+     * Returns the initial results of all tests that are not relevant for the current variant.
+     */
+    private List<TestResult> getUnchangedTestResults(Map<String, Set<String>> relevantTests)
+            throws TestIntegrityException {
+        List<TestResult> unchangedTestResult = new LinkedList<>();
         for (Map.Entry<String, Set<String>> entry : testMethods.entrySet()) {
-            if (!relevantTestClasses.contains(entry.getKey())) {
-                for (String testMethod : entry.getValue()) {
+            Set<String> relevantMethods = relevantTests.getOrDefault(entry.getKey(), Set.of());
+            for (String testMethod : entry.getValue()) {
+                if (!relevantMethods.contains(testMethod)) {
                     String testName = entry.getKey() + "::" + testMethod;
                     TestResult initialResult = initialTestResults.get(testName);
                     if (initialResult == null) {
                         throw new TestIntegrityException("Can't find initial result for test " + testName);
                     }
-                    extendedTestResult.add(initialResult);
+                    unchangedTestResult.add(initialResult);
                 }
             }
         }
-        
-        return extendedTestResult;
+        return unchangedTestResult;
+    }
+    
+    private static List<TestResult> expandTimeout(TestResult tr, Map<String, Set<String>> relevantTests) {
+        List<TestResult> result;
+        if (tr.isTimeout()) {
+            result = new LinkedList<>();
+            for (String testMethod : relevantTests.getOrDefault(tr.testClass(), Set.of())) {
+                result.add(new TestResult(tr.testClass(), tr.implementingClass(), testMethod, "Timeout"));
+            }
+        } else {
+            result = List.of(tr);
+        }
+        return result;
     }
 
-    @SuppressWarnings("unchecked")
-    private Set<String> getRelevantTestClasses(Node ast) throws EvaluationException, TestIntegrityException {
-        Set<String> relevantTestClasses = new LinkedHashSet<>();
+    /**
+     * Determines the tests that need to be run for the given variant.
+     * 
+     * @return The relevant test methods (as method identifiers) by test class, in the order of {@link #testMethods},
+     *      or, if there is a test history, in the order of {@link #orderByHistory(Map)}.
+     */
+    private Map<String, Set<String>> getRelevantTests(Node ast) throws EvaluationException {
+        Set<String> relevantTestClasses = new HashSet<>();
+        Set<String> impactedTests = new HashSet<>();
         if (faultLocalization != null) {
-            Set<Node> modifiedFiles = computeModifiedFiles(originalSourceCode, ast);
-            for (Node modifiedFile : modifiedFiles) {
-                if (modifiedFile.getMetadata(Metadata.COVERED_BY) == null) {
-                    throw new TestIntegrityException("File node is missing coverage information");
-                }
-            }
-            LOG.fine(() -> "Detected " + modifiedFiles.size() + " modified files: " + modifiedFiles.stream()
+            Map<Node, Node> modifiedFiles = computeModifiedFiles(originalSourceCode, ast);
+            LOG.fine(() -> "Detected " + modifiedFiles.size() + " modified files: " + modifiedFiles.values().stream()
                     .map(n -> n.getMetadata(Metadata.FILE_NAME))
                         .toList());
-            modifiedFiles.stream()
-                    .map(n -> (Set<String>) n.getMetadata(Metadata.COVERED_BY))
-                    .flatMap(Set::stream)
-                    .forEach(relevantTestClasses::add);
-            LOG.fine(() -> "Only running " + relevantTestClasses.size() + " relevant test classes (out of "
-                    + testMethods.size() + " total): " + relevantTestClasses);
+            for (Map.Entry<Node, Node> modifiedFile : modifiedFiles.entrySet()) {
+                Set<String> fileImpactedTests = null;
+                if (Configuration.INSTANCE.setup().statementLevelTestSelection()) {
+                    fileImpactedTests = StatementImpact.getImpactedTests(modifiedFile.getKey(),
+                            modifiedFile.getValue());
+                }
+                if (fileImpactedTests != null) {
+                    impactedTests.addAll(fileImpactedTests);
+                } else {
+                    relevantTestClasses.addAll(getCoveringTestClasses(modifiedFile.getValue()));
+                }
+            }
+            if (Configuration.INSTANCE.setup().statementLevelTestSelection()) {
+                getInitialFailingTestResults().stream().map(TestResult::getIdentifier).forEach(impactedTests::add);
+                if (!junitSuite.canRunSelectedMethods()) {
+                    // test driver processes run whole test classes anyway, so use all of their results
+                    impactedTests.stream()
+                            .map(t -> t.substring(0, t.indexOf("::")))
+                            .forEach(relevantTestClasses::add);
+                }
+            }
             
         } else {
             relevantTestClasses.addAll(testMethods.keySet());
             LOG.fine(() -> "Did not run fault localization, so need to run all " + relevantTestClasses.size()
                     + " test classes");
         }
-        return relevantTestClasses;
+        
+        Map<String, Set<String>> relevantTests = new LinkedHashMap<>();
+        int numMethods = 0;
+        for (Map.Entry<String, Set<String>> entry : testMethods.entrySet()) {
+            Set<String> methods;
+            if (relevantTestClasses.contains(entry.getKey())) {
+                methods = entry.getValue();
+            } else {
+                methods = entry.getValue().stream()
+                        .filter(m -> impactedTests.contains(entry.getKey() + "::" + m))
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
+            }
+            if (!methods.isEmpty()) {
+                relevantTests.put(entry.getKey(), methods);
+                numMethods += methods.size();
+            }
+        }
+        int n = numMethods;
+        LOG.fine(() -> "Only running " + n + " relevant test methods (out of " + initialTestResults.size()
+                + " total) in " + relevantTests.size() + " test classes: " + relevantTests.keySet());
+        return history != null ? orderByHistory(relevantTests) : relevantTests;
+    }
+    
+    /**
+     * Orders the given test classes so that those most likely to fail run first, so that an {@link AbortCriterion}
+     * can stop the evaluation early. A class is as likely to fail as its most likely failing test method, according
+     * to the test history. Classes with tests that timed out before run last, as they are expensive to run.
+     */
+    private Map<String, Set<String>> orderByHistory(Map<String, Set<String>> relevantTests) {
+        Map<String, Double> killProbabilities = new HashMap<>();
+        Set<String> timedOut = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : relevantTests.entrySet()) {
+            double killProbability = 0.0;
+            for (String testMethod : entry.getValue()) {
+                String testName = entry.getKey() + "::" + testMethod;
+                killProbability = Math.max(killProbability, history.getKillProbability(testName));
+                if (history.getTimeouts(testName) > 0) {
+                    timedOut.add(entry.getKey());
+                }
+            }
+            killProbabilities.put(entry.getKey(), killProbability);
+        }
+        
+        List<String> testClasses = new ArrayList<>(relevantTests.keySet());
+        testClasses.sort(Comparator.comparing((String c) -> timedOut.contains(c))
+                .thenComparing(Comparator.comparingDouble((String c) -> killProbabilities.get(c)).reversed()));
+        
+        Map<String, Set<String>> ordered = new LinkedHashMap<>();
+        for (String testClass : testClasses) {
+            ordered.put(testClass, relevantTests.get(testClass));
+        }
+        return ordered;
+    }
+    
+    /**
+     * Logs the expected time until the first failing test class finishes, in the order of the test history (as run)
+     * and in the default order of {@link #testMethods}. The times are sums of the expected durations of the test
+     * classes, so they ignore parallel test driver processes; classes that were not run (e.g. because of an abort)
+     * count as passing.
+     * 
+     * @param relevantTests The test classes that were run, in the order they were run in.
+     */
+    private void logTimeToFirstFailure(Map<String, Set<String>> relevantTests, List<TestResult> testResult) {
+        if (LOG.isLoggable(Level.FINE)) {
+            Set<String> failingClasses = testResult.stream()
+                    .filter(tr -> tr.isFailure() && !tr.isSkipped())
+                    .map(TestResult::testClass)
+                    .collect(Collectors.toSet());
+            if (!failingClasses.isEmpty()) {
+                List<String> defaultOrder = testMethods.keySet().stream()
+                        .filter(relevantTests::containsKey)
+                        .toList();
+                long historyOrderMs = getTimeToFirstFailure(relevantTests.keySet(), failingClasses);
+                long defaultOrderMs = getTimeToFirstFailure(defaultOrder, failingClasses);
+                LOG.fine(() -> "Expected time to first failure: " + historyOrderMs + " ms in history order, "
+                        + defaultOrderMs + " ms in default order");
+            }
+        }
+    }
+    
+    private long getTimeToFirstFailure(Collection<String> testClasses, Set<String> failingClasses) {
+        long time = 0;
+        for (String testClass : testClasses) {
+            time += expectedClassDurations.getOrDefault(testClass, 0L);
+            if (failingClasses.contains(testClass)) {
+                break;
+            }
+        }
+        return time;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Set<String> getCoveringTestClasses(Node fileNode) throws TestIntegrityException {
+        Set<String> coveredBy = (Set<String>) fileNode.getMetadata(Metadata.COVERED_BY);
+        if (coveredBy == null) {
+            throw new TestIntegrityException("File node is missing coverage information");
+        }
+        return coveredBy;
     }
     
     public List<TestResult> runAndAnnotateFaultLocalization(Node ast) throws EvaluationException {
-        compile(ast);
+        compile(compiler, ast);
         
         List<TestResult> testResult = runTests(compiler.getOutputDirectory(), testMethods.keySet());
         for (TestResult tr : testResult) {
@@ -211,18 +737,30 @@ public class TestSuite {
         if (faultLocalization != null) {
             faultLocalization.measureAndAnnotateSuspiciousness(ast, compiler.getOutputDirectory(), testResult);
         }
+        if (history != null) {
+            recordHistory(testResult, null);
+        }
         
         return testResult;
     }
     
-    private void compile(Node ast) throws CompilationException {
+    /**
+     * Compiles the given AST with the given compiler, which is either the compiler of this test suite or the one of the
+     * second workspace of an {@link EvaluationPipeline}.
+     */
+    void compile(ProjectCompiler compiler, Node ast) throws CompilationException {
         evaluationStats.increaseCompilations();
         compiler.compile(ast);
     }
     
     private List<TestResult> runTests(Path binDirectory, Set<String> testClassNames) throws TestExecutionException {
+        return runTests(binDirectory, testClassNames, Map.of(), null);
+    }
+    
+    private List<TestResult> runTests(Path binDirectory, Set<String> testClassNames,
+            Map<String, Set<String>> selectedMethods, AbortCriterion abortCriterion) throws TestExecutionException {
         evaluationStats.increaseTestSuiteRuns();
-        return junitSuite.runTests(binDirectory, testClassNames);
+        return junitSuite.runTests(binDirectory, testClassNames, selectedMethods, abortCriterion);
     }
     
     private static Map<Path, Node> getFileNodesByPath(Node astRoot)  throws EvaluationException {
@@ -239,7 +777,12 @@ public class TestSuite {
         return fileNodes;
     }
     
-    private static Set<Node> computeModifiedFiles(Node oldAst, Node newAst) throws EvaluationException {
+    /**
+     * Returns the files that differ between the given ASTs.
+     * 
+     * @return The modified file nodes of the new AST, mapped by the corresponding file nodes of the old AST.
+     */
+    private static Map<Node, Node> computeModifiedFiles(Node oldAst, Node newAst) throws EvaluationException {
         Map<Path, Node> oldAstFiles = getFileNodesByPath(oldAst);
         Map<Path, Node> newAstFiles = getFileNodesByPath(newAst);
         
@@ -247,12 +790,12 @@ public class TestSuite {
             throw new TestIntegrityException("Files have changed between old and new AST");
         }
         
-        Set<Node> modifiedFiles = new LinkedHashSet<>();
+        Map<Node, Node> modifiedFiles = new LinkedHashMap<>();
         for (Path file : newAstFiles.keySet()) {
             Node newFile = newAstFiles.get(file);
             Node oldFile = oldAstFiles.get(file);
             if (!oldFile.contentEquals(newFile)) {
-                modifiedFiles.add(newFile);
+                modifiedFiles.put(oldFile, newFile);
             }
         }
         
@@ -275,4 +818,22 @@ public class TestSuite {
                 .collect(Collectors.toUnmodifiableList());
     }
     
+    @Override
+    public void close() {
+        junitSuite.close();
+        if (history != null) {
+            try {
+                history.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Can't write test history", e);
+            }
+        }
+        if (compiler != null) {
+            compiler.close();
+        }
+        if (pipelineCompiler != null) {
+            pipelineCompiler.close();
+        }
+    }
+    
 }
@@ -5,8 +5,24 @@ public class TestTimeoutException extends TestExecutionException {
 
     private static final long serialVersionUID = 2350705615071892568L;
 
+    private final boolean cpuTimeExceeded;
+
     TestTimeoutException(String message) {
+        this(message, false);
+    }
+
+    TestTimeoutException(String message, boolean cpuTimeExceeded) {
         super(message);
+        this.cpuTimeExceeded = cpuTimeExceeded;
+    }
+
+    /**
+     * Returns whether the timeout was caused by the CPU time limit of the test driver process (see
+     * {@link net.ssehub.program_repair.geneseer.Configuration.SetupConfiguration#cpuTimeTimeouts()}), instead of a
+     * wall-clock time limit.
+     */
+    public boolean isCpuTimeExceeded() {
+        return cpuTimeExceeded;
     }
 
 }
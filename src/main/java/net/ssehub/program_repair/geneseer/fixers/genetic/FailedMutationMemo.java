@@ -0,0 +1,125 @@
+package net.ssehub.program_repair.geneseer.fixers.genetic;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ssehub.program_repair.geneseer.code.Node;
+import net.ssehub.program_repair.geneseer.code.Node.Metadata;
+import net.ssehub.program_repair.geneseer.code.Node.Type;
+
+/**
+ * A bounded memo of mutations that made a variant fail to compile, so that the same mutation is not tried again. A
+ * mutation is identified by its location, its operation, and the text of the inserted statement. The location is the
+ * file, the enclosing method (or type, for statements outside of methods), and the index of the statement in it; the
+ * text of the enclosing method is part of the key, so that entries no longer match once the method changes. If the
+ * memo is full, the least recently used entry is evicted.
+ */
+class FailedMutationMemo {
+    
+    private static final Object PRESENT = new Object();
+    
+    /**
+     * The keys of the failed mutations, in access order. The values are always {@link #PRESENT}; a set view of the map
+     * can't be used, as its <code>contains()</code> does not update the access order.
+     */
+    private Map<String, Object> failures;
+    
+    /**
+     * Creates a new, empty memo.
+     *
+     * @param capacity The maximum number of failed mutations to keep.
+     */
+    FailedMutationMemo(int capacity) {
+        this.failures = new LinkedHashMap<>(16, 0.75f, true) {
+            
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > capacity;
+            }
+        
+        };
+    }
+    
+    /**
+     * Creates the location part of a key, for a mutation of the given statement.
+     *
+     * @param astRoot The root of the AST that contains the statement.
+     * @param statement The statement that is mutated.
+     *
+     * @return The location, which is the same for the same statement in an unchanged method.
+     */
+    static String getLocation(Node astRoot, Node statement) {
+        List<Node> path = astRoot.getPath(statement);
+        Node file = null;
+        Node context = null;
+        for (Node node : path) {
+            if (node.getType() == Type.COMPILATION_UNIT) {
+                file = node;
+                context = node;
+            } else if (node.getType() == Type.TYPE || node.getType() == Type.METHOD
+                    || node.getType() == Type.CONSTRUCTOR) {
+                context = node;
+            }
+        }
+        if (file == null) {
+            throw new IllegalArgumentException("Statement is not in a file");
+        }
+        
+        List<Node> statements = context.stream().filter(n -> n.getType() == Type.STATEMENT).toList();
+        return file.getMetadata(Metadata.FILE_NAME) + "#" + statements.indexOf(statement) + "#"
+                + hash(context.getTextSingleLine());
+    }
+    
+    /**
+     * Creates the key of a mutation.
+     *
+     * @param location The location of the mutated statement, as created by {@link #getLocation(Node, Node)}.
+     * @param operation The mutation operation, e.g. <code>ins</code>.
+     * @param otherStatement The statement that is inserted, or <code>null</code> if the operation has none.
+     *
+     * @return The key, which is the same for the same mutation of the same statement in an unchanged method.
+     */
+    static String createKey(String location, String operation, Node otherStatement) {
+        String key = location + "#" + operation;
+        if (otherStatement != null) {
+            key += "#" + hash(otherStatement.getTextSingleLine());
+        }
+        return key;
+    }
+    
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Checks whether the mutation with the given key is known to fail to compile, and marks it as recently used.
+     */
+    public synchronized boolean isKnownFailure(String key) {
+        return failures.get(key) != null;
+    }
+    
+    /**
+     * Records that the mutation with the given key made a variant fail to compile, i.e. the compiler reported errors.
+     * Failures to run the compiler at all must not be recorded, as they are not caused by the mutation.
+     */
+    public synchronized void addFailure(String key) {
+        failures.put(key, PRESENT);
+    }
+    
+    public synchronized int size() {
+        return failures.size();
+    }
+    
+}
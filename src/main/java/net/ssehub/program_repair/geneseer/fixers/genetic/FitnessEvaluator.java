@@ -1,8 +1,10 @@
 package net.ssehub.program_repair.geneseer.fixers.genetic;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -11,8 +13,10 @@ import net.ssehub.program_repair.geneseer.Configuration;
 import net.ssehub.program_repair.geneseer.Result.Fitness;
 import net.ssehub.program_repair.geneseer.code.Node;
 import net.ssehub.program_repair.geneseer.code.Node.Metadata;
+import net.ssehub.program_repair.geneseer.evaluation.AbortCriterion;
 import net.ssehub.program_repair.geneseer.evaluation.CompilationException;
 import net.ssehub.program_repair.geneseer.evaluation.EvaluationException;
+import net.ssehub.program_repair.geneseer.evaluation.EvaluationPipeline;
 import net.ssehub.program_repair.geneseer.evaluation.TestResult;
 import net.ssehub.program_repair.geneseer.evaluation.TestSuite;
 
@@ -73,6 +77,68 @@ class FitnessEvaluator {
         return fitness;
     }
     
+    private double getWeight(TestResult test) {
+        double weight;
+        if (negativeTestNames.contains(test.getIdentifier())) {
+            weight = Configuration.INSTANCE.genetic().negativeTestsWeight();
+        } else if (positiveTestNames.contains(test.getIdentifier())) {
+            weight = Configuration.INSTANCE.genetic().positiveTestsWeight();
+        } else {
+            weight = 0.0;
+        }
+        return weight;
+    }
+    
+    /**
+     * Aborts the evaluation once the fitness that the variant can still reach (i.e., if all remaining tests pass)
+     * drops below the configured fraction of the best fitness found so far.
+     */
+    private class ReachableFitnessCriterion implements AbortCriterion {
+        
+        private double reachableFitness = getMaxFitness();
+        
+        private double threshold;
+        
+        ReachableFitnessCriterion(double threshold) {
+            this.threshold = threshold;
+        }
+        
+        @Override
+        public boolean shouldAbort(TestResult result) {
+            if (result.isFailure()) {
+                reachableFitness -= getWeight(result);
+            }
+            return reachableFitness < threshold;
+        }
+        
+    }
+    
+    private AbortCriterion createAbortCriterion() {
+        AbortCriterion criterion = null;
+        double fraction = Configuration.INSTANCE.genetic().earlyAbortFraction();
+        if (fraction > 0.0) {
+            criterion = new ReachableFitnessCriterion(bestVariant.getFitness() * fraction);
+        }
+        return criterion;
+    }
+    
+    /**
+     * Creates the condition for running the remaining tests after the initially failing tests (see
+     * {@link TestSuite#evaluate(Node, AbortCriterion, Predicate)}): at least the configured number of initially
+     * failing tests must pass. If the remaining tests are not run, they count as failing, so the fitness of such a
+     * variant is never higher than it would be with all tests run.
+     */
+    private Predicate<List<TestResult>> createSecondStageCondition() {
+        Predicate<List<TestResult>> condition = null;
+        int threshold = Configuration.INSTANCE.genetic().stagedEvaluationThreshold();
+        if (threshold > 0) {
+            // with a higher threshold, the second stage would never run, not even for a variant that fixes everything
+            int minPassing = Math.min(threshold, negativeTestNames.size());
+            condition = results -> results.stream().filter(t -> !t.isFailure()).count() >= minPassing;
+        }
+        return condition;
+    }
+    
     public Variant getBestVariant() {
         return bestVariant;
     }
@@ -86,47 +152,151 @@ class FitnessEvaluator {
                 + positiveTestNames.size() * Configuration.INSTANCE.genetic().positiveTestsWeight();
     }
     
-    public void measureFitness(Variant variant, boolean withFaultLocalization) {
-        if (!withFaultLocalization) {
-            for (Node classNode : variant.getAst().childIterator()) {
-                if (classNode.getMetadata(Metadata.COVERED_BY) == null) {
-                    withFaultLocalization = true;
-                    LOG.warning(() -> "Evaluating variant without coverage information; forcing fault localization");
-                    break;
+    /**
+     * Measures the fitness of the given variants, without fault localization. The variants are compiled together in
+     * one batch first (see {@link TestSuite#compileBatch(List)}), or, if
+     * {@link Configuration.GeneticConfiguration#pipelinedEvaluation()} is enabled, each variant is compiled while the
+     * tests of the previous one run (see {@link TestSuite#openPipeline(List)}). Once a variant with maximum fitness is
+     * found, the remaining variants are not measured.
+     */
+    public void measureFitness(List<Variant> variants) {
+        if (Configuration.INSTANCE.genetic().pipelinedEvaluation() && variants.stream().allMatch(this::hasCoverage)) {
+            measureFitnessPipelined(variants);
+        } else {
+            List<Boolean> compiles = testSuite.compileBatch(variants.stream().map(Variant::getAst).toList());
+            for (int i = 0; i < variants.size() && !hasFoundMaxFitness(); i++) {
+                Variant variant = variants.get(i);
+                if (compiles.get(i)) {
+                    measureFitness(variant, false);
+                } else {
+                    variant.setCompilationFailure();
+                    LOG.fine(() -> "Measured fitness: " + variant.toString());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Measures the fitness of the given variants in an {@link EvaluationPipeline}. If the pipeline can't be opened or
+     * fails, the remaining variants are measured one by one instead. Variants for which the compiler could not be run
+     * are measured again one by one after the pipeline is closed, too.
+     */
+    private void measureFitnessPipelined(List<Variant> variants) {
+        List<Variant> sequential = new ArrayList<>();
+        int numMeasured = 0;
+        try (EvaluationPipeline pipeline = testSuite.openPipeline(variants.stream().map(Variant::getAst).toList())) {
+            while (numMeasured < variants.size() && !hasFoundMaxFitness()) {
+                Variant variant = variants.get(numMeasured);
+                if (!measureFitness(variant,
+                        () -> pipeline.evaluateNext(createAbortCriterion(), createSecondStageCondition()))) {
+                    sequential.add(variant);
                 }
+                numMeasured++;
             }
+        } catch (CompilationException e) {
+            LOG.log(Level.WARNING, "Failed to open evaluation pipeline; evaluating variants one by one", e);
+            sequential.addAll(variants);
+        } catch (IllegalStateException e) {
+            LOG.log(Level.WARNING, "Evaluation pipeline failed; evaluating the remaining variants one by one", e);
+            sequential.addAll(variants.subList(numMeasured, variants.size()));
+        }
+        
+        for (Variant variant : sequential) {
+            if (!hasFoundMaxFitness()) {
+                measureFitness(variant, false);
+            }
+        }
+    }
+    
+    private boolean hasCoverage(Variant variant) {
+        boolean hasCoverage = true;
+        for (Node classNode : variant.getAst().childIterator()) {
+            if (classNode.getMetadata(Metadata.COVERED_BY) == null) {
+                hasCoverage = false;
+                break;
+            }
+        }
+        return hasCoverage;
+    }
+    
+    public void measureFitness(Variant variant, boolean withFaultLocalization) {
+        boolean runFaultLocalization = withFaultLocalization;
+        if (!withFaultLocalization && !hasCoverage(variant)) {
+            runFaultLocalization = true;
+            LOG.warning(() -> "Evaluating variant without coverage information; forcing fault localization");
+        }
+        
+        Evaluation evaluation;
+        if (runFaultLocalization) {
+            evaluation = () -> testSuite.runAndAnnotateFaultLocalization(variant.getAst());
+        } else {
+            evaluation = () -> testSuite.evaluate(variant.getAst(), createAbortCriterion(),
+                    createSecondStageCondition());
         }
         
+        if (!measureFitness(variant, evaluation) && !measureFitness(variant, evaluation)) {
+            LOG.warning(() -> "Failed to run compiler on variant " + variant.getName() + " twice; assuming fitness 0");
+            variant.setFitness(0, List.of());
+        }
+    }
+    
+    /**
+     * Runs the tests of a variant, for {@link FitnessEvaluator#measureFitness(Variant, Evaluation)}.
+     */
+    private interface Evaluation {
+        
+        List<TestResult> run() throws EvaluationException;
+    
+    }
+    
+    /**
+     * Measures the fitness of the given variant with the results of the given evaluation. A variant only counts as
+     * failing to compile if the compiler reported errors. If the compiler could not be run at all, nothing is known
+     * about the variant; its fitness is not set then, so that the evaluation can be retried.
+     *
+     * @return Whether the fitness was measured, i.e. <code>false</code> if the compiler could not be run.
+     */
+    private boolean measureFitness(Variant variant, Evaluation evaluation) {
         double fitness;
         List<TestResult> failingTests = List.of();
+        boolean partialFitness = false;
+        boolean compilationFailure = false;
+        boolean compilerNotRun = false;
         try {
-            List<TestResult> evaluationResult;
-            
-            if (withFaultLocalization) {
-                evaluationResult = testSuite.runAndAnnotateFaultLocalization(variant.getAst());
-            } else {
-                evaluationResult = testSuite.evaluate(variant.getAst());
-            }
+            List<TestResult> evaluationResult = evaluation.run();
             
             fitness = getFitness(evaluationResult);
-            failingTests = evaluationResult.stream().filter(TestResult::isFailure).toList();
+            failingTests = evaluationResult.stream().filter(t -> t.isFailure() && !t.isSkipped()).toList();
+            partialFitness = evaluationResult.stream().anyMatch(TestResult::isSkipped);
             
         } catch (CompilationException e) {
             fitness = 0;
+            compilationFailure = e.hasErrors();
+            compilerNotRun = !e.hasErrors();
+            if (compilerNotRun) {
+                LOG.log(Level.WARNING, "Failed to run compiler on variant", e);
+            }
             
         } catch (EvaluationException e) {
             LOG.log(Level.WARNING, "Failed running tests on variant", e);
             fitness = 0;
         }
         
-        variant.setFitness(fitness, failingTests);
+        if (compilationFailure) {
+            variant.setCompilationFailure();
+        } else if (!compilerNotRun) {
+            variant.setFitness(fitness, failingTests, partialFitness);
+        }
         
-        LOG.fine(() -> "Measured fitness: " + variant.toString());
+        if (!compilerNotRun) {
+            LOG.fine(() -> "Measured fitness: " + variant.toString());
+        }
         if (fitness > bestVariant.getFitness()) {
             bestVariant = variant.copy();
             LOG.info(() -> "New best variant " + variant.getName() + " with fitness " + variant.getFitness());
             result.setBest(fitness);
         }
+        return !compilerNotRun;
     }
     
 }
@@ -20,6 +20,7 @@ import net.ssehub.program_repair.geneseer.code.LeafNode;
 import net.ssehub.program_repair.geneseer.code.Node;
 import net.ssehub.program_repair.geneseer.code.Node.Metadata;
 import net.ssehub.program_repair.geneseer.code.Node.Type;
+import net.ssehub.program_repair.geneseer.code.ScopeChecker;
 import net.ssehub.program_repair.geneseer.evaluation.TestSuite;
 import net.ssehub.program_repair.geneseer.fixers.IFixer;
 import net.ssehub.program_repair.geneseer.llm.AbstractLlmMutator;
@@ -30,6 +31,8 @@ public class GeneticAlgorithm implements IFixer {
 
     private static final Logger LOG = Logger.getLogger(GeneticAlgorithm.class.getName());
     
+    private static final int MAX_STATEMENT_SELECTION_ATTEMPTS = 10;
+    
     private Random random = new Random(Configuration.INSTANCE.genetic().randomSeed());
     
     private FitnessEvaluator fitnessEvaluator;
@@ -39,6 +42,13 @@ public class GeneticAlgorithm implements IFixer {
     private int generation;
     private Variant unmodifiedVariant;
     
+    private List<Variant> pendingEvaluations = new ArrayList<>();
+    
+    private ScopeChecker scopeChecker = Configuration.INSTANCE.genetic().scopeCheck() ? new ScopeChecker() : null;
+    
+    private FailedMutationMemo failedMutations = Configuration.INSTANCE.genetic().failedMutationMemoSize() > 0
+            ? new FailedMutationMemo(Configuration.INSTANCE.genetic().failedMutationMemoSize()) : null;
+    
     private Result result;
     
     public GeneticAlgorithm(List<AbstractLlmMutator> llmMutators) {
@@ -90,13 +100,14 @@ public class GeneticAlgorithm implements IFixer {
         LOG.info("Creating initial population of  " + Configuration.INSTANCE.genetic().populationSize() + " variants");
         result.setGeneration(0);
         List<Variant> population = new ArrayList<>(Configuration.INSTANCE.genetic().populationSize());
-        for (int i = 0; i < Configuration.INSTANCE.genetic().populationSize(); i++) {
+        for (int i = 0; i < Configuration.INSTANCE.genetic().populationSize()
+                && !fitnessEvaluator.hasFoundMaxFitness(); i++) {
             population.add(newVariant(i > 0));
-            if (fitnessEvaluator.hasFoundMaxFitness()) {
-                LOG.info("Skipping rest of initial population creation because variant with maximum fitness has been"
-                        + " found");
-                break;
-            }
+        }
+        measurePendingFitness(population);
+        if (fitnessEvaluator.hasFoundMaxFitness()) {
+            LOG.info("Skipping rest of initial population creation because variant with maximum fitness has been"
+                    + " found");
         }
         LOG.info(() -> "Population fitness: " + population.stream()
                 .map(v -> v.getName() + "(" + v.getFitness() + ")")
@@ -149,7 +160,7 @@ public class GeneticAlgorithm implements IFixer {
                 .map(v -> v.getName() + "(" + v.getFitness() + ")")
                 .toList());
         
-        for (int i = 0; i < selected.size(); i += 2) {
+        for (int i = 0; i < selected.size() && !fitnessEvaluator.hasFoundMaxFitness(); i += 2) {
             Variant p1 = viable.get(i);
             
             if (i + 1 < viable.size()) {
@@ -164,39 +175,39 @@ public class GeneticAlgorithm implements IFixer {
             } else {
                 newPopulation.add(p1);
             }
-            
-            if (fitnessEvaluator.hasFoundMaxFitness()) {
-                LOG.info("Skipping rest of reproduction because variant with maximum fitness has been found");
-                break;
-            }
+        }
+        measurePendingFitness(newPopulation);
+        if (fitnessEvaluator.hasFoundMaxFitness()) {
+            LOG.info("Skipping rest of reproduction because variant with maximum fitness has been found");
         }
     }
 
     private void fillPopulation(List<Variant> population) {
         LOG.info(() -> "Filling up population with "
                 + (Configuration.INSTANCE.genetic().populationSize() - population.size()) + " new variants");
-        while (population.size() < Configuration.INSTANCE.genetic().populationSize()) {
+        while (population.size() < Configuration.INSTANCE.genetic().populationSize()
+                && !fitnessEvaluator.hasFoundMaxFitness()) {
             population.add(newVariant(true));
-            if (fitnessEvaluator.hasFoundMaxFitness()) {
-                LOG.info("Skipping further population filling because variant with maximum fitness has been found");
-                break;
-            }
+        }
+        measurePendingFitness(population);
+        if (fitnessEvaluator.hasFoundMaxFitness()) {
+            LOG.info("Skipping further population filling because variant with maximum fitness has been found");
         }
     }
 
     private void mutatePopulation(List<Variant> population) {
         LOG.info("Mutating population");
-        for (Variant variant : population) {
+        for (int i = 0; i < population.size() && !fitnessEvaluator.hasFoundMaxFitness(); i++) {
+            Variant variant = population.get(i);
             if (random.nextDouble() < Configuration.INSTANCE.genetic().mutationProbability()) {
                 mutate(variant);
                 LOG.info(() -> "Mutated " + variant);
-                if (fitnessEvaluator.hasFoundMaxFitness()) {
-                    LOG.info("Skipping mutating rest of population because variant with maximum fitness has been"
-                            + " found");
-                    break;
-                }
             }
         }
+        measurePendingFitness(population);
+        if (fitnessEvaluator.hasFoundMaxFitness()) {
+            LOG.info("Skipping mutating rest of population because variant with maximum fitness has been found");
+        }
     }
 
     private Variant newVariant(boolean withMutation) {
@@ -223,10 +234,7 @@ public class GeneticAlgorithm implements IFixer {
             if (random.nextDouble() < Configuration.INSTANCE.genetic().llmMutationProbability()) {
                 AbstractLlmMutator llmMutator = llmMutators.get(random.nextInt(llmMutators.size()));
                 LOG.info(() -> "Using LLM " + llmMutator.getName() + " to mutate " + variant.getName());
-                if (!variant.hasFitness()) {
-                    LOG.fine(() -> "Running tests on variant as it has no fitness and thus no failing tests yet");
-                    fitnessEvaluator.measureFitness(variant, false);
-                }
+                ensureFitness(variant);
                 
                 try (Probe measure = Measurement.INSTANCE.start("llm-mutation")) {
                     if (variant.getMutations().isEmpty()) {
@@ -275,7 +283,94 @@ public class GeneticAlgorithm implements IFixer {
             result.mutationStats().increaseFailedMutations();
         }
         if (mutationAdded || !variant.hasFitness()) {
-            fitnessEvaluator.measureFitness(variant, needsFaultLocalization);
+            measureFitness(variant, needsFaultLocalization);
+        }
+    }
+    
+    /**
+     * Measures the fitness of the given variant. If a {@link Configuration.GeneticConfiguration#compilationBatchSize()}
+     * is configured, the measurement is deferred until that many variants are pending, so that they can be compiled
+     * in one batch (see {@link FitnessEvaluator#measureFitness(List)}). Variants that need fault localization are
+     * measured immediately, after the pending ones.
+     */
+    private void measureFitness(Variant variant, boolean withFaultLocalization) {
+        int batchSize = Configuration.INSTANCE.genetic().compilationBatchSize();
+        if (withFaultLocalization || batchSize <= 1) {
+            measurePendingFitness();
+            fitnessEvaluator.measureFitness(variant, withFaultLocalization);
+            recordFailedMutation(variant);
+        } else {
+            pendingEvaluations.add(variant);
+            if (pendingEvaluations.size() >= batchSize) {
+                measurePendingFitness();
+            }
+        }
+    }
+    
+    /**
+     * Makes sure that the given variant has a fitness (and thus failing tests), by measuring it now if it has none or
+     * its measurement was deferred.
+     */
+    private void ensureFitness(Variant variant) {
+        if (pendingEvaluations.contains(variant)) {
+            measurePendingFitness();
+        }
+        if (!variant.hasFitness()) {
+            LOG.fine(() -> "Running tests on variant as it has no fitness and thus no failing tests yet");
+            measurePendingFitness();
+            fitnessEvaluator.measureFitness(variant, false);
+            recordFailedMutation(variant);
+        }
+    }
+    
+    /**
+     * Measures the fitness of all variants whose measurement was deferred. This must be called before the fitness of
+     * the variants is used.
+     */
+    private void measurePendingFitness() {
+        if (!pendingEvaluations.isEmpty()) {
+            fitnessEvaluator.measureFitness(pendingEvaluations);
+            pendingEvaluations.forEach(this::recordFailedMutation);
+            pendingEvaluations.clear();
+        }
+    }
+    
+    /**
+     * Measures the fitness of all variants whose measurement was deferred, and removes the variants that still have no
+     * fitness from the given population. Once a variant with maximum fitness is found, the remaining pending variants
+     * are not measured (see {@link FitnessEvaluator#measureFitness(List)}); without a fitness, they can't be logged,
+     * sorted or selected.
+     */
+    private void measurePendingFitness(List<Variant> population) {
+        measurePendingFitness();
+        int removed = removeUnmeasured(population);
+        if (removed > 0) {
+            LOG.info(() -> "Removed " + removed + " variants without fitness from the population");
+        }
+    }
+    
+    /**
+     * Removes the variants without a fitness from the given population.
+     * 
+     * @return The number of removed variants.
+     */
+    static int removeUnmeasured(List<Variant> population) {
+        int sizeBefore = population.size();
+        population.removeIf(v -> !v.hasFitness());
+        return sizeBefore - population.size();
+    }
+    
+    /**
+     * Adds the last mutation of the given variant to the {@link FailedMutationMemo} if the variant failed to compile.
+     * Only mutations of variants that compiled before are recorded (see
+     * {@link #singleMutation(Variant, Node, Node)}), so that the failure is caused by the mutation.
+     */
+    private void recordFailedMutation(Variant variant) {
+        if (variant.getUnrecordedMutation() != null && variant.hasFitness()) {
+            if (variant.isCompilationFailure()) {
+                failedMutations.addFailure(variant.getUnrecordedMutation());
+            }
+            variant.setUnrecordedMutation(null);
         }
     }
     
@@ -290,15 +385,26 @@ public class GeneticAlgorithm implements IFixer {
 
     private boolean singleMutation(Variant variant, Node astRoot, Node suspicious) {
         boolean success;
+        boolean compiledBefore = variant.hasFitness() && !variant.isCompilationFailure();
         Node oldAstRoot = astRoot;
         astRoot = astRoot.cheapClone(suspicious);
         variant.setAst(astRoot);
         suspicious = astRoot.findEquivalentPath(oldAstRoot, suspicious);
         Node parent = astRoot.findParent(suspicious).get();
+        String location = failedMutations != null ? FailedMutationMemo.getLocation(astRoot, suspicious) : null;
+        String mutationKey = null;
         
         int rand = random.nextInt(3);
+        if (rand == 0 && location != null
+                && failedMutations.isKnownFailure(FailedMutationMemo.createKey(location, "del", null))) {
+            result.mutationStats().increaseKnownFailureResamples();
+            rand = 1 + random.nextInt(2);
+        }
         if (rand == 0) {
             // delete
+            if (location != null) {
+                mutationKey = FailedMutationMemo.createKey(location, "del", null);
+            }
             boolean removed = parent.remove(suspicious);
             if (!removed) {
                 Node s = suspicious;
@@ -311,34 +417,51 @@ public class GeneticAlgorithm implements IFixer {
             }
             
         } else {
-            Node otherStatement = selectOtherStatement(astRoot, suspicious).clone();
-            setSamePosition(suspicious, otherStatement);
-            otherStatement.setMetadata(Metadata.SUSPICIOUSNESS,
-                    suspicious.getMetadata(Metadata.SUSPICIOUSNESS));
-            int index = parent.indexOf(suspicious);
-            
-            if (rand == 1) {
-                // insert
-                parent.add(index, otherStatement);
-                variant.addMutation("ins " + otherStatement.getTextSingleLine()
-                        + " before " + suspicious.getTextSingleLine());
-                result.mutationStats().increaseInsertions();
+            String operation = rand == 1 ? "ins" : "rep";
+            Node otherStatement = selectOtherStatement(astRoot, suspicious, location, operation);
+            if (otherStatement != null) {
+                if (location != null) {
+                    mutationKey = FailedMutationMemo.createKey(location, operation, otherStatement);
+                }
+                insertOrReplace(variant, parent, suspicious, otherStatement.clone(), rand == 2);
                 success = true;
-                
             } else {
-                // replace
-                parent.set(index, otherStatement);
-                variant.addMutation("rep " + suspicious.getTextSingleLine()
-                        + " with " + otherStatement.getTextSingleLine());
-                result.mutationStats().increaseReplacements();
-                success = true;
+                Node s = suspicious;
+                LOG.info(() -> "Found no other statement that is visible at " + s.getTextSingleLine());
+                success = false;
             }
         }
         
+        if (success && compiledBefore) {
+            variant.setUnrecordedMutation(mutationKey);
+        }
         astRoot.lock();
         return success;
     }
     
+    private void insertOrReplace(Variant variant, Node parent, Node suspicious, Node otherStatement,
+            boolean replace) {
+        setSamePosition(suspicious, otherStatement);
+        otherStatement.setMetadata(Metadata.SUSPICIOUSNESS,
+                suspicious.getMetadata(Metadata.SUSPICIOUSNESS));
+        int index = parent.indexOf(suspicious);
+        
+        if (!replace) {
+            // insert
+            parent.add(index, otherStatement);
+            variant.addMutation("ins " + otherStatement.getTextSingleLine()
+                    + " before " + suspicious.getTextSingleLine());
+            result.mutationStats().increaseInsertions();
+            
+        } else {
+            // replace
+            parent.set(index, otherStatement);
+            variant.addMutation("rep " + suspicious.getTextSingleLine()
+                    + " with " + otherStatement.getTextSingleLine());
+            result.mutationStats().increaseReplacements();
+        }
+    }
+    
     private Node findFileNode(Node astRoot, Node node) {
         List<Node> path = astRoot.getPath(node);
 
@@ -350,15 +473,40 @@ public class GeneticAlgorithm implements IFixer {
         return file;
     }
     
-    private Node selectOtherStatement(Node astRoot, Node suspiciousStatement) {
+    /**
+     * Selects a random other statement to insert before or replace the given suspicious statement with. Statements
+     * that are known to make the variant fail to compile at this location (see {@link FailedMutationMemo}) are
+     * skipped. If {@link Configuration.GeneticConfiguration#scopeCheck()} is enabled, statements that reference names
+     * that are not visible at the suspicious statement are skipped, too.
+     *
+     * @param location The location of the suspicious statement in the {@link FailedMutationMemo}, or
+     *      <code>null</code> if the memo is not used.
+     * @param operation The operation that the statement is selected for.
+     *
+     * @return The selected statement, or <code>null</code> if no usable statement was found.
+     */
+    private Node selectOtherStatement(Node astRoot, Node suspiciousStatement, String location, String operation) {
+        Node statementRoot = astRoot;
         if (Configuration.INSTANCE.genetic().statementScope() == MutationScope.FILE) {
-            astRoot = findFileNode(astRoot, suspiciousStatement);
+            statementRoot = findFileNode(astRoot, suspiciousStatement);
         }
         
-        List<Node> allStatements = astRoot.stream()
+        List<Node> allStatements = statementRoot.stream()
                 .filter(n -> n.getType() == Type.STATEMENT)
                 .toList();
-        Node otherStatement = allStatements.get(random.nextInt(allStatements.size()));
+        
+        Node otherStatement = null;
+        for (int i = 0; i < MAX_STATEMENT_SELECTION_ATTEMPTS && otherStatement == null; i++) {
+            Node candidate = allStatements.get(random.nextInt(allStatements.size()));
+            if (location != null && failedMutations.isKnownFailure(
+                    FailedMutationMemo.createKey(location, operation, candidate))) {
+                result.mutationStats().increaseKnownFailureResamples();
+            } else if (scopeChecker != null && !scopeChecker.isVisible(astRoot, suspiciousStatement, candidate)) {
+                result.mutationStats().increaseScopeCheckRejections();
+            } else {
+                otherStatement = candidate;
+            }
+        }
         return otherStatement;
     }
     
@@ -439,12 +587,12 @@ public class GeneticAlgorithm implements IFixer {
         
         Variant v1 = new Variant(c1);
         v1.addMutation("child " + p1.getName() + " " + p2.getName());
-        fitnessEvaluator.measureFitness(v1, false);
+        measureFitness(v1, false);
         LOG.info(() -> "Created " + v1 + " as child of " + p1 + " and " + p2);
         
         Variant v2 = new Variant(c2);
         v2.addMutation("child " + p2.getName() + " " + p1.getName());
-        fitnessEvaluator.measureFitness(v2, false);
+        measureFitness(v2, false);
         LOG.info(() -> "Created " + v2 + " as child of " + p2 + " and " + p1);
         
         return List.of(v1, v2);
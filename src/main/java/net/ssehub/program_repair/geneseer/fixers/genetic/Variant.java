@@ -23,6 +23,12 @@ class Variant {
     
     private List<TestResult> failingTests;
     
+    private boolean partialFitness;
+    
+    private boolean compilationFailure;
+    
+    private String unrecordedMutation;
+    
     public Variant(Node ast) {
         this.name = "V_" + String.format(Locale.ROOT, "%06d", idCounter++);
         this.ast = ast;
@@ -34,6 +40,8 @@ class Variant {
         this.ast = copy.ast;
         this.fitness = copy.fitness;
         this.failingTests = new ArrayList<>(copy.failingTests);
+        this.partialFitness = copy.partialFitness;
+        this.compilationFailure = copy.compilationFailure;
     }
 
     public Node getAst() {
@@ -54,8 +62,48 @@ class Variant {
     }
     
     public void setFitness(double fitness, List<TestResult> failingTests) {
+        setFitness(fitness, failingTests, false);
+    }
+    
+    /**
+     * Sets the fitness of this variant. A partial fitness means that the evaluation was aborted early; the fitness
+     * then only counts the tests that were run, and the failing tests do not include the skipped tests.
+     */
+    public void setFitness(double fitness, List<TestResult> failingTests, boolean partialFitness) {
         this.fitness = fitness;
         this.failingTests = failingTests;
+        this.partialFitness = partialFitness;
+        this.compilationFailure = false;
+    }
+    
+    /**
+     * Sets the fitness of this variant to 0, because it failed to compile.
+     */
+    public void setCompilationFailure() {
+        setFitness(0, List.of(), false);
+        this.compilationFailure = true;
+    }
+    
+    public boolean hasPartialFitness() {
+        return partialFitness;
+    }
+    
+    public boolean isCompilationFailure() {
+        return compilationFailure;
+    }
+    
+    /**
+     * Returns the key of the last mutation in the {@link FailedMutationMemo}, if this mutation has not been recorded
+     * yet because the variant was not evaluated since.
+     *
+     * @return The key, or <code>null</code> if there is none.
+     */
+    public String getUnrecordedMutation() {
+        return unrecordedMutation;
+    }
+    
+    public void setUnrecordedMutation(String unrecordedMutation) {
+        this.unrecordedMutation = unrecordedMutation;
     }
     
     public List<TestResult> getFailingTests() {
@@ -83,7 +131,11 @@ class Variant {
         StringBuilder str = new StringBuilder(name);
         str.append('{');
         if (fitness != null) {
-            str.append("fitness: ").append(fitness).append(", ");
+            str.append("fitness: ").append(fitness);
+            if (partialFitness) {
+                str.append(" (partial)");
+            }
+            str.append(", ");
         }
         str.append("mutations:");
         if (mutations.isEmpty()) {
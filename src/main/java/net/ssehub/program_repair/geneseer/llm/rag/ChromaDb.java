@@ -27,6 +27,8 @@ import net.ssehub.program_repair.geneseer.util.JsonUtils;
 import net.ssehub.program_repair.geneseer.util.Measurement;
 import net.ssehub.program_repair.geneseer.util.Measurement.Probe;
 import net.ssehub.program_repair.geneseer.util.ProcessManager;
+import net.ssehub.program_repair.geneseer.util.ProcessRunner;
+import net.ssehub.program_repair.geneseer.util.ProcessRunner.CaptureThread;
 import net.ssehub.program_repair.geneseer.util.TemporaryDirectoryManager;
 
 public class ChromaDb implements Closeable {
@@ -69,6 +71,8 @@ public class ChromaDb implements Closeable {
     
     private PrintWriter out;
     
+    private CaptureThread stderrCapture;
+    
     public ChromaDb(Path projectRoot, String model, URL api, boolean persistent) throws IOException {
         this.model = model;
         this.api = api;
@@ -84,13 +88,20 @@ public class ChromaDb implements Closeable {
                 persistent ? "--persistent" : "--no-persistent");
         builder.redirectInput(Redirect.PIPE);
         builder.redirectOutput(Redirect.PIPE);
-        builder.redirectErrorStream(true);
+        builder.redirectError(Redirect.PIPE);
         builder.directory(projectRoot.toFile());
         LOG.fine(() -> "Starting process " + builder.command());
         process = builder.start();
         ProcessManager.INSTANCE.trackProcess(process);
         in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
         out = new PrintWriter(process.getOutputStream(), true, StandardCharsets.UTF_8);
+        stderrCapture = new CaptureThread(process.getErrorStream(), "chromadb-worker stderr");
+        stderrCapture.setDaemon(true);
+        stderrCapture.start();
+    }
+    
+    private String getStderr() {
+        return new String(stderrCapture.getOutput(), StandardCharsets.UTF_8);
     }
     
     public void storeMethods(List<Method> methods) throws IOException {
@@ -201,6 +212,15 @@ public class ChromaDb implements Closeable {
     @Override
     public void close() throws IOException {
         process.destroy();
+        ProcessRunner.untilNoInterruptedException(() -> {
+            stderrCapture.join();
+            return 0;
+        });
+        String stderr = getStderr();
+        if (!stderr.isBlank()) {
+            LOG.fine(() -> "chromadb-worker stderr:\n" + stderr);
+        }
+        stderrCapture.closeCapture();
     }
     
     private Map<String, Object> writeCommand(Map<String, Object> command) throws IOException {
@@ -210,6 +230,9 @@ public class ChromaDb implements Closeable {
         
         String responseJson = in.readLine();
         LOG.finer(() -> "Got response: " + responseJson);
+        if (responseJson == null) {
+            throw new IOException("chromadb-worker closed its output; stderr:\n" + getStderr());
+        }
         try {
             Map<String, Object> response = JsonUtils.parseToMap(responseJson);
             if (!"ok".equals(response.get("status"))) {
@@ -217,7 +240,7 @@ public class ChromaDb implements Closeable {
             }
             return response;
         } catch (JsonParseException e) {
-            throw new IOException("Got invalid JSON: " + responseJson, e);
+            throw new IOException("Got invalid JSON: " + responseJson + "\nstderr:\n" + getStderr(), e);
         }
     }
     
@@ -0,0 +1,226 @@
+package net.ssehub.program_repair.geneseer.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Captures output (e.g. of a child process) with a bounded amount of memory. The first bytes are kept in a head buffer,
+ * the last bytes in a ring buffer for the tail. Everything in between is dropped, or, if enabled, spilled to a
+ * temporary file. Head, spill file and tail together contain the complete output. The spill file is deleted when
+ * the capture is closed, or at the latest when the JVM exits.
+ */
+public class BoundedOutputCapture extends OutputStream {
+    
+    private static final Logger LOG = Logger.getLogger(BoundedOutputCapture.class.getName());
+    
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    
+    private int headLimit;
+    
+    private byte[] head = new byte[0];
+    
+    private int headSize;
+    
+    private int tailLimit;
+    
+    private byte[] tail = new byte[0];
+    
+    private int tailStart;
+    
+    private int tailSize;
+    
+    private long totalBytes;
+    
+    private long droppedBytes;
+    
+    private boolean spillToFile;
+    
+    private Path spillFile;
+    
+    private OutputStream spillStream;
+    
+    /**
+     * Creates a new capture. The buffers grow on demand, so short output does not allocate the full limits.
+     *
+     * @param headLimit The number of bytes to keep from the start of the output.
+     * @param tailLimit The number of bytes to keep from the end of the output.
+     * @param spillToFile Whether bytes that don't fit into head or tail should be written to a temporary file instead
+     *      of being dropped.
+     */
+    public BoundedOutputCapture(int headLimit, int tailLimit, boolean spillToFile) {
+        if (headLimit < 0 || tailLimit < 0) {
+            throw new IllegalArgumentException("Limits must not be negative");
+        }
+        this.headLimit = headLimit;
+        this.tailLimit = tailLimit;
+        this.spillToFile = spillToFile;
+    }
+    
+    @Override
+    public void write(int value) throws IOException {
+        write(new byte[] {(byte) value}, 0, 1);
+    }
+    
+    @Override
+    public synchronized void write(byte[] bytes, int off, int len) throws IOException {
+        totalBytes += len;
+        
+        int toHead = Math.min(len, headLimit - headSize);
+        if (headSize + toHead > head.length) {
+            head = Arrays.copyOf(head, newCapacity(head.length, headSize + toHead, headLimit));
+        }
+        System.arraycopy(bytes, off, head, headSize, toHead);
+        headSize += toHead;
+        int offset = off + toHead;
+        int length = len - toHead;
+        
+        if (length > 0) {
+            int needed = (int) Math.min(tailLimit, (long) tailSize + length);
+            if (needed > tail.length) {
+                growTail(newCapacity(tail.length, needed, tailLimit));
+            }
+            int overflow = tailSize + length - tail.length;
+            if (overflow > 0) {
+                int fromRing = Math.min(overflow, tailSize);
+                dropFromRing(fromRing);
+                int fromInput = overflow - fromRing;
+                drop(bytes, offset, fromInput);
+                offset += fromInput;
+                length -= fromInput;
+            }
+            appendToRing(bytes, offset, length);
+        }
+    }
+    
+    private static int newCapacity(int current, int needed, int limit) {
+        return (int) Math.min(limit, Math.max(needed, Math.max(INITIAL_BUFFER_SIZE, current * 2L)));
+    }
+    
+    private void growTail(int capacity) {
+        byte[] newTail = new byte[capacity];
+        int firstPart = Math.min(tailSize, tail.length - tailStart);
+        System.arraycopy(tail, tailStart, newTail, 0, firstPart);
+        System.arraycopy(tail, 0, newTail, firstPart, tailSize - firstPart);
+        tail = newTail;
+        tailStart = 0;
+    }
+    
+    private void dropFromRing(int length) throws IOException {
+        int firstPart = Math.min(length, tail.length - tailStart);
+        drop(tail, tailStart, firstPart);
+        drop(tail, 0, length - firstPart);
+        tailStart = tail.length > 0 ? (tailStart + length) % tail.length : 0;
+        tailSize -= length;
+    }
+    
+    private void appendToRing(byte[] bytes, int off, int len) {
+        if (len > 0) {
+            int writePosition = (tailStart + tailSize) % tail.length;
+            int firstPart = Math.min(len, tail.length - writePosition);
+            System.arraycopy(bytes, off, tail, writePosition, firstPart);
+            System.arraycopy(bytes, off + firstPart, tail, 0, len - firstPart);
+            tailSize += len;
+        }
+    }
+    
+    private void drop(byte[] bytes, int off, int len) throws IOException {
+        if (len > 0) {
+            droppedBytes += len;
+            if (spillToFile) {
+                if (spillStream == null) {
+                    spillFile = Files.createTempFile("geneseer-output", ".txt");
+                    spillFile.toFile().deleteOnExit();
+                    spillStream = Files.newOutputStream(spillFile);
+                    LOG.fine(() -> "Spilling captured output to " + spillFile);
+                }
+                spillStream.write(bytes, off, len);
+            }
+        }
+    }
+    
+    /**
+     * Finishes writing the spill file, so that it can be read. The spill file is kept until {@link #close()}.
+     */
+    public synchronized void finish() throws IOException {
+        if (spillStream != null) {
+            spillStream.close();
+        }
+    }
+    
+    /**
+     * Finishes writing and deletes the spill file. The output kept in memory is still available afterwards.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        finish();
+        if (spillFile != null) {
+            Files.deleteIfExists(spillFile);
+        }
+    }
+    
+    /**
+     * Returns the captured output. If bytes have been dropped, a line with a note about the omitted bytes is inserted
+     * between head and tail.
+     */
+    public synchronized byte[] toByteArray() {
+        byte[] marker;
+        if (droppedBytes > 0) {
+            String note = "\n[... " + droppedBytes + " bytes omitted"
+                    + (spillFile != null ? ", see " + spillFile : "") + " ...]\n";
+            marker = note.getBytes(StandardCharsets.US_ASCII);
+        } else {
+            marker = new byte[0];
+        }
+        
+        byte[] result = new byte[headSize + marker.length + tailSize];
+        System.arraycopy(head, 0, result, 0, headSize);
+        System.arraycopy(marker, 0, result, headSize, marker.length);
+        int firstPart = Math.min(tailSize, tail.length - tailStart);
+        System.arraycopy(tail, tailStart, result, headSize + marker.length, firstPart);
+        System.arraycopy(tail, 0, result, headSize + marker.length + firstPart, tailSize - firstPart);
+        return result;
+    }
+    
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+    
+    /**
+     * Returns the number of bytes that are not kept in memory (but possibly in the spill file).
+     */
+    public synchronized long getDroppedBytes() {
+        return droppedBytes;
+    }
+    
+    /**
+     * Returns the file that dropped bytes were written to, or <code>null</code> if nothing was spilled. The file no
+     * longer exists after this capture has been closed.
+     */
+    public synchronized Path getSpillFile() {
+        return spillFile;
+    }
+    
+    /**
+     * Reads the given stream until its end into this capture, and finishes the spill file afterwards (see
+     * {@link #finish()}).
+     */
+    public void captureAll(InputStream input) throws IOException {
+        try {
+            input.transferTo(this);
+        } finally {
+            try {
+                finish();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to close spill file", e);
+            }
+        }
+    }
+    
+}
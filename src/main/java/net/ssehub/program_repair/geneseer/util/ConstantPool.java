@@ -0,0 +1,509 @@
+package net.ssehub.program_repair.geneseer.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The constant pool of a compiled Java class file, together with the name of the class, its super class and its
+ * interfaces. Only the parts of the class file up to the interfaces are read, unless
+ * {@link #readWithMembers(byte[])} is used, which also reads the declared fields and methods and the class
+ * attributes. All class names are binary names with dots (e.g. <code>java.lang.String</code> or
+ * <code>a.b.Outer$Inner</code>).
+ */
+public class ConstantPool {
+    
+    private static final int MAGIC = 0xCAFEBABE;
+    
+    private static final int TAG_UTF8 = 1;
+    private static final int TAG_INTEGER = 3;
+    private static final int TAG_FLOAT = 4;
+    private static final int TAG_LONG = 5;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_CLASS = 7;
+    private static final int TAG_STRING = 8;
+    private static final int TAG_FIELDREF = 9;
+    private static final int TAG_METHODREF = 10;
+    private static final int TAG_INTERFACE_METHODREF = 11;
+    private static final int TAG_NAME_AND_TYPE = 12;
+    private static final int TAG_METHOD_HANDLE = 15;
+    private static final int TAG_METHOD_TYPE = 16;
+    private static final int TAG_DYNAMIC = 17;
+    private static final int TAG_INVOKE_DYNAMIC = 18;
+    private static final int TAG_MODULE = 19;
+    private static final int TAG_PACKAGE = 20;
+    
+    private static final String ATTRIBUTE_CONSTANT_VALUE = "ConstantValue";
+    
+    private static final String ATTRIBUTE_SIGNATURE = "Signature";
+    
+    private static final String ATTRIBUTE_SOURCE_FILE = "SourceFile";
+    
+    private static final Pattern DESCRIPTOR_CLASS = Pattern.compile("L([^;<>:.\\[\\]()]+)[;<]");
+    
+    private String className;
+    
+    private String superClassName;
+    
+    private List<String> interfaceNames;
+    
+    private Set<String> referencedClasses;
+    
+    private List<MemberReference> memberReferences;
+    
+    private int accessFlags;
+    
+    private List<MemberDeclaration> memberDeclarations;
+    
+    private String signature;
+    
+    private String sourceFileName;
+    
+    private Set<String> descriptorClasses;
+    
+    /**
+     * A reference to a field or method of a class.
+     *
+     * @param owner The class that the member is accessed on, as a binary name.
+     * @param name The name of the field or method.
+     * @param descriptor The type descriptor of the field or method, as it appears in the class file.
+     * @param method Whether the member is a method.
+     */
+    public record MemberReference(String owner, String name, String descriptor, boolean method) {
+    }
+    
+    /**
+     * A field or method declared in the class.
+     *
+     * @param accessFlags The access flags of the member, as they appear in the class file.
+     * @param name The name of the field or method.
+     * @param descriptor The type descriptor of the field or method.
+     * @param signature The generic signature of the member, or <code>null</code> if it has none.
+     * @param constantValue The value of a constant field (prefixed with its constant pool tag), or <code>null</code>
+     *      if the member is not a constant field.
+     * @param method Whether the member is a method.
+     */
+    public record MemberDeclaration(int accessFlags, String name, String descriptor, String signature,
+            String constantValue, boolean method) {
+    }
+    
+    private ConstantPool() {
+    }
+    
+    /**
+     * Reads the constant pool of the given class file.
+     *
+     * @param classFile The path to the <code>.class</code> file.
+     *
+     * @return The parsed constant pool.
+     *
+     * @throws IOException If reading the file fails or it is not a valid class file.
+     */
+    public static ConstantPool read(Path classFile) throws IOException {
+        try (InputStream in = Files.newInputStream(classFile)) {
+            return read(in);
+        }
+    }
+    
+    /**
+     * Reads the constant pool of the given class file content.
+     *
+     * @param classFile The bytes of the class file.
+     *
+     * @return The parsed constant pool.
+     *
+     * @throws IOException If it is not a valid class file.
+     */
+    public static ConstantPool read(byte[] classFile) throws IOException {
+        return read(new ByteArrayInputStream(classFile));
+    }
+    
+    /**
+     * Reads the constant pool from the given stream, which must be positioned at the start of a class file. The stream
+     * is not closed and only read up to the interfaces of the class.
+     *
+     * @param input The stream to read from.
+     *
+     * @return The parsed constant pool.
+     *
+     * @throws IOException If reading fails or it is not a valid class file.
+     */
+    public static ConstantPool read(InputStream input) throws IOException {
+        return read(input, false);
+    }
+    
+    /**
+     * Reads the given class file completely, including the declared members and the class attributes (see
+     * {@link #getMemberDeclarations()}, {@link #getSignature()}, {@link #getSourceFileName()} and
+     * {@link #getDescriptorClasses()}).
+     *
+     * @param classFile The bytes of the class file.
+     *
+     * @return The parsed class file.
+     *
+     * @throws IOException If it is not a valid class file.
+     */
+    public static ConstantPool readWithMembers(byte[] classFile) throws IOException {
+        return read(new ByteArrayInputStream(classFile), true);
+    }
+    
+    private static ConstantPool read(InputStream input, boolean withMembers) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+        
+        Entries entries = new Entries(in);
+        
+        ConstantPool result = new ConstantPool();
+        result.resolve(entries);
+        
+        result.accessFlags = in.readUnsignedShort();
+        result.className = entries.getClassName(in.readUnsignedShort());
+        int superClass = in.readUnsignedShort();
+        result.superClassName = superClass != 0 ? entries.getClassName(superClass) : null;
+        int interfaces = in.readUnsignedShort();
+        List<String> interfaceNames = new ArrayList<>(interfaces);
+        for (int i = 0; i < interfaces; i++) {
+            interfaceNames.add(entries.getClassName(in.readUnsignedShort()));
+        }
+        result.interfaceNames = Collections.unmodifiableList(interfaceNames);
+        
+        if (withMembers) {
+            List<MemberDeclaration> members = new ArrayList<>();
+            readMemberDeclarations(in, entries, false, members);
+            readMemberDeclarations(in, entries, true, members);
+            result.memberDeclarations = Collections.unmodifiableList(members);
+            result.descriptorClasses = Collections.unmodifiableSet(entries.getDescriptorClasses());
+            
+            int attributes = in.readUnsignedShort();
+            for (int i = 0; i < attributes; i++) {
+                String name = entries.getUtf8(in.readUnsignedShort());
+                int length = in.readInt();
+                if (name.equals(ATTRIBUTE_SOURCE_FILE)) {
+                    result.sourceFileName = entries.getUtf8(in.readUnsignedShort());
+                } else if (name.equals(ATTRIBUTE_SIGNATURE)) {
+                    result.signature = entries.getUtf8(in.readUnsignedShort());
+                } else {
+                    in.skipNBytes(length);
+                }
+            }
+        }
+        return result;
+    }
+    
+    private static void readMemberDeclarations(DataInputStream in, Entries entries, boolean methods,
+            List<MemberDeclaration> result) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            int accessFlags = in.readUnsignedShort();
+            String name = entries.getUtf8(in.readUnsignedShort());
+            String descriptor = entries.getUtf8(in.readUnsignedShort());
+            String signature = null;
+            String constantValue = null;
+            int attributes = in.readUnsignedShort();
+            for (int j = 0; j < attributes; j++) {
+                String attributeName = entries.getUtf8(in.readUnsignedShort());
+                int length = in.readInt();
+                if (attributeName.equals(ATTRIBUTE_SIGNATURE)) {
+                    signature = entries.getUtf8(in.readUnsignedShort());
+                } else if (attributeName.equals(ATTRIBUTE_CONSTANT_VALUE)) {
+                    constantValue = entries.getConstantValue(in.readUnsignedShort());
+                } else {
+                    in.skipNBytes(length);
+                }
+            }
+            result.add(new MemberDeclaration(accessFlags, name, descriptor, signature, constantValue, methods));
+        }
+    }
+    
+    private void resolve(Entries entries) throws IOException {
+        Set<String> classes = new LinkedHashSet<>();
+        List<MemberReference> members = new ArrayList<>();
+        for (int i = 1; i < entries.tags.length; i++) {
+            int tag = entries.tags[i];
+            if (tag == TAG_CLASS) {
+                String elementType = toElementType(entries.getUtf8(entries.first[i]));
+                if (elementType != null) {
+                    classes.add(elementType);
+                }
+            
+            } else if (tag == TAG_FIELDREF || tag == TAG_METHODREF || tag == TAG_INTERFACE_METHODREF) {
+                int nameAndType = entries.second[i];
+                if (!entries.hasTag(nameAndType, TAG_NAME_AND_TYPE)) {
+                    throw new IOException("Invalid name and type reference at index " + i);
+                }
+                members.add(new MemberReference(entries.getClassName(entries.first[i]),
+                        entries.getUtf8(entries.first[nameAndType]), entries.getUtf8(entries.second[nameAndType]),
+                        tag != TAG_FIELDREF));
+            }
+        }
+        this.referencedClasses = Collections.unmodifiableSet(classes);
+        this.memberReferences = Collections.unmodifiableList(members);
+    }
+    
+    /**
+     * The raw entries of the constant pool. Depending on the tag, <code>first</code> and <code>second</code> contain
+     * the indices (or other values) of the entry.
+     */
+    private static class Entries {
+        
+        private int[] tags;
+        
+        private int[] first;
+        
+        private int[] second;
+        
+        private String[] utf8;
+        
+        private long[] numbers;
+        
+        Entries(DataInputStream in) throws IOException {
+            int count = in.readUnsignedShort();
+            tags = new int[count];
+            first = new int[count];
+            second = new int[count];
+            utf8 = new String[count];
+            numbers = new long[count];
+            
+            int i = 1;
+            while (i < count) {
+                tags[i] = in.readUnsignedByte();
+                i += readEntry(in, i);
+            }
+        }
+        
+        /**
+         * Reads the entry at the given index, after its tag.
+         * 
+         * @return The number of constant pool indices that the entry takes up.
+         */
+        private int readEntry(DataInputStream in, int index) throws IOException {
+            int size = 1;
+            switch (tags[index]) {
+            case TAG_UTF8:
+                utf8[index] = in.readUTF();
+                break;
+            
+            case TAG_CLASS:
+            case TAG_STRING:
+            case TAG_METHOD_TYPE:
+            case TAG_MODULE:
+            case TAG_PACKAGE:
+                first[index] = in.readUnsignedShort();
+                break;
+            
+            case TAG_FIELDREF:
+            case TAG_METHODREF:
+            case TAG_INTERFACE_METHODREF:
+            case TAG_NAME_AND_TYPE:
+            case TAG_DYNAMIC:
+            case TAG_INVOKE_DYNAMIC:
+                first[index] = in.readUnsignedShort();
+                second[index] = in.readUnsignedShort();
+                break;
+            
+            case TAG_METHOD_HANDLE:
+                first[index] = in.readUnsignedByte();
+                second[index] = in.readUnsignedShort();
+                break;
+            
+            case TAG_INTEGER:
+            case TAG_FLOAT:
+                numbers[index] = in.readInt();
+                break;
+            
+            case TAG_LONG:
+            case TAG_DOUBLE:
+                numbers[index] = in.readLong();
+                size = 2;
+                break;
+            
+            default:
+                throw new IOException("Invalid constant pool tag " + tags[index] + " at index " + index);
+            }
+            return size;
+        }
+        
+        boolean hasTag(int index, int tag) {
+            return index > 0 && index < tags.length && tags[index] == tag;
+        }
+        
+        String getUtf8(int index) throws IOException {
+            if (!hasTag(index, TAG_UTF8)) {
+                throw new IOException("Invalid UTF-8 reference " + index);
+            }
+            return utf8[index];
+        }
+        
+        String getClassName(int index) throws IOException {
+            if (!hasTag(index, TAG_CLASS)) {
+                throw new IOException("Invalid class reference " + index);
+            }
+            return getUtf8(first[index]).replace('/', '.');
+        }
+        
+        /**
+         * Returns a numeric or string constant as its tag followed by its value (the raw bits for numbers).
+         */
+        String getConstantValue(int index) throws IOException {
+            String value;
+            if (hasTag(index, TAG_STRING)) {
+                value = getUtf8(first[index]);
+            } else if (hasTag(index, TAG_INTEGER) || hasTag(index, TAG_FLOAT) || hasTag(index, TAG_LONG)
+                    || hasTag(index, TAG_DOUBLE)) {
+                value = Long.toString(numbers[index]);
+            } else {
+                throw new IOException("Invalid constant value reference " + index);
+            }
+            return tags[index] + ":" + value;
+        }
+        
+        /**
+         * Returns the classes named in UTF-8 entries that look like descriptors or signatures, i.e. contain
+         * <code>L<i>name</i>;</code> or <code>L<i>name</i>&lt;</code>. Other UTF-8 entries (e.g. string constants)
+         * may produce false matches.
+         */
+        Set<String> getDescriptorClasses() {
+            Set<String> result = new LinkedHashSet<>();
+            for (int i = 1; i < tags.length; i++) {
+                if (tags[i] == TAG_UTF8 && utf8[i].indexOf('L') != -1) {
+                    Matcher m = DESCRIPTOR_CLASS.matcher(utf8[i]);
+                    while (m.find()) {
+                        result.add(m.group(1).replace('/', '.'));
+                    }
+                }
+            }
+            return result;
+        }
+    
+    }
+    
+    /**
+     * Converts a class constant to the binary name of the class. Array types are converted to their element type.
+     *
+     * @return The binary class name, or <code>null</code> for arrays of primitive types.
+     */
+    private static String toElementType(String classConstant) {
+        String result;
+        if (classConstant.startsWith("[")) {
+            String element = classConstant.substring(classConstant.lastIndexOf('[') + 1);
+            if (element.startsWith("L") && element.endsWith(";")) {
+                result = element.substring(1, element.length() - 1).replace('/', '.');
+            } else {
+                result = null;
+            }
+        } else {
+            result = classConstant.replace('/', '.');
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the name of the class defined in this class file.
+     */
+    public String getClassName() {
+        return className;
+    }
+    
+    /**
+     * Returns the name of the super class, or <code>null</code> for <code>java.lang.Object</code> and modules.
+     */
+    public String getSuperClassName() {
+        return superClassName;
+    }
+    
+    /**
+     * Returns the names of the interfaces directly implemented by this class.
+     */
+    public List<String> getInterfaceNames() {
+        return interfaceNames;
+    }
+    
+    /**
+     * Returns all classes referenced in the constant pool, including the class itself. Array types are represented
+     * by their element type.
+     */
+    public Set<String> getReferencedClasses() {
+        return referencedClasses;
+    }
+    
+    /**
+     * Returns all field and method references in the constant pool.
+     */
+    public List<MemberReference> getMemberReferences() {
+        return memberReferences;
+    }
+    
+    /**
+     * Returns the access flags of the class, as they appear in the class file.
+     */
+    public int getAccessFlags() {
+        return accessFlags;
+    }
+    
+    /**
+     * Returns the fields and methods declared in the class, in the order of the class file (fields first).
+     *
+     * @return The declared members, or <code>null</code> if the class file was not read with
+     *      {@link #readWithMembers(byte[])}.
+     */
+    public List<MemberDeclaration> getMemberDeclarations() {
+        return memberDeclarations;
+    }
+    
+    /**
+     * Returns the generic signature of the class, or <code>null</code> if it has none or the class file was not read
+     * with {@link #readWithMembers(byte[])}.
+     */
+    public String getSignature() {
+        return signature;
+    }
+    
+    /**
+     * Returns the name of the source file that the class was compiled from (without directories), or
+     * <code>null</code> if the class file does not contain it or was not read with {@link #readWithMembers(byte[])}.
+     */
+    public String getSourceFileName() {
+        return sourceFileName;
+    }
+    
+    /**
+     * Returns the classes that appear in descriptors and signatures in this class file, e.g. as parameter types,
+     * field types or annotation types. In contrast to {@link #getReferencedClasses()}, this includes types that are
+     * only mentioned but not loaded by the class. The result may contain some names that are not classes, as any UTF-8
+     * constant that looks like a descriptor is considered.
+     *
+     * @return The binary class names, or <code>null</code> if the class file was not read with
+     *      {@link #readWithMembers(byte[])}.
+     */
+    public Set<String> getDescriptorClasses() {
+        return descriptorClasses;
+    }
+    
+    /**
+     * Checks whether this class references the given method.
+     *
+     * @param owner The binary name of the class that the method is accessed on.
+     * @param name The name of the method.
+     *
+     * @return Whether a reference to a method with the given owner and name (with any descriptor) exists.
+     */
+    public boolean referencesMethod(String owner, String name) {
+        return memberReferences.stream()
+                .anyMatch(m -> m.method() && m.owner().equals(owner) && m.name().equals(name));
+    }
+    
+}
@@ -39,6 +39,10 @@ public class JsonUtils {
         return result;
     }
     
+    public static <T> T parse(String json, Class<T> type) throws JsonParseException {
+        return GSON.fromJson(json, type);
+    }
+    
     public static <T> List<T> parseToList(String json, Class<T> listElementType)
             throws JsonParseException {
         @SuppressWarnings("unchecked")
@@ -10,6 +10,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import net.ssehub.program_repair.geneseer.Configuration;
+
 public class ProcessRunner {
     
     private static final Logger LOG = Logger.getLogger(ProcessRunner.class.getName());
@@ -65,31 +67,57 @@ public class ProcessRunner {
         
         private String name;
         
-        private byte[] output;
+        private BoundedOutputCapture capture;
         
         public CaptureThread(InputStream input, String streamName) {
+            this(input, streamName, new BoundedOutputCapture(
+                    Configuration.INSTANCE.setup().processOutputHeadBytes(),
+                    Configuration.INSTANCE.setup().processOutputTailBytes(),
+                    Configuration.INSTANCE.setup().processOutputSpillToFile()));
+        }
+        
+        public CaptureThread(InputStream input, String streamName, BoundedOutputCapture capture) {
             setName(streamName + " capture");
             this.input = input;
             this.name = streamName;
+            this.capture = capture;
         }
         
-        public synchronized byte[] getOutput() {
-            return output;
+        /**
+         * Returns the captured output. If the output was longer than the limits of the capture, only its head and
+         * tail are contained.
+         */
+        public byte[] getOutput() {
+            return capture.toByteArray();
+        }
+        
+        public BoundedOutputCapture getCapture() {
+            return capture;
+        }
+        
+        /**
+         * Closes the capture, which deletes its spill file. The output is still available via {@link #getOutput()}.
+         */
+        public void closeCapture() {
+            try {
+                capture.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to delete spill file of " + name, e);
+            }
         }
         
         @Override
         public void run() {
             try {
-                byte[] content = input.readAllBytes();
-                synchronized (this) {
-                    output = content;
-                }
+                capture.captureAll(input);
             } catch (IOException e) {
-                synchronized (this) {
-                    output = new byte[0];
-                }
                 LOG.log(Level.WARNING, "Failed to read " + name, e);
             }
+            if (capture.getDroppedBytes() > 0) {
+                LOG.warning(() -> "Output of " + name + " too long; dropped " + capture.getDroppedBytes()
+                        + " of " + capture.getTotalBytes() + " bytes"
+                        + (capture.getSpillFile() != null ? " (spilled to " + capture.getSpillFile() + ")" : ""));
+            }
         }
         
     }
@@ -147,11 +175,13 @@ public class ProcessRunner {
             untilNoInterruptedException(() -> {
                 stdoutCapture.join();
                 this.stdout = stdoutCapture.getOutput();
+                stdoutCapture.closeCapture();
                 return null;
             });
             untilNoInterruptedException(() -> {
                 stderrCapture.join();
                 this.stderr = stderrCapture.getOutput();
+                stderrCapture.closeCapture();
                 return null;
             });
         }
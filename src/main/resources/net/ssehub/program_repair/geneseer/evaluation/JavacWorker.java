@@ -0,0 +1,220 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * A long-lived compiler worker, started by geneseer's JavacWorkerBackend with the JDK of the configured Java compiler.
+ * It reads compile requests from stdin and writes the results to stdout, until stdin is closed. The same file manager
+ * is kept while the classpath stays the same, so that the classpath is only indexed once.
+ * <p>
+ * This file is compiled by the configured Java compiler when the worker is started, so it must stay compatible with
+ * Java 8. It has no package so that it can be compiled and run on its own.
+ * <p>
+ * All strings are encoded as a 4-byte length followed by the UTF-8 bytes. A request consists of the number of jobs,
+ * the number of compiler options and the options, and the classpath (separated with the platform path separator),
+ * followed by each job: the output directory and the number of source files followed by the path and content of
+ * each. The whole request is read before compiling. The response contains for each job a byte whether the
+ * compilation was successful, the compiler output, and the number of errors followed by the file (empty if none),
+ * line and message of each; it ends with the size of the heap after the last garbage collection, in bytes.
+ */
+public class JavacWorker {
+    
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    
+    private JavaCompiler compiler;
+    
+    private StandardJavaFileManager fileManager;
+    
+    private String fileManagerClasspath;
+    
+    /**
+     * A source file whose content is held in memory.
+     */
+    private static class MemorySource extends SimpleJavaFileObject {
+        
+        private String path;
+        
+        private String content;
+        
+        MemorySource(String path, String content) {
+            super(URI.create("string:///" + path.replace('\\', '/')), Kind.SOURCE);
+            this.path = path;
+            this.content = content;
+        }
+        
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return content;
+        }
+    
+    }
+    
+    private JavacWorker(JavaCompiler compiler) {
+        this.compiler = compiler;
+    }
+    
+    public static void main(String[] args) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            System.err.println("No system Java compiler available");
+            System.exit(1);
+        }
+        
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+        // nothing else may write to stdout
+        System.setOut(System.err);
+        
+        JavacWorker worker = new JavacWorker(compiler);
+        boolean running = true;
+        while (running) {
+            int numJobs;
+            try {
+                numJobs = in.readInt();
+            } catch (EOFException e) {
+                numJobs = -1;
+            }
+            if (numJobs >= 0) {
+                worker.handleRequest(numJobs, in, out);
+                out.flush();
+            } else {
+                running = false;
+            }
+        }
+        worker.closeFileManager();
+    }
+    
+    private void handleRequest(int numJobs, DataInputStream in, DataOutputStream out) throws IOException {
+        int numOptions = in.readInt();
+        List<String> options = new ArrayList<String>(numOptions);
+        for (int i = 0; i < numOptions; i++) {
+            options.add(readString(in));
+        }
+        String classpath = readString(in);
+        List<String> outputDirectories = new ArrayList<String>(numJobs);
+        List<List<MemorySource>> jobs = new ArrayList<List<MemorySource>>(numJobs);
+        for (int i = 0; i < numJobs; i++) {
+            outputDirectories.add(readString(in));
+            int numSources = in.readInt();
+            List<MemorySource> sources = new ArrayList<MemorySource>(numSources);
+            for (int j = 0; j < numSources; j++) {
+                sources.add(new MemorySource(readString(in), readString(in)));
+            }
+            jobs.add(sources);
+        }
+        
+        prepareFileManager(classpath);
+        for (int i = 0; i < numJobs; i++) {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT,
+                    Arrays.asList(new File(outputDirectories.get(i))));
+            compile(options, jobs.get(i), out);
+        }
+        out.writeLong(getHeapAfterGc());
+    }
+    
+    private void compile(List<String> options, List<MemorySource> sources, DataOutputStream out)
+            throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        StringWriter output = new StringWriter();
+        boolean success;
+        try {
+            success = compiler.getTask(output, fileManager, diagnostics, options, null, sources).call();
+        } finally {
+            fileManager.flush();
+        }
+        
+        List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<Diagnostic<? extends JavaFileObject>>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic);
+            }
+            output.append(diagnostic.toString()).append('\n');
+        }
+        
+        out.writeBoolean(success && errors.isEmpty());
+        writeString(out, output.toString());
+        out.writeInt(errors.size());
+        for (Diagnostic<? extends JavaFileObject> error : errors) {
+            String file = "";
+            if (error.getSource() instanceof MemorySource) {
+                file = ((MemorySource) error.getSource()).path;
+            }
+            writeString(out, file);
+            out.writeLong(error.getLineNumber());
+            writeString(out, error.getMessage(Locale.ROOT));
+        }
+    }
+    
+    private void prepareFileManager(String classpath) throws IOException {
+        if (!classpath.equals(fileManagerClasspath)) {
+            closeFileManager();
+            fileManager = compiler.getStandardFileManager(null, null, null);
+            List<File> files = new ArrayList<File>();
+            if (!classpath.isEmpty()) {
+                for (String element : classpath.split(File.pathSeparator)) {
+                    files.add(new File(element));
+                }
+            }
+            fileManager.setLocation(StandardLocation.CLASS_PATH, files);
+            fileManagerClasspath = classpath;
+        }
+    }
+    
+    private void closeFileManager() throws IOException {
+        if (fileManager != null) {
+            fileManager.close();
+            fileManager = null;
+            fileManagerClasspath = null;
+        }
+    }
+    
+    private static long getHeapAfterGc() {
+        long result = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                MemoryUsage usage = pool.getCollectionUsage();
+                if (usage != null) {
+                    result += usage.getUsed();
+                }
+            }
+        }
+        return result;
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+    
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+}
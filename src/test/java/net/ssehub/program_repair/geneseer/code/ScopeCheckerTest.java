@@ -0,0 +1,219 @@
+package net.ssehub.program_repair.geneseer.code;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.program_repair.geneseer.code.Node.Type;
+import net.ssehub.program_repair.geneseer.util.FileUtils;
+
+public class ScopeCheckerTest {
+    
+    private Path sourceDirectory;
+    
+    @BeforeEach
+    public void createSourceDirectory() throws IOException {
+        sourceDirectory = Files.createTempDirectory("ScopeCheckerTest");
+    }
+    
+    @AfterEach
+    public void deleteSourceDirectory() throws IOException {
+        FileUtils.deleteDirectory(sourceDirectory);
+    }
+    
+    private Node parse(Map<String, String> files) throws IOException, ParsingException {
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            Path path = sourceDirectory.resolve(file.getKey());
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file.getValue(), StandardCharsets.UTF_8);
+        }
+        return new Parser().parse(sourceDirectory, StandardCharsets.UTF_8);
+    }
+    
+    private Node parseClass(String body) throws IOException, ParsingException {
+        return parse(Map.of("A.java", "class A {\n" + body + "\n}\n"));
+    }
+    
+    private static Node findStatement(Node root, String prefix) {
+        return root.stream()
+                .filter(n -> n.getType() == Type.STATEMENT && n.getTextSingleLine().startsWith(prefix))
+                .findFirst().orElseThrow();
+    }
+    
+    private static Node parseDonor(String statement) throws IOException, ParsingException {
+        Path file = Files.createTempFile("ScopeCheckerTest", ".java");
+        try {
+            Files.writeString(file, "class Donor { void d() { " + statement + " } }", StandardCharsets.UTF_8);
+            return findStatement(new Parser().parseSingleFile(file, StandardCharsets.UTF_8), statement);
+        } finally {
+            Files.delete(file);
+        }
+    }
+    
+    private static boolean isVisible(Node astRoot, String donor) throws IOException, ParsingException {
+        return new ScopeChecker().isVisible(astRoot, findStatement(astRoot, "target"), parseDonor(donor));
+    }
+    
+    @Test
+    public void locals_onlyBeforeTargetVisible() throws IOException, ParsingException {
+        Node ast = parseClass("void m(int param) { int before = 1; target(); int after = 2; }");
+        assertAll(
+            () -> assertTrue(isVisible(ast, "use(before);")),
+            () -> assertTrue(isVisible(ast, "use(param);")),
+            () -> assertFalse(isVisible(ast, "use(after);")),
+            () -> assertTrue(isVisible(ast, "int after = 3;"))
+        );
+    }
+    
+    @Test
+    public void fields_ofEnclosingTypesVisible() throws IOException, ParsingException {
+        Node ast = parse(Map.of(
+                "A.java", "class A { int field; class Inner { void m() { target(); } } }",
+                "B.java", "class B { int other; }"));
+        assertAll(
+            () -> assertTrue(isVisible(ast, "use(field);")),
+            () -> assertFalse(isVisible(ast, "use(other);")),
+            () -> assertTrue(isVisible(ast, "use(B.other);"))
+        );
+    }
+    
+    @Test
+    public void inheritedJdkMembers_visible() throws IOException, ParsingException {
+        Node ast = parse(Map.of("A.java",
+                "import java.util.AbstractList;\n"
+                + "abstract class A extends AbstractList<String> { void m() { target(); } }"));
+        assertAll(
+            () -> assertTrue(isVisible(ast, "use(modCount);")),
+            () -> assertFalse(isVisible(ast, "use(unknown);"))
+        );
+    }
+    
+    @Test
+    public void unknownSupertype_allNamesAssumedVisible() throws IOException, ParsingException {
+        Node ast = parse(Map.of("A.java",
+                "import org.example.Base;\nclass A extends Base { void m() { target(); } }"));
+        assertTrue(isVisible(ast, "use(unknown);"));
+    }
+    
+    @Test
+    public void lambdaParameters_onlyVisibleInLambda() throws IOException, ParsingException {
+        Node inside = parseClass("void m() { Consumer<String> c = value -> { target(); }; }");
+        Node after = parseClass("void m() { Consumer<String> c = (key, value) -> use(value); target(); }");
+        assertAll(
+            () -> assertTrue(isVisible(inside, "use(value);")),
+            () -> assertFalse(isVisible(after, "use(value);"))
+        );
+    }
+    
+    @Test
+    public void forVariables_onlyVisibleInLoop() throws IOException, ParsingException {
+        Node inside = parseClass("void m(int[] a) { for (int i = 0; i < 3; i++) { target(); } }");
+        Node after = parseClass("void m(int[] a) { for (int e : a) { } target(); }");
+        assertAll(
+            () -> assertTrue(isVisible(inside, "use(i);")),
+            () -> assertFalse(isVisible(after, "use(e);"))
+        );
+    }
+    
+    @Test
+    public void catchParameters_onlyVisibleInCatchBlock() throws IOException, ParsingException {
+        Node inside = parseClass("void m() { try { } catch (RuntimeException e) { target(); } }");
+        Node after = parseClass("void m() { try { } catch (RuntimeException e) { } target(); }");
+        assertAll(
+            () -> assertTrue(isVisible(inside, "use(e);")),
+            () -> assertFalse(isVisible(after, "use(e);"))
+        );
+    }
+    
+    @Test
+    public void resources_onlyVisibleInTryBlock() throws IOException, ParsingException {
+        Node inside = parseClass("void m() { try (Reader r = open()) { target(); } }");
+        Node after = parseClass("void m() { try (Reader r = open()) { } target(); }");
+        assertAll(
+            () -> assertTrue(isVisible(inside, "use(r);")),
+            () -> assertFalse(isVisible(after, "use(r);"))
+        );
+    }
+    
+    @Test
+    public void patternVariables_notVisibleInOtherMethods() throws IOException, ParsingException {
+        Node inside = parseClass("void m(Object o) { if (o instanceof String s) { target(); } }");
+        Node other = parseClass("void m(Object o) { if (o instanceof String s) { } } void n() { target(); }");
+        assertAll(
+            () -> assertTrue(isVisible(inside, "use(s);")),
+            () -> assertFalse(isVisible(other, "use(s);"))
+        );
+    }
+    
+    @Test
+    public void onDemandImport_unknownTypesAssumedVisible() throws IOException, ParsingException {
+        Node withImport = parse(Map.of("A.java", "import java.util.*;\nclass A { void m() { target(); } }"));
+        Node withoutImport = parseClass("void m() { target(); }");
+        assertAll(
+            () -> assertTrue(isVisible(withImport, "use(new Foo());")),
+            () -> assertFalse(isVisible(withImport, "use(unknown);")),
+            () -> assertFalse(isVisible(withoutImport, "use(new Foo());")),
+            () -> assertTrue(isVisible(withoutImport, "use(new StringBuilder());"))
+        );
+    }
+    
+    @Test
+    public void sameSimpleNameInDifferentPackages_resolvedByPackage() throws IOException, ParsingException {
+        Node ast = parse(Map.of(
+                "p1/Base.java", "package p1;\npublic class Base { protected int x; }",
+                "p2/Base.java", "package p2;\npublic class Base { protected int y; }",
+                "p2/C.java", "package p2;\nclass C extends Base { void m() { target(); } }"));
+        assertAll(
+            () -> assertTrue(isVisible(ast, "use(y);")),
+            () -> assertFalse(isVisible(ast, "use(x);"))
+        );
+    }
+    
+    @Test
+    public void sameSimpleNameInDifferentPackages_resolvedByImport() throws IOException, ParsingException {
+        Node ast = parse(Map.of(
+                "p1/Base.java", "package p1;\npublic class Base { protected int x; }",
+                "p2/Base.java", "package p2;\npublic class Base { protected int y; }",
+                "p2/C.java", "package p2;\nimport p1.Base;\nclass C extends Base { void m() { target(); } }"));
+        assertAll(
+            () -> assertTrue(isVisible(ast, "use(x);")),
+            () -> assertFalse(isVisible(ast, "use(y);"))
+        );
+    }
+    
+    @Test
+    public void sameSimpleNameInDifferentPackages_resolvedByOnDemandImport() throws IOException, ParsingException {
+        Node ast = parse(Map.of(
+                "p1/Base.java", "package p1;\npublic class Base { protected int x; }",
+                "p2/Base.java", "package p2;\npublic class Base { protected int y; }",
+                "p3/C.java", "package p3;\nimport p2.*;\nclass C extends Base { void m() { target(); } }"));
+        assertAll(
+            () -> assertTrue(isVisible(ast, "use(y);")),
+            () -> assertFalse(isVisible(ast, "use(x);"))
+        );
+    }
+    
+    @Test
+    public void supertypeInOtherFile_resolvedInItsFile() throws IOException, ParsingException {
+        Node ast = parse(Map.of(
+                "p1/Base.java", "package p1;\npublic class Base { protected int x; }",
+                "p2/Base.java", "package p2;\npublic class Base { protected int y; }",
+                "p2/Middle.java", "package p2;\nimport p1.Base;\npublic class Middle extends Base { }",
+                "p2/C.java", "package p2;\nclass C extends Middle { void m() { target(); } }"));
+        assertAll(
+            () -> assertTrue(isVisible(ast, "use(x);")),
+            () -> assertFalse(isVisible(ast, "use(y);"))
+        );
+    }
+    
+}
@@ -0,0 +1,61 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.program_repair.geneseer.util.FileUtils;
+
+public class ClassDataSharingTest {
+    
+    private Path directory;
+    
+    private Path classes;
+    
+    private Path testClasses;
+    
+    private Path junitJar;
+    
+    private Path otherJar;
+    
+    @BeforeEach
+    public void createClasspath() throws IOException {
+        directory = Files.createTempDirectory("ClassDataSharingTest").toAbsolutePath();
+        classes = Files.createDirectory(directory.resolve("classes"));
+        testClasses = Files.createDirectory(directory.resolve("test-classes"));
+        junitJar = Files.createFile(directory.resolve("junit.jar"));
+        otherJar = Files.createFile(directory.resolve("other.jar"));
+    }
+    
+    @AfterEach
+    public void deleteClasspath() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+    
+    @Test
+    public void orderForArchive_jarsAfterDirectories_movedToFront() {
+        assertEquals(List.of(junitJar, otherJar, classes, testClasses),
+                ClassDataSharing.orderForArchive(List.of(classes, junitJar, testClasses, otherJar)));
+    }
+    
+    @Test
+    public void orderForArchive_onlyJars_unchanged() {
+        assertEquals(List.of(otherJar, junitJar), ClassDataSharing.orderForArchive(List.of(otherJar, junitJar)));
+    }
+    
+    @Test
+    public void orderForArchive_relativeAndMissingJars_notMoved() {
+        Path relativeJar = Path.of("lib", "relative.jar");
+        Path missingJar = directory.resolve("missing.jar");
+        assertEquals(List.of(junitJar, classes, relativeJar, missingJar),
+                ClassDataSharing.orderForArchive(List.of(classes, relativeJar, junitJar, missingJar)));
+    }
+    
+}
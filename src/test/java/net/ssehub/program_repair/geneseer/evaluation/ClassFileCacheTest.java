@@ -0,0 +1,128 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.program_repair.geneseer.evaluation.CompilerBackend.CompilationError;
+import net.ssehub.program_repair.geneseer.util.FileUtils;
+
+public class ClassFileCacheTest {
+    
+    private static final Path CLASS_FILE = Path.of("a", "A.class");
+    
+    private Path cacheDirectory;
+    
+    private Path outputDirectory;
+    
+    @BeforeEach
+    public void createDirectories() throws IOException {
+        cacheDirectory = Files.createTempDirectory("ClassFileCacheTest");
+        outputDirectory = Files.createTempDirectory("ClassFileCacheTest");
+        Files.createDirectories(outputDirectory.resolve(CLASS_FILE).getParent());
+        Files.write(outputDirectory.resolve(CLASS_FILE), new byte[] {1, 2, 3});
+    }
+    
+    @AfterEach
+    public void deleteDirectories() throws IOException {
+        FileUtils.deleteDirectory(cacheDirectory);
+        FileUtils.deleteDirectory(outputDirectory);
+    }
+    
+    @Test
+    public void get_unknownKey_null() throws IOException {
+        assertNull(ClassFileCache.open(cacheDirectory, 1024).get("key"));
+    }
+    
+    @Test
+    public void putSuccess_restoresClassFiles() throws IOException {
+        ClassFileCache cache = ClassFileCache.open(cacheDirectory, 1024);
+        cache.putSuccess("key", "env", "abi", outputDirectory, List.of(CLASS_FILE));
+        FileUtils.deleteDirectory(outputDirectory);
+        
+        ClassFileCache.Entry entry = cache.get("key");
+        assertNotNull(entry);
+        cache.restore("key", entry, outputDirectory);
+        assertAll(
+            () -> assertFalse(entry.isFailure()),
+            () -> assertEquals("env", entry.environmentAbi()),
+            () -> assertEquals("abi", entry.abi()),
+            () -> assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(outputDirectory.resolve(CLASS_FILE)))
+        );
+    }
+    
+    @Test
+    public void putFailure_storesErrors() throws IOException {
+        ClassFileCache cache = ClassFileCache.open(cacheDirectory, 1024);
+        CompilationError error = new CompilationError(Path.of("A.java"), 3, "cannot find symbol");
+        cache.putFailure("key", "env", List.of(error));
+        
+        ClassFileCache.Entry entry = cache.get("key");
+        assertAll(
+            () -> assertTrue(entry.isFailure()),
+            () -> assertEquals(List.of(error), entry.errors().stream()
+                    .map(ClassFileCache.StoredError::toCompilationError)
+                    .toList())
+        );
+    }
+    
+    @Test
+    public void open_keepsEntriesOfEarlierRuns() throws IOException {
+        ClassFileCache cache = ClassFileCache.open(cacheDirectory, 1024);
+        cache.putSuccess("key", "env", "abi", outputDirectory, List.of(CLASS_FILE));
+        assertEquals("abi", ClassFileCache.open(cacheDirectory, 1024).get("key").abi());
+    }
+    
+    @Test
+    public void open_deletesTemporaryEntries() throws IOException {
+        Path temporary = Files.createDirectory(cacheDirectory.resolve("tmp-123"));
+        ClassFileCache.open(cacheDirectory, 1024);
+        assertFalse(Files.exists(temporary));
+    }
+    
+    @Test
+    public void put_exceedingMaxBytes_evictsLeastRecentlyUsed() throws IOException {
+        ClassFileCache cache = ClassFileCache.open(cacheDirectory, 1024);
+        cache.putSuccess("a", "env", "abi", outputDirectory, List.of(CLASS_FILE));
+        long entrySize = Files.size(cacheDirectory.resolve("a").resolve("entry.json")) + 3;
+        cache = ClassFileCache.open(cacheDirectory, 2 * entrySize);
+        cache.putSuccess("b", "env", "abi", outputDirectory, List.of(CLASS_FILE));
+        cache.get("a");
+        cache.putSuccess("c", "env", "abi", outputDirectory, List.of(CLASS_FILE));
+        
+        ClassFileCache c = cache;
+        assertAll(
+            () -> assertNotNull(c.get("a")),
+            () -> assertNull(c.get("b")),
+            () -> assertNotNull(c.get("c")),
+            () -> assertFalse(Files.exists(cacheDirectory.resolve("b")))
+        );
+    }
+    
+    @Test
+    public void get_invalidEntry_removed() throws IOException {
+        ClassFileCache cache = ClassFileCache.open(cacheDirectory, 1024);
+        cache.putSuccess("key", "env", "abi", outputDirectory, List.of(CLASS_FILE));
+        Files.writeString(cacheDirectory.resolve("key").resolve("entry.json"), "{", StandardCharsets.UTF_8);
+        
+        assertAll(
+            () -> assertNull(cache.get("key")),
+            () -> assertFalse(Files.exists(cacheDirectory.resolve("key")))
+        );
+    }
+    
+}
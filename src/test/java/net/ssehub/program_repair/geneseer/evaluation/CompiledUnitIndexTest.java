@@ -0,0 +1,193 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.program_repair.geneseer.evaluation.CompiledUnitIndex.ClassInfo;
+import net.ssehub.program_repair.geneseer.util.FileUtils;
+
+public class CompiledUnitIndexTest {
+    
+    private static final Path A = Path.of("p", "A.java");
+    
+    private static final Path B = Path.of("p", "B.java");
+    
+    private static final Path C = Path.of("p", "C.java");
+    
+    private static final Path D = Path.of("p", "D.java");
+    
+    private Path sourceDirectory;
+    
+    private Path outputDirectory;
+    
+    private CompiledUnitIndex index;
+    
+    @BeforeEach
+    public void createDirectories() throws IOException {
+        sourceDirectory = Files.createTempDirectory("CompiledUnitIndexTest");
+        outputDirectory = Files.createTempDirectory("CompiledUnitIndexTest");
+        index = new CompiledUnitIndex(outputDirectory);
+    }
+    
+    @AfterEach
+    public void deleteDirectories() throws IOException {
+        FileUtils.deleteDirectory(sourceDirectory);
+        FileUtils.deleteDirectory(outputDirectory);
+    }
+    
+    private void compile(Map<Path, String> sources) throws IOException {
+        List<String> arguments = new ArrayList<>(List.of("-d", outputDirectory.toString(),
+                "-sourcepath", sourceDirectory.toString()));
+        for (Map.Entry<Path, String> source : sources.entrySet()) {
+            Path file = sourceDirectory.resolve(source.getKey());
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, "package p;\n" + source.getValue(), StandardCharsets.UTF_8);
+            arguments.add(file.toString());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, arguments.toArray(String[]::new)));
+        index.update(sources.keySet());
+    }
+    
+    private Set<Path> recompile(Path unit, String source) throws IOException {
+        Map<String, ClassInfo> previous = index.getClasses(List.of(unit));
+        compile(Map.of(unit, source));
+        return index.getDependents(previous, List.of(unit));
+    }
+    
+    private void compileExample() throws IOException {
+        compile(Map.of(
+                A, "public class A { public int m() { return 1; } }",
+                B, "public class B extends A { class Inner {} }",
+                C, "public class C { int use(B b) { return b.m(); } }",
+                D, "public class D { }"));
+    }
+    
+    @Test
+    public void update_assignsClassFilesToSourceFile() throws IOException {
+        compileExample();
+        CompiledUnitIndex.Unit unit = index.get(B);
+        assertAll(
+            () -> assertEquals(Set.of(Path.of("p", "B.class"), Path.of("p", "B$Inner.class")),
+                    Set.copyOf(unit.classFiles())),
+            () -> assertNotNull(unit.abi()),
+            () -> assertEquals(Set.of("p.B", "p.B$Inner"), unit.classes().keySet()),
+            () -> assertEquals(List.of("p.A"), unit.classes().get("p.B").supertypes()),
+            () -> assertTrue(unit.dependencies().contains("p.A"))
+        );
+    }
+    
+    @Test
+    public void update_noClassFiles_abiUnknown() throws IOException {
+        index.update(List.of(A));
+        assertAll(
+            () -> assertEquals(List.of(), index.get(A).classFiles()),
+            () -> assertNull(index.get(A).abi())
+        );
+    }
+    
+    @Test
+    public void get_unknownUnit_null() {
+        assertNull(index.get(A));
+    }
+    
+    @Test
+    public void changedMethodBody_abiUnchangedAndNoDependents() throws IOException {
+        compileExample();
+        String abi = index.get(A).abi();
+        Set<Path> dependents = recompile(A, "public class A { public int m() { return 2; } }");
+        assertAll(
+            () -> assertEquals(abi, index.get(A).abi()),
+            () -> assertEquals(Set.of(), dependents)
+        );
+    }
+    
+    @Test
+    public void changedPrivateMember_noDependents() throws IOException {
+        compileExample();
+        assertEquals(Set.of(), recompile(A, "public class A { public int m() { return 1; } private void n() {} }"));
+    }
+    
+    @Test
+    public void changedSignature_dependentsOfSubclassesIncluded() throws IOException {
+        compileExample();
+        String abi = index.get(A).abi();
+        Set<Path> dependents = recompile(A, "public class A { public int m() { return 1; } public void n() {} }");
+        assertAll(
+            () -> assertNotEquals(abi, index.get(A).abi()),
+            () -> assertEquals(Set.of(B, C), dependents)
+        );
+    }
+    
+    @Test
+    public void changedConstant_allOtherUnits() throws IOException {
+        compileExample();
+        compile(Map.of(A, "public class A { public static final int X = 1; public int m() { return X; } }"));
+        assertEquals(Set.of(B, C, D),
+                recompile(A, "public class A { public static final int X = 2; public int m() { return X; } }"));
+    }
+    
+    @Test
+    public void unknownAbi_noDependents() throws IOException {
+        compileExample();
+        Map<String, ClassInfo> previous = index.getClasses(List.of(A));
+        FileUtils.deleteDirectory(outputDirectory.resolve("p"));
+        index.update(List.of(A));
+        assertEquals(Set.of(), index.getDependents(previous, List.of(A)));
+    }
+    
+    @Test
+    public void clear_removesAllUnits() throws IOException {
+        compileExample();
+        index.clear();
+        assertAll(
+            () -> assertNull(index.get(A)),
+            () -> assertEquals(Map.of(), index.getClasses(List.of(A, B)))
+        );
+    }
+    
+    @Test
+    public void computeEnvironmentAbi_excludesGivenUnit() {
+        Map<Path, String> abis = new HashMap<>(Map.of(A, "1", B, "2"));
+        String environment = CompiledUnitIndex.computeEnvironmentAbi(abis, A, "cp");
+        abis.put(A, "3");
+        assertAll(
+            () -> assertEquals(environment, CompiledUnitIndex.computeEnvironmentAbi(abis, A, "cp")),
+            () -> assertNotEquals(environment, CompiledUnitIndex.computeEnvironmentAbi(abis, B, "cp")),
+            () -> assertNotEquals(environment, CompiledUnitIndex.computeEnvironmentAbi(abis, A, "other"))
+        );
+    }
+    
+    @Test
+    public void computeEnvironmentAbi_unknownAbi_null() {
+        Map<Path, String> abis = new HashMap<>();
+        abis.put(A, "1");
+        abis.put(B, null);
+        assertAll(
+            () -> assertNull(CompiledUnitIndex.computeEnvironmentAbi(abis, A, "cp")),
+            () -> assertNotNull(CompiledUnitIndex.computeEnvironmentAbi(abis, B, "cp"))
+        );
+    }
+    
+}
@@ -0,0 +1,116 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class JunitEvaluationTest {
+    
+    private JunitEvaluation evaluation = new JunitEvaluation(Path.of("."), List.of(), StandardCharsets.UTF_8, false,
+            null);
+    
+    @AfterEach
+    public void closeEvaluation() {
+        evaluation.close();
+    }
+    
+    @Test
+    public void createShards_longestClassesDistributedFirst() {
+        evaluation.setExpectedClassDurations(Map.of("A", 100L, "B", 60L, "C", 50L, "D", 10L));
+        List<List<String>> shards = evaluation.createShards(List.of("A", "B", "C", "D"), 2);
+        assertEquals(List.of(List.of("A", "D"), List.of("B", "C")), shards);
+    }
+    
+    @Test
+    public void createShards_keepsGivenOrderWithinShard() {
+        evaluation.setExpectedClassDurations(Map.of("A", 1L, "B", 1L, "C", 100L));
+        List<List<String>> shards = evaluation.createShards(List.of("B", "C", "A"), 2);
+        assertEquals(List.of(List.of("C"), List.of("B", "A")), shards);
+    }
+    
+    @Test
+    public void createShards_unknownClassesGetAverageDuration() {
+        evaluation.setExpectedClassDurations(Map.of("A", 30L, "B", 10L));
+        List<List<String>> shards = evaluation.createShards(List.of("A", "B", "C", "D"), 2);
+        // C and D are assumed to take 20 (the average of the known classes)
+        assertEquals(List.of(List.of("A", "B"), List.of("C", "D")), shards);
+    }
+    
+    @Test
+    public void createShards_historicalDurationsUsedWithoutExpectedDuration() {
+        evaluation.setHistoricalClassDurations(Map.of("A", 100L, "B", 1L));
+        evaluation.setExpectedClassDurations(Map.of("B", 200L));
+        List<List<String>> shards = evaluation.createShards(List.of("A", "B", "C"), 2);
+        assertEquals(List.of(List.of("B"), List.of("A", "C")), shards);
+    }
+    
+    @Test
+    public void createShards_moreShardsThanClasses_leavesShardsEmpty() {
+        List<List<String>> shards = evaluation.createShards(List.of("A"), 3);
+        assertAll(
+            () -> assertEquals(3, shards.size()),
+            () -> assertEquals(List.of("A"), shards.get(0)),
+            () -> assertEquals(List.of(), shards.get(1)),
+            () -> assertEquals(List.of(), shards.get(2))
+        );
+    }
+    
+    @Test
+    public void getTimeoutMs_unknownClass_usesGlobalTimeout() {
+        assertEquals(120_000, evaluation.getTimeoutMs("A"));
+    }
+    
+    @Test
+    public void getTimeoutMs_knownClass_usesAdaptiveTimeout() {
+        evaluation.setExpectedClassDurations(Map.of("A", 1000L));
+        assertEquals(10_000, evaluation.getTimeoutMs("A"));
+    }
+    
+    @Test
+    public void getTimeoutMs_fastClass_usesMinimum() {
+        evaluation.setExpectedClassDurations(Map.of("A", 10L));
+        assertEquals(5_000, evaluation.getTimeoutMs("A"));
+    }
+    
+    @Test
+    public void getTimeoutMs_slowClass_limitedByGlobalTimeout() {
+        evaluation.setExpectedClassDurations(Map.of("A", 60_000L));
+        assertEquals(120_000, evaluation.getTimeoutMs("A"));
+    }
+    
+    @Test
+    public void getTimeoutMs_historicalDurationIgnored() {
+        evaluation.setHistoricalClassDurations(Map.of("A", 10L));
+        assertEquals(120_000, evaluation.getTimeoutMs("A"));
+    }
+    
+    @Test
+    public void isSuspicious_allPassing_false() {
+        assertFalse(JunitEvaluation.isSuspicious(List.of(new TestResult("A", "A", "a", null),
+                new TestResult("A", "A", "b", null))));
+    }
+    
+    @Test
+    public void isSuspicious_failingTest_true() {
+        assertTrue(JunitEvaluation.isSuspicious(List.of(new TestResult("A", "A", "a", null),
+                new TestResult("A", "A", "b", "java.lang.AssertionError"))));
+    }
+    
+    @Test
+    public void isSuspicious_missingOrEmptyResult_true() {
+        assertAll(
+            () -> assertTrue(JunitEvaluation.isSuspicious(null)),
+            () -> assertTrue(JunitEvaluation.isSuspicious(List.of()))
+        );
+    }
+    
+}
@@ -0,0 +1,101 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.program_repair.geneseer.code.Node;
+import net.ssehub.program_repair.geneseer.code.Node.Metadata;
+import net.ssehub.program_repair.geneseer.code.Node.Type;
+import net.ssehub.program_repair.geneseer.code.Parser;
+import net.ssehub.program_repair.geneseer.code.ParsingException;
+
+public class StatementImpactTest {
+    
+    private static final String ORIGINAL = """
+            class A {
+                int f = 1;
+                void m(boolean c) {
+                    a();
+                    if (c) {
+                        b();
+                    }
+                    d();
+                }
+            }
+            """;
+    
+    /**
+     * The tests covering each statement of {@link #ORIGINAL}, by the first token of the statement.
+     */
+    private static final Map<String, Set<String>> COVERAGE = Map.of(
+            "a", Set.of("T::t1", "T::t2", "T::t3"),
+            "if", Set.of("T::t1", "T::t2", "T::t3"),
+            "b", Set.of("T::t1"),
+            "d", Set.of("T::t1", "T::t2"));
+    
+    private static Node parse(String source) throws IOException, ParsingException {
+        Path file = Files.createTempFile("StatementImpactTest", ".java");
+        try {
+            Files.writeString(file, source, StandardCharsets.UTF_8);
+            return new Parser().parseSingleFile(file, StandardCharsets.UTF_8);
+        } finally {
+            Files.delete(file);
+        }
+    }
+    
+    private static Node parseOriginal() throws IOException, ParsingException {
+        Node original = parse(ORIGINAL);
+        original.stream()
+                .filter(n -> n.getType() == Type.STATEMENT)
+                .forEach(n -> n.setMetadata(Metadata.COVERED_BY, COVERAGE.get(n.getTextSingleLine().split("\\W")[0])));
+        return original;
+    }
+    
+    private static Set<String> getImpactedTests(String modified) throws IOException, ParsingException {
+        return StatementImpact.getImpactedTests(parseOriginal(), parse(modified));
+    }
+    
+    @Test
+    public void replacedStatement_coveringTests() throws IOException, ParsingException {
+        assertEquals(Set.of("T::t1"), getImpactedTests(ORIGINAL.replace("b();", "e();")));
+    }
+    
+    @Test
+    public void removedStatement_testsReachingBlock() throws IOException, ParsingException {
+        assertEquals(Set.of("T::t1", "T::t2", "T::t3"), getImpactedTests(ORIGINAL.replace("b();", "")));
+    }
+    
+    @Test
+    public void insertedStatement_testsCoveringPreviousStatement() throws IOException, ParsingException {
+        assertEquals(Set.of("T::t1", "T::t2"), getImpactedTests(ORIGINAL.replace("d();", "d(); e();")));
+    }
+    
+    @Test
+    public void insertedStatementAtBlockStart_testsCoveringFollowingStatement() throws IOException, ParsingException {
+        assertEquals(Set.of("T::t1", "T::t2", "T::t3"), getImpactedTests(ORIGINAL.replace("a();", "e(); a();")));
+    }
+    
+    @Test
+    public void modifiedField_notAttributable() throws IOException, ParsingException {
+        assertNull(getImpactedTests(ORIGINAL.replace("f = 1", "f = 2")));
+    }
+    
+    @Test
+    public void statementWithoutCoverage_notAttributable() throws IOException, ParsingException {
+        Node original = parseOriginal();
+        original.stream()
+                .filter(n -> n.getType() == Type.STATEMENT && n.getTextSingleLine().startsWith("b"))
+                .forEach(n -> n.setMetadata(Metadata.COVERED_BY, null));
+        assertNull(StatementImpact.getImpactedTests(original, parse(ORIGINAL.replace("b();", "e();"))));
+    }
+    
+}
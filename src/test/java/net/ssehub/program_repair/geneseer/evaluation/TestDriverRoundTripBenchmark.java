@@ -0,0 +1,60 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the round-trip latency of a single protocol message (a heartbeat) between {@link TestExecution} and the
+ * test driver process. Not run as part of the test suite; start the main method manually.
+ * <p>
+ * Usage: <code>TestDriverRoundTripBenchmark [messages]</code>
+ */
+public class TestDriverRoundTripBenchmark {
+    
+    private static final int WARMUP_MESSAGES = 1000;
+    
+    public static void main(String[] args) throws IOException, TestExecutionException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        
+        Path workingDirectory = Files.createTempDirectory("geneseer-benchmark");
+        try (TestExecution execution = new TestExecution(workingDirectory, List.of(), StandardCharsets.UTF_8,
+                false, true)) {
+            
+            execution.setTimeout(-1);
+            measure(execution, WARMUP_MESSAGES);
+            report("without timeout", measure(execution, messages));
+            
+            execution.setTimeout(60_000);
+            measure(execution, WARMUP_MESSAGES);
+            report("with timeout", measure(execution, messages));
+        
+        } finally {
+            Files.delete(workingDirectory);
+        }
+    }
+    
+    private static long[] measure(TestExecution execution, int messages) throws TestExecutionException {
+        long[] nanos = new long[messages];
+        for (int i = 0; i < messages; i++) {
+            long t0 = System.nanoTime();
+            execution.checkHeartbeat();
+            nanos[i] = System.nanoTime() - t0;
+        }
+        return nanos;
+    }
+    
+    private static void report(String name, long[] nanos) {
+        Arrays.sort(nanos);
+        double mean = Arrays.stream(nanos).average().orElse(0) / 1000.0;
+        System.out.printf("%-16s %6d messages: mean %8.1f us, p50 %8.1f us, p99 %8.1f us, max %8.1f us%n",
+                name, nanos.length, mean,
+                nanos[nanos.length / 2] / 1000.0,
+                nanos[(int) (nanos.length * 0.99)] / 1000.0,
+                nanos[nanos.length - 1] / 1000.0);
+    }
+    
+}
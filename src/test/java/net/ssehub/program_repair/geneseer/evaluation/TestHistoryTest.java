@@ -0,0 +1,127 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.program_repair.geneseer.util.FileUtils;
+
+public class TestHistoryTest {
+    
+    private static final Path PROJECT = Path.of("project");
+    
+    private Path historyDirectory;
+    
+    @BeforeEach
+    public void createHistoryDirectory() throws IOException {
+        historyDirectory = Files.createTempDirectory("TestHistoryTest");
+    }
+    
+    @AfterEach
+    public void deleteHistoryDirectory() throws IOException {
+        FileUtils.deleteDirectory(historyDirectory);
+    }
+    
+    private static List<TestResult> results(String... failures) {
+        return List.of(
+                new TestResult("T", "T", "a", failures.length > 0 ? failures[0] : null),
+                new TestResult("T", "T", "b", failures.length > 1 ? failures[1] : null));
+    }
+    
+    @Test
+    public void emptyHistory_defaultEstimates() throws IOException {
+        TestHistory history = TestHistory.open(historyDirectory, PROJECT);
+        assertAll(
+            () -> assertEquals(0.5, history.getKillProbability("T::a")),
+            () -> assertEquals(0, history.getTimeouts("T::a")),
+            () -> assertEquals(Map.of(), history.getClassDurations())
+        );
+    }
+    
+    @Test
+    public void recordResults_updatesKillProbability() throws IOException {
+        TestHistory history = TestHistory.open(historyDirectory, PROJECT);
+        history.recordResults(results("failure"));
+        history.recordResults(results("failure"));
+        assertAll(
+            () -> assertEquals(0.75, history.getKillProbability("T::a")),
+            () -> assertEquals(0.25, history.getKillProbability("T::b"))
+        );
+    }
+    
+    @Test
+    public void recordResults_countsTimeoutsAndIgnoresSkipped() throws IOException {
+        TestHistory history = TestHistory.open(historyDirectory, PROJECT);
+        history.recordResults(results("Timeout", TestResult.SKIPPED));
+        assertAll(
+            () -> assertEquals(1, history.getTimeouts("T::a")),
+            () -> assertEquals(0.5, history.getKillProbability("T::b"))
+        );
+    }
+    
+    @Test
+    public void close_writesBufferedUpdates() throws IOException {
+        TestHistory history = TestHistory.open(historyDirectory, PROJECT);
+        history.recordClassDurations(Map.of("T", 100L));
+        history.recordResults(results("failure"));
+        TestHistory beforeClose = TestHistory.open(historyDirectory, PROJECT);
+        history.close();
+        
+        TestHistory reopened = TestHistory.open(historyDirectory, PROJECT);
+        assertAll(
+            () -> assertEquals(Map.of(), beforeClose.getClassDurations()),
+            () -> assertEquals(Map.of("T", 100L), reopened.getClassDurations()),
+            () -> assertEquals(2.0 / 3.0, reopened.getKillProbability("T::a"))
+        );
+    }
+    
+    @Test
+    public void laterClassDurations_replaceEarlierOnes() throws IOException {
+        TestHistory history = TestHistory.open(historyDirectory, PROJECT);
+        history.recordClassDurations(Map.of("T", 100L, "U", 50L));
+        history.flush();
+        history.recordClassDurations(Map.of("T", 200L));
+        history.close();
+        
+        assertEquals(Map.of("T", 200L, "U", 50L), TestHistory.open(historyDirectory, PROJECT).getClassDurations());
+    }
+    
+    @Test
+    public void truncatedLine_ignored() throws IOException {
+        TestHistory history = TestHistory.open(historyDirectory, PROJECT);
+        history.recordResults(results("failure"));
+        history.close();
+        try (Stream<Path> files = Files.list(historyDirectory)) {
+            Path file = files.findFirst().orElseThrow();
+            Files.writeString(file, "{\"tests\":{\"T::b\":{\"ru", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+        
+        TestHistory reopened = TestHistory.open(historyDirectory, PROJECT);
+        assertAll(
+            () -> assertEquals(2.0 / 3.0, reopened.getKillProbability("T::a")),
+            () -> assertEquals(1.0 / 3.0, reopened.getKillProbability("T::b"))
+        );
+    }
+    
+    @Test
+    public void differentProjects_separateHistories() throws IOException {
+        TestHistory history = TestHistory.open(historyDirectory, PROJECT);
+        history.recordResults(results("failure"));
+        history.close();
+        
+        assertEquals(0.5, TestHistory.open(historyDirectory, Path.of("other")).getKillProbability("T::a"));
+    }
+    
+}
@@ -0,0 +1,84 @@
+package net.ssehub.program_repair.geneseer.evaluation;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class TestResultCacheTest {
+    
+    private static final TestResult RESULT = new TestResult("T", "T", "test", null);
+    
+    @Test
+    public void digestClasses_independentOfOrder() {
+        Map<String, String> hashes = Map.of("A", "1", "B", "2");
+        assertEquals(TestResultCache.digestClasses(List.of("A", "B"), hashes),
+                TestResultCache.digestClasses(List.of("B", "A"), hashes));
+    }
+    
+    @Test
+    public void digestClasses_differentHash_differentDigest() {
+        assertNotEquals(TestResultCache.digestClasses(List.of("A"), Map.of("A", "1")),
+                TestResultCache.digestClasses(List.of("A"), Map.of("A", "2")));
+    }
+    
+    @Test
+    public void digestClasses_missingClass_differsFromPresentClass() {
+        assertNotEquals(TestResultCache.digestClasses(List.of("A"), Map.of()),
+                TestResultCache.digestClasses(List.of("A"), Map.of("A", "1")));
+    }
+    
+    @Test
+    public void digestClasses_onlyGivenClassesIncluded() {
+        assertEquals(TestResultCache.digestClasses(List.of("A"), Map.of("A", "1")),
+                TestResultCache.digestClasses(List.of("A"), Map.of("A", "1", "B", "2")));
+    }
+    
+    @Test
+    public void getKeyClasses_modifiedClassNotCovered_notIncluded() {
+        assertEquals(Set.of("A"), TestResultCache.getKeyClasses(Set.of("A", "B"), Set.of("A", "C"), Set.of()));
+    }
+    
+    @Test
+    public void getKeyClasses_unmodifiedCoveredClass_notIncluded() {
+        assertEquals(Set.of(), TestResultCache.getKeyClasses(Set.of("A", "B"), Set.of("C"), Set.of()));
+    }
+    
+    @Test
+    public void getKeyClasses_modifiedClassCoveredByNoTest_included() {
+        assertEquals(Set.of("A", "U"), TestResultCache.getKeyClasses(Set.of("A"), Set.of("A", "C", "U"), Set.of("U")));
+    }
+    
+    @Test
+    public void createKey_differentTests_differentKeys() {
+        assertNotEquals(TestResultCache.createKey("T::a", "digest"), TestResultCache.createKey("T::b", "digest"));
+    }
+    
+    @Test
+    public void get_unknownKey_null() {
+        assertNull(new TestResultCache(2).get("key"));
+    }
+    
+    @Test
+    public void put_fullCache_evictsLeastRecentlyUsed() {
+        TestResultCache cache = new TestResultCache(2);
+        cache.put("a", RESULT);
+        cache.put("b", RESULT);
+        cache.get("a");
+        cache.put("c", RESULT);
+        assertAll(
+            () -> assertEquals(2, cache.size()),
+            () -> assertSame(RESULT, cache.get("a")),
+            () -> assertNull(cache.get("b")),
+            () -> assertSame(RESULT, cache.get("c"))
+        );
+    }
+    
+}
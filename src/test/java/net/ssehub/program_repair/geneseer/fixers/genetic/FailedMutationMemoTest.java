@@ -0,0 +1,145 @@
+package net.ssehub.program_repair.geneseer.fixers.genetic;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.program_repair.geneseer.code.InnerNode;
+import net.ssehub.program_repair.geneseer.code.Node;
+import net.ssehub.program_repair.geneseer.code.Node.Type;
+import net.ssehub.program_repair.geneseer.code.Parser;
+import net.ssehub.program_repair.geneseer.code.ParsingException;
+import net.ssehub.program_repair.geneseer.util.FileUtils;
+
+public class FailedMutationMemoTest {
+    
+    private static final String SOURCE = """
+            class A {
+                void m() {
+                    a();
+                    b();
+                }
+                void n() {
+                    a();
+                }
+            }
+            """;
+    
+    private Path sourceDirectory;
+    
+    @BeforeEach
+    public void createSourceDirectory() throws IOException {
+        sourceDirectory = Files.createTempDirectory("FailedMutationMemoTest");
+    }
+    
+    @AfterEach
+    public void deleteSourceDirectory() throws IOException {
+        FileUtils.deleteDirectory(sourceDirectory);
+    }
+    
+    private Node parse(String source) throws IOException, ParsingException {
+        Files.writeString(sourceDirectory.resolve("A.java"), source, StandardCharsets.UTF_8);
+        return new Parser().parse(sourceDirectory, StandardCharsets.UTF_8);
+    }
+    
+    private static Node findStatement(Node astRoot, String text, int index) {
+        return astRoot.stream()
+                .filter(n -> n.getType() == Type.STATEMENT && n.getTextSingleLine().equals(text))
+                .skip(index)
+                .findFirst().orElseThrow();
+    }
+    
+    @Test
+    public void getLocation_sameStatementInEqualAst_sameLocation() throws IOException, ParsingException {
+        Node ast1 = parse(SOURCE);
+        Node ast2 = parse(SOURCE);
+        assertEquals(FailedMutationMemo.getLocation(ast1, findStatement(ast1, "b();", 0)),
+                FailedMutationMemo.getLocation(ast2, findStatement(ast2, "b();", 0)));
+    }
+    
+    @Test
+    public void getLocation_differentStatements_differentLocations() throws IOException, ParsingException {
+        Node ast = parse(SOURCE);
+        String a = FailedMutationMemo.getLocation(ast, findStatement(ast, "a();", 0));
+        assertAll(
+            () -> assertNotEquals(a, FailedMutationMemo.getLocation(ast, findStatement(ast, "b();", 0))),
+            () -> assertNotEquals(a, FailedMutationMemo.getLocation(ast, findStatement(ast, "a();", 1)))
+        );
+    }
+    
+    @Test
+    public void getLocation_changedMethod_differentLocation() throws IOException, ParsingException {
+        Node original = parse(SOURCE);
+        Node changed = parse(SOURCE.replace("b();", "c();"));
+        Node unchanged = findStatement(changed, "a();", 1);
+        assertAll(
+            () -> assertNotEquals(FailedMutationMemo.getLocation(original, findStatement(original, "a();", 0)),
+                    FailedMutationMemo.getLocation(changed, findStatement(changed, "a();", 0))),
+            () -> assertEquals(FailedMutationMemo.getLocation(original, findStatement(original, "a();", 1)),
+                    FailedMutationMemo.getLocation(changed, unchanged))
+        );
+    }
+    
+    @Test
+    public void getLocation_statementNotInFile_throws() throws IOException, ParsingException {
+        Node ast = parse(SOURCE);
+        Node statement = findStatement(ast, "a();", 0);
+        Node root = new InnerNode(Type.OTHER);
+        root.add(statement);
+        assertThrows(IllegalArgumentException.class, () -> FailedMutationMemo.getLocation(root, statement));
+    }
+    
+    @Test
+    public void createKey_differentOperationsAndStatements_differentKeys() throws IOException, ParsingException {
+        Node ast = parse(SOURCE);
+        Node a = findStatement(ast, "a();", 0);
+        Node b = findStatement(ast, "b();", 0);
+        String key = FailedMutationMemo.createKey("location", "ins", a);
+        assertAll(
+            () -> assertEquals(key, FailedMutationMemo.createKey("location", "ins", findStatement(ast, "a();", 1))),
+            () -> assertNotEquals(key, FailedMutationMemo.createKey("location", "rep", a)),
+            () -> assertNotEquals(key, FailedMutationMemo.createKey("location", "ins", b)),
+            () -> assertNotEquals(key, FailedMutationMemo.createKey("other", "ins", a)),
+            () -> assertNotEquals(FailedMutationMemo.createKey("location", "del", null), key)
+        );
+    }
+    
+    @Test
+    public void isKnownFailure_onlyAddedKeys() {
+        FailedMutationMemo memo = new FailedMutationMemo(2);
+        memo.addFailure("a");
+        assertAll(
+            () -> assertTrue(memo.isKnownFailure("a")),
+            () -> assertFalse(memo.isKnownFailure("b")),
+            () -> assertEquals(1, memo.size())
+        );
+    }
+    
+    @Test
+    public void addFailure_fullMemo_evictsLeastRecentlyUsed() {
+        FailedMutationMemo memo = new FailedMutationMemo(2);
+        memo.addFailure("a");
+        memo.addFailure("b");
+        memo.isKnownFailure("a");
+        memo.addFailure("c");
+        assertAll(
+            () -> assertEquals(2, memo.size()),
+            () -> assertTrue(memo.isKnownFailure("a")),
+            () -> assertFalse(memo.isKnownFailure("b")),
+            () -> assertTrue(memo.isKnownFailure("c"))
+        );
+    }
+    
+}
@@ -0,0 +1,81 @@
+package net.ssehub.program_repair.geneseer.fixers.genetic;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.program_repair.geneseer.code.InnerNode;
+import net.ssehub.program_repair.geneseer.code.Node;
+import net.ssehub.program_repair.geneseer.code.Node.Type;
+
+public class GeneticAlgorithmTest {
+    
+    private static Variant measured(double fitness) {
+        Variant variant = new Variant(new InnerNode(Type.COMPILATION_UNIT));
+        variant.setFitness(fitness, List.of());
+        return variant;
+    }
+    
+    @Test
+    public void removeUnmeasured_newVariantWithoutFitness_isRemoved() {
+        Variant unmeasured = new Variant(new InnerNode(Type.COMPILATION_UNIT));
+        Variant v1 = measured(1.0);
+        Variant v2 = measured(2.0);
+        List<Variant> population = new ArrayList<>(List.of(v1, unmeasured, v2));
+        
+        int removed = GeneticAlgorithm.removeUnmeasured(population);
+        
+        assertAll(
+            () -> assertEquals(1, removed),
+            () -> assertEquals(List.of(v1, v2), population)
+        );
+    }
+    
+    @Test
+    public void removeUnmeasured_mutatedVariantNotMeasuredAgain_isRemoved() {
+        Variant mutated = measured(1.0);
+        Node mutatedAst = new InnerNode(Type.COMPILATION_UNIT);
+        mutated.setAst(mutatedAst);
+        Variant v1 = measured(2.0);
+        List<Variant> population = new ArrayList<>(List.of(mutated, v1));
+        
+        int removed = GeneticAlgorithm.removeUnmeasured(population);
+        
+        assertAll(
+            () -> assertEquals(1, removed),
+            () -> assertEquals(List.of(v1), population)
+        );
+    }
+    
+    @Test
+    public void removeUnmeasured_remainingPopulationCanBeSortedByFitness() {
+        Variant v1 = measured(1.0);
+        Variant v2 = measured(3.0);
+        List<Variant> population = new ArrayList<>(List.of(v1, new Variant(new InnerNode(Type.COMPILATION_UNIT)),
+                v2));
+        
+        GeneticAlgorithm.removeUnmeasured(population);
+        
+        assertEquals(List.of(v2, v1), population.stream()
+                .sorted(Comparator.comparingDouble(Variant::getFitness).reversed())
+                .toList());
+    }
+    
+    @Test
+    public void removeUnmeasured_allMeasured_nothingRemoved() {
+        Variant v1 = measured(1.0);
+        Variant v2 = measured(0.0);
+        List<Variant> population = new ArrayList<>(List.of(v1, v2));
+        
+        assertAll(
+            () -> assertEquals(0, GeneticAlgorithm.removeUnmeasured(population)),
+            () -> assertEquals(List.of(v1, v2), population)
+        );
+    }
+    
+}
@@ -0,0 +1,129 @@
+package net.ssehub.program_repair.geneseer.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class BoundedOutputCaptureTest {
+    
+    private static String capture(BoundedOutputCapture capture, String... chunks) throws IOException {
+        for (String chunk : chunks) {
+            capture.write(chunk.getBytes(StandardCharsets.US_ASCII));
+        }
+        capture.finish();
+        return new String(capture.toByteArray(), StandardCharsets.US_ASCII);
+    }
+    
+    @Test
+    public void outputWithinLimits_keptCompletely() throws IOException {
+        BoundedOutputCapture capture = new BoundedOutputCapture(4, 4, false);
+        String output = capture(capture, "abc", "defgh");
+        assertAll(
+            () -> assertEquals("abcdefgh", output),
+            () -> assertEquals(8, capture.getTotalBytes()),
+            () -> assertEquals(0, capture.getDroppedBytes()),
+            () -> assertNull(capture.getSpillFile())
+        );
+    }
+    
+    @ParameterizedTest
+    @CsvSource({
+        "0123456789abcdef",
+        "01|23456789abcdef",
+        "0123|456789ab|cdef",
+        "0|1|2|3|4|5|6|7|8|9|a|b|c|d|e|f",
+        "012345|6789abc|def",
+    })
+    public void longOutput_keepsHeadAndTail(String chunks) throws IOException {
+        BoundedOutputCapture capture = new BoundedOutputCapture(4, 3, false);
+        String output = capture(capture, chunks.split("\\|"));
+        assertAll(
+            () -> assertEquals("0123\n[... 9 bytes omitted ...]\ndef", output),
+            () -> assertEquals(16, capture.getTotalBytes()),
+            () -> assertEquals(9, capture.getDroppedBytes())
+        );
+    }
+    
+    @Test
+    public void zeroTail_keepsOnlyHead() throws IOException {
+        BoundedOutputCapture capture = new BoundedOutputCapture(2, 0, false);
+        String output = capture(capture, "abc", "def");
+        assertEquals("ab\n[... 4 bytes omitted ...]\n", output);
+    }
+    
+    @Test
+    public void largeOutput_growsBuffersToLimits() throws IOException {
+        BoundedOutputCapture capture = new BoundedOutputCapture(10000, 20000, false);
+        byte[] input = new byte[100000];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (byte) i;
+        }
+        capture.captureAll(new ByteArrayInputStream(input));
+        
+        byte[] output = capture.toByteArray();
+        byte[] marker = "\n[... 70000 bytes omitted ...]\n".getBytes(StandardCharsets.US_ASCII);
+        assertAll(
+            () -> assertEquals(10000 + marker.length + 20000, output.length),
+            () -> assertEquals((byte) 9999, output[9999]),
+            () -> assertEquals((byte) 80000, output[10000 + marker.length]),
+            () -> assertEquals((byte) 99999, output[output.length - 1])
+        );
+    }
+    
+    @Test
+    public void spillToFile_containsDroppedBytesInOrder() throws IOException {
+        BoundedOutputCapture capture = new BoundedOutputCapture(2, 2, true);
+        String output = capture(capture, "ab", "cde", "f", "ghij");
+        try {
+            assertAll(
+                () -> assertEquals("ab\n[... 6 bytes omitted, see " + capture.getSpillFile() + " ...]\nij",
+                        output),
+                () -> assertNotNull(capture.getSpillFile()),
+                () -> assertEquals("cdefgh", Files.readString(capture.getSpillFile(), StandardCharsets.US_ASCII))
+            );
+        } finally {
+            capture.close();
+        }
+    }
+    
+    @Test
+    public void close_deletesSpillFile() throws IOException {
+        BoundedOutputCapture capture = new BoundedOutputCapture(2, 2, true);
+        capture.captureAll(new ByteArrayInputStream("abcdefghij".getBytes(StandardCharsets.US_ASCII)));
+        Path spillFile = capture.getSpillFile();
+        boolean existedBeforeClose = Files.isRegularFile(spillFile);
+        
+        capture.close();
+        assertAll(
+            () -> assertTrue(existedBeforeClose),
+            () -> assertFalse(Files.exists(spillFile)),
+            () -> assertEquals("ab\n[... 6 bytes omitted, see " + spillFile + " ...]\nij",
+                    new String(capture.toByteArray(), StandardCharsets.US_ASCII))
+        );
+    }
+    
+    @Test
+    public void close_withoutSpilling_doesNothing() throws IOException {
+        BoundedOutputCapture capture = new BoundedOutputCapture(2, 2, true);
+        capture.write("abc".getBytes(StandardCharsets.US_ASCII));
+        capture.close();
+        assertAll(
+            () -> assertNull(capture.getSpillFile()),
+            () -> assertEquals("abc", new String(capture.toByteArray(), StandardCharsets.US_ASCII))
+        );
+    }
+    
+}
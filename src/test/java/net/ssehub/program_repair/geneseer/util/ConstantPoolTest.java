@@ -0,0 +1,162 @@
+package net.ssehub.program_repair.geneseer.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.program_repair.geneseer.util.ConstantPool.MemberDeclaration;
+import net.ssehub.program_repair.geneseer.util.ConstantPool.MemberReference;
+
+public class ConstantPoolTest {
+    
+    @SuppressWarnings("unused")
+    private static class Sample implements Serializable, Runnable {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private long longConstant = 1234567890123L;
+        
+        private double doubleConstant = 3.14;
+        
+        private StringBuilder[][] builders;
+        
+        @Override
+        public void run() {
+            System.exit(longConstant > doubleConstant ? 1 : 0);
+        }
+    
+    }
+    
+    private static class Generic<T> {
+        
+        @SuppressWarnings("unused")
+        T get() {
+            return null;
+        }
+    
+    }
+    
+    private static ConstantPool read(Class<?> cls) throws IOException {
+        String fileName = cls.getName().substring(cls.getName().lastIndexOf('.') + 1) + ".class";
+        try (InputStream in = cls.getResourceAsStream(fileName)) {
+            return ConstantPool.read(in);
+        }
+    }
+    
+    private static ConstantPool readWithMembers(Class<?> cls) throws IOException {
+        String fileName = cls.getName().substring(cls.getName().lastIndexOf('.') + 1) + ".class";
+        try (InputStream in = cls.getResourceAsStream(fileName)) {
+            return ConstantPool.readWithMembers(in.readAllBytes());
+        }
+    }
+    
+    @Test
+    public void classNames() throws IOException {
+        ConstantPool pool = read(Sample.class);
+        assertAll(
+            () -> assertEquals(Sample.class.getName(), pool.getClassName()),
+            () -> assertEquals("java.lang.Object", pool.getSuperClassName()),
+            () -> assertEquals(List.of("java.io.Serializable", "java.lang.Runnable"), pool.getInterfaceNames())
+        );
+    }
+    
+    @Test
+    public void objectHasNoSuperClass() throws IOException {
+        assertNull(read(Object.class).getSuperClassName());
+    }
+    
+    @Test
+    public void referencedClasses() throws IOException {
+        ConstantPool pool = read(Sample.class);
+        assertAll(
+            () -> assertTrue(pool.getReferencedClasses().contains(Sample.class.getName())),
+            () -> assertTrue(pool.getReferencedClasses().contains("java.lang.System")),
+            () -> assertFalse(pool.getReferencedClasses().contains("java.lang.Runtime"))
+        );
+    }
+    
+    @Test
+    public void memberReferences_afterLongAndDoubleConstants() throws IOException {
+        ConstantPool pool = read(Sample.class);
+        assertAll(
+            () -> assertTrue(pool.getMemberReferences().contains(
+                    new MemberReference("java.lang.System", "exit", "(I)V", true))),
+            () -> assertTrue(pool.getMemberReferences().contains(
+                    new MemberReference(Sample.class.getName(), "longConstant", "J", false))),
+            () -> assertTrue(pool.getMemberReferences().contains(
+                    new MemberReference(Sample.class.getName(), "doubleConstant", "D", false)))
+        );
+    }
+    
+    @Test
+    public void referencesMethod() throws IOException {
+        ConstantPool pool = read(Sample.class);
+        assertAll(
+            () -> assertTrue(pool.referencesMethod("java.lang.System", "exit")),
+            () -> assertFalse(pool.referencesMethod("java.lang.Runtime", "exit")),
+            () -> assertFalse(pool.referencesMethod(Sample.class.getName(), "longConstant"))
+        );
+    }
+    
+    @Test
+    public void withMembers_declarations() throws IOException {
+        ConstantPool pool = readWithMembers(Sample.class);
+        List<MemberDeclaration> members = pool.getMemberDeclarations();
+        assertAll(
+            () -> assertTrue(members.contains(new MemberDeclaration(Modifier.PRIVATE | Modifier.STATIC | Modifier.FINAL,
+                    "serialVersionUID", "J", null, "5:1", false))),
+            () -> assertTrue(members.contains(new MemberDeclaration(Modifier.PRIVATE,
+                    "builders", "[[Ljava/lang/StringBuilder;", null, null, false))),
+            () -> assertTrue(members.contains(new MemberDeclaration(Modifier.PUBLIC, "run", "()V", null, null, true))),
+            () -> assertEquals("ConstantPoolTest.java", pool.getSourceFileName()),
+            () -> assertNull(pool.getSignature())
+        );
+    }
+    
+    @Test
+    public void withMembers_genericSignatures() throws IOException {
+        ConstantPool pool = readWithMembers(Generic.class);
+        assertAll(
+            () -> assertEquals("<T:Ljava/lang/Object;>Ljava/lang/Object;", pool.getSignature()),
+            () -> assertTrue(pool.getMemberDeclarations().contains(new MemberDeclaration(0, "get",
+                    "()Ljava/lang/Object;", "()TT;", null, true)))
+        );
+    }
+    
+    @Test
+    public void withMembers_descriptorClasses() throws IOException {
+        ConstantPool pool = readWithMembers(Sample.class);
+        assertAll(
+            () -> assertTrue(pool.getDescriptorClasses().contains("java.lang.StringBuilder")),
+            () -> assertFalse(pool.getReferencedClasses().contains("java.lang.StringBuilder"))
+        );
+    }
+    
+    @Test
+    public void withoutMembers_noDeclarations() throws IOException {
+        ConstantPool pool = read(Sample.class);
+        assertAll(
+            () -> assertNull(pool.getMemberDeclarations()),
+            () -> assertNull(pool.getSourceFileName()),
+            () -> assertNull(pool.getDescriptorClasses())
+        );
+    }
+    
+    @Test
+    public void notAClassFile_throws() {
+        IOException e = assertThrows(IOException.class, () -> ConstantPool.read(new byte[] {1, 2, 3, 4}));
+        assertEquals("Not a class file", e.getMessage());
+    }
+    
+}